@@ -0,0 +1,58 @@
+package benchmark;
+
+import java.util.Collection;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks in this package with the GC profiler, so that each
+ * result is reported alongside its allocation per operation
+ * (gc.alloc.rate.norm). Arguments are regular expressions selecting
+ * benchmarks, defaulting to all of them. Benchmarks require JMH's annotation
+ * processor to have run at compile time.
+ * <p>
+ * Benchmarks with pairs of counters in RATIOS, such as the bytes they send
+ * and the messages they send them in, have the ratio of the two reported
+ * after the results, as JMH only reports counters' totals.
+ */
+public class BenchmarkRunner {
+
+	/**
+	 * Pairs of counters, as numerator, denominator and the description of
+	 * their ratio.
+	 */
+	private static final String[][] RATIOS = {
+			{ "bytes", "messages", "bytes per message" },
+			{ "retainedBytes", "connections", "retained bytes per connection" } };
+
+	public static void main(String[] args) throws RunnerException {
+		OptionsBuilder builder = new OptionsBuilder();
+		if (args.length == 0)
+			builder.include("benchmark\\..*");
+		for (String arg : args)
+			builder.include(arg);
+		Options options = builder.addProfiler(GCProfiler.class).build();
+		Collection<RunResult> results = new Runner(options).run();
+		for (RunResult result : results) {
+			BenchmarkParams params = result.getParams();
+			String label = params.getBenchmark() + params.getParamsKeys().stream()
+					.map(key -> " " + key + "=" + params.getParam(key)).collect(Collectors.joining());
+			for (String[] ratio : RATIOS) {
+				Result<?> numerator = result.getSecondaryResults().get(ratio[0]);
+				Result<?> denominator = result.getSecondaryResults().get(ratio[1]);
+				if (numerator == null || denominator == null || denominator.getScore() == 0)
+					continue;
+				System.out.printf("%s: %.1f %s%n", label, numerator.getScore() / denominator.getScore(), ratio[2]);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,101 @@
+package benchmark.serialization;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+import com.phoenixkahlo.nodenet.stream.DatagramStream;
+import com.phoenixkahlo.nodenet.stream.PreparedMessage;
+
+/**
+ * A DatagramStream that keeps the last message sent and receives it, any
+ * number of times, for measuring ObjectStreams without any network. Only a
+ * single thread may use it.
+ */
+public class LoopbackDatagramStream implements DatagramStream {
+
+	private static final InetSocketAddress ADDRESS = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+
+	private byte[] last;
+
+	/**
+	 * @return the length of the last message sent.
+	 */
+	public int getLastLength() {
+		return last.length;
+	}
+
+	@Override
+	public void send(byte[] data) {
+		last = data;
+	}
+
+	@Override
+	public void sendOrdered(byte[] data) {
+		last = data;
+	}
+
+	@Override
+	public void send(PreparedMessage message) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void send(byte[] data, long deadline) {
+		last = data;
+	}
+
+	@Override
+	public void sendUnreliable(byte[] data) {
+		last = data;
+	}
+
+	@Override
+	public void sendKeyed(int key, byte[] data) {
+		last = data;
+	}
+
+	@Override
+	public byte[] receive() {
+		return last;
+	}
+
+	@Override
+	public int drainTo(Collection<? super byte[]> collection, int maxMessages) {
+		collection.add(last);
+		return 1;
+	}
+
+	@Override
+	public void onMessage(Consumer<byte[]> handler, Executor executor) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void disconnect() {
+	}
+
+	@Override
+	public void setDisconnectHandler(Runnable handler, boolean launchNewThread) {
+	}
+
+	@Override
+	public boolean isDisconnected() {
+		return false;
+	}
+
+	@Override
+	public List<byte[]> getUnconfirmed() {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public InetSocketAddress getRemoteAddress() {
+		return ADDRESS;
+	}
+
+}
@@ -0,0 +1,276 @@
+package benchmark.serialization;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.JavaSerializer;
+import com.phoenixkahlo.nodenet.AddressedMessage;
+import com.phoenixkahlo.nodenet.BasicLocalNode;
+import com.phoenixkahlo.nodenet.DisconnectionException;
+import com.phoenixkahlo.nodenet.NeighborSetUpdate;
+import com.phoenixkahlo.nodenet.NodeAddress;
+import com.phoenixkahlo.nodenet.ProtocolViolationException;
+import com.phoenixkahlo.nodenet.ViralMessage;
+import com.phoenixkahlo.nodenet.proxy.ProxyInvocation;
+import com.phoenixkahlo.nodenet.proxy.ProxyResult;
+import com.phoenixkahlo.nodenet.serialization.ArraySerializer;
+import com.phoenixkahlo.nodenet.serialization.CollectionSerializer;
+import com.phoenixkahlo.nodenet.serialization.EmptyOptionalSerializer;
+import com.phoenixkahlo.nodenet.serialization.FullOptionalSerializer;
+import com.phoenixkahlo.nodenet.serialization.HashMapSerializer;
+import com.phoenixkahlo.nodenet.serialization.MethodSerializer;
+import com.phoenixkahlo.nodenet.serialization.NullSerializer;
+import com.phoenixkahlo.nodenet.serialization.StringSerializer;
+import com.phoenixkahlo.nodenet.serialization.ThrowableSerializer;
+import com.phoenixkahlo.nodenet.serialization.UnionSerializer;
+import com.phoenixkahlo.nodenet.stream.KryoObjectStream;
+import com.phoenixkahlo.nodenet.stream.KryoProvider;
+import com.phoenixkahlo.nodenet.stream.ObjectStream;
+import com.phoenixkahlo.nodenet.stream.SerializerObjectStream;
+import com.phoenixkahlo.util.UUID;
+
+/**
+ * The cost of sending and receiving protocol objects through a
+ * SerializerObjectStream, with a union of the framework's serializers, and
+ * through a KryoObjectStream, over a LoopbackDatagramStream. The bytes sent
+ * and the number of messages they were sent in are counted, and
+ * BenchmarkRunner reports their ratio, along with the allocation per
+ * operation.
+ * <p>
+ * The size is the number of elements in the variable part of each message:
+ * the nodes an AddressedMessage has visited, with 16 payload bytes for each;
+ * the neighbors in a NeighborSetUpdate and the nodes its ViralMessage has
+ * infected; the strings in the list a ProxyInvocation passes; the entries in
+ * the map a ProxyResult returns; and the addresses in a list. A failed
+ * ProxyResult carries an exception, and does not vary with the size.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+// ThrowableSerializer serializes StackTraceElements by reflection, which Java
+// 9 and later only allow if java.lang is opened
+@Fork(value = 1, jvmArgs = { "-XX:+IgnoreUnrecognizedVMOptions", "--add-opens=java.base/java.lang=ALL-UNNAMED" })
+public class ObjectStreamBenchmark {
+
+	/**
+	 * JMH sums event counters over the iterations, so they are accumulated and
+	 * reset for each one, rather than assigned.
+	 */
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class Wire {
+
+		public long bytes;
+		public long messages;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			bytes = 0;
+			messages = 0;
+		}
+
+		void record(int length) {
+			bytes += length;
+			messages++;
+		}
+
+	}
+
+	@Param({ "serializer", "kryo" })
+	public String codec;
+
+	@Param({ "addressed", "viral", "invocation", "result", "failure", "collection" })
+	public String message;
+
+	@Param({ "1", "32", "1024" })
+	public int size;
+
+	private LoopbackDatagramStream loopback;
+	private ObjectStream stream;
+	private Object object;
+
+	@Setup(Level.Trial)
+	public void setup() throws NoSuchMethodException {
+		loopback = new LoopbackDatagramStream();
+		switch (codec) {
+		case "serializer":
+			stream = new SerializerObjectStream(loopback, protocolSerializer());
+			break;
+		case "kryo":
+			KryoProvider kryos = new KryoProvider();
+			kryos.configure(BasicLocalNode::registerProtocol);
+			kryos.configure(ObjectStreamBenchmark::registerProxy);
+			stream = new KryoObjectStream(loopback, kryos);
+			break;
+		default:
+			throw new IllegalArgumentException(codec);
+		}
+		object = createMessage();
+	}
+
+	/**
+	 * A union of serializers for the protocol objects and everything they
+	 * contain.
+	 */
+	private static UnionSerializer protocolSerializer() {
+		UnionSerializer union = new UnionSerializer();
+		union.add(0, new NullSerializer());
+		union.add(1, new StringSerializer());
+		union.add(2, UUID.serializer());
+		union.add(3, NodeAddress.serializer(union));
+		union.add(4, new CollectionSerializer<>(HashSet.class, HashSet::new, union));
+		union.add(5, new CollectionSerializer<>(ArrayList.class, ArrayList::new, union));
+		union.add(6, new HashMapSerializer(union));
+		union.add(7, new ArraySerializer(Object.class, union));
+		union.add(8, new ArraySerializer(byte.class));
+		union.add(9, new EmptyOptionalSerializer());
+		union.add(10, new FullOptionalSerializer(union));
+		union.add(11, new MethodSerializer());
+		union.add(12, new ThrowableSerializer<>(RuntimeException.class, RuntimeException::new, union));
+		union.add(13, AddressedMessage.serializer(union));
+		union.add(14, ViralMessage.serializer(union));
+		union.add(15, NeighborSetUpdate.serializer(union));
+		union.add(16, ProxyInvocation.serializer(union));
+		union.add(17, ProxyResult.serializer(union));
+		return union;
+	}
+
+	/**
+	 * Register the proxy payloads, with serializers for the JDK classes that
+	 * Kryo cannot serialize by reflection.
+	 */
+	private static void registerProxy(Kryo kryo) {
+		kryo.register(ArrayList.class);
+		kryo.register(HashMap.class);
+		kryo.register(Object[].class);
+		kryo.register(Method.class, new MethodKryoSerializer());
+		kryo.register(Optional.class, new OptionalKryoSerializer());
+		kryo.register(RuntimeException.class, new JavaSerializer());
+		kryo.register(ProxyInvocation.class);
+		kryo.register(ProxyResult.class);
+		kryo.register(ProxyResult.Type.class);
+	}
+
+	/**
+	 * Writes methods as MethodSerializer does, by declaring class, name and
+	 * parameter types.
+	 */
+	private static class MethodKryoSerializer extends com.esotericsoftware.kryo.Serializer<Method> {
+
+		@Override
+		public void write(Kryo kryo, Output output, Method method) {
+			kryo.writeObject(output, method.getDeclaringClass());
+			output.writeString(method.getName());
+			kryo.writeObject(output, method.getParameterTypes());
+		}
+
+		@Override
+		public Method read(Kryo kryo, Input input, Class<Method> type) {
+			Class<?> declaringClass = kryo.readObject(input, Class.class);
+			String name = input.readString();
+			Class<?>[] parameterTypes = kryo.readObject(input, Class[].class);
+			try {
+				return declaringClass.getMethod(name, parameterTypes);
+			} catch (NoSuchMethodException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+	}
+
+	private static class OptionalKryoSerializer extends com.esotericsoftware.kryo.Serializer<Optional<?>> {
+
+		@Override
+		public void write(Kryo kryo, Output output, Optional<?> optional) {
+			kryo.writeClassAndObject(output, optional.orElse(null));
+		}
+
+		@Override
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		public Optional<?> read(Kryo kryo, Input input, Class type) {
+			return Optional.ofNullable(kryo.readClassAndObject(input));
+		}
+
+	}
+
+	private List<NodeAddress> addresses() {
+		List<NodeAddress> addresses = new ArrayList<>(size);
+		for (int i = 0; i < size; i++)
+			addresses.add(new NodeAddress(new UUID()));
+		return addresses;
+	}
+
+	private Object createMessage() throws NoSuchMethodException {
+		switch (message) {
+		case "addressed":
+			AddressedMessage addressed = new AddressedMessage(new byte[16 * size], new NodeAddress(new UUID()),
+					new NodeAddress(new UUID()));
+			addresses().forEach(addressed::addVisited);
+			return addressed;
+		case "viral":
+			ViralMessage viral = new ViralMessage(
+					new NeighborSetUpdate(new NodeAddress(new UUID()), new HashSet<>(addresses())));
+			addresses().forEach(viral::addInfected);
+			return viral;
+		case "invocation":
+			List<String> strings = new ArrayList<>(size);
+			for (int i = 0; i < size; i++)
+				strings.add("string " + i);
+			return new ProxyInvocation(new UUID(), Collection.class.getMethod("addAll", Collection.class),
+					new Object[] { strings }, Optional.of(new NodeAddress(new UUID())));
+		case "result":
+			Map<String, String> map = new HashMap<>();
+			for (int i = 0; i < size; i++)
+				map.put("key " + i, "value " + i);
+			return new ProxyResult(new UUID(), map, ProxyResult.Type.NORMAL);
+		case "failure":
+			return new ProxyResult(new UUID(), new RuntimeException("failure"), ProxyResult.Type.TARGETEXCEPTION);
+		case "collection":
+			return addresses();
+		default:
+			throw new IllegalArgumentException(message);
+		}
+	}
+
+	@Benchmark
+	public void send(Wire wire) throws DisconnectionException {
+		stream.send(object);
+		wire.record(loopback.getLastLength());
+	}
+
+	@Benchmark
+	public Object roundTrip(Wire wire) throws DisconnectionException, ProtocolViolationException {
+		stream.send(object);
+		wire.record(loopback.getLastLength());
+		return stream.receive();
+	}
+
+}
@@ -0,0 +1,129 @@
+package benchmark.stream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.phoenixkahlo.nodenet.serialization.SerializationUtils;
+import com.phoenixkahlo.nodenet.stream.BasicChildStream;
+import com.phoenixkahlo.nodenet.stream.BasicStreamFamily;
+import com.phoenixkahlo.nodenet.stream.ChildStream;
+import com.phoenixkahlo.nodenet.stream.DatagramStreamConfig;
+import com.phoenixkahlo.nodenet.stream.FamilyReceivingThread;
+import com.phoenixkahlo.nodenet.stream.StreamFamily;
+import com.phoenixkahlo.util.UUID;
+
+/**
+ * The cost of FamilyReceivingThread decoding a datagram and delegating it to
+ * its child, without the socket. The family has a number of children, of which
+ * the target is the last, and discards everything the child sends in response.
+ * <p>
+ * The payload is always the first of a two part message, so that after the
+ * first invocation it is a duplicate and the receive buffer does not grow. The
+ * confirmation is of a payload that is not unconfirmed.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecodeBenchmark {
+
+	@Param({ "payload", "confirm", "heartbeat" })
+	public String frameType;
+
+	@Param({ "1", "1000" })
+	public int connections;
+
+	private StreamFamily family;
+	private FamilyReceivingThread decoder;
+	private UUID connectionID;
+	private InetSocketAddress from;
+	private byte[] frame;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		PrintStream err = System.err;
+		family = new BasicStreamFamily(new DiscardingUDPSocketWrapper(), DiscardingUDPSocketWrapper.IDLE_THREAD,
+				DiscardingUDPSocketWrapper.IDLE_THREAD, DiscardingUDPSocketWrapper.IDLE_THREAD,
+				(family, id, address) -> new BasicChildStream(family, id, address, err));
+		decoder = new FamilyReceivingThread(family, err);
+		for (int i = 0; i < connections; i++) {
+			connectionID = new UUID();
+			from = new InetSocketAddress(InetAddress.getLoopbackAddress(), 10_000 + i);
+			family.addChild(new BasicChildStream(family, connectionID, from, err));
+		}
+		frame = encode();
+	}
+
+	private byte[] encode() throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		switch (frameType) {
+		case "payload":
+			baos.write(DatagramStreamConfig.PAYLOAD);
+			connectionID.write(baos);
+			SerializationUtils.writeInt(0, baos);
+			new UUID().write(baos);
+			SerializationUtils.writeInt(0, baos);
+			SerializationUtils.writeInt(2, baos);
+			SerializationUtils.writeShort((short) DatagramStreamConfig.MAX_PAYLOAD_SIZE, baos);
+			baos.write(new byte[DatagramStreamConfig.MAX_PAYLOAD_SIZE]);
+			break;
+		case "confirm":
+			baos.write(DatagramStreamConfig.CONFIRM);
+			connectionID.write(baos);
+			SerializationUtils.writeInt(0, baos);
+			SerializationUtils.writeInt(DatagramStreamConfig.RECEIVE_BUFFER_SIZE, baos);
+			break;
+		case "heartbeat":
+			baos.write(DatagramStreamConfig.HEARTBEAT);
+			connectionID.write(baos);
+			SerializationUtils.writeInt(0, baos);
+			break;
+		default:
+			throw new IllegalArgumentException(frameType);
+		}
+		// Decoded from a receive buffer, as the thread would
+		byte[] buffer = new byte[DatagramStreamConfig.MAX_PAYLOAD_SIZE * 2];
+		System.arraycopy(baos.toByteArray(), 0, buffer, 0, baos.size());
+		return buffer;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		family.close();
+	}
+
+	@Benchmark
+	public void decode() throws IOException {
+		decoder.handleDatagram(frame, from);
+	}
+
+	/**
+	 * For comparison, the cost of finding the child alone.
+	 */
+	@Benchmark
+	public ChildStream lookup() {
+		return family.getChild(connectionID).orElse(null);
+	}
+
+}
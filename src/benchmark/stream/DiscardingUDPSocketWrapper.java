@@ -0,0 +1,48 @@
+package benchmark.stream;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+
+import com.phoenixkahlo.nodenet.stream.UDPSocketWrapper;
+import com.phoenixkahlo.util.EndableThread;
+
+/**
+ * A UDPSocketWrapper that discards everything sent and never receives, for
+ * measuring stream internals without any network.
+ */
+public class DiscardingUDPSocketWrapper implements UDPSocketWrapper {
+
+	/**
+	 * A helper thread that does nothing, for families whose threads should not
+	 * run.
+	 */
+	public static final EndableThread IDLE_THREAD = new EndableThread() {
+
+		@Override
+		public void start() {
+		}
+
+		@Override
+		public void end() {
+		}
+
+	};
+
+	@Override
+	public void send(byte[] data, InetSocketAddress to) {
+	}
+
+	@Override
+	public InetSocketAddress receive(byte[] buffer) throws IOException {
+		try {
+			synchronized (this) {
+				while (true)
+					wait();
+			}
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException();
+		}
+	}
+
+}
@@ -0,0 +1,132 @@
+package benchmark.stream;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.phoenixkahlo.nodenet.DisconnectionException;
+import com.phoenixkahlo.nodenet.stream.BasicChildStream;
+import com.phoenixkahlo.nodenet.stream.BasicStreamFamily;
+import com.phoenixkahlo.nodenet.stream.ChildStream;
+import com.phoenixkahlo.nodenet.stream.DatagramStreamConfig;
+import com.phoenixkahlo.nodenet.stream.ReceivedPayload;
+import com.phoenixkahlo.nodenet.stream.StreamFamily;
+import com.phoenixkahlo.util.UUID;
+
+/**
+ * The heap retained per connection by a family holding many children, measured
+ * from the used heap after garbage collection before and after the children
+ * are opened, and counted as retainedBytes over connections, which the
+ * BenchmarkRunner reports the ratio of. Children are either fresh, have
+ * exchanged one message in each direction, or have exchanged messages and then
+ * been trimmed as idle, and either have their metrics registered as MBeans or
+ * not.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = { "-Xmx4g" })
+public class FootprintBenchmark {
+
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class Footprint {
+
+		public long retainedBytes;
+		public long connections;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			retainedBytes = 0;
+			connections = 0;
+		}
+
+	}
+
+	@Param({ "fresh", "exchanged", "trimmed" })
+	public String usage;
+
+	@Param({ "false", "true" })
+	public boolean mbeans;
+
+	@Param({ "10000" })
+	public int connections;
+
+	private StreamFamily family;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		PrintStream err = System.err;
+		family = new BasicStreamFamily(new DiscardingUDPSocketWrapper(), DiscardingUDPSocketWrapper.IDLE_THREAD,
+				DiscardingUDPSocketWrapper.IDLE_THREAD, DiscardingUDPSocketWrapper.IDLE_THREAD,
+				(family, id, address) -> new BasicChildStream(family, id, address, err));
+		family.setChildMBeansEnabled(mbeans);
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDown() {
+		family.close();
+	}
+
+	@Benchmark
+	public List<ChildStream> open(Footprint footprint) throws DisconnectionException, InterruptedException {
+		long before = usedHeap();
+		List<ChildStream> children = new ArrayList<>(connections);
+		for (int i = 0; i < connections; i++) {
+			InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 10_000 + i % 50_000);
+			ChildStream child = new BasicChildStream(family, new UUID(), address, System.err);
+			if (!usage.equals("fresh"))
+				exchange(child);
+			if (usage.equals("trimmed"))
+				child.trimIdle(System.currentTimeMillis() + DatagramStreamConfig.IDLE_TIMEOUT
+						+ DatagramStreamConfig.COMPLETED_MESSAGE_MEMORY);
+			children.add(child);
+		}
+		for (ChildStream child : children)
+			family.addChild(child);
+		footprint.retainedBytes += usedHeap() - before;
+		footprint.connections += connections;
+		return children;
+	}
+
+	/**
+	 * Send a message, which the writer sends on the family's scheduler, and
+	 * confirm it, then receive a message.
+	 */
+	private static void exchange(ChildStream child) throws DisconnectionException, InterruptedException {
+		child.send(new byte[16]);
+		while (child.getMetrics().getUnconfirmedDepth() == 0)
+			Thread.sleep(0, 100_000);
+		child.receivePayloadConfirmation(0);
+		child.receivePayload(new ReceivedPayload(0, new UUID(), 0, 1, new byte[16]));
+		child.receive();
+	}
+
+	private static long usedHeap() {
+		for (int i = 0; i < 3; i++)
+			System.gc();
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+}
@@ -0,0 +1,88 @@
+package benchmark.stream;
+
+import java.util.OptionalInt;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.phoenixkahlo.nodenet.serialization.SerializationUtils;
+import com.phoenixkahlo.nodenet.stream.BasicMessageBuilder;
+import com.phoenixkahlo.nodenet.stream.DatagramStreamConfig;
+import com.phoenixkahlo.nodenet.stream.MessageBuilder;
+import com.phoenixkahlo.nodenet.stream.ReceivedMessage;
+import com.phoenixkahlo.nodenet.stream.ReceivedPayload;
+import com.phoenixkahlo.util.UUID;
+
+/**
+ * The cost of splitting a message into payloads and of reassembling received
+ * payloads into a message, apart from any networking.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FragmentationBenchmark {
+
+	@Param({ "16", "256", "4096", "65536" })
+	public int messageSize;
+
+	private byte[] message;
+	private UUID messageID;
+	private ReceivedPayload[] payloads;
+	private ReceivedPayload[] reversedPayloads;
+
+	@Setup
+	public void setup() {
+		message = new byte[messageSize];
+		messageID = new UUID();
+		byte[][] parts = SerializationUtils.split(message, DatagramStreamConfig.MAX_PAYLOAD_SIZE);
+		payloads = new ReceivedPayload[parts.length];
+		reversedPayloads = new ReceivedPayload[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			payloads[i] = new ReceivedPayload(i, messageID, i, parts.length, parts[i]);
+			reversedPayloads[parts.length - 1 - i] = payloads[i];
+		}
+	}
+
+	@Benchmark
+	public byte[][] split() {
+		return SerializationUtils.split(message, DatagramStreamConfig.MAX_PAYLOAD_SIZE);
+	}
+
+	@Benchmark
+	public ReceivedMessage reassemble() {
+		return reassemble(payloads);
+	}
+
+	@Benchmark
+	public ReceivedMessage reassembleReversed() {
+		return reassemble(reversedPayloads);
+	}
+
+	/**
+	 * Add payloads one at a time, checking completion after each, as
+	 * BasicChildStream does.
+	 */
+	private ReceivedMessage reassemble(ReceivedPayload[] payloads) {
+		MessageBuilder builder = new BasicMessageBuilder(messageID, OptionalInt.empty());
+		for (ReceivedPayload payload : payloads) {
+			builder.add(payload);
+			if (builder.isComplete())
+				return builder.toReceived();
+		}
+		throw new IllegalStateException("message incomplete");
+	}
+
+}
@@ -0,0 +1,84 @@
+package benchmark.stream;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.phoenixkahlo.nodenet.DisconnectionException;
+import com.phoenixkahlo.nodenet.stream.BasicStreamFamily;
+import com.phoenixkahlo.nodenet.stream.DatagramStream;
+import com.phoenixkahlo.nodenet.stream.RealUDPSocketWrapper;
+import com.phoenixkahlo.nodenet.stream.StreamFamily;
+
+/**
+ * Round trip latency of a message echoed between two BasicStreamFamilies over
+ * real loopback UDP. Sampled, so that JMH reports percentiles of the
+ * distribution rather than only its mean.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class LoopbackLatencyBenchmark {
+
+	@Param({ "16", "1024", "16384" })
+	public int messageSize;
+
+	private StreamFamily family1;
+	private StreamFamily family2;
+	private ExecutorService echoExecutor;
+	private DatagramStream stream;
+	private byte[] message;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		RealUDPSocketWrapper socket2 = new RealUDPSocketWrapper();
+		family1 = new BasicStreamFamily(new RealUDPSocketWrapper(), System.err);
+		family2 = new BasicStreamFamily(socket2, System.err);
+		BlockingQueue<DatagramStream> accepted = new LinkedBlockingQueue<>();
+		family2.setReceiver(connection -> true, accepted::add);
+		stream = family1.connect(new InetSocketAddress("localhost", socket2.getLocalPort())).get();
+		DatagramStream echo = accepted.take();
+		echoExecutor = Executors.newSingleThreadExecutor();
+		echo.onMessage(received -> {
+			try {
+				echo.send(received);
+			} catch (DisconnectionException e) {
+			}
+		}, echoExecutor);
+		message = new byte[messageSize];
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		family1.close();
+		family2.close();
+		echoExecutor.shutdown();
+	}
+
+	@Benchmark
+	public byte[] roundTrip() throws DisconnectionException {
+		stream.send(message);
+		return stream.receive();
+	}
+
+}
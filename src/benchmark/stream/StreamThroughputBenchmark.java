@@ -0,0 +1,98 @@
+package benchmark.stream;
+
+import java.io.PrintStream;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.phoenixkahlo.nodenet.DisconnectionException;
+import com.phoenixkahlo.nodenet.stream.BasicStreamFamily;
+import com.phoenixkahlo.nodenet.stream.DatagramStream;
+import com.phoenixkahlo.nodenet.stream.EmulatedNetwork;
+import com.phoenixkahlo.nodenet.stream.EmulatedUDPSocketWrapper;
+import com.phoenixkahlo.nodenet.stream.StreamFamily;
+
+/**
+ * Throughput of sending messages through one BasicChildStream and receiving
+ * them from another, over a perfect EmulatedNetwork link so that the kernel
+ * and real packet loss are excluded. Each invocation sends a batch, then
+ * receives it, so that sending and receiving overlap as they would in a busy
+ * connection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamThroughputBenchmark {
+
+	private static final int BATCH = 64;
+
+	@Param({ "16", "256", "4096", "65536" })
+	public int messageSize;
+
+	private EmulatedNetwork network;
+	private StreamFamily family1;
+	private StreamFamily family2;
+	private DatagramStream sender;
+	private DatagramStream receiver;
+	private byte[] message;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		PrintStream err = System.err;
+		network = new EmulatedNetwork(0);
+		EmulatedUDPSocketWrapper socket1 = network.bind();
+		EmulatedUDPSocketWrapper socket2 = network.bind();
+		family1 = new BasicStreamFamily(socket1, err);
+		family2 = new BasicStreamFamily(socket2, err);
+		BlockingQueue<DatagramStream> accepted = new LinkedBlockingQueue<>();
+		family2.setReceiver(connection -> true, accepted::add);
+		sender = family1.connect(socket2.getAddress()).get();
+		receiver = accepted.take();
+		message = new byte[messageSize];
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		family1.close();
+		family2.close();
+		network.shutdown();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void sendReceive(Blackhole blackhole) throws DisconnectionException {
+		for (int i = 0; i < BATCH; i++)
+			sender.send(message);
+		for (int i = 0; i < BATCH; i++)
+			blackhole.consume(receiver.receive());
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void sendReceiveOrdered(Blackhole blackhole) throws DisconnectionException {
+		for (int i = 0; i < BATCH; i++)
+			sender.sendOrdered(message);
+		for (int i = 0; i < BATCH; i++)
+			blackhole.consume(receiver.receive());
+	}
+
+}
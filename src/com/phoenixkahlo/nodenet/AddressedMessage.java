@@ -7,20 +7,21 @@ import java.util.HashSet;
 import java.util.Set;
 
 import com.phoenixkahlo.nodenet.serialization.AutoSerializer;
-import com.phoenixkahlo.nodenet.serialization.FieldSerializer;
+import com.phoenixkahlo.nodenet.serialization.CompiledFieldSerializer;
 import com.phoenixkahlo.nodenet.serialization.Serializer;
 import com.phoenixkahlo.util.UUID;
 
 /**
- * Described in package description.
+ * Described in package description. The payload is carried encoded, by the
+ * sender's PayloadCodec, so that relays forward it without decoding it.
  */
 public class AddressedMessage implements AutoSerializer {
 
 	public static Serializer serializer(Serializer subSerializer) {
-		return new FieldSerializer(AddressedMessage.class, subSerializer, AddressedMessage::new);
+		return new CompiledFieldSerializer(AddressedMessage.class, subSerializer, AddressedMessage::new);
 	}
 
-	private AddressedPayload payload;
+	private byte[] payload;
 	private NodeAddress sender;
 	private NodeAddress destination;
 	private Set<NodeAddress> visited;
@@ -31,7 +32,7 @@ public class AddressedMessage implements AutoSerializer {
 	private AddressedMessage() {
 	}
 
-	public AddressedMessage(AddressedPayload payload, NodeAddress sender, NodeAddress destination) {
+	public AddressedMessage(byte[] payload, NodeAddress sender, NodeAddress destination) {
 		this.payload = payload;
 		this.sender = sender;
 		this.destination = destination;
@@ -45,7 +46,10 @@ public class AddressedMessage implements AutoSerializer {
 		transmissionID = new UUID();
 	}
 
-	public AddressedPayload getPayload() {
+	/**
+	 * @return the encoded payload.
+	 */
+	public byte[] getPayload() {
 		return payload;
 	}
 	
@@ -88,7 +92,7 @@ public class AddressedMessage implements AutoSerializer {
 	
 	@Override
 	public String toString() {
-		return "addressed(" + payload + ")";
+		return "addressed(" + (payload == null ? null : payload.length + " bytes") + ")";
 	}
 
 }
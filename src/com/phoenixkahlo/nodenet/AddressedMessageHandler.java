@@ -12,6 +12,7 @@ import com.phoenixkahlo.nodenet.proxy.ProxyHandler;
 import com.phoenixkahlo.nodenet.proxy.ProxyInvocation;
 import com.phoenixkahlo.nodenet.proxy.ProxyMultiInvocation;
 import com.phoenixkahlo.nodenet.proxy.ProxyResult;
+import com.phoenixkahlo.nodenet.stream.KryoProvider;
 import com.phoenixkahlo.nodenet.stream.ObjectStream;
 import com.phoenixkahlo.util.BlockingHashMap;
 import com.phoenixkahlo.util.BlockingMap;
@@ -19,10 +20,11 @@ import com.phoenixkahlo.util.UUID;
 
 /**
  * An object owned by a LocalNode to handle the AddressedMessage system. When a
- * StreamReceiverThread receives an AddressedMessage or AddressedMessageResult,
+ * StreamReceiver receives an AddressedMessage or AddressedMessageResult,
  * it is delegated to the AddressedMessageHandler, which will be responsible for
  * handling the payload/sending it to a neighbor, and responding with an
- * AddressedPayloadResult to the neighbor who sent it.
+ * AddressedPayloadResult to the neighbor who sent it. Payloads are encoded
+ * with the PayloadCodec when sent, and only decoded at their destination.
  */
 public class AddressedMessageHandler {
 
@@ -33,29 +35,37 @@ public class AddressedMessageHandler {
 	private BlockingMap<UUID, Boolean> addressedResults = new BlockingHashMap<>();
 	private Set<UUID> handledPayloadMessageIDs = new HashSet<>();
 	private ProxyHandler proxyHandler;
+	private PayloadCodec codec;
 
 	private PrintStream errorLog;
 
 	public AddressedMessageHandler(NodeAddress localAddress, NetworkModel model,
-			Map<NodeAddress, ObjectStream> connections, Map<NodeAddress, ChildNode> nodes, PrintStream errorLog) {
+			Map<NodeAddress, ObjectStream> connections, Map<NodeAddress, ChildNode> nodes, PayloadCodec codec,
+			PrintStream errorLog) {
 		this.localAddress = localAddress;
 		this.model = model;
 		this.connections = connections;
 		this.nodes = nodes;
+		this.codec = codec;
 		this.errorLog = errorLog;
 	}
 
+	public AddressedMessageHandler(NodeAddress localAddress, NetworkModel model,
+			Map<NodeAddress, ObjectStream> connections, Map<NodeAddress, ChildNode> nodes, PrintStream errorLog) {
+		this(localAddress, model, connections, nodes, new KryoPayloadCodec(new KryoProvider()), errorLog);
+	}
+
 	// TODO: make a more elegant solution to this
 	public void setProxyHandler(ProxyHandler proxyHandler) {
 		this.proxyHandler = proxyHandler;
 	}
 
 	public void send(AddressedPayload payload, NodeAddress to) {
-		handle(new AddressedMessage(payload, localAddress, to), localAddress);
+		handle(new AddressedMessage(codec.encode(payload), localAddress, to), localAddress);
 	}
 
 	public void send(AddressedPayload payload, NodeAddress to, Consumer<Boolean> resultHandler) {
-		handle(new AddressedMessage(payload, localAddress, to), localAddress, resultHandler);
+		handle(new AddressedMessage(codec.encode(payload), localAddress, to), localAddress, resultHandler);
 	}
 
 	public boolean sendAndWait(AddressedPayload payload, NodeAddress to) {
@@ -100,7 +110,7 @@ public class AddressedMessageHandler {
 		addressedResults.put(message.getTransmissionID(), message.wasSuccessful());
 	}
 
-	private void handlePayload(NodeAddress sender, AddressedPayload payload, UUID messageID) {
+	private void handlePayload(NodeAddress sender, byte[] encoded, UUID messageID) {
 		boolean shouldHandle;
 		synchronized (handledPayloadMessageIDs) {
 			if (handledPayloadMessageIDs.contains(messageID)) {
@@ -111,6 +121,13 @@ public class AddressedMessageHandler {
 			}
 		}
 		if (shouldHandle) {
+			AddressedPayload payload;
+			try {
+				payload = codec.decode(encoded);
+			} catch (ProtocolViolationException e) {
+				errorLog.println("Failed to decode AddressedMessage payload from " + sender + ": " + e);
+				return;
+			}
 			if (payload instanceof ClientTransmission) {
 				ChildNode node;
 				synchronized (nodes) {
@@ -5,6 +5,8 @@ import java.net.InetSocketAddress;
 import java.net.SocketException;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -20,6 +22,7 @@ import com.phoenixkahlo.nodenet.proxy.ProxyResult;
 import com.phoenixkahlo.nodenet.serialization.*;
 import com.phoenixkahlo.nodenet.stream.BasicStreamFamily;
 import com.phoenixkahlo.nodenet.stream.DatagramStream;
+import com.phoenixkahlo.nodenet.stream.KryoProvider;
 import com.phoenixkahlo.nodenet.stream.ObjectStream;
 import com.phoenixkahlo.nodenet.stream.StreamFamily;
 import com.phoenixkahlo.util.UUID;
@@ -29,11 +32,12 @@ import com.phoenixkahlo.util.UUID;
  */
 public class BasicLocalNode implements LocalNode {
 
-	private Kryo kryo = new Kryo();
+	private KryoProvider kryos = new KryoProvider();
 	private NodeAddress localAddress = new NodeAddress(new UUID());
 
 	private NetworkModel model = new NetworkModel();
 	private StreamFamily family;
+	private ExecutorService receiveExecutor = Executors.newCachedThreadPool();
 	private Map<NodeAddress, ObjectStream> connections = new HashMap<>();
 	private Map<NodeAddress, ChildNode> nodes = new HashMap<>();
 
@@ -46,12 +50,14 @@ public class BasicLocalNode implements LocalNode {
 
 	private BasicLocalNode(StreamFamily family, PrintStream errorLog) {
 		this.family = family;
-		addressedHandler = new AddressedMessageHandler(localAddress, model, connections, nodes, errorLog);
+		kryos.configure(BasicLocalNode::registerProtocol);
+		addressedHandler = new AddressedMessageHandler(localAddress, model, connections, nodes,
+				new KryoPayloadCodec(kryos), errorLog);
 		nodeFactory = address -> new ChildNode(addressedHandler, connections, localAddress, address);
 		leaveJoinHandler = new LeaveJoinHandler(localAddress, model, nodes, nodeFactory);
 		viralHandler = new ViralMessageHandler(localAddress, connections, leaveJoinHandler, errorLog);
-		handshakeHandler = new HandshakeHandler(kryo, localAddress, connections, nodes, viralHandler,
-				addressedHandler, leaveJoinHandler, errorLog);
+		handshakeHandler = new HandshakeHandler(kryos, localAddress, connections, nodes, viralHandler,
+				addressedHandler, leaveJoinHandler, receiveExecutor, errorLog);
 		proxyHandler = new ProxyHandler(addressedHandler, localAddress, this::getNode);
 		addressedHandler.setProxyHandler(proxyHandler);
 		//initSerializer();
@@ -75,9 +81,27 @@ public class BasicLocalNode implements LocalNode {
 		this(port, System.err);
 	}
 
+	/**
+	 * Register the classes that nodes send to each other, so that their names
+	 * are not written in every message. Every node's Kryo is configured with
+	 * this first.
+	 */
+	public static void registerProtocol(Kryo kryo) {
+		kryo.register(HashSet.class);
+		kryo.register(UUID.class);
+		kryo.register(NodeAddress.class);
+		kryo.register(Handshake.class);
+		kryo.register(ViralMessage.class);
+		kryo.register(NeighborSetUpdate.class);
+		kryo.register(NeighborSetUpdateTrigger.class);
+		kryo.register(AddressedMessage.class);
+		kryo.register(AddressedMessageResult.class);
+		kryo.register(ClientTransmission.class);
+	}
+
 	@Override
-	public Kryo getKryo() {
-		return kryo;
+	public void configureKryo(Consumer<Kryo> configuration) {
+		kryos.configure(configuration);
 	}
 
 	@Override
@@ -146,6 +170,7 @@ public class BasicLocalNode implements LocalNode {
 	@Override
 	public void disconnect() {
 		family.close();
+		receiveExecutor.shutdown();
 	}
 
 	@Override
@@ -4,11 +4,12 @@ import java.io.PrintStream;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 
-import com.esotericsoftware.kryo.Kryo;
 import com.phoenixkahlo.nodenet.serialization.Serializer;
 import com.phoenixkahlo.nodenet.stream.DatagramStream;
 import com.phoenixkahlo.nodenet.stream.KryoObjectStream;
+import com.phoenixkahlo.nodenet.stream.KryoProvider;
 import com.phoenixkahlo.nodenet.stream.ObjectStream;
 import com.phoenixkahlo.nodenet.stream.SerializerObjectStream;
 
@@ -19,7 +20,7 @@ import com.phoenixkahlo.nodenet.stream.SerializerObjectStream;
  */
 public class HandshakeHandler {
 
-	private Kryo kryo;
+	private KryoProvider kryos;
 	private NodeAddress localAddress;
 	private Map<NodeAddress, ObjectStream> connections;
 	private Map<NodeAddress, ChildNode> nodes;
@@ -27,25 +28,28 @@ public class HandshakeHandler {
 	private AddressedMessageHandler addressedHandler;
 
 	private LeaveJoinHandler leaveJoinHandler;
+	private Executor receiveExecutor;
 	
 	private PrintStream errorLog;
 
-	public HandshakeHandler(Kryo kryo, NodeAddress localAddress, Map<NodeAddress, ObjectStream> connections,
+	public HandshakeHandler(KryoProvider kryos, NodeAddress localAddress, Map<NodeAddress, ObjectStream> connections,
 			Map<NodeAddress, ChildNode> nodes, ViralMessageHandler viralHandler,
-			AddressedMessageHandler addressedHandler, LeaveJoinHandler leaveJoinHandler, PrintStream errorLog) {
-		this.kryo = kryo;
+			AddressedMessageHandler addressedHandler, LeaveJoinHandler leaveJoinHandler, Executor receiveExecutor,
+			PrintStream errorLog) {
+		this.kryos = kryos;
 		this.localAddress = localAddress;
 		this.connections = connections;
 		this.nodes = nodes;
 		this.viralHandler = viralHandler;
 		this.addressedHandler = addressedHandler;
 		this.leaveJoinHandler = leaveJoinHandler;
+		this.receiveExecutor = receiveExecutor;
 		this.errorLog = errorLog;
 	}
 
 	public Optional<Node> setup(DatagramStream connection) {
 		// Establish object transmission layer
-		ObjectStream stream = new KryoObjectStream(connection, kryo);
+		ObjectStream stream = new KryoObjectStream(connection, kryos);
 
 		// Exchange handshakes, find remote address
 		Handshake received;
@@ -77,8 +81,8 @@ public class HandshakeHandler {
 			node = nodes.get(remoteAddress);
 		}
 
-		// Setup receiver thread
-		new StreamReceiverThread(stream, remoteAddress, addressedHandler, viralHandler, errorLog).start();
+		// Setup receiver
+		new StreamReceiver(remoteAddress, addressedHandler, viralHandler, errorLog).listen(stream, receiveExecutor);
 
 		// Setup disconnect handler
 		stream.setDisconnectHandler(() -> {
@@ -0,0 +1,36 @@
+package com.phoenixkahlo.nodenet;
+
+import com.esotericsoftware.kryo.KryoException;
+import com.phoenixkahlo.nodenet.stream.KryoProvider;
+
+/**
+ * A PayloadCodec that encodes payloads, with their classes, with Kryo.
+ */
+public class KryoPayloadCodec implements PayloadCodec {
+
+	private KryoProvider kryos;
+
+	public KryoPayloadCodec(KryoProvider kryos) {
+		this.kryos = kryos;
+	}
+
+	@Override
+	public byte[] encode(AddressedPayload payload) {
+		return kryos.write(payload);
+	}
+
+	@Override
+	public AddressedPayload decode(byte[] encoded) throws ProtocolViolationException {
+		Object decoded;
+		try {
+			decoded = kryos.read(encoded);
+		} catch (KryoException e) {
+			throw new ProtocolViolationException(e);
+		}
+		if (decoded instanceof AddressedPayload)
+			return (AddressedPayload) decoded;
+		else
+			throw new ProtocolViolationException("not an AddressedPayload: " + decoded);
+	}
+
+}
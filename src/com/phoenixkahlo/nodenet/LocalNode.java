@@ -15,7 +15,13 @@ import com.phoenixkahlo.nodenet.serialization.Serializer;
  */
 public interface LocalNode {
 
-	Kryo getKryo();
+	/**
+	 * Apply the configuration, such as class registrations, to the Kryo
+	 * instances that the node serializes with. There is one per thread, and
+	 * each is configured with every configuration, in order. Every node in a
+	 * network must be configured the same way.
+	 */
+	void configureKryo(Consumer<Kryo> configuration);
 
 	/**
 	 * Attempt to form a connection with the given address.
@@ -1,6 +1,6 @@
 package com.phoenixkahlo.nodenet;
 
-import com.phoenixkahlo.nodenet.serialization.FieldSerializer;
+import com.phoenixkahlo.nodenet.serialization.CompiledFieldSerializer;
 import com.phoenixkahlo.nodenet.serialization.Serializer;
 import com.phoenixkahlo.util.UUID;
 
@@ -10,7 +10,7 @@ import com.phoenixkahlo.util.UUID;
 public class NodeAddress {
 
 	public static Serializer serializer(Serializer subSerializer) {
-		return new FieldSerializer(NodeAddress.class, subSerializer, NodeAddress::new);
+		return new CompiledFieldSerializer(NodeAddress.class, subSerializer, NodeAddress::new);
 	}
 
 	private UUID id;
@@ -0,0 +1,18 @@
+package com.phoenixkahlo.nodenet;
+
+/**
+ * Encodes AddressedPayloads into the opaque bodies of AddressedMessages at
+ * their senders, and decodes them at their destinations, so that the nodes
+ * that relay a message never need to decode its payload.
+ */
+public interface PayloadCodec {
+
+	byte[] encode(AddressedPayload payload);
+
+	/**
+	 * @throws ProtocolViolationException
+	 *             if the bytes do not encode an AddressedPayload.
+	 */
+	AddressedPayload decode(byte[] encoded) throws ProtocolViolationException;
+
+}
@@ -0,0 +1,55 @@
+package com.phoenixkahlo.nodenet;
+
+import java.io.PrintStream;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+import com.phoenixkahlo.nodenet.stream.ObjectStream;
+
+/**
+ * Handler that will take the messages pushed from an ObjectStream and delegate
+ * them to an AddressedMessageHandler/ViralMessageHandler. Does not own a
+ * thread, so that a LocalNode doesn't need to park a thread for every
+ * connection.
+ */
+public class StreamReceiver implements Consumer<Object> {
+
+	private NodeAddress address;
+	private AddressedMessageHandler addressedHandler;
+	private ViralMessageHandler viralHandler;
+
+	private PrintStream errorLog;
+
+	public StreamReceiver(NodeAddress address, AddressedMessageHandler addressedHandler,
+			ViralMessageHandler viralHandler, PrintStream errorLog) {
+		this.address = address;
+		this.addressedHandler = addressedHandler;
+		this.viralHandler = viralHandler;
+		this.errorLog = errorLog;
+	}
+
+	/**
+	 * Start receiving all messages from the stream, invoked with the executor.
+	 */
+	public void listen(ObjectStream stream, Executor executor) {
+		stream.onMessage(this, this::receiveViolation, executor);
+	}
+
+	@Override
+	public void accept(Object message) {
+		if (message instanceof ViralMessage)
+			viralHandler.handle((ViralMessage) message);
+		else if (message instanceof AddressedMessage)
+			addressedHandler.handle((AddressedMessage) message, address);
+		else if (message instanceof AddressedMessageResult)
+			addressedHandler.handle((AddressedMessageResult) message);
+		else
+			receiveViolation(new ProtocolViolationException("Invalid message type: " + message));
+	}
+
+	private void receiveViolation(ProtocolViolationException e) {
+		errorLog.println("ProtocolViolationException receiving from " + address);
+		e.printStackTrace();
+	}
+
+}
@@ -6,12 +6,13 @@ import java.util.Map;
 import java.util.Set;
 
 import com.phoenixkahlo.nodenet.stream.ObjectStream;
+import com.phoenixkahlo.nodenet.stream.PreparedMessage;
 import com.phoenixkahlo.util.TTLBag;
 import com.phoenixkahlo.util.UUID;
 
 /**
  * An object owned by a LocalNode to handle the ViralMessage system. When a
- * StreamReceiverThread receives a ViralMessage, it is delegated to the
+ * StreamReceiver receives a ViralMessage, it is delegated to the
  * ViralMessageHandler. The ViralMessageHandler handles the payload/sends it to
  * neighbors as appropriate.
  */
@@ -51,10 +52,15 @@ public class ViralMessageHandler {
 				freshMessages.add(message, 100);
 			}
 			synchronized (connections) {
+				// Serialized once, by the first stream, for all neighbors
+				PreparedMessage prepared = null;
 				for (NodeAddress address : connections.keySet()) {
 					if (!message.getInfected().contains(address)) {
+						ObjectStream stream = connections.get(address);
+						if (prepared == null)
+							prepared = stream.prepare(message);
 						try {
-							connections.get(address).send(message);
+							stream.send(prepared);
 						} catch (DisconnectionException e) {
 						}
 					}
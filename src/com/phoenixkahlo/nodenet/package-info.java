@@ -122,8 +122,10 @@
  * client objects between nodes.
  * </p>
  * <p>
- * AddressedMessages contain 6 pieces of data. They have a payload object,
- * random messageID, sender address, and a destination address, which should not be changed.
+ * AddressedMessages contain 6 pieces of data. They have a payload, which is
+ * encoded by the sender and only decoded by the destination, so that nodes
+ * relaying the message forward its bytes untouched and need not know its
+ * class. They have a random messageID, sender address, and a destination address, which should not be changed.
  * They have a collection of visited nodes, which should be added to upon a node
  * being received. Finally, they have a random ID. The ID is not meant to
  * represent the message throughout its entire lifespan, but rather to represent
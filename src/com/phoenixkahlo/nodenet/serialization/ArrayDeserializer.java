@@ -23,9 +23,11 @@ public class ArrayDeserializer implements Deserializer {
 	
 	@Override
 	public Object deserialize(InputStream in) throws IOException, ProtocolViolationException {
-		int length = SerializationUtils.readInt(in);
+		int length = SerializationUtils.readLength(in);
 		if (length < 0)
 			throw new ProtocolViolationException("array cannot have negative length");
+		if (PrimitiveArrays.canRead(itemClass, in))
+			return PrimitiveArrays.read(itemClass, length, in);
 		Object arr = Array.newInstance(itemClass, length);
 		for (int i = 0; i < length; i++) {
 			Array.set(arr, i, SerializationUtils.deserialize(itemClass, itemDeserializer, in));
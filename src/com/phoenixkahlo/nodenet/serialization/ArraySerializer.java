@@ -22,12 +22,21 @@ public class ArraySerializer implements Serializer {
 		return obj != null && obj.getClass().isArray() && obj.getClass().getComponentType() == itemClass;
 	}
 
+	@Override
+	public Class<?> getSerializedClass() {
+		return Array.newInstance(itemClass, 0).getClass();
+	}
+
 	@Override
 	public void serialize(Object obj, OutputStream out) throws IOException, IllegalArgumentException {
 		if (!canSerialize(obj))
 			throw new IllegalArgumentException("cannot serialize " + obj);
 		int length = Array.getLength(obj);
-		SerializationUtils.writeInt(length, out);
+		SerializationUtils.writeLength(length, out);
+		if (PrimitiveArrays.canWrite(itemClass, out)) {
+			PrimitiveArrays.write(obj, out);
+			return;
+		}
 		for (int i = 0; i < length; i++)
 			SerializationUtils.serialize(Array.get(obj, i), itemClass, itemSerializer, out);
 	}
@@ -0,0 +1,189 @@
+package com.phoenixkahlo.nodenet.serialization;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A growable, ByteBuffer-backed OutputStream, which SerializationUtils writes
+ * primitives into with absolute puts rather than allocating an array for each
+ * one. Serializers need not know about it; any serializer that writes through
+ * SerializationUtils benefits when given a ByteSink. The buffer is on the heap
+ * or, for handing to channels, direct.
+ * <p>
+ * Not thread safe, unlike ByteArrayOutputStream.
+ */
+public class ByteSink extends OutputStream {
+
+	private final boolean direct;
+	private ByteBuffer buffer;
+	private int size = 0;
+	// Null unless the sink is written for a session with a symbol dictionary
+	private SymbolEncoder symbols;
+	private SymbolEncoder.Mode symbolMode;
+	private List<Integer> pendingSymbols;
+
+	public ByteSink(int initialCapacity, boolean direct) {
+		this.direct = direct;
+		this.buffer = allocate(Math.max(16, initialCapacity));
+	}
+
+	public ByteSink() {
+		this(256, false);
+	}
+
+	private ByteBuffer allocate(int capacity) {
+		return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+	}
+
+	/**
+	 * Ensure the buffer has room for n more bytes, at least doubling it if it
+	 * does not.
+	 */
+	private void ensureRoom(int n) {
+		if (n > buffer.capacity() - size) {
+			if (size + n < 0)
+				throw new OutOfMemoryError("ByteSink larger than 2 GiB");
+			ByteBuffer grown = allocate((int) Math.min(Integer.MAX_VALUE, Math.max((long) size + n,
+					(long) buffer.capacity() * 2)));
+			ByteBuffer written = buffer.duplicate();
+			written.position(0).limit(size);
+			grown.put(written);
+			buffer = grown;
+		}
+	}
+
+	@Override
+	public void write(int b) {
+		ensureRoom(1);
+		buffer.put(size++, (byte) b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) {
+		if (off < 0 || len < 0 || len > b.length - off)
+			throw new IndexOutOfBoundsException();
+		ensureRoom(len);
+		ByteBuffer target = buffer.duplicate();
+		target.position(size);
+		target.put(b, off, len);
+		size += len;
+	}
+
+	public void writeInt(int n) {
+		ensureRoom(4);
+		buffer.putInt(size, n);
+		size += 4;
+	}
+
+	public void writeLong(long n) {
+		ensureRoom(8);
+		buffer.putLong(size, n);
+		size += 8;
+	}
+
+	public void writeDouble(double n) {
+		ensureRoom(8);
+		buffer.putDouble(size, n);
+		size += 8;
+	}
+
+	public void writeFloat(float n) {
+		ensureRoom(4);
+		buffer.putFloat(size, n);
+		size += 4;
+	}
+
+	public void writeShort(short n) {
+		ensureRoom(2);
+		buffer.putShort(size, n);
+		size += 2;
+	}
+
+	public void writeChar(char c) {
+		ensureRoom(2);
+		buffer.putChar(size, c);
+		size += 2;
+	}
+
+	/**
+	 * Write symbols, with SerializationUtils.writeSymbol(), with the session's
+	 * dictionary, as the mode allows.
+	 */
+	public void setSymbols(SymbolEncoder symbols, SymbolEncoder.Mode mode) {
+		setSymbols(symbols, mode, null);
+	}
+
+	/**
+	 * Write symbols as with setSymbols(symbols, mode), adding their
+	 * definitions to pending rather than committing them, if it is not null.
+	 */
+	public void setSymbols(SymbolEncoder symbols, SymbolEncoder.Mode mode, List<Integer> pending) {
+		this.symbols = symbols;
+		this.symbolMode = mode;
+		this.pendingSymbols = pending;
+	}
+
+	SymbolEncoder getSymbols() {
+		return symbols;
+	}
+
+	SymbolEncoder.Mode getSymbolMode() {
+		return symbolMode;
+	}
+
+	List<Integer> getPendingSymbols() {
+		return pendingSymbols;
+	}
+
+	/**
+	 * Append n bytes, to be filled through the returned buffer, which is
+	 * invalidated by further writes.
+	 */
+	public ByteBuffer reserve(int n) {
+		ensureRoom(n);
+		ByteBuffer reserved = buffer.duplicate();
+		reserved.position(size).limit(size + n);
+		size += n;
+		return reserved.slice();
+	}
+
+	/**
+	 * @return the number of bytes written.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Discard what has been written, keeping the buffer for reuse.
+	 */
+	public void reset() {
+		size = 0;
+	}
+
+	/**
+	 * @return a copy of what has been written.
+	 */
+	public byte[] toByteArray() {
+		if (buffer.hasArray())
+			return Arrays.copyOfRange(buffer.array(), buffer.arrayOffset(), buffer.arrayOffset() + size);
+		byte[] bytes = new byte[size];
+		ByteBuffer written = buffer.duplicate();
+		written.position(0);
+		written.get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * @return a view of what has been written, which is invalidated by further
+	 *         writes.
+	 */
+	public ByteBuffer toByteBuffer() {
+		ByteBuffer written = buffer.duplicate();
+		written.position(0).limit(size);
+		return written.slice();
+	}
+
+}
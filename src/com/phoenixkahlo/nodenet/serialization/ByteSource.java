@@ -0,0 +1,119 @@
+package com.phoenixkahlo.nodenet.serialization;
+
+import java.io.EOFException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A ByteBuffer-backed InputStream, symmetrical to ByteSink, which
+ * SerializationUtils reads primitives from directly. Reads past the end throw
+ * EOFException rather than returning partial values.
+ * <p>
+ * Not thread safe, unlike ByteArrayInputStream.
+ */
+public class ByteSource extends InputStream {
+
+	private final ByteBuffer buffer;
+	// Null unless the source is read for a session with a symbol dictionary
+	private SymbolDecoder symbols;
+
+	/**
+	 * Read the remaining bytes of the buffer, without modifying its position.
+	 */
+	public ByteSource(ByteBuffer buffer) {
+		this.buffer = buffer.slice();
+	}
+
+	public ByteSource(byte[] bytes) {
+		this(ByteBuffer.wrap(bytes));
+	}
+
+	private void require(int n) throws EOFException {
+		if (buffer.remaining() < n)
+			throw new EOFException();
+	}
+
+	@Override
+	public int read() {
+		return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) {
+		if (off < 0 || len < 0 || len > b.length - off)
+			throw new IndexOutOfBoundsException();
+		if (len == 0)
+			return 0;
+		if (!buffer.hasRemaining())
+			return -1;
+		len = Math.min(len, buffer.remaining());
+		buffer.get(b, off, len);
+		return len;
+	}
+
+	@Override
+	public long skip(long n) {
+		int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+		buffer.position(buffer.position() + skipped);
+		return skipped;
+	}
+
+	@Override
+	public int available() {
+		return buffer.remaining();
+	}
+
+	/**
+	 * Read symbols, with SerializationUtils.readSymbol(), with the session's
+	 * dictionary.
+	 */
+	public void setSymbols(SymbolDecoder symbols) {
+		this.symbols = symbols;
+	}
+
+	SymbolDecoder getSymbols() {
+		return symbols;
+	}
+
+	/**
+	 * Read n bytes as a view of the underlying buffer.
+	 */
+	public ByteBuffer take(int n) throws EOFException {
+		require(n);
+		ByteBuffer taken = buffer.slice();
+		taken.limit(n);
+		buffer.position(buffer.position() + n);
+		return taken;
+	}
+
+	public int readInt() throws EOFException {
+		require(4);
+		return buffer.getInt();
+	}
+
+	public long readLong() throws EOFException {
+		require(8);
+		return buffer.getLong();
+	}
+
+	public double readDouble() throws EOFException {
+		require(8);
+		return buffer.getDouble();
+	}
+
+	public float readFloat() throws EOFException {
+		require(4);
+		return buffer.getFloat();
+	}
+
+	public short readShort() throws EOFException {
+		require(2);
+		return buffer.getShort();
+	}
+
+	public char readChar() throws EOFException {
+		require(2);
+		return buffer.getChar();
+	}
+
+}
@@ -7,11 +7,9 @@ import com.phoenixkahlo.nodenet.ProtocolViolationException;
 
 public class ClassDeserializer implements Deserializer {
 
-	private static StringDeserializer stringDeserializer = new StringDeserializer();
-	
 	@Override
 	public Object deserialize(InputStream in) throws IOException, ProtocolViolationException {
-		String name = (String) stringDeserializer.deserialize(in);
+		String name = SerializationUtils.readSymbol(in);
 		try {
 			return Class.forName(name);
 		} catch (ClassNotFoundException e) {
@@ -5,8 +5,6 @@ import java.io.OutputStream;
 
 public class ClassSerializer implements Serializer {
 
-	private static StringSerializer stringSerializer = new StringSerializer();
-
 	@Override
 	public boolean canSerialize(Object object) {
 		//return object != null
@@ -26,8 +24,7 @@ public class ClassSerializer implements Serializer {
 	public void serialize(Object object, OutputStream out) throws IOException {
 		if (!canSerialize(object))
 			throw new IllegalArgumentException(object + " is not a class");
-		String name = ((Class<?>) object).getName();
-		stringSerializer.serialize(name, out);
+		SerializationUtils.writeSymbol(((Class<?>) object).getName(), out);
 	}
 
 	@Override
@@ -27,7 +27,7 @@ public class CollectionDeserializer<E extends Collection<?>> implements Deserial
 
 	@Override
 	public Object deserialize(InputStream in) throws IOException, ProtocolViolationException {
-		int length = SerializationUtils.readInt(in);
+		int length = SerializationUtils.readLength(in);
 		if (length < 0)
 			throw new ProtocolViolationException("ArrayList cannot have negative size");
 		if (!flip) {
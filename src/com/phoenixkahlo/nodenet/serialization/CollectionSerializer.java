@@ -32,12 +32,17 @@ public class CollectionSerializer<E extends Collection<?>> implements Serializer
 		return object != null && object.getClass() == clazz;
 	}
 
+	@Override
+	public Class<?> getSerializedClass() {
+		return clazz;
+	}
+
 	@Override
 	public void serialize(Object object, OutputStream out) throws IOException {
 		if (!canSerialize(object))
 			throw new IllegalArgumentException("cannot serialize " + object);
 		Collection<?> collection = (Collection<?>) object;
-		SerializationUtils.writeInt(collection.size(), out);
+		SerializationUtils.writeLength(collection.size(), out);
 		for (Object item : collection) {
 			subSerializer.serialize(item, out);
 		}
@@ -0,0 +1,32 @@
+package com.phoenixkahlo.nodenet.serialization;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.phoenixkahlo.nodenet.ProtocolViolationException;
+
+/**
+ * Symmetrical to CompactSerializer.
+ */
+public class CompactDeserializer implements Deserializer {
+
+	private Deserializer subDeserializer;
+
+	public CompactDeserializer(Deserializer subDeserializer) {
+		this.subDeserializer = subDeserializer;
+	}
+
+	@Override
+	public Object deserialize(InputStream in) throws IOException, ProtocolViolationException {
+		if (in instanceof CompactInputStream)
+			return subDeserializer.deserialize(in);
+		else
+			return subDeserializer.deserialize(new CompactInputStream(in));
+	}
+
+	@Override
+	public Serializer toSerializer() {
+		return new CompactSerializer(subDeserializer.toSerializer());
+	}
+
+}
@@ -0,0 +1,34 @@
+package com.phoenixkahlo.nodenet.serialization;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Marks a stream as being in the compact wire mode, symmetrical to
+ * CompactOutputStream.
+ */
+public class CompactInputStream extends FilterInputStream {
+
+	public CompactInputStream(InputStream in) {
+		super(in);
+	}
+
+	InputStream getIn() {
+		return in;
+	}
+
+	/**
+	 * @throws IOException
+	 *             if the varint is longer than an int can be.
+	 */
+	public int readUnsignedVarInt() throws IOException {
+		return SerializationUtils.readVarInt(in);
+	}
+
+	public int readSignedVarInt() throws IOException {
+		int n = readUnsignedVarInt();
+		return (n >>> 1) ^ -(n & 1);
+	}
+
+}
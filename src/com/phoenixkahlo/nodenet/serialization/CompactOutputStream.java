@@ -0,0 +1,45 @@
+package com.phoenixkahlo.nodenet.serialization;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Marks a stream as being in the compact wire mode, in which
+ * SerializationUtils writes ints as LEB128 varints, so that small values take
+ * fewer bytes: signed ints are zigzag encoded first, and lengths, counts and
+ * ordinals, which are never negative, are not. Serializers do not need to know
+ * the mode, as long as they write through SerializationUtils. Longs, floats
+ * and doubles keep their fixed widths, as the longs in this protocol are
+ * mostly random IDs, which a varint would only lengthen.
+ * <p>
+ * CompactSerializer selects the mode for a whole serializer tree.
+ */
+public class CompactOutputStream extends FilterOutputStream {
+
+	public CompactOutputStream(OutputStream out) {
+		super(out);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		out.write(b, off, len);
+	}
+
+	OutputStream getOut() {
+		return out;
+	}
+
+	public void writeUnsignedVarInt(int n) throws IOException {
+		SerializationUtils.writeVarInt(n, out);
+	}
+
+	/**
+	 * Zigzag encode n, so that values of small magnitude are small whatever
+	 * their sign, then write it as an unsigned varint.
+	 */
+	public void writeSignedVarInt(int n) throws IOException {
+		writeUnsignedVarInt((n << 1) ^ (n >> 31));
+	}
+
+}
@@ -0,0 +1,42 @@
+package com.phoenixkahlo.nodenet.serialization;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Serializes with the subserializer in the compact wire mode described in
+ * CompactOutputStream. As every serializer in a tree writes to the same
+ * stream, wrapping the root selects the mode for the whole tree.
+ */
+public class CompactSerializer implements Serializer {
+
+	private Serializer subSerializer;
+
+	public CompactSerializer(Serializer subSerializer) {
+		this.subSerializer = subSerializer;
+	}
+
+	@Override
+	public boolean canSerialize(Object object) {
+		return subSerializer.canSerialize(object);
+	}
+
+	@Override
+	public Class<?> getSerializedClass() {
+		return subSerializer.getSerializedClass();
+	}
+
+	@Override
+	public void serialize(Object object, OutputStream out) throws IOException {
+		if (out instanceof CompactOutputStream)
+			subSerializer.serialize(object, out);
+		else
+			subSerializer.serialize(object, new CompactOutputStream(out));
+	}
+
+	@Override
+	public Deserializer toDeserializer() {
+		return new CompactDeserializer(subSerializer.toDeserializer());
+	}
+
+}
@@ -0,0 +1,66 @@
+package com.phoenixkahlo.nodenet.serialization;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.util.function.Supplier;
+
+import com.phoenixkahlo.nodenet.ProtocolViolationException;
+
+/**
+ * A drop-in replacement for FieldDeserializer, symmetrical to
+ * CompiledFieldSerializer.
+ */
+public class CompiledFieldDeserializer implements Deserializer {
+
+	private Class<?> dataType;
+	private Deserializer subDeserializer;
+	private Supplier<?> factory;
+	// Null until first use
+	private volatile MethodHandle compiled;
+
+	public <E> CompiledFieldDeserializer(Class<E> dataType, Deserializer subDeserializer, Supplier<E> factory) {
+		this.dataType = dataType;
+		this.subDeserializer = subDeserializer;
+		this.factory = factory;
+	}
+
+	public <E> CompiledFieldDeserializer(Class<E> dataType, Supplier<E> factory) {
+		this(dataType, null, factory);
+	}
+
+	CompiledFieldDeserializer(Supplier<?> factory, Deserializer subDeserializer, Class<?> dataType) {
+		assert factory.get().getClass() == dataType;
+		this.dataType = dataType;
+		this.subDeserializer = subDeserializer;
+		this.factory = factory;
+	}
+
+	@Override
+	public Object deserialize(InputStream in) throws IOException, ProtocolViolationException {
+		Object object = factory.get();
+
+		MethodHandle compiled = this.compiled;
+		if (compiled == null)
+			this.compiled = compiled = FieldPlan.of(dataType).compileDeserializer(subDeserializer);
+		try {
+			compiled.invokeExact(object, in);
+		} catch (IOException | ProtocolViolationException | RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new RuntimeException(t);
+		}
+
+		if (object instanceof AutoSerializer)
+			((AutoSerializer) object).autoDeserialize(in);
+
+		return object;
+	}
+
+	@Override
+	public Serializer toSerializer() {
+		return new CompiledFieldSerializer(factory, subDeserializer == null ? null : subDeserializer.toSerializer(),
+				dataType);
+	}
+
+}
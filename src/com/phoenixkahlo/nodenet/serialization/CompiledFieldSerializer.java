@@ -0,0 +1,76 @@
+package com.phoenixkahlo.nodenet.serialization;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.util.function.Supplier;
+
+/**
+ * A drop-in replacement for FieldSerializer, with the same encoding, for
+ * classes that are serialized often enough to be worth compiling. The first
+ * time it is used, the class's fields are compiled into a single method handle
+ * that writes each field directly, which the JVM turns into code dedicated to
+ * the class.
+ */
+public class CompiledFieldSerializer implements Serializer {
+
+	private Class<?> dataType;
+	private Serializer subSerializer;
+	private Supplier<?> factory;
+	// Null until first use
+	private volatile MethodHandle compiled;
+
+	public <E> CompiledFieldSerializer(Class<E> dataType, Serializer subSerializer, Supplier<E> factory) {
+		this.dataType = dataType;
+		this.subSerializer = subSerializer;
+		this.factory = factory;
+	}
+
+	public <E> CompiledFieldSerializer(Class<E> dataType, Supplier<E> factory) {
+		this(dataType, null, factory);
+	}
+
+	CompiledFieldSerializer(Supplier<?> factory, Serializer subSerializer, Class<?> dataType) {
+		assert factory.get().getClass() == dataType;
+		this.dataType = dataType;
+		this.factory = factory;
+		this.subSerializer = subSerializer;
+	}
+
+	@Override
+	public boolean canSerialize(Object object) {
+		return object != null && object.getClass().equals(dataType);
+	}
+
+	@Override
+	public Class<?> getSerializedClass() {
+		return dataType;
+	}
+
+	@Override
+	public void serialize(Object object, OutputStream out) throws IOException {
+		if (!canSerialize(object))
+			throw new IllegalArgumentException();
+
+		MethodHandle compiled = this.compiled;
+		if (compiled == null)
+			this.compiled = compiled = FieldPlan.of(dataType).compileSerializer(subSerializer);
+		try {
+			compiled.invokeExact(object, out);
+		} catch (IOException | RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new RuntimeException(t);
+		}
+
+		if (object instanceof AutoSerializer)
+			((AutoSerializer) object).autoSerialize(out);
+	}
+
+	@Override
+	public Deserializer toDeserializer() {
+		return new CompiledFieldDeserializer(factory, subSerializer == null ? null : subSerializer.toDeserializer(),
+				dataType);
+	}
+
+}
@@ -4,11 +4,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.util.function.Supplier;
 
 import com.phoenixkahlo.nodenet.ProtocolViolationException;
-import com.phoenixkahlo.util.ReflectionUtil;
 
 public class FieldDeserializer implements Deserializer {
 
@@ -59,17 +57,7 @@ public class FieldDeserializer implements Deserializer {
 	public Object deserialize(InputStream in) throws IOException, ProtocolViolationException {
 		Object object = factory.get();
 		
-		for (Field field : ReflectionUtil.getAllFields(dataType)) {
-			field.setAccessible(true);
-			if (!Modifier.isTransient(field.getModifiers()) && !Modifier.isStatic(field.getModifiers())) {
-				try {
-					Object value = SerializationUtils.deserialize(field.getType(), subDeserializer, in);
-					field.set(object, value);
-				} catch (IllegalAccessException e) {
-					throw new RuntimeException(e);
-				}
-			}
-		}
+		FieldPlan.of(dataType).deserialize(object, subDeserializer, in);
 		
 		if (object instanceof AutoSerializer)
 			((AutoSerializer) object).autoDeserialize(in);
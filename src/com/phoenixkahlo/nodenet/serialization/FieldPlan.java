@@ -0,0 +1,383 @@
+package com.phoenixkahlo.nodenet.serialization;
+
+import static com.phoenixkahlo.nodenet.serialization.SerializationUtils.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.phoenixkahlo.nodenet.ProtocolViolationException;
+import com.phoenixkahlo.util.ReflectionUtil;
+
+/**
+ * The serialized fields of a class, which are its non-static, non-transient
+ * fields, superclass fields first, with a method handle to get and set each
+ * one. A plan is computed once per class, the first time a FieldSerializer or
+ * FieldDeserializer of that class is used, and shared by all of them, so the
+ * class hierarchy is only walked once. Primitive fields are read and written
+ * through handles typed to the primitive, so they are never boxed.
+ * <p>
+ * A plan can also be compiled into a single method handle that serializes or
+ * deserializes every field, for CompiledFieldSerializer and
+ * CompiledFieldDeserializer. The handle is composed from the field handles
+ * and the encoding methods of SerializationUtils, so the JVM generates
+ * straight-line code for the class with no dispatch on field types.
+ */
+class FieldPlan {
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+	private static final ClassValue<FieldPlan> PLANS = new ClassValue<FieldPlan>() {
+		@Override
+		protected FieldPlan computeValue(Class<?> type) {
+			return new FieldPlan(type);
+		}
+	};
+
+	/**
+	 * @return the plan for the type, computing it if this is the first use.
+	 */
+	static FieldPlan of(Class<?> type) {
+		return PLANS.get(type);
+	}
+
+	private static final byte INT = 0;
+	private static final byte LONG = 1;
+	private static final byte DOUBLE = 2;
+	private static final byte FLOAT = 3;
+	private static final byte SHORT = 4;
+	private static final byte CHAR = 5;
+	private static final byte BYTE = 6;
+	private static final byte BOOLEAN = 7;
+	private static final byte ENUM = 8;
+	private static final byte OBJECT = 9;
+
+	private final byte[] kinds;
+	private final MethodHandle[] getters;
+	private final MethodHandle[] setters;
+	// The constants of each enum field's type, null for other fields
+	private final Object[][] enumConstants;
+
+	private FieldPlan(Class<?> type) {
+		List<Field> fields = ReflectionUtil.getAllFields(type).stream()
+				.filter(field -> !Modifier.isTransient(field.getModifiers()) && !Modifier.isStatic(field.getModifiers()))
+				.collect(Collectors.toList());
+		kinds = new byte[fields.size()];
+		getters = new MethodHandle[fields.size()];
+		setters = new MethodHandle[fields.size()];
+		enumConstants = new Object[fields.size()][];
+		for (int i = 0; i < fields.size(); i++) {
+			Field field = fields.get(i);
+			field.setAccessible(true);
+			kinds[i] = kindOf(field.getType());
+			if (kinds[i] == ENUM)
+				enumConstants[i] = field.getType().getEnumConstants();
+			Class<?> handleType = kinds[i] == ENUM || kinds[i] == OBJECT ? Object.class : field.getType();
+			try {
+				getters[i] = LOOKUP.unreflectGetter(field).asType(MethodType.methodType(handleType, Object.class));
+				setters[i] = LOOKUP.unreflectSetter(field)
+						.asType(MethodType.methodType(void.class, Object.class, handleType));
+			} catch (IllegalAccessException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	private static byte kindOf(Class<?> type) {
+		if (type == int.class)
+			return INT;
+		else if (type == long.class)
+			return LONG;
+		else if (type == double.class)
+			return DOUBLE;
+		else if (type == float.class)
+			return FLOAT;
+		else if (type == short.class)
+			return SHORT;
+		else if (type == char.class)
+			return CHAR;
+		else if (type == byte.class)
+			return BYTE;
+		else if (type == boolean.class)
+			return BOOLEAN;
+		else if (type.isEnum())
+			return ENUM;
+		else
+			return OBJECT;
+	}
+
+	/**
+	 * Serialize the fields of object in order, delegating non-primitive,
+	 * non-enum fields to the serializer, like SerializationUtils.serialize.
+	 */
+	void serialize(Object object, Serializer serializer, OutputStream out) throws IOException {
+		try {
+			for (int i = 0; i < kinds.length; i++) {
+				MethodHandle getter = getters[i];
+				switch (kinds[i]) {
+				case INT:
+					writeInt((int) getter.invokeExact(object), out);
+					break;
+				case LONG:
+					writeLong((long) getter.invokeExact(object), out);
+					break;
+				case DOUBLE:
+					writeDouble((double) getter.invokeExact(object), out);
+					break;
+				case FLOAT:
+					writeFloat((float) getter.invokeExact(object), out);
+					break;
+				case SHORT:
+					writeShort((short) getter.invokeExact(object), out);
+					break;
+				case CHAR:
+					writeChar((char) getter.invokeExact(object), out);
+					break;
+				case BYTE:
+					writeByte((byte) getter.invokeExact(object), out);
+					break;
+				case BOOLEAN:
+					writeBoolean((boolean) getter.invokeExact(object), out);
+					break;
+				case ENUM:
+					writeLength(((Enum<?>) (Object) getter.invokeExact(object)).ordinal(), out);
+					break;
+				default:
+					Object value = (Object) getter.invokeExact(object);
+					if (serializer == null)
+						throw new IllegalArgumentException("cannot serialize " + value + " with " + serializer);
+					serializer.serialize(value, out);
+				}
+			}
+		} catch (IOException | RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new RuntimeException(t);
+		}
+	}
+
+	/**
+	 * Deserialize the fields of object in order, symmetrical to serialize.
+	 */
+	void deserialize(Object object, Deserializer deserializer, InputStream in)
+			throws IOException, ProtocolViolationException {
+		try {
+			for (int i = 0; i < kinds.length; i++) {
+				MethodHandle setter = setters[i];
+				switch (kinds[i]) {
+				case INT:
+					setter.invokeExact(object, readInt(in));
+					break;
+				case LONG:
+					setter.invokeExact(object, readLong(in));
+					break;
+				case DOUBLE:
+					setter.invokeExact(object, readDouble(in));
+					break;
+				case FLOAT:
+					setter.invokeExact(object, readFloat(in));
+					break;
+				case SHORT:
+					setter.invokeExact(object, readShort(in));
+					break;
+				case CHAR:
+					setter.invokeExact(object, readChar(in));
+					break;
+				case BYTE:
+					setter.invokeExact(object, readByte(in));
+					break;
+				case BOOLEAN:
+					setter.invokeExact(object, readBoolean(in));
+					break;
+				case ENUM:
+					setter.invokeExact(object, readEnum(enumConstants[i], in));
+					break;
+				default:
+					if (deserializer == null)
+						throw new IllegalArgumentException("cannot deserialize field " + i + " with " + deserializer);
+					setter.invokeExact(object, deserializer.deserialize(in));
+				}
+			}
+		} catch (IOException | ProtocolViolationException | RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new RuntimeException(t);
+		}
+	}
+
+	/**
+	 * Read an ordinal and return the constant with it.
+	 *
+	 * @throws ProtocolViolationException
+	 *             if there is no constant with the ordinal.
+	 */
+	private static Object readEnum(Object[] constants, InputStream in) throws IOException, ProtocolViolationException {
+		int ordinal = readLength(in);
+		if (ordinal < 0 || ordinal >= constants.length)
+			throw new ProtocolViolationException("Invalid enum ordinal " + ordinal);
+		return constants[ordinal];
+	}
+
+	private static MethodHandle findStatic(Class<?> owner, String name, Class<?> returnType,
+			Class<?>... parameterTypes) {
+		try {
+			return LOOKUP.findStatic(owner, name, MethodType.methodType(returnType, parameterTypes));
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static MethodHandle findStatic(String name, Class<?> returnType, Class<?>... parameterTypes) {
+		return findStatic(FieldPlan.class, name, returnType, parameterTypes);
+	}
+
+	private static MethodHandle findWriter(String name, Class<?> type) {
+		return findStatic(SerializationUtils.class, name, void.class, type, OutputStream.class);
+	}
+
+	private static MethodHandle findReader(String name, Class<?> type) {
+		return findStatic(SerializationUtils.class, name, type, InputStream.class);
+	}
+
+	/**
+	 * Compile a handle of type (Object, OutputStream)void that is equivalent
+	 * to serialize with the given serializer.
+	 */
+	MethodHandle compileSerializer(Serializer serializer) {
+		MethodHandle compiled = findStatic("skip", void.class, Object.class, OutputStream.class);
+		for (int i = 0; i < kinds.length; i++) {
+			MethodHandle writer;
+			switch (kinds[i]) {
+			case INT:
+				writer = findWriter("writeInt", int.class);
+				break;
+			case LONG:
+				writer = findWriter("writeLong", long.class);
+				break;
+			case DOUBLE:
+				writer = findWriter("writeDouble", double.class);
+				break;
+			case FLOAT:
+				writer = findWriter("writeFloat", float.class);
+				break;
+			case SHORT:
+				writer = findWriter("writeShort", short.class);
+				break;
+			case CHAR:
+				writer = findWriter("writeChar", char.class);
+				break;
+			case BYTE:
+				writer = findWriter("writeByte", byte.class);
+				break;
+			case BOOLEAN:
+				writer = findWriter("writeBoolean", boolean.class);
+				break;
+			case ENUM:
+				writer = MethodHandles.filterArguments(
+						findWriter("writeLength", int.class), 0,
+						findStatic("ordinal", int.class, Object.class));
+				break;
+			default:
+				if (serializer == null) {
+					writer = findStatic("noSerializer", void.class, Object.class, OutputStream.class);
+				} else {
+					try {
+						writer = LOOKUP.findVirtual(Serializer.class, "serialize",
+								MethodType.methodType(void.class, Object.class, OutputStream.class)).bindTo(serializer);
+					} catch (NoSuchMethodException | IllegalAccessException e) {
+						throw new RuntimeException(e);
+					}
+				}
+			}
+			// Run what came before, then write this field
+			compiled = MethodHandles.foldArguments(MethodHandles.filterArguments(writer, 0, getters[i]), compiled);
+		}
+		return compiled;
+	}
+
+	/**
+	 * Compile a handle of type (Object, InputStream)void that is equivalent to
+	 * deserialize with the given deserializer.
+	 */
+	MethodHandle compileDeserializer(Deserializer deserializer) {
+		MethodHandle compiled = findStatic("skip", void.class, Object.class, InputStream.class);
+		for (int i = 0; i < kinds.length; i++) {
+			MethodHandle reader;
+			switch (kinds[i]) {
+			case INT:
+				reader = findReader("readInt", int.class);
+				break;
+			case LONG:
+				reader = findReader("readLong", long.class);
+				break;
+			case DOUBLE:
+				reader = findReader("readDouble", double.class);
+				break;
+			case FLOAT:
+				reader = findReader("readFloat", float.class);
+				break;
+			case SHORT:
+				reader = findReader("readShort", short.class);
+				break;
+			case CHAR:
+				reader = findReader("readChar", char.class);
+				break;
+			case BYTE:
+				reader = findReader("readByte", byte.class);
+				break;
+			case BOOLEAN:
+				reader = findReader("readBoolean", boolean.class);
+				break;
+			case ENUM:
+				reader = findStatic("readEnum", Object.class, Object[].class, InputStream.class)
+						.bindTo(enumConstants[i]);
+				break;
+			default:
+				if (deserializer == null) {
+					reader = findStatic("noDeserializer", Object.class, InputStream.class);
+				} else {
+					try {
+						reader = LOOKUP.findVirtual(Deserializer.class, "deserialize",
+								MethodType.methodType(Object.class, InputStream.class)).bindTo(deserializer);
+					} catch (NoSuchMethodException | IllegalAccessException e) {
+						throw new RuntimeException(e);
+					}
+				}
+			}
+			// Run what came before, then read this field
+			compiled = MethodHandles.foldArguments(MethodHandles.filterArguments(setters[i], 1, reader), compiled);
+		}
+		return compiled;
+	}
+
+	@SuppressWarnings("unused")
+	private static void skip(Object object, OutputStream out) {
+	}
+
+	@SuppressWarnings("unused")
+	private static void skip(Object object, InputStream in) {
+	}
+
+	@SuppressWarnings("unused")
+	private static void noSerializer(Object value, OutputStream out) {
+		throw new IllegalArgumentException("cannot serialize " + value + " with null");
+	}
+
+	@SuppressWarnings("unused")
+	private static Object noDeserializer(InputStream in) {
+		throw new IllegalArgumentException("cannot deserialize with null");
+	}
+
+	@SuppressWarnings("unused")
+	private static int ordinal(Object value) {
+		return ((Enum<?>) value).ordinal();
+	}
+
+}
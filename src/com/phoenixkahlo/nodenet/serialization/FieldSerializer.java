@@ -3,11 +3,8 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.util.function.Supplier;
 
-import com.phoenixkahlo.util.ReflectionUtil;
-
 public class FieldSerializer implements Serializer {
 
 	private Class<?> dataType;
@@ -58,21 +55,17 @@ public class FieldSerializer implements Serializer {
 		return object != null && object.getClass().equals(dataType);
 	}
 
+	@Override
+	public Class<?> getSerializedClass() {
+		return dataType;
+	}
+
 	@Override
 	public void serialize(Object object, OutputStream out) throws IOException {
 		if (!canSerialize(object))
 			throw new IllegalArgumentException();
 
-		for (Field field : ReflectionUtil.getAllFields(dataType)) {
-			field.setAccessible(true);
-			if (!Modifier.isTransient(field.getModifiers()) && !Modifier.isStatic(field.getModifiers())) {
-				try {
-					SerializationUtils.serialize(field.get(object), field.getType(), subSerializer, out);
-				} catch (IllegalAccessException e) {
-					throw new RuntimeException(e);
-				}
-			}
-		}
+		FieldPlan.of(dataType).serialize(object, subSerializer, out);
 
 		if (object instanceof AutoSerializer)
 			((AutoSerializer) object).autoSerialize(out);
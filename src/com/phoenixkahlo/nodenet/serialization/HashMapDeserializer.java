@@ -23,7 +23,7 @@ public class HashMapDeserializer implements Deserializer {
 	
 	@Override
 	public Object deserialize(InputStream in) throws IOException, ProtocolViolationException {
-		int length = SerializationUtils.readInt(in);
+		int length = SerializationUtils.readLength(in);
 		Map<Object, Object> map = new HashMap<Object, Object>();
 		for (int i = 0; i < length; i++) {
 			Object key = keyDeserializer.deserialize(in);
@@ -23,11 +23,16 @@ public class HashMapSerializer implements Serializer {
 		return object != null && object.getClass() == HashMap.class;
 	}
 
+	@Override
+	public Class<?> getSerializedClass() {
+		return HashMap.class;
+	}
+
 	@Override
 	public void serialize(Object object, OutputStream out) throws IOException {
 		if (!canSerialize(object)) throw new IllegalArgumentException();
 		Map<?, ?> map = (Map<?, ?>) object;
-		SerializationUtils.writeInt(map.size(), out);
+		SerializationUtils.writeLength(map.size(), out);
 		for (Map.Entry<?, ?> entry : map.entrySet()) {
 			keySerializer.serialize(entry.getKey(), out);
 			valueSerializer.serialize(entry.getValue(), out);
@@ -8,13 +8,12 @@ import com.phoenixkahlo.nodenet.ProtocolViolationException;
 public class MethodDeserializer implements Deserializer {
 
 	private static Deserializer classDeserializer = new ClassDeserializer();
-	private static Deserializer stringDeserializer = new StringDeserializer();
 	private static Deserializer classArrayDeserializer = new ArrayDeserializer(Class.class, classDeserializer);
 	
 	@Override
 	public Object deserialize(InputStream in) throws IOException, ProtocolViolationException {
 		Class<?> declaringClass = (Class<?>) classDeserializer.deserialize(in);
-		String methodName = (String) stringDeserializer.deserialize(in);
+		String methodName = SerializationUtils.readSymbol(in);
 		Class<?>[] paramTypes = (Class<?>[]) classArrayDeserializer.deserialize(in);
 		
 		try {
@@ -7,7 +7,6 @@ import java.lang.reflect.Method;
 public class MethodSerializer implements Serializer {
 
 	private static Serializer classSerializer = new ClassSerializer();
-	private static Serializer stringSerializer = new StringSerializer();
 	private static Serializer classArraySerializer = new ArraySerializer(Class.class, classSerializer);
 	
 	@Override
@@ -22,7 +21,7 @@ public class MethodSerializer implements Serializer {
 		
 		Method method = (Method) object;
 		classSerializer.serialize(method.getDeclaringClass(), out);
-		stringSerializer.serialize(method.getName(), out);
+		SerializationUtils.writeSymbol(method.getName(), out);
 		classArraySerializer.serialize(method.getParameterTypes(), out);
 	}
 
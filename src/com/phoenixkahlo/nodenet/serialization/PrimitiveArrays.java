@@ -0,0 +1,144 @@
+package com.phoenixkahlo.nodenet.serialization;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+
+/**
+ * Bulk encodings of primitive arrays for ArraySerializer and
+ * ArrayDeserializer, equivalent to encoding each element with
+ * SerializationUtils but without boxing or dispatching on each one. Elements
+ * are copied in chunks through ByteBuffer views, directly in and out of a
+ * ByteSink or ByteSource, or through one temporary array per chunk for other
+ * streams.
+ */
+class PrimitiveArrays {
+
+	private static final int CHUNK_BYTES = 8192;
+
+	private PrimitiveArrays() {}
+
+	private static int sizeOf(Class<?> type) {
+		if (type == long.class || type == double.class)
+			return 8;
+		else if (type == int.class || type == float.class)
+			return 4;
+		else if (type == short.class || type == char.class)
+			return 2;
+		else
+			return 1;
+	}
+
+	/**
+	 * @return whether the bulk encodings apply to arrays of the type on the
+	 *         stream. In compact mode, ints are varints, so int arrays are not
+	 *         bulk encoded.
+	 */
+	static boolean canWrite(Class<?> itemClass, OutputStream out) {
+		return itemClass.isPrimitive() && !(itemClass == int.class && out instanceof CompactOutputStream);
+	}
+
+	static boolean canRead(Class<?> itemClass, InputStream in) {
+		return itemClass.isPrimitive() && !(itemClass == int.class && in instanceof CompactInputStream);
+	}
+
+	/**
+	 * Write the elements of array, whose component type is a primitive, but
+	 * not the length.
+	 */
+	static void write(Object array, OutputStream out) throws IOException {
+		if (array instanceof byte[]) {
+			out.write((byte[]) array);
+			return;
+		}
+		Class<?> itemClass = array.getClass().getComponentType();
+		int size = sizeOf(itemClass);
+		int length = Array.getLength(array);
+		int chunk = CHUNK_BYTES / size;
+		for (int from = 0; from < length; from += chunk) {
+			int count = Math.min(chunk, length - from);
+			ByteBuffer buffer;
+			byte[] bytes = null;
+			if (out instanceof ByteSink) {
+				buffer = ((ByteSink) out).reserve(count * size);
+			} else {
+				bytes = new byte[count * size];
+				buffer = ByteBuffer.wrap(bytes);
+			}
+			put(array, from, count, buffer);
+			if (bytes != null)
+				out.write(bytes);
+		}
+	}
+
+	private static void put(Object array, int from, int count, ByteBuffer buffer) {
+		if (array instanceof int[]) {
+			buffer.asIntBuffer().put((int[]) array, from, count);
+		} else if (array instanceof long[]) {
+			buffer.asLongBuffer().put((long[]) array, from, count);
+		} else if (array instanceof double[]) {
+			buffer.asDoubleBuffer().put((double[]) array, from, count);
+		} else if (array instanceof float[]) {
+			buffer.asFloatBuffer().put((float[]) array, from, count);
+		} else if (array instanceof short[]) {
+			buffer.asShortBuffer().put((short[]) array, from, count);
+		} else if (array instanceof char[]) {
+			buffer.asCharBuffer().put((char[]) array, from, count);
+		} else {
+			boolean[] booleans = (boolean[]) array;
+			for (int i = 0; i < count; i++)
+				buffer.put(i, (byte) (booleans[from + i] ? 1 : 0));
+		}
+	}
+
+	/**
+	 * Read length elements into a new array of the primitive type.
+	 */
+	static Object read(Class<?> itemClass, int length, InputStream in) throws IOException {
+		Object array = Array.newInstance(itemClass, length);
+		if (itemClass == byte.class) {
+			SerializationUtils.readFully(in, (byte[]) array);
+			return array;
+		}
+		int size = sizeOf(itemClass);
+		int chunk = CHUNK_BYTES / size;
+		byte[] bytes = null;
+		for (int from = 0; from < length; from += chunk) {
+			int count = Math.min(chunk, length - from);
+			ByteBuffer buffer;
+			if (in instanceof ByteSource) {
+				buffer = ((ByteSource) in).take(count * size);
+			} else {
+				if (bytes == null || bytes.length != count * size)
+					bytes = new byte[count * size];
+				SerializationUtils.readFully(in, bytes);
+				buffer = ByteBuffer.wrap(bytes);
+			}
+			get(array, from, count, buffer);
+		}
+		return array;
+	}
+
+	private static void get(Object array, int from, int count, ByteBuffer buffer) {
+		if (array instanceof int[]) {
+			buffer.asIntBuffer().get((int[]) array, from, count);
+		} else if (array instanceof long[]) {
+			buffer.asLongBuffer().get((long[]) array, from, count);
+		} else if (array instanceof double[]) {
+			buffer.asDoubleBuffer().get((double[]) array, from, count);
+		} else if (array instanceof float[]) {
+			buffer.asFloatBuffer().get((float[]) array, from, count);
+		} else if (array instanceof short[]) {
+			buffer.asShortBuffer().get((short[]) array, from, count);
+		} else if (array instanceof char[]) {
+			buffer.asCharBuffer().get((char[]) array, from, count);
+		} else {
+			boolean[] booleans = (boolean[]) array;
+			for (int i = 0; i < count; i++)
+				booleans[from + i] = buffer.get(i) != 0;
+		}
+	}
+
+}
@@ -1,9 +1,9 @@
 package com.phoenixkahlo.nodenet.serialization;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 
@@ -31,11 +31,11 @@ public class SerializationUtils {
 		else if (type == char.class)
 			writeChar((Character) object, out);
 		else if (type == byte.class)
-			out.write((Byte) object);
+			writeByte((Byte) object, out);
 		else if (type == boolean.class)
 			writeBoolean((Boolean) object, out);
 		else if (type.isEnum())
-			writeInt(((Enum<?>) object).ordinal(), out);
+			writeLength(((Enum<?>) object).ordinal(), out);
 		else if (serializer != null)
 			serializer.serialize(object, out);
 		else
@@ -62,11 +62,11 @@ public class SerializationUtils {
 		else if (type == char.class)
 			return readChar(in);
 		else if (type == byte.class)
-			return (byte) in.read();
+			return readByte(in);
 		else if (type == boolean.class)
 			return readBoolean(in);
 		else if (type.isEnum())
-			return type.getEnumConstants()[readInt(in)];
+			return type.getEnumConstants()[readLength(in)];
 		else if (deserializer != null)
 			return deserializer.deserialize(in);
 		else
@@ -91,7 +91,7 @@ public class SerializationUtils {
 	 * Head with array length, symmetrical to deserializeByteArray.
 	 */
 	public static void serializeByteArray(byte[] bytes, OutputStream out) throws IOException {
-		writeInt(bytes.length, out);
+		writeLength(bytes.length, out);
 		out.write(bytes);
 	}
 
@@ -99,10 +99,8 @@ public class SerializationUtils {
 	 * Head with array length, symmetrical to serializeByteArray.
 	 */
 	public static byte[] deserializeByteArray(InputStream in) throws IOException {
-		byte[] arr = new byte[readInt(in)];
-		int read = 0;
-		while (read < arr.length)
-			read += in.read(arr, read, arr.length);
+		byte[] arr = new byte[readLength(in)];
+		readFully(in, arr);
 		return arr;
 	}
 
@@ -132,63 +130,221 @@ public class SerializationUtils {
 		return newArrays;
 	}
 
+	/**
+	 * Write a symbol, such as a class or method name, which is likely to be
+	 * repeated. If out is a ByteSink for a session with a symbol dictionary,
+	 * possibly in compact mode, the symbol is written with the dictionary, and
+	 * otherwise it is written as a string. Symmetrical to readSymbol.
+	 */
+	public static void writeSymbol(String symbol, OutputStream out) throws IOException {
+		OutputStream sink = out instanceof CompactOutputStream ? ((CompactOutputStream) out).getOut() : out;
+		if (sink instanceof ByteSink && ((ByteSink) sink).getSymbols() != null)
+			((ByteSink) sink).getSymbols().write(symbol, ((ByteSink) sink).getSymbolMode(), out,
+					((ByteSink) sink).getPendingSymbols());
+		else
+			serializeByteArray(stringToBytes(symbol), out);
+	}
+
+	/**
+	 * Read a symbol, symmetrical to writeSymbol.
+	 *
+	 * @throws UnresolvedSymbolException
+	 *             if the symbol's definition has not been received yet.
+	 */
+	public static String readSymbol(InputStream in) throws IOException, ProtocolViolationException {
+		InputStream source = in instanceof CompactInputStream ? ((CompactInputStream) in).getIn() : in;
+		if (source instanceof ByteSource && ((ByteSource) source).getSymbols() != null)
+			return ((ByteSource) source).getSymbols().read(in);
+		else
+			return bytesToString(deserializeByteArray(in));
+	}
+
+	/**
+	 * Fill bytes from in.
+	 *
+	 * @throws EOFException
+	 *             if in ends first.
+	 */
+	public static void readFully(InputStream in, byte[] bytes) throws IOException {
+		int read = 0;
+		while (read < bytes.length) {
+			int n = in.read(bytes, read, bytes.length - read);
+			if (n == -1)
+				throw new EOFException();
+			read += n;
+		}
+	}
+
+	public static void writeByte(byte n, OutputStream out) throws IOException {
+		out.write(n);
+	}
+
+	/**
+	 * @throws EOFException
+	 *             if in has ended.
+	 */
+	public static byte readByte(InputStream in) throws IOException {
+		int b = in.read();
+		if (b == -1)
+			throw new EOFException();
+		return (byte) b;
+	}
+
+	/**
+	 * Write 4 bytes, or a zigzag varint in compact mode.
+	 */
 	public static void writeInt(int n, OutputStream out) throws IOException {
-		out.write(intToBytes(n));
+		if (out instanceof ByteSink)
+			((ByteSink) out).writeInt(n);
+		else if (out instanceof CompactOutputStream)
+			((CompactOutputStream) out).writeSignedVarInt(n);
+		else
+			out.write(intToBytes(n));
 	}
 
+	/**
+	 * Symmetrical to writeInt.
+	 */
 	public static int readInt(InputStream in) throws IOException {
+		if (in instanceof ByteSource)
+			return ((ByteSource) in).readInt();
+		else if (in instanceof CompactInputStream)
+			return ((CompactInputStream) in).readSignedVarInt();
 		byte[] bytes = new byte[4];
-		in.read(bytes);
+		readFully(in, bytes);
+		return bytesToInt(bytes);
+	}
+
+	/**
+	 * Write an int that is never negative as an unsigned LEB128 varint, 7 bits
+	 * at a time, least significant first, with the high bit of each byte set if
+	 * more follow, whatever the wire mode.
+	 */
+	public static void writeVarInt(int n, OutputStream out) throws IOException {
+		while ((n & ~0x7F) != 0) {
+			out.write((n & 0x7F) | 0x80);
+			n >>>= 7;
+		}
+		out.write(n);
+	}
+
+	/**
+	 * Symmetrical to writeVarInt.
+	 * 
+	 * @throws IOException
+	 *             if the varint is longer than an int can be.
+	 */
+	public static int readVarInt(InputStream in) throws IOException {
+		int n = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = in.read();
+			if (b == -1)
+				throw new EOFException();
+			n |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return n;
+		}
+		throw new IOException("varint longer than 5 bytes");
+	}
+
+	/**
+	 * Write a length, count, ordinal or other int that is never negative, as 4
+	 * bytes, or an unsigned varint in compact mode.
+	 */
+	public static void writeLength(int n, OutputStream out) throws IOException {
+		if (out instanceof ByteSink)
+			((ByteSink) out).writeInt(n);
+		else if (out instanceof CompactOutputStream)
+			((CompactOutputStream) out).writeUnsignedVarInt(n);
+		else
+			out.write(intToBytes(n));
+	}
+
+	/**
+	 * Symmetrical to writeLength.
+	 */
+	public static int readLength(InputStream in) throws IOException {
+		if (in instanceof ByteSource)
+			return ((ByteSource) in).readInt();
+		else if (in instanceof CompactInputStream)
+			return ((CompactInputStream) in).readUnsignedVarInt();
+		byte[] bytes = new byte[4];
+		readFully(in, bytes);
 		return bytesToInt(bytes);
 	}
 
 	public static void writeLong(long n, OutputStream out) throws IOException {
-		out.write(longToBytes(n));
+		if (out instanceof ByteSink)
+			((ByteSink) out).writeLong(n);
+		else
+			out.write(longToBytes(n));
 	}
 
 	public static long readLong(InputStream in) throws IOException {
+		if (in instanceof ByteSource)
+			return ((ByteSource) in).readLong();
 		byte[] bytes = new byte[8];
-		in.read(bytes);
+		readFully(in, bytes);
 		return bytesToLong(bytes);
 	}
 
 	public static void writeDouble(double n, OutputStream out) throws IOException {
-		out.write(doubleToBytes(n));
+		if (out instanceof ByteSink)
+			((ByteSink) out).writeDouble(n);
+		else
+			out.write(doubleToBytes(n));
 	}
 
 	public static double readDouble(InputStream in) throws IOException {
+		if (in instanceof ByteSource)
+			return ((ByteSource) in).readDouble();
 		byte[] bytes = new byte[8];
-		in.read(bytes);
+		readFully(in, bytes);
 		return bytesToDouble(bytes);
 	}
 
 	public static void writeFloat(float n, OutputStream out) throws IOException {
-		out.write(floatToBytes(n));
+		if (out instanceof ByteSink)
+			((ByteSink) out).writeFloat(n);
+		else
+			out.write(floatToBytes(n));
 	}
 
 	public static float readFloat(InputStream in) throws IOException {
+		if (in instanceof ByteSource)
+			return ((ByteSource) in).readFloat();
 		byte[] bytes = new byte[4];
-		in.read(bytes);
+		readFully(in, bytes);
 		return bytesToFloat(bytes);
 	}
 
 	public static void writeShort(short n, OutputStream out) throws IOException {
-		out.write(shortToBytes(n));
+		if (out instanceof ByteSink)
+			((ByteSink) out).writeShort(n);
+		else
+			out.write(shortToBytes(n));
 	}
 
 	public static short readShort(InputStream in) throws IOException {
+		if (in instanceof ByteSource)
+			return ((ByteSource) in).readShort();
 		byte[] bytes = new byte[2];
-		in.read(bytes);
+		readFully(in, bytes);
 		return bytesToShort(bytes);
 	}
 
 	public static void writeChar(char c, OutputStream out) throws IOException {
-		out.write(charToBytes(c));
+		if (out instanceof ByteSink)
+			((ByteSink) out).writeChar(c);
+		else
+			out.write(charToBytes(c));
 	}
 
 	public static char readChar(InputStream in) throws IOException {
+		if (in instanceof ByteSource)
+			return ((ByteSource) in).readChar();
 		byte[] bytes = new byte[2];
-		in.read(bytes);
+		readFully(in, bytes);
 		return bytesToChar(bytes);
 	}
 
@@ -197,55 +353,62 @@ public class SerializationUtils {
 	}
 
 	public static boolean readBoolean(InputStream in) throws IOException {
-		return in.read() != 0;
+		return readByte(in) != 0;
 	}
 
+	// Shifts rather than ByteBuffers, so that each conversion allocates at
+	// most the array
+
 	public static byte[] intToBytes(int n) {
-		return ByteBuffer.allocate(4).putInt(n).array();
+		return new byte[] { (byte) (n >>> 24), (byte) (n >>> 16), (byte) (n >>> 8), (byte) n };
 	}
 
 	public static int bytesToInt(byte[] bytes) {
-		return ByteBuffer.wrap(bytes).getInt();
+		return (bytes[0] & 0xFF) << 24 | (bytes[1] & 0xFF) << 16 | (bytes[2] & 0xFF) << 8 | bytes[3] & 0xFF;
 	}
 
 	public static byte[] longToBytes(long n) {
-		return ByteBuffer.allocate(8).putLong(n).array();
+		return new byte[] { (byte) (n >>> 56), (byte) (n >>> 48), (byte) (n >>> 40), (byte) (n >>> 32),
+				(byte) (n >>> 24), (byte) (n >>> 16), (byte) (n >>> 8), (byte) n };
 	}
 
 	public static long bytesToLong(byte[] bytes) {
-		return ByteBuffer.wrap(bytes).getLong();
+		long n = 0;
+		for (int i = 0; i < 8; i++)
+			n = n << 8 | bytes[i] & 0xFF;
+		return n;
 	}
 
 	public static byte[] doubleToBytes(double n) {
-		return ByteBuffer.allocate(8).putDouble(n).array();
+		return longToBytes(Double.doubleToRawLongBits(n));
 	}
 
 	public static double bytesToDouble(byte[] bytes) {
-		return ByteBuffer.wrap(bytes).getDouble();
+		return Double.longBitsToDouble(bytesToLong(bytes));
 	}
 
 	public static byte[] floatToBytes(float n) {
-		return ByteBuffer.allocate(4).putFloat(n).array();
+		return intToBytes(Float.floatToRawIntBits(n));
 	}
 
 	public static float bytesToFloat(byte[] bytes) {
-		return ByteBuffer.wrap(bytes).getFloat();
+		return Float.intBitsToFloat(bytesToInt(bytes));
 	}
 
 	public static byte[] shortToBytes(short n) {
-		return ByteBuffer.allocate(2).putShort(n).array();
+		return new byte[] { (byte) (n >>> 8), (byte) n };
 	}
 
 	public static short bytesToShort(byte[] bytes) {
-		return ByteBuffer.wrap(bytes).getShort();
+		return (short) ((bytes[0] & 0xFF) << 8 | bytes[1] & 0xFF);
 	}
 
 	public static byte[] charToBytes(char c) {
-		return ByteBuffer.allocate(2).putChar(c).array();
+		return new byte[] { (byte) (c >>> 8), (byte) c };
 	}
 
 	public static char bytesToChar(byte[] bytes) {
-		return ByteBuffer.wrap(bytes).getChar();
+		return (char) ((bytes[0] & 0xFF) << 8 | bytes[1] & 0xFF);
 	}
 
 }
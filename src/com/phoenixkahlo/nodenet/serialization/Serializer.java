@@ -14,6 +14,15 @@ public interface Serializer {
 	 */
 	boolean canSerialize(Object object);
 
+	/**
+	 * @return the class whose instances, and only whose instances, this can
+	 *         serialize, or null if that depends on more than the class. A
+	 *         UnionSerializer dispatches on this without calling canSerialize.
+	 */
+	default Class<?> getSerializedClass() {
+		return null;
+	}
+
 	/**
 	 * Attempt to serialize object to out.
 	 */
@@ -10,6 +10,11 @@ public class StringSerializer implements Serializer {
 		return object != null && object.getClass() == String.class;
 	}
 
+	@Override
+	public Class<?> getSerializedClass() {
+		return String.class;
+	}
+
 	@Override
 	public void serialize(Object object, OutputStream out) throws IOException {
 		if (!canSerialize(object))
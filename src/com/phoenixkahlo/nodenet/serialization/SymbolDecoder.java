@@ -0,0 +1,91 @@
+package com.phoenixkahlo.nodenet.serialization;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import com.phoenixkahlo.nodenet.ProtocolViolationException;
+
+/**
+ * The receiving half of a session's symbol dictionary, symmetrical to
+ * SymbolEncoder. A reference to a symbol that has not been defined yet, as
+ * its definition is still in flight, is an UnresolvedSymbolException, after
+ * which the message should be held and decoded again once the definition has
+ * been received.
+ * <p>
+ * Thread safe.
+ */
+public class SymbolDecoder {
+
+	private String[] symbols;
+	private int defined;
+
+	public SymbolDecoder() {
+		symbols = new String[16];
+		defined = 0;
+	}
+
+	/**
+	 * Know the symbols, indexed by ID, already.
+	 */
+	SymbolDecoder(String[] symbols) {
+		this.symbols = Arrays.copyOf(symbols, Math.max(16, symbols.length));
+		defined = symbols.length;
+	}
+
+	/**
+	 * @throws ProtocolViolationException
+	 *             if the ID is out of range, or was defined as another symbol.
+	 */
+	synchronized void define(int id, String symbol) throws ProtocolViolationException {
+		if (id < 0 || id >= SymbolEncoder.MAX_SYMBOLS)
+			throw new ProtocolViolationException("symbol ID out of range: " + id);
+		if (id >= symbols.length)
+			symbols = Arrays.copyOf(symbols, Math.min(SymbolEncoder.MAX_SYMBOLS, Math.max(id + 1, symbols.length * 2)));
+		if (symbols[id] == null) {
+			symbols[id] = symbol;
+			defined++;
+		} else if (!symbols[id].equals(symbol)) {
+			throw new ProtocolViolationException("symbol " + id + " redefined");
+		}
+	}
+
+	/**
+	 * @return the symbol, or null if it has not been defined.
+	 */
+	synchronized String lookup(int id) {
+		return id >= 0 && id < symbols.length ? symbols[id] : null;
+	}
+
+	/**
+	 * Read a symbol written by a SymbolEncoder, recording its definition if it
+	 * has one.
+	 */
+	public String read(InputStream in) throws IOException, ProtocolViolationException {
+		byte tag = SerializationUtils.readByte(in);
+		if (tag == SymbolEncoder.INLINED) {
+			return SerializationUtils.bytesToString(SerializationUtils.deserializeByteArray(in));
+		} else if (tag == SymbolEncoder.DEFINED) {
+			int id = SerializationUtils.readVarInt(in);
+			String symbol = SerializationUtils.bytesToString(SerializationUtils.deserializeByteArray(in));
+			define(id, symbol);
+			return symbol;
+		} else if (tag == SymbolEncoder.REFERENCED) {
+			int id = SerializationUtils.readVarInt(in);
+			String symbol = lookup(id);
+			if (symbol == null)
+				throw new UnresolvedSymbolException(id);
+			return symbol;
+		} else {
+			throw new ProtocolViolationException("invalid symbol tag " + tag);
+		}
+	}
+
+	/**
+	 * @return the number of symbols defined, which only grows.
+	 */
+	public synchronized int size() {
+		return defined;
+	}
+
+}
@@ -0,0 +1,156 @@
+package com.phoenixkahlo.nodenet.serialization;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The sending half of a session's symbol dictionary, which replaces repeated
+ * symbols, such as class and method names, with small IDs, written as
+ * varints in every wire mode. The first time a symbol is sent it is defined,
+ * in full and with a newly assigned ID, and later it is referenced by the ID
+ * alone. The receiving SymbolDecoder builds the symmetric table from the
+ * definitions.
+ * <p>
+ * A message that references a symbol may be received before the message that
+ * defined it, so the receiver must hold it until the definition arrives. A
+ * definition must therefore only be relied upon if it was sent reliably, and
+ * an ordered message only references symbols defined by earlier ordered
+ * messages, so that it is never held back behind an unordered one. Messages
+ * that may be dropped, or that are shared by several sessions, inline their
+ * symbols instead.
+ * <p>
+ * A message that may fail to be sent collects its definitions as pending, and
+ * commits them once it has been handed to the stream. Until then, other
+ * messages define the symbols again, with the same IDs, rather than rely on
+ * definitions that may never reach the wire.
+ * <p>
+ * Thread safe.
+ */
+public class SymbolEncoder {
+
+	/**
+	 * How a message may use the dictionary.
+	 */
+	public static enum Mode {
+		/**
+		 * Write symbols in full, without the dictionary.
+		 */
+		INLINE,
+		/**
+		 * Reference symbols defined by ordered messages, and define others.
+		 */
+		ORDERED,
+		/**
+		 * Reference any defined symbols, and define others.
+		 */
+		UNORDERED
+	}
+
+	/**
+	 * The most symbols a session will define, beyond which symbols are
+	 * inlined.
+	 */
+	public static final int MAX_SYMBOLS = 1 << 16;
+
+	static final byte INLINED = 0;
+	static final byte DEFINED = 1;
+	static final byte REFERENCED = 2;
+
+	private final Map<String, Integer> ids = new HashMap<>();
+	// Indexed by ID
+	private final List<String> symbols = new ArrayList<>();
+	// Whether a definition of each symbol has been committed, by any message
+	// and by an ordered message
+	private final List<Boolean> defined = new ArrayList<>();
+	private final List<Boolean> definedOrdered = new ArrayList<>();
+
+	/**
+	 * Write the symbol as allowed by the mode, defining it if necessary, and
+	 * commit any definition at once.
+	 */
+	public void write(String symbol, Mode mode, OutputStream out) throws IOException {
+		write(symbol, mode, out, null);
+	}
+
+	/**
+	 * Write the symbol as allowed by the mode, defining it if necessary. If
+	 * pending is not null, a definition is added to it rather than committed,
+	 * and symbols already in it are referenced, as they are defined earlier in
+	 * the same message.
+	 */
+	public void write(String symbol, Mode mode, OutputStream out, List<Integer> pending) throws IOException {
+		int id;
+		boolean define;
+		synchronized (this) {
+			Integer known = ids.get(symbol);
+			if (mode == Mode.INLINE || (known == null && symbols.size() >= MAX_SYMBOLS)) {
+				id = -1;
+				define = false;
+			} else if (known == null) {
+				id = symbols.size();
+				define = true;
+				ids.put(symbol, id);
+				symbols.add(symbol);
+				defined.add(false);
+				definedOrdered.add(false);
+			} else {
+				id = known;
+				define = !(mode == Mode.ORDERED ? definedOrdered.get(id) : defined.get(id))
+						&& (pending == null || !pending.contains(id));
+			}
+			if (define) {
+				if (pending == null)
+					commit(id, mode);
+				else
+					pending.add(id);
+			}
+		}
+		if (id == -1) {
+			SerializationUtils.writeByte(INLINED, out);
+			SerializationUtils.serializeByteArray(SerializationUtils.stringToBytes(symbol), out);
+		} else if (define) {
+			SerializationUtils.writeByte(DEFINED, out);
+			SerializationUtils.writeVarInt(id, out);
+			SerializationUtils.serializeByteArray(SerializationUtils.stringToBytes(symbol), out);
+		} else {
+			SerializationUtils.writeByte(REFERENCED, out);
+			SerializationUtils.writeVarInt(id, out);
+		}
+	}
+
+	/**
+	 * Commit the pending definitions of a message written in the mode, once
+	 * it has been handed to the stream, so that later messages may reference
+	 * them.
+	 */
+	public synchronized void commit(List<Integer> pending, Mode mode) {
+		for (int id : pending)
+			commit(id, mode);
+	}
+
+	private void commit(int id, Mode mode) {
+		defined.set(id, true);
+		if (mode == Mode.ORDERED)
+			definedOrdered.set(id, true);
+	}
+
+	/**
+	 * @return a decoder that knows every symbol defined so far, for decoding
+	 *         messages that were sent with this encoder.
+	 */
+	public synchronized SymbolDecoder snapshot() {
+		return new SymbolDecoder(symbols.toArray(new String[symbols.size()]));
+	}
+
+	/**
+	 * @return the number of symbols defined.
+	 */
+	public synchronized int size() {
+		return symbols.size();
+	}
+
+}
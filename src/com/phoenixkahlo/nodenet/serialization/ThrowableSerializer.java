@@ -31,6 +31,11 @@ public class ThrowableSerializer<E extends Throwable> implements Serializer {
 		return object != null && object.getClass().equals(type);
 	}
 
+	@Override
+	public Class<?> getSerializedClass() {
+		return type;
+	}
+
 	@Override
 	public void serialize(Object object, OutputStream out) throws IOException {
 		if (!canSerialize(object))
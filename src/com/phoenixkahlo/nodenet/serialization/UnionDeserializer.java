@@ -2,6 +2,7 @@ package com.phoenixkahlo.nodenet.serialization;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -12,18 +13,31 @@ public class UnionDeserializer implements Deserializer {
 	private Map<Integer, Deserializer> subDeserializers = new HashMap<>();
 	// See UnionSerializer.toDeserializer
 	private UnionSerializer toSerializer;
+	// Indexed by header, so headers should be small
+	private volatile Deserializer[] byHeader = new Deserializer[0];
 
+	/**
+	 * @throws IllegalArgumentException
+	 *             if the header is negative.
+	 */
 	public void add(int header, Deserializer deserializer) {
+		if (header < 0)
+			throw new IllegalArgumentException("negative header " + header);
 		subDeserializers.put(header, deserializer);
 		toSerializer = null;
+
+		Deserializer[] byHeader = Arrays.copyOf(this.byHeader, Math.max(this.byHeader.length, header + 1));
+		byHeader[header] = deserializer;
+		this.byHeader = byHeader;
 	}
 
 	@Override
 	public Object deserialize(InputStream in) throws IOException, ProtocolViolationException {
-		Deserializer deserializer = subDeserializers.get(SerializationUtils.readInt(in));
-		if (deserializer == null)
+		int header = SerializationUtils.readLength(in);
+		Deserializer[] byHeader = this.byHeader;
+		if (header < 0 || header >= byHeader.length || byHeader[header] == null)
 			throw new ProtocolViolationException("Invalid union header");
-		return deserializer.deserialize(in);
+		return byHeader[header].deserialize(in);
 	}
 
 	@Override
@@ -1,11 +1,29 @@
 package com.phoenixkahlo.nodenet.serialization;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 
 public class UnionSerializer implements Serializer {
 
+	/**
+	 * A subserializer and its header.
+	 */
+	private static class Entry {
+
+		final int header;
+		final Serializer serializer;
+
+		Entry(int header, Serializer serializer) {
+			this.header = header;
+			this.serializer = serializer;
+		}
+
+	}
+
 	private Map<Serializer, Integer> subSerializers = new HashMap<Serializer, Integer>();
 	/**
 	 * UnionSerializer is cached upon invocations of toDeserializer, and built
@@ -15,25 +33,60 @@ public class UnionSerializer implements Serializer {
 	 * serializer.
 	 */
 	private UnionDeserializer toDeserializer;
+	/**
+	 * Rebuilt from subSerializers upon modification, so that objects are
+	 * dispatched by their class in one lookup. Subserializers that serialize
+	 * exactly one class are keyed by it, and only the others are scanned with
+	 * canSerialize.
+	 */
+	private volatile Map<Class<?>, Entry> byClass = new IdentityHashMap<>();
+	private volatile Entry[] unkeyed = new Entry[0];
 
 	public void add(int header, Serializer serializer) {
 		subSerializers.put(serializer, header);
 		toDeserializer = null;
+
+		Map<Class<?>, Entry> byClass = new IdentityHashMap<>();
+		List<Entry> unkeyed = new ArrayList<>();
+		for (Map.Entry<Serializer, Integer> entry : subSerializers.entrySet()) {
+			Class<?> serializedClass = entry.getKey().getSerializedClass();
+			if (serializedClass != null)
+				byClass.put(serializedClass, new Entry(entry.getValue(), entry.getKey()));
+			else
+				unkeyed.add(new Entry(entry.getValue(), entry.getKey()));
+		}
+		this.byClass = byClass;
+		this.unkeyed = unkeyed.toArray(new Entry[unkeyed.size()]);
+	}
+
+	/**
+	 * @return the entry that can serialize object, or null.
+	 */
+	private Entry find(Object object) {
+		if (object != null) {
+			Entry entry = byClass.get(object.getClass());
+			if (entry != null)
+				return entry;
+		}
+		for (Entry entry : unkeyed) {
+			if (entry.serializer.canSerialize(object))
+				return entry;
+		}
+		return null;
 	}
 
 	@Override
 	public boolean canSerialize(Object object) {
-		return subSerializers.keySet().stream().anyMatch(sub -> sub.canSerialize(object));
+		return find(object) != null;
 	}
 
 	@Override
 	public void serialize(Object object, OutputStream out) throws IOException {
-		if (!canSerialize(object))
+		Entry entry = find(object);
+		if (entry == null)
 			throw new IllegalArgumentException("cannot serialize " + object);
-		Serializer serializer = subSerializers.keySet().stream().filter(sub -> sub.canSerialize(object)).findAny()
-				.get();
-		SerializationUtils.writeInt(subSerializers.get(serializer), out);
-		serializer.serialize(object, out);
+		SerializationUtils.writeLength(entry.header, out);
+		entry.serializer.serialize(object, out);
 	}
 
 	@Override
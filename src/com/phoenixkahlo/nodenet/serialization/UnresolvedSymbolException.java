@@ -0,0 +1,24 @@
+package com.phoenixkahlo.nodenet.serialization;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a message references a symbol whose definition has not been
+ * received yet. See SymbolDecoder.
+ */
+public class UnresolvedSymbolException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int id;
+
+	public UnresolvedSymbolException(int id) {
+		super("symbol " + id + " is not defined yet");
+		this.id = id;
+	}
+
+	public int getID() {
+		return id;
+	}
+
+}
@@ -6,47 +6,177 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.PriorityQueue;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 import com.phoenixkahlo.nodenet.DisconnectionException;
 import com.phoenixkahlo.util.UUID;
 
 public class BasicChildStream implements ChildStream {
 
+	// After the transmission type and connection ID
+	private static final int PAYLOAD_ID_OFFSET = 17;
+	// After the payload ID and message ID of an expiring payload
+	private static final int LIFETIME_OFFSET = 37;
+
+	private static class OutgoingMessage {
+
+		// Null if the message was prepared
+		final byte[] message;
+		// Null until the writer splits the message, if it was not prepared
+		final byte[][] payloads;
+		final int length;
+		final boolean ordered;
+		final boolean reliable;
+		// 0 if none
+		final long deadline;
+		boolean keyed = false;
+		int key;
+		// Assigned when the message is queued
+		int version;
+
+		OutgoingMessage(byte[] message, boolean ordered, boolean reliable, long deadline) {
+			this.message = message;
+			this.payloads = null;
+			this.length = message.length;
+			this.ordered = ordered;
+			this.reliable = reliable;
+			this.deadline = deadline;
+		}
+
+		OutgoingMessage(byte[] message, int key) {
+			this(message, false, true, 0);
+			this.keyed = true;
+			this.key = key;
+		}
+
+		OutgoingMessage(PreparedMessage message) {
+			this.message = null;
+			this.payloads = message.getPayloads();
+			this.length = message.getLength();
+			this.ordered = false;
+			this.reliable = true;
+			this.deadline = 0;
+		}
+
+	}
+
+	/**
+	 * The payloads written for the newest version of a key that has been
+	 * written, which have contiguous payload IDs.
+	 */
+	private static class WrittenVersion {
+
+		final int version;
+		final int firstPayloadID;
+		int payloads = 1;
+
+		WrittenVersion(int version, int firstPayloadID) {
+			this.version = version;
+			this.firstPayloadID = firstPayloadID;
+		}
+
+	}
+
 	private StreamFamily family;
 	private UUID connectionID;
-	private InetSocketAddress sendTo;
+	// Changes if the connection is resumed from another address
+	private volatile InetSocketAddress sendTo;
+	private volatile UUID resumptionToken;
+	// -1 when not suspended
+	private volatile long suspendedSince = -1;
+
+	// Producers add messages to sendQueue, and the writer, which only runs on
+	// one thread at a time, frames them and hands them to the pacer
+	private Queue<OutgoingMessage> sendQueue = new ConcurrentLinkedQueue<>();
+	// The bytes of messages in sendQueue or being written. Producers wait on
+	// sendQueue when it exceeds the limit, and are notified if waiting.
+	private AtomicInteger queuedBytes = new AtomicInteger(0);
+	private volatile int waitingProducers = 0;
+	private AtomicBoolean writerScheduled = new AtomicBoolean(false);
+	// Whether the writer is waiting for the window to open, and for how big a
+	// payload
+	private volatile boolean writerBlocked = false;
+	private volatile int blockedPayloadSize;
+	// The newest queued version of each key
+	private Map<Integer, Integer> keyVersions = new ConcurrentHashMap<>();
+	// Only used by the writer
+	private Map<Integer, WrittenVersion> writtenVersions = new HashMap<>();
+	private int nextSendOrdinal = 0;
+	private OutgoingMessage writing;
+	private UUID writingMessageID;
+	private OptionalInt writingOrdinal;
+	private byte[][] writingPayloads;
+	private int writingPart;
 
-	// Synchronize usages of unconfirmed, and notify unconfirmed upon changes
-	private List<UnconfirmedPayload> unconfirmed = new ArrayList<>();
-	private AtomicInteger nextSendOrdinal = new AtomicInteger(0);
+	// Synchronize usages of unconfirmed
+	private RetransmissionBuffer unconfirmed;
+	// Synchronize usages of these with unconfirmed
+	private List<byte[]> unconfirmedAtDisconnection;
+	private int remoteCredit = DatagramStreamConfig.RECEIVE_BUFFER_SIZE;
 
 	private Queue<ReceivedMessage> receivedOrdered = new PriorityQueue<>(10,
 			(received1, received2) -> received2.getOrdinal().getAsInt() - received1.getOrdinal().getAsInt());
 	private Queue<ReceivedMessage> receivedUnordered = new LinkedList<>();
 	private Object receivedLock = new Object();
+	// Synchronize usages of these with receivedLock
+	private Consumer<byte[]> messageHandler;
+	private Executor messageExecutor;
+	private boolean dispatching = false;
 
+	// Synchronize usages of receivedIDs
+	private SequenceTracker receivedIDs = new SequenceTracker(DatagramStreamConfig.MAX_UNCONFIRMED_PAYLOADS + 1);
 	// Synchronize usages of partiallyReceived
 	private List<MessageBuilder> partiallyReceived = new ArrayList<>();
+	// Synchronize usages of these with partiallyReceived
+	private Map<UUID, Long> recentlyCompleted = new LinkedHashMap<>();
+	// The times after which partially received messages with lifetimes are
+	// discarded
+	private Map<UUID, Long> partialDeadlines = new HashMap<>();
+	// The newest version received of each key, and the message ID of that
+	// version if it is partially received
+	private Map<Integer, Integer> newestKeyVersions = new HashMap<>();
+	private Map<Integer, UUID> partialKeyed = new HashMap<>();
+	// The payload bytes held in partiallyReceived and the received queues
+	private AtomicInteger bufferedBytes = new AtomicInteger(0);
+	private volatile int advertisedCredit = DatagramStreamConfig.RECEIVE_BUFFER_SIZE;
 
 	private volatile long lastHeartbeat;
 	private long timeOfCreation = System.currentTimeMillis();
+	// The time a payload was last sent or received, and the time that payloads
+	// began being sent or received again after the connection was last idle
+	private volatile long lastActivity = timeOfCreation;
+	private volatile long activeSince = timeOfCreation;
+	private volatile long lastTransmitted;
 
 	private BiFunction<UUID, OptionalInt, MessageBuilder> messageBuilderFactory;
 	private Runnable disconnectionHandler = () -> {};
 
 	private volatile boolean disconnected = false;
 
+	private ChildStreamMetrics metrics;
+	private TokenBucketPacer pacer;
+
 	private PrintStream err;
 
 	public BasicChildStream(StreamFamily family, UUID connectionID, InetSocketAddress sendTo,
@@ -56,79 +186,377 @@ public class BasicChildStream implements ChildStream {
 		this.sendTo = sendTo;
 		this.messageBuilderFactory = messageBuilderFactory;
 		this.err = err;
+		this.unconfirmed = new RetransmissionBuffer(family.getArena(),
+				DatagramStreamConfig.MAX_UNCONFIRMED_PAYLOADS + 1);
+		this.metrics = new ChildStreamMetrics(family.getMetrics(), connectionID.toString(), sendTo.toString(), () -> {
+			synchronized (unconfirmed) {
+				return unconfirmed.size();
+			}
+		}, () -> {
+			synchronized (partiallyReceived) {
+				return partiallyReceived.size();
+			}
+		}, () -> {
+			synchronized (receivedLock) {
+				return receivedOrdered.size() + receivedUnordered.size();
+			}
+		}, bufferedBytes::get, () -> System.currentTimeMillis() - Math.max(lastHeartbeat, timeOfCreation));
+		if (family.isChildMBeansEnabled())
+			MBeanRegistration.register(metrics, metrics.getObjectName(), err);
+		this.pacer = new TokenBucketPacer(family.getScheduler(), this::transmit,
+				DatagramStreamConfig.INITIAL_PACING_RATE, err);
 	}
 
 	public BasicChildStream(StreamFamily family, UUID connectionID, InetSocketAddress sendTo, PrintStream err) {
-		this.family = family;
-		this.connectionID = connectionID;
-		this.sendTo = sendTo;
-		this.messageBuilderFactory = BasicMessageBuilder::new;
-		this.err = err;
+		this(family, connectionID, sendTo, BasicMessageBuilder::new, err);
 	}
 
 	@Override
 	public void send(byte[] data) throws DisconnectionException {
-		sendMessage(data, OptionalInt.empty());
+		sendMessage(new OutgoingMessage(data, false, true, 0));
 	}
 
 	@Override
 	public void sendOrdered(byte[] data) throws DisconnectionException {
-		sendMessage(data, OptionalInt.of(nextSendOrdinal.getAndIncrement()));
+		sendMessage(new OutgoingMessage(data, true, true, 0));
+	}
+
+	@Override
+	public void send(PreparedMessage message) throws DisconnectionException {
+		sendMessage(new OutgoingMessage(message));
+	}
+
+	@Override
+	public void send(byte[] data, long deadline) throws DisconnectionException {
+		if (deadline <= 0)
+			throw new IllegalArgumentException("invalid deadline " + deadline);
+		sendMessage(new OutgoingMessage(data, false, true, deadline));
+	}
+
+	@Override
+	public void sendUnreliable(byte[] data) throws DisconnectionException {
+		sendMessage(new OutgoingMessage(data, false, false, 0));
 	}
 
-	private void sendMessage(byte[] message, OptionalInt ordinal) throws DisconnectionException {
+	@Override
+	public void sendKeyed(int key, byte[] data) throws DisconnectionException {
+		sendMessage(new OutgoingMessage(data, key));
+	}
+
+	/**
+	 * Queue the message for the writer. Only blocks if the writer has fallen
+	 * too far behind, as when the other side's window is closed.
+	 */
+	private void sendMessage(OutgoingMessage message) throws DisconnectionException {
+		if (disconnected)
+			throw new DisconnectionException();
+		int length = message.length;
+		if (length > DatagramStreamConfig.RECEIVE_BUFFER_SIZE)
+			throw new IllegalArgumentException("message of " + length + " bytes exceeds receive buffer");
+		if (queuedBytes.get() + length > DatagramStreamConfig.SEND_QUEUE_SIZE)
+			awaitQueueSpace(length);
+		queuedBytes.addAndGet(length);
+		if (message.keyed)
+			message.version = keyVersions.merge(message.key, 1, Integer::sum);
+		sendQueue.add(message);
+		scheduleWriter();
+	}
+
+	/**
+	 * Wait until the message fits in the send queue, or the queue is empty, so
+	 * that a message larger than the queue is still sent. If interrupted, stop
+	 * waiting so that the message is queued regardless, as a send is never
+	 * silently dropped, and restore the interrupt status for the caller.
+	 */
+	private void awaitQueueSpace(int length) throws DisconnectionException {
+		synchronized (sendQueue) {
+			waitingProducers++;
+			try {
+				while (!disconnected && queuedBytes.get() > 0
+						&& queuedBytes.get() + length > DatagramStreamConfig.SEND_QUEUE_SIZE)
+					sendQueue.wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				waitingProducers--;
+			}
+		}
 		if (disconnected)
 			throw new DisconnectionException();
-		UUID messageID = new UUID();
-		byte[][] payloads = split(message, DatagramStreamConfig.MAX_PAYLOAD_SIZE);
-		for (int i = 0; i < payloads.length; i++) {
-			sendPayload(payloads[i], messageID, ordinal, i, payloads.length);
+	}
+
+	private void scheduleWriter() {
+		if (writerScheduled.compareAndSet(false, true)) {
+			try {
+				family.getScheduler().execute(this::write);
+			} catch (RejectedExecutionException e) {
+				// The family has closed
+				writerScheduled.set(false);
+			}
 		}
 	}
 
-	private void sendPayload(byte[] payload, UUID messageID, OptionalInt ordinal, int partNumber, int totalParts)
-			throws DisconnectionException {
+	/**
+	 * Frame queued messages and hand their payloads to the pacer until the
+	 * queue is empty, or until a payload does not fit in the window, in which
+	 * case the writer is scheduled again once it may. Only one invocation runs
+	 * at a time.
+	 */
+	private void write() {
+		boolean blocked = false;
 		try {
-			synchronized (unconfirmed) {
-				while (unconfirmed.size() > DatagramStreamConfig.MAX_UNCONFIRMED_PAYLOADS)
-					unconfirmed.wait();
+			while (!disconnected) {
+				if (writing == null && !nextMessage())
+					break;
+				if (!writePayload()) {
+					blocked = true;
+					break;
+				}
 			}
-		} catch (InterruptedException e) {
-			err.println("Interrupted while waiting for unconfirmed payloads to pass below threshhold");
+		} finally {
+			writerBlocked = blocked;
+			writerScheduled.set(false);
+		}
+		// Messages may have been queued, or the window opened, after they were
+		// checked for but before another invocation could be scheduled
+		if (!disconnected && (blocked ? windowAllows(blockedPayloadSize) : !sendQueue.isEmpty()))
+			scheduleWriter();
+	}
+
+	/**
+	 * Begin writing the next queued message, assigning it an ordinal if it is
+	 * ordered, and skipping messages whose deadlines have passed or whose keys
+	 * have newer versions queued.
+	 * 
+	 * @return false if there are none.
+	 */
+	private boolean nextMessage() {
+		while (true) {
+			writing = sendQueue.poll();
+			if (writing == null)
+				return false;
+			int payloads = (writing.length + DatagramStreamConfig.MAX_PAYLOAD_SIZE - 1)
+					/ DatagramStreamConfig.MAX_PAYLOAD_SIZE;
+			if (writing.deadline != 0 && System.currentTimeMillis() > writing.deadline)
+				metrics.recordExpiredPayloads(payloads);
+			else if (isSuperseded(writing))
+				metrics.recordSupersededPayloads(payloads);
+			else
+				break;
+			finishMessage();
 		}
+		writingMessageID = new UUID();
+		writingOrdinal = writing.ordered ? OptionalInt.of(nextSendOrdinal++) : OptionalInt.empty();
+		writingPayloads = writing.payloads != null ? writing.payloads
+				: split(writing.message, DatagramStreamConfig.MAX_PAYLOAD_SIZE);
+		writingPart = 0;
+		return true;
+	}
 
-		UUID payloadID = new UUID();
+	/**
+	 * Send the next payload of the message being written, if it fits in both
+	 * the congestion window and the credit advertised by the other side, or if
+	 * it is unreliable.
+	 * 
+	 * @return whether it did, or the rest of the message expired or was
+	 *         superseded.
+	 */
+	private boolean writePayload() {
+		if (!writing.reliable)
+			return writeUnreliablePayload();
+		if (isSuperseded(writing)) {
+			metrics.recordSupersededPayloads(writingPayloads.length - writingPart);
+			finishMessage();
+			return true;
+		}
+		long lifetime = 0;
+		if (writing.deadline != 0) {
+			lifetime = writing.deadline - System.currentTimeMillis();
+			if (lifetime < 0) {
+				metrics.recordExpiredPayloads(writingPayloads.length - writingPart);
+				finishMessage();
+				return true;
+			}
+		}
+		byte[] payload = writingPayloads[writingPart];
 		ByteArrayOutputStream baos = new ByteArrayOutputStream();
 		try {
-			if (ordinal.isPresent()) {
+			if (writing.deadline != 0) {
+				baos.write(DatagramStreamConfig.EXPIRING_PAYLOAD);
+				connectionID.write(baos);
+			} else if (writing.keyed) {
+				baos.write(DatagramStreamConfig.KEYED_PAYLOAD);
+				connectionID.write(baos);
+			} else if (writingOrdinal.isPresent()) {
 				baos.write(DatagramStreamConfig.ORDERED_PAYLOAD);
 				connectionID.write(baos);
 			} else {
 				baos.write(DatagramStreamConfig.PAYLOAD);
 				connectionID.write(baos);
 			}
-			payloadID.write(baos);
-			messageID.write(baos);
-			if (ordinal.isPresent())
-				baos.write(intToBytes(ordinal.getAsInt()));
-			baos.write(intToBytes(partNumber));
-			baos.write(intToBytes(totalParts));
+			// The payload ID is filled in once it is assigned
+			baos.write(intToBytes(0));
+			writingMessageID.write(baos);
+			if (writing.deadline != 0)
+				baos.write(intToBytes((int) Math.min(Integer.MAX_VALUE, lifetime)));
+			if (writing.keyed) {
+				baos.write(intToBytes(writing.key));
+				baos.write(intToBytes(writing.version));
+			}
+			if (writingOrdinal.isPresent())
+				baos.write(intToBytes(writingOrdinal.getAsInt()));
+			baos.write(intToBytes(writingPart));
+			baos.write(intToBytes(writingPayloads.length));
 			baos.write(shortToBytes((short) payload.length));
 			baos.write(payload);
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
+		byte[] transmission = baos.toByteArray();
 
+		int payloadID;
+		int superseded = 0;
 		synchronized (unconfirmed) {
-			unconfirmed.add(new UnconfirmedPayload(payloadID, baos.toByteArray()));
+			if (disconnected || !windowAllows(payload.length)) {
+				blockedPayloadSize = payload.length;
+				return false;
+			}
+			payloadID = unconfirmed.nextPayloadID();
+			ByteBuffer.wrap(transmission).putInt(PAYLOAD_ID_OFFSET, payloadID);
+			unconfirmed.add(transmission, payload.length, writing.deadline);
+			if (writing.keyed)
+				superseded = recordWritten(payloadID);
 		}
+		if (superseded > 0)
+			metrics.recordSupersededPayloads(superseded);
+		recordActivity();
+		pacer.send(transmission, () -> markSent(payloadID));
+
+		if (++writingPart == writingPayloads.length)
+			finishMessage();
+		return true;
+	}
 
+	/**
+	 * Send the next payload of the unreliable message being written, which is
+	 * paced but not held to the window.
+	 */
+	private boolean writeUnreliablePayload() {
+		byte[] payload = writingPayloads[writingPart];
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
 		try {
-			family.getUDPWrapper().send(baos.toByteArray(), sendTo);
+			baos.write(DatagramStreamConfig.UNRELIABLE_PAYLOAD);
+			connectionID.write(baos);
+			writingMessageID.write(baos);
+			baos.write(intToBytes(writingPart));
+			baos.write(intToBytes(writingPayloads.length));
+			baos.write(shortToBytes((short) payload.length));
+			baos.write(payload);
 		} catch (IOException e) {
-			err.println("IOException on initial attempt of transmission");
-			e.printStackTrace();
+			throw new RuntimeException(e);
 		}
+		recordActivity();
+		pacer.send(baos.toByteArray(), null);
+
+		if (++writingPart == writingPayloads.length)
+			finishMessage();
+		return true;
+	}
+
+	/**
+	 * @return whether the message is keyed, and a newer version of its key has
+	 *         been queued.
+	 */
+	private boolean isSuperseded(OutgoingMessage message) {
+		return message.keyed && keyVersions.get(message.key) - message.version > 0;
+	}
+
+	/**
+	 * Record that a payload of the keyed message being written was added to
+	 * unconfirmed. If it is the first payload of the message, stop
+	 * retransmitting the payloads of the older version of its key that were
+	 * written. Must be invoked while synchronized on unconfirmed.
+	 * 
+	 * @return the number of unconfirmed payloads superseded.
+	 */
+	private int recordWritten(int payloadID) {
+		WrittenVersion written = writtenVersions.get(writing.key);
+		if (written != null && written.version == writing.version) {
+			written.payloads++;
+			return 0;
+		}
+		int superseded = 0;
+		if (written != null) {
+			for (int i = 0; i < written.payloads; i++) {
+				if (unconfirmed.contains(written.firstPayloadID + i)) {
+					unconfirmed.remove(written.firstPayloadID + i);
+					superseded++;
+				}
+			}
+		}
+		writtenVersions.put(writing.key, new WrittenVersion(writing.version, payloadID));
+		return superseded;
+	}
+
+	/**
+	 * Stop writing the current message, making room in the send queue.
+	 */
+	private void finishMessage() {
+		queuedBytes.addAndGet(-writing.length);
+		writing = null;
+		if (waitingProducers > 0) {
+			synchronized (sendQueue) {
+				sendQueue.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * @return whether a payload of the given size fits in both the congestion
+	 *         window and the credit advertised by the other side. If nothing is
+	 *         in flight, it does regardless, so that a zero credit is probed
+	 *         rather than deadlocked on.
+	 */
+	private boolean windowAllows(int payloadSize) {
+		synchronized (unconfirmed) {
+			return unconfirmed.size() <= DatagramStreamConfig.MAX_UNCONFIRMED_PAYLOADS && unconfirmed.hasRoom()
+					&& (unconfirmed.getBytes() == 0 || unconfirmed.getBytes() + payloadSize <= remoteCredit);
+		}
+	}
+
+	private void markSent(int payloadID) {
+		synchronized (unconfirmed) {
+			unconfirmed.markSent(payloadID, System.currentTimeMillis());
+		}
+	}
+
+	/**
+	 * Send a datagram to the other side immediately, counting it in the
+	 * metrics. Payloads should go through the pacer instead.
+	 */
+	private void transmit(byte[] transmission) throws IOException {
+		family.getUDPWrapper().send(transmission, sendTo);
+		lastTransmitted = System.currentTimeMillis();
+		metrics.recordSent(transmission.length);
+	}
+
+	/**
+	 * Record that a payload was sent or received, so that the connection is
+	 * not idle.
+	 */
+	private void recordActivity() {
+		long time = System.currentTimeMillis();
+		if (time - lastActivity > DatagramStreamConfig.IDLE_TIMEOUT)
+			activeSince = time;
+		lastActivity = time;
+	}
+
+	private boolean isIdle(long time) {
+		return time - lastActivity > DatagramStreamConfig.IDLE_TIMEOUT;
+	}
+
+	private int heartbeatInterval(long time) {
+		return isIdle(time) ? DatagramStreamConfig.IDLE_HEARTBEAT_INTERVAL : DatagramStreamConfig.HEARTBEAT_INTERVAL;
 	}
 
 	@Override
@@ -140,15 +568,34 @@ public class BasicChildStream implements ChildStream {
 				while (receivedOrdered.isEmpty() && receivedUnordered.isEmpty()) {
 					receivedLock.wait();
 				}
-				if (receivedOrdered.size() > 0 && receivedUnordered.size() > 0)
-					if (ThreadLocalRandom.current().nextBoolean())
-						return receivedOrdered.remove().getMessage();
-					else
-						return receivedUnordered.remove().getMessage();
-				else if (receivedOrdered.size() > 0)
-					return receivedOrdered.remove().getMessage();
-				else
-					return receivedUnordered.remove().getMessage();
+				return pollReceived();
+			}
+		} catch (InterruptedException e) {
+			if (disconnected)
+				throw new DisconnectionException();
+			else
+				throw new RuntimeException("Interrupted while receiving, but not disconnected.");
+		}
+	}
+
+	@Override
+	public int drainTo(Collection<? super byte[]> collection, int maxMessages) throws DisconnectionException {
+		if (maxMessages <= 0)
+			return 0;
+		if (disconnected)
+			throw new DisconnectionException();
+		try {
+			synchronized (receivedLock) {
+				while (receivedOrdered.isEmpty() && receivedUnordered.isEmpty()) {
+					receivedLock.wait();
+				}
+				int drained = 0;
+				byte[] message;
+				while (drained < maxMessages && (message = pollReceived()) != null) {
+					collection.add(message);
+					drained++;
+				}
+				return drained;
 			}
 		} catch (InterruptedException e) {
 			if (disconnected)
@@ -158,6 +605,83 @@ public class BasicChildStream implements ChildStream {
 		}
 	}
 
+	@Override
+	public void onMessage(Consumer<byte[]> handler, Executor executor) {
+		synchronized (receivedLock) {
+			this.messageHandler = handler;
+			this.messageExecutor = executor;
+			scheduleDispatch();
+		}
+	}
+
+	/**
+	 * Remove the next received message, or return null if there are none.
+	 * Must be invoked while synchronized on receivedLock.
+	 */
+	private byte[] pollReceived() {
+		ReceivedMessage message;
+		if (receivedOrdered.size() > 0 && receivedUnordered.size() > 0)
+			if (ThreadLocalRandom.current().nextBoolean())
+				message = receivedOrdered.remove();
+			else
+				message = receivedUnordered.remove();
+		else if (receivedOrdered.size() > 0)
+			message = receivedOrdered.remove();
+		else if (receivedUnordered.size() > 0)
+			message = receivedUnordered.remove();
+		else
+			return null;
+		bufferedBytes.addAndGet(-message.getMessage().length);
+		// Reopen the window promptly if the other side was last told it was
+		// mostly closed, rather than waiting for the next heartbeat
+		if (advertisedCredit < DatagramStreamConfig.RECEIVE_BUFFER_SIZE / 2
+				&& availableCredit() >= DatagramStreamConfig.RECEIVE_BUFFER_SIZE / 2)
+			sendWindowUpdate();
+		return message.getMessage();
+	}
+
+	/**
+	 * If there is a message handler, no dispatch is in progress, and there are
+	 * received messages, submit a dispatch to the message executor. Must be
+	 * invoked while synchronized on receivedLock.
+	 */
+	private void scheduleDispatch() {
+		if (messageHandler == null || dispatching || (receivedOrdered.isEmpty() && receivedUnordered.isEmpty()))
+			return;
+		dispatching = true;
+		try {
+			messageExecutor.execute(this::dispatch);
+		} catch (RejectedExecutionException e) {
+			dispatching = false;
+			err.println("Message executor rejected dispatch for " + this);
+		}
+	}
+
+	/**
+	 * Deliver received messages to the message handler until there are none
+	 * left.
+	 */
+	private void dispatch() {
+		while (true) {
+			Consumer<byte[]> handler;
+			byte[] message;
+			synchronized (receivedLock) {
+				handler = messageHandler;
+				message = pollReceived();
+				if (message == null) {
+					dispatching = false;
+					return;
+				}
+			}
+			try {
+				handler.accept(message);
+			} catch (RuntimeException e) {
+				err.println("Exception in message handler of " + this);
+				e.printStackTrace(err);
+			}
+		}
+	}
+
 	@Override
 	public void disconnect() {
 		disconnected = true;
@@ -165,59 +689,112 @@ public class BasicChildStream implements ChildStream {
 			ByteArrayOutputStream baos = new ByteArrayOutputStream();
 			baos.write(DatagramStreamConfig.DISCONNECT);
 			connectionID.write(baos);
-			family.getUDPWrapper().send(baos.toByteArray(), sendTo);
+			transmit(baos.toByteArray());
 		} catch (IOException e) {
 			synchronized (err) {
 				err.println("IOException while sending disconnect message");
 				e.printStackTrace();
 			}
 		}
-		synchronized (family.getChildren()) {
-			family.getChildren().remove(this);
-		}
+		family.removeChild(this);
 		synchronized (receivedLock) {
 			receivedLock.notifyAll();
 		}
+		releaseUnconfirmed();
+		pacer.clear();
+		MBeanRegistration.unregister(metrics.getObjectName(), err);
 		disconnectionHandler.run();
 	}
 
 	@Override
 	public void receiveDisconnect() {
 		disconnected = true;
-		synchronized (family.getChildren()) {
-			family.getChildren().remove(this);
-		}
+		family.removeChild(this);
+		releaseUnconfirmed();
+		pacer.clear();
+		MBeanRegistration.unregister(metrics.getObjectName(), err);
 		disconnectionHandler.run();
 	}
 
+	/**
+	 * Return the unconfirmed transmissions' memory to the arena, keeping heap
+	 * copies for getUnconfirmed(), discard unwritten messages, and wake up any
+	 * waiting senders.
+	 */
+	private void releaseUnconfirmed() {
+		synchronized (unconfirmed) {
+			if (unconfirmedAtDisconnection == null) {
+				unconfirmedAtDisconnection = unconfirmed.getTransmissions();
+				unconfirmed.clear();
+			}
+		}
+		sendQueue.clear();
+		synchronized (sendQueue) {
+			sendQueue.notifyAll();
+		}
+	}
+
 	@Override
 	public void receivePayload(ReceivedPayload payload) {
-		try {
-			ByteArrayOutputStream baos = new ByteArrayOutputStream();
-			baos.write(DatagramStreamConfig.CONFIRM);
-			connectionID.write(baos);
-			payload.getPayloadID().write(baos);
-			family.getUDPWrapper().send(baos.toByteArray(), sendTo);
-		} catch (IOException e) {
-			err.println("IOException while confirming payload");
-			e.printStackTrace();
+		// A payload shows that the other side is reachable as well as a
+		// heartbeat does
+		receiveHeartbeat();
+		recordActivity();
+		if (payload.isReliable()) {
+			synchronized (receivedIDs) {
+				receivedIDs.receive(payload.getPayloadID(), System.currentTimeMillis());
+			}
 		}
-
+		int payloadSize = payload.getPayload().length;
 		synchronized (partiallyReceived) {
+			if (recentlyCompleted.containsKey(payload.getMessageID())) {
+				// A retransmission of an already completed or discarded
+				// message, the confirmation of which must have been lost
+				metrics.recordDuplicatePayload();
+				if (payload.isReliable())
+					sendConfirmation(payload.getPayloadID());
+				return;
+			}
+			if (payload.isKeyed() && !admitKeyed(payload)) {
+				// The newer version of the key makes this one useless, but it
+				// is confirmed so that it is not retransmitted
+				sendConfirmation(payload.getPayloadID());
+				return;
+			}
 			MessageBuilder builder;
 
 			Optional<MessageBuilder> existingBuilder = partiallyReceived.stream()
 					.filter(b -> b.getMessageID().equals(payload.getMessageID())).findAny();
 			if (existingBuilder.isPresent()) {
+				// Fragments of a message already begun are always admitted, even
+				// past the buffer size, since holding back the rest of messages
+				// that together fill the buffer would leave none of them able
+				// to complete and drain it
 				builder = existingBuilder.get();
 			} else {
+				if (bufferedBytes.get() + payloadSize > DatagramStreamConfig.RECEIVE_BUFFER_SIZE) {
+					// Drop without confirming, so that the other side will
+					// retransmit once the application has drained the buffer
+					metrics.recordDroppedPayload();
+					return;
+				}
 				builder = messageBuilderFactory.apply(payload.getMessageID(), payload.getOrdinal());
 				partiallyReceived.add(builder);
+				if (payload.getLifetime() >= 0)
+					partialDeadlines.put(payload.getMessageID(),
+							System.currentTimeMillis() + payload.getLifetime());
 			}
 
-			builder.add(payload);
+			if (builder.add(payload))
+				bufferedBytes.addAndGet(payloadSize);
+			else
+				metrics.recordDuplicatePayload();
 			if (builder.isComplete()) {
 				partiallyReceived.remove(builder);
+				partialDeadlines.remove(builder.getMessageID());
+				if (payload.isKeyed())
+					partialKeyed.remove(payload.getKey(), builder.getMessageID());
+				rememberCompleted(builder.getMessageID());
 				ReceivedMessage message = builder.toReceived();
 				synchronized (receivedLock) {
 					if (message.getOrdinal().isPresent())
@@ -225,17 +802,212 @@ public class BasicChildStream implements ChildStream {
 					else
 						receivedUnordered.add(message);
 					receivedLock.notifyAll();
+					scheduleDispatch();
+				}
+			}
+		}
+		if (payload.isReliable())
+			sendConfirmation(payload.getPayloadID());
+	}
+
+	/**
+	 * Track the newest version of the keyed payload's key, discarding the
+	 * partially received message of an older version if this payload is of a
+	 * newer one. Must be invoked while synchronized on partiallyReceived.
+	 * 
+	 * @return false if the payload is of an older version than one already
+	 *         received, in which case its message is remembered as completed.
+	 */
+	private boolean admitKeyed(ReceivedPayload payload) {
+		Integer newest = newestKeyVersions.get(payload.getKey());
+		if (newest != null && payload.getVersion() - newest < 0) {
+			rememberCompleted(payload.getMessageID());
+			metrics.recordSupersededMessage();
+			return false;
+		}
+		if (newest == null || payload.getVersion() != newest) {
+			newestKeyVersions.put(payload.getKey(), payload.getVersion());
+			UUID older = partialKeyed.put(payload.getKey(), payload.getMessageID());
+			if (older != null && discardPartial(older))
+				metrics.recordSupersededMessage();
+		}
+		return true;
+	}
+
+	/**
+	 * Remember that a message was completed, so that late retransmissions of
+	 * its payloads are not mistaken for a new message, and forget messages
+	 * completed long enough ago that no more retransmissions are expected.
+	 * Must be invoked while synchronized on partiallyReceived.
+	 */
+	private void rememberCompleted(UUID messageID) {
+		long time = System.currentTimeMillis();
+		recentlyCompleted.put(messageID, time);
+		Iterator<Long> iter = recentlyCompleted.values().iterator();
+		while (iter.hasNext() && time - iter.next() > DatagramStreamConfig.COMPLETED_MESSAGE_MEMORY)
+			iter.remove();
+	}
+
+	/**
+	 * @return the number of payload bytes that can currently be buffered.
+	 */
+	private int availableCredit() {
+		return Math.max(0, DatagramStreamConfig.RECEIVE_BUFFER_SIZE - bufferedBytes.get());
+	}
+
+	private void sendConfirmation(int payloadID) {
+		try {
+			int credit = availableCredit();
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			baos.write(DatagramStreamConfig.CONFIRM);
+			connectionID.write(baos);
+			baos.write(intToBytes(payloadID));
+			baos.write(intToBytes(credit));
+			transmit(baos.toByteArray());
+			advertisedCredit = credit;
+		} catch (IOException e) {
+			err.println("IOException while confirming payload");
+			e.printStackTrace();
+		}
+	}
+
+	private void sendWindowUpdate() {
+		try {
+			int credit = availableCredit();
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			baos.write(DatagramStreamConfig.WINDOW_UPDATE);
+			connectionID.write(baos);
+			baos.write(intToBytes(credit));
+			transmit(baos.toByteArray());
+			advertisedCredit = credit;
+		} catch (IOException e) {
+			err.println("IOException while sending window update");
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void sendNacks() {
+		// Reports would not reach an unreachable connection, and everything
+		// unconfirmed is retransmitted on resuming anyway
+		if (suspendedSince >= 0)
+			return;
+		long time = System.currentTimeMillis();
+		// A gap still missing a round trip after it was reported had its
+		// report or retransmission lost
+		long roundTripMillis = metrics.getSmoothedRoundTripNanos() / 1_000_000;
+		long repeatDelay = roundTripMillis > 0 ? Math.max(DatagramStreamConfig.NACK_DELAY, roundTripMillis)
+				: DatagramStreamConfig.NACK_REPEAT_DELAY;
+		while (true) {
+			int[] missing;
+			synchronized (receivedIDs) {
+				missing = receivedIDs.reportMissing(time, DatagramStreamConfig.NACK_DELAY, repeatDelay,
+						DatagramStreamConfig.MAX_NACKED_PAYLOADS);
+			}
+			if (missing.length == 0)
+				return;
+			sendNack(missing);
+		}
+	}
+
+	private void sendNack(int[] payloadIDs) {
+		try {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			baos.write(DatagramStreamConfig.NACK);
+			connectionID.write(baos);
+			baos.write(shortToBytes((short) payloadIDs.length));
+			for (int payloadID : payloadIDs)
+				baos.write(intToBytes(payloadID));
+			transmit(baos.toByteArray());
+		} catch (IOException e) {
+			err.println("IOException while sending nack");
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void receiveNack(int[] payloadIDs) {
+		receiveHeartbeat();
+		boolean abandoned = false;
+		synchronized (unconfirmed) {
+			for (int payloadID : payloadIDs) {
+				// Payloads that are confirmed, expired, or superseded since
+				// are not retransmitted, nor are those waiting in the pacer
+				if (unconfirmed.contains(payloadID) && !unconfirmed.isQueued(payloadID)) {
+					retransmit(payloadID);
+					metrics.recordFastRetransmission();
+				} else if (payloadID - unconfirmed.oldestPayloadID() < 0) {
+					abandoned = true;
 				}
 			}
 		}
+		// The heartbeat tells the other side to stop reporting the payloads
+		// that will never be retransmitted
+		if (abandoned)
+			transmitHeartbeat();
+	}
+
+	@Override
+	public void receivePayloadConfirmation(int payloadID) {
+		receiveHeartbeat();
+		synchronized (unconfirmed) {
+			confirm(payloadID);
+			updatePacingRate();
+		}
+		if (writerBlocked)
+			scheduleWriter();
+	}
+
+	@Override
+	public void receiveConfirmation(int payloadID, int credit) {
+		receiveHeartbeat();
+		synchronized (unconfirmed) {
+			confirm(payloadID);
+			remoteCredit = credit;
+			updatePacingRate();
+		}
+		if (writerBlocked)
+			scheduleWriter();
+	}
+
+	/**
+	 * Stop retransmitting the payload, if it is still unconfirmed. Must be
+	 * invoked while synchronized on unconfirmed.
+	 */
+	private void confirm(int payloadID) {
+		if (unconfirmed.contains(payloadID)) {
+			// Per Karn's algorithm, retransmitted payloads give ambiguous
+			// round trip samples
+			if (unconfirmed.isSent(payloadID) && !unconfirmed.isRetransmitted(payloadID))
+				metrics.recordRoundTrip(System.nanoTime() - unconfirmed.getFirstSentNanos(payloadID));
+			unconfirmed.remove(payloadID);
+		}
 	}
 
 	@Override
-	public void receivePayloadConfirmation(UUID payloadID) {
+	public void receiveWindowUpdate(int credit) {
+		receiveHeartbeat();
 		synchronized (unconfirmed) {
-			unconfirmed.removeIf(u -> u.getPayloadID().equals(payloadID));
-			unconfirmed.notifyAll();
+			remoteCredit = credit;
+			updatePacingRate();
 		}
+		if (writerBlocked)
+			scheduleWriter();
+	}
+
+	/**
+	 * Pace at a multiple of the window per round trip, which is the rate the
+	 * window allows if transmissions are spread evenly. Must be invoked while
+	 * synchronized on unconfirmed.
+	 */
+	private void updatePacingRate() {
+		long roundTripNanos = metrics.getSmoothedRoundTripNanos();
+		if (roundTripNanos <= 0)
+			return;
+		long window = Math.min(remoteCredit,
+				(long) DatagramStreamConfig.MAX_UNCONFIRMED_PAYLOADS * DatagramStreamConfig.MAX_PAYLOAD_SIZE);
+		double rate = DatagramStreamConfig.PACING_GAIN * window * 1e9 / roundTripNanos;
+		pacer.setRate(Math.max(DatagramStreamConfig.MIN_PACING_RATE, rate));
 	}
 
 	@Override
@@ -246,21 +1018,158 @@ public class BasicChildStream implements ChildStream {
 	@Override
 	public void receiveHeartbeat() {
 		lastHeartbeat = System.currentTimeMillis();
+		if (suspendedSince >= 0)
+			resume();
+	}
+
+	@Override
+	public void receiveHeartbeat(int oldestUnconfirmed) {
+		receiveHeartbeat();
+		synchronized (receivedIDs) {
+			receivedIDs.forgetBefore(oldestUnconfirmed);
+		}
+	}
+
+	@Override
+	public void suspend() {
+		if (suspendedSince < 0)
+			suspendedSince = System.currentTimeMillis();
+	}
+
+	@Override
+	public boolean isSuspended() {
+		return suspendedSince >= 0;
+	}
+
+	@Override
+	public long getSuspendedSince() {
+		return suspendedSince;
+	}
+
+	@Override
+	public void setResumptionToken(UUID token) {
+		this.resumptionToken = token;
+	}
+
+	@Override
+	public boolean receiveResume(UUID token, InetSocketAddress from) {
+		if (resumptionToken == null || !resumptionToken.equals(token))
+			return false;
+		sendTo = from;
+		lastHeartbeat = System.currentTimeMillis();
+		if (suspendedSince >= 0)
+			resume();
+		else
+			// Resume the other side, which is likely suspended too
+			transmitHeartbeat();
+		return true;
+	}
+
+	/**
+	 * Stop being suspended, and immediately retransmit everything that went
+	 * unconfirmed while the connection was down.
+	 */
+	private void resume() {
+		suspendedSince = -1;
+		// Resume the other side, which may be suspended too, before the
+		// retransmissions reach it
+		transmitHeartbeat();
+		synchronized (unconfirmed) {
+			unconfirmed.forEach(payloadID -> {
+				if (!unconfirmed.isQueued(payloadID))
+					retransmit(payloadID);
+			});
+		}
+	}
+
+	/**
+	 * Queue a payload for retransmission through the pacer. Must be invoked
+	 * while synchronized on unconfirmed.
+	 */
+	private void retransmit(int payloadID) {
+		byte[] transmission = unconfirmed.getTransmission(payloadID);
+		long deadline = unconfirmed.getDeadline(payloadID);
+		if (deadline != 0)
+			// Tell the receiver how much of the lifetime remains
+			ByteBuffer.wrap(transmission).putInt(LIFETIME_OFFSET,
+					(int) Math.max(0, Math.min(Integer.MAX_VALUE, deadline - System.currentTimeMillis())));
+		unconfirmed.markQueued(payloadID);
+		recordActivity();
+		pacer.send(transmission, () -> markSent(payloadID));
+		metrics.recordRetransmission();
 	}
 
 	@Override
 	public void sendHeartbeat() {
+		if (suspendedSince >= 0) {
+			sendResume();
+			return;
+		}
+		// Repeat the credit if it was last advertised as reduced, in case the
+		// update that reopened it was lost, which serves as a heartbeat too
+		if (advertisedCredit < DatagramStreamConfig.RECEIVE_BUFFER_SIZE)
+			sendWindowUpdate();
+		long time = System.currentTimeMillis();
+		if (time - lastTransmitted >= heartbeatInterval(time))
+			transmitHeartbeat();
+	}
+
+	private void transmitHeartbeat() {
+		int oldestUnconfirmed;
+		synchronized (unconfirmed) {
+			oldestUnconfirmed = unconfirmed.oldestPayloadID();
+		}
 		try {
 			ByteArrayOutputStream baos = new ByteArrayOutputStream();
 			baos.write(DatagramStreamConfig.HEARTBEAT);
 			connectionID.write(baos);
-			family.getUDPWrapper().send(baos.toByteArray(), sendTo);
+			baos.write(intToBytes(oldestUnconfirmed));
+			transmit(baos.toByteArray());
 		} catch (IOException e) {
 			err.println("IOException while sending heartbeat");
 			e.printStackTrace();
 		}
 	}
 
+	@Override
+	public boolean isUnresponsive(long time) {
+		// The other side may have been sending heartbeats at the idle interval
+		// until payloads began again
+		return time - Math.max(lastHeartbeat, activeSince) > heartbeatInterval(time) * 3;
+	}
+
+	@Override
+	public void trimIdle(long time) {
+		if (!isIdle(time))
+			return;
+		synchronized (unconfirmed) {
+			unconfirmed.trim();
+		}
+		synchronized (receivedIDs) {
+			receivedIDs.trim();
+		}
+		synchronized (partiallyReceived) {
+			Iterator<Long> iter = recentlyCompleted.values().iterator();
+			while (iter.hasNext() && time - iter.next() > DatagramStreamConfig.COMPLETED_MESSAGE_MEMORY)
+				iter.remove();
+		}
+	}
+
+	private void sendResume() {
+		if (resumptionToken == null)
+			return;
+		try {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			baos.write(DatagramStreamConfig.RESUME);
+			connectionID.write(baos);
+			resumptionToken.write(baos);
+			transmit(baos.toByteArray());
+		} catch (IOException e) {
+			err.println("IOException while requesting resumption");
+			e.printStackTrace();
+		}
+	}
+
 	@Override
 	public UUID getConnectionID() {
 		return connectionID;
@@ -268,22 +1177,69 @@ public class BasicChildStream implements ChildStream {
 
 	@Override
 	public void retransmitUnconfirmed() {
+		// Retransmitting into an unreachable connection would only congest it
+		// when it returns
+		if (suspendedSince >= 0)
+			return;
 		synchronized (unconfirmed) {
 			long time = System.currentTimeMillis();
-			for (UnconfirmedPayload payload : unconfirmed) {
-				if (time - payload.getLastSentTime() > DatagramStreamConfig.RETRANSMISSION_THRESHHOLD) {
-					try {
-						family.getUDPWrapper().send(payload.getTransmission(), sendTo);
-						payload.setLastSendTime(time);
-					} catch (IOException e) {
-						err.println("IOException while retransmitting");
-						e.printStackTrace();
-					}
+			unconfirmed.forEach(payloadID -> {
+				if (!unconfirmed.isQueued(payloadID)
+						&& time - unconfirmed.getLastSentTime(payloadID) > DatagramStreamConfig.RETRANSMISSION_THRESHHOLD)
+					retransmit(payloadID);
+			});
+		}
+	}
+
+	@Override
+	public void discardExpired() {
+		long time = System.currentTimeMillis();
+		int expired;
+		synchronized (unconfirmed) {
+			expired = unconfirmed.removeExpired(time);
+		}
+		if (expired > 0) {
+			metrics.recordExpiredPayloads(expired);
+			if (writerBlocked)
+				scheduleWriter();
+		}
+		synchronized (partiallyReceived) {
+			if (partialDeadlines.isEmpty())
+				return;
+			Iterator<Map.Entry<UUID, Long>> iter = partialDeadlines.entrySet().iterator();
+			while (iter.hasNext()) {
+				Map.Entry<UUID, Long> entry = iter.next();
+				if (time > entry.getValue()) {
+					iter.remove();
+					if (discardPartial(entry.getKey()))
+						metrics.recordExpiredMessage();
 				}
 			}
 		}
 	}
 
+	/**
+	 * Discard a partially received message, freeing its buffer space, and
+	 * remember it as completed so that its late payloads are ignored. Must be
+	 * invoked while synchronized on partiallyReceived.
+	 * 
+	 * @return whether the message was partially received.
+	 */
+	private boolean discardPartial(UUID messageID) {
+		Iterator<MessageBuilder> iter = partiallyReceived.iterator();
+		while (iter.hasNext()) {
+			MessageBuilder builder = iter.next();
+			if (builder.getMessageID().equals(messageID)) {
+				iter.remove();
+				partialDeadlines.remove(messageID);
+				bufferedBytes.addAndGet(-builder.getSize());
+				rememberCompleted(messageID);
+				return true;
+			}
+		}
+		return false;
+	}
+
 	@Override
 	public InetSocketAddress getRemoteAddress() {
 		return sendTo;
@@ -317,10 +1273,17 @@ public class BasicChildStream implements ChildStream {
 		return disconnected;
 	}
 
+	@Override
+	public ChildStreamMetrics getMetrics() {
+		return metrics;
+	}
+
 	@Override
 	public List<byte[]> getUnconfirmed() {
 		synchronized (unconfirmed) {
-			return unconfirmed.stream().map(UnconfirmedPayload::getTransmission).collect(Collectors.toList());
+			if (unconfirmedAtDisconnection != null)
+				return new ArrayList<>(unconfirmedAtDisconnection);
+			return unconfirmed.getTransmissions();
 		}
 	}
 
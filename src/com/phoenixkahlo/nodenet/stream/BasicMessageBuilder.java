@@ -14,6 +14,7 @@ public class BasicMessageBuilder implements MessageBuilder {
 	private UUID messageID;
 	private OptionalInt ordinal;
 	private SortedSet<ReceivedPayload> parts = new TreeSet<>(Comparator.comparingInt(ReceivedPayload::getPartNumber));
+	private int size = 0;
 
 	public BasicMessageBuilder(UUID messageID, OptionalInt ordinal) {
 		this.messageID = messageID;
@@ -31,8 +32,16 @@ public class BasicMessageBuilder implements MessageBuilder {
 	}
 
 	@Override
-	public void add(ReceivedPayload payload) {
-		parts.add(payload);
+	public boolean add(ReceivedPayload payload) {
+		if (!parts.add(payload))
+			return false;
+		size += payload.getPayload().length;
+		return true;
+	}
+
+	@Override
+	public int getSize() {
+		return size;
 	}
 
 	@Override
@@ -6,8 +6,13 @@ import java.io.PrintStream;
 import java.net.InetSocketAddress;
 import java.net.SocketException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
@@ -19,8 +24,9 @@ import com.phoenixkahlo.util.UUID;
 public class BasicStreamFamily implements StreamFamily {
 
 	private UDPSocketWrapper udpWrapper;
-	// Synchronize usages
-	private List<ChildStream> children = new ArrayList<>();
+	// Keyed by connection ID, so that each received datagram finds its child
+	// without a search
+	private Map<UUID, ChildStream> children = new ConcurrentHashMap<>();
 	private EndableThread receivingThread;
 	private EndableThread heartbeatThread;
 	private EndableThread retransmissionThread;
@@ -31,9 +37,25 @@ public class BasicStreamFamily implements StreamFamily {
 	private Consumer<DatagramStream> receiveHandler;
 	private TriFunction<StreamFamily, UUID, InetSocketAddress, ChildStream> childSocketFactory;
 	
-	private PrintStream err;
+	private StreamFamilyMetrics metrics = new StreamFamilyMetrics(() -> children.size());
+
+	// Runs every child's writer and drains every child's pacer, so the
+	// payloads of all the family's connections are sent to the socket from
+	// this one thread, and the family's aggregate send throughput is limited
+	// to what one thread can pass to the socket. That is acceptable while the
+	// one UDP socket is the bottleneck anyway.
+	private ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "StreamFamily scheduler");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private TransmissionArena arena = new TransmissionArena();
+
+	private PrintStream err = System.err;
 	
 	private volatile boolean disconnected = false;
+	private volatile boolean childMBeansEnabled = false;
 
 	public BasicStreamFamily(UDPSocketWrapper wrapper, EndableThread receivingThread, EndableThread heartbeatThread,
 			EndableThread retransmissionThread,
@@ -43,40 +65,43 @@ public class BasicStreamFamily implements StreamFamily {
 		this.heartbeatThread = heartbeatThread;
 		this.retransmissionThread = retransmissionThread;
 		this.childSocketFactory = childSocketFactory;
+		MBeanRegistration.register(metrics, metrics.getObjectName(), err);
 		disableReceiver();
 		receivingThread.start();
 		heartbeatThread.start();
 		retransmissionThread.start();
 	}
 
-	public BasicStreamFamily(int port, PrintStream err) throws SocketException {
-		this.udpWrapper = new RealUDPSocketWrapper(port);
+	/**
+	 * Create a family communicating through the given wrapper, such as an
+	 * EmulatedUDPSocketWrapper, with the standard helper threads and children.
+	 */
+	public BasicStreamFamily(UDPSocketWrapper wrapper, PrintStream err) {
+		this.udpWrapper = wrapper;
 		receivingThread = new FamilyReceivingThread(this, err);
 		heartbeatThread = new FamilyHeartbeatThread(this);
 		retransmissionThread = new FamilyRetransmissionThread(this);
 		this.childSocketFactory = (family, id, address) -> new BasicChildStream(family, id, address, err);
+		this.err = err;
+		MBeanRegistration.register(metrics, metrics.getObjectName(), err);
 		disableReceiver();
 		receivingThread.start();
 		heartbeatThread.start();
 		retransmissionThread.start();
-		
-		this.err = err;
+	}
+
+	public BasicStreamFamily(int port, PrintStream err) throws SocketException {
+		this(new RealUDPSocketWrapper(port), err);
 	}
 
 	public BasicStreamFamily(PrintStream err) throws SocketException {
-		this.udpWrapper = new RealUDPSocketWrapper();
-		receivingThread = new FamilyReceivingThread(this, err);
-		heartbeatThread = new FamilyHeartbeatThread(this);
-		retransmissionThread = new FamilyRetransmissionThread(this);
-		this.childSocketFactory = (family, id, address) -> new BasicChildStream(family, id, address, err);
-		disableReceiver();
-		receivingThread.start();
-		heartbeatThread.start();
-		retransmissionThread.start();
-		
-		this.err = err;
+		this(new RealUDPSocketWrapper(), err);
 	}
 	
+	public BasicStreamFamily(UDPSocketWrapper wrapper) {
+		this(wrapper, System.err);
+	}
+
 	public BasicStreamFamily(int port) throws SocketException {
 		this(port, System.err);
 	}
@@ -113,7 +138,7 @@ public class BasicStreamFamily implements StreamFamily {
 			ByteArrayOutputStream baos = new ByteArrayOutputStream();
 			baos.write(DatagramStreamConfig.CONNECT);
 			connectionID.write(baos);
-			udpWrapper.send(baos.toByteArray(), address);
+			transmit(baos.toByteArray(), address);
 		} catch (IOException e1) {
 			return Optional.empty();
 		}
@@ -143,8 +168,7 @@ public class BasicStreamFamily implements StreamFamily {
 		
 		ender.interrupt();
 
-		Optional<ChildStream> optional = children.stream().filter(child -> child.getConnectionID().equals(connectionID))
-				.findAny();
+		Optional<ChildStream> optional = getChild(connectionID);
 		if (optional.isPresent())
 			return Optional.of(optional.get());
 		else
@@ -152,7 +176,7 @@ public class BasicStreamFamily implements StreamFamily {
 	}
 
 	@Override
-	public void receiveAccept(UUID connectionID, InetSocketAddress from) {
+	public void receiveAccept(UUID connectionID, UUID resumptionToken, InetSocketAddress from) {
 		synchronized (unconfirmedConnections) {
 			if (!unconfirmedConnections.contains(connectionID)) {
 				err.println("ACCEPT received with connectionID " + connectionID + " from " + from
@@ -160,9 +184,9 @@ public class BasicStreamFamily implements StreamFamily {
 				return;
 			}
 		}
-		synchronized (children) {
-			children.add(childSocketFactory.apply(this, connectionID, from));
-		}
+		ChildStream child = childSocketFactory.apply(this, connectionID, from);
+		child.setResumptionToken(resumptionToken);
+		addChild(child);
 		synchronized (unconfirmedConnections) {
 			unconfirmedConnections.removeIf(n -> n.equals(connectionID));
 			unconfirmedConnections.notifyAll();
@@ -183,9 +207,42 @@ public class BasicStreamFamily implements StreamFamily {
 		}
 	}
 
+	/**
+	 * Send a datagram that belongs to no child, counting it in the metrics.
+	 */
+	private void transmit(byte[] transmission, InetSocketAddress to) throws IOException {
+		udpWrapper.send(transmission, to);
+		metrics.recordSent(transmission.length);
+	}
+
+	@Override
+	public void setChildMBeansEnabled(boolean enabled) {
+		childMBeansEnabled = enabled;
+	}
+
 	@Override
-	public List<ChildStream> getChildren() {
-		return children;
+	public boolean isChildMBeansEnabled() {
+		return childMBeansEnabled;
+	}
+
+	@Override
+	public Collection<ChildStream> getChildren() {
+		return children.values();
+	}
+
+	@Override
+	public Optional<ChildStream> getChild(UUID connectionID) {
+		return Optional.ofNullable(children.get(connectionID));
+	}
+
+	@Override
+	public void addChild(ChildStream child) {
+		children.put(child.getConnectionID(), child);
+	}
+
+	@Override
+	public void removeChild(ChildStream child) {
+		children.remove(child.getConnectionID(), child);
 	}
 
 	@Override
@@ -193,16 +250,30 @@ public class BasicStreamFamily implements StreamFamily {
 		return udpWrapper;
 	}
 
+	@Override
+	public StreamFamilyMetrics getMetrics() {
+		return metrics;
+	}
+
+	@Override
+	public ScheduledExecutorService getScheduler() {
+		return scheduler;
+	}
+
+	@Override
+	public TransmissionArena getArena() {
+		return arena;
+	}
+
 	@Override
 	public void close() {
-		synchronized (children) {
-			for (int i = children.size() - 1; i >= 0; i--) {
-				children.get(i).disconnect();
-			}
-		}
+		for (ChildStream child : new ArrayList<>(children.values()))
+			child.disconnect();
 		receivingThread.end();
 		heartbeatThread.end();
 		retransmissionThread.end();
+		scheduler.shutdownNow();
+		MBeanRegistration.unregister(metrics.getObjectName(), err);
 	}
 
 	@Override
@@ -213,15 +284,16 @@ public class BasicStreamFamily implements StreamFamily {
 		acceptTimer.interrupt();
 
 		if (accept) {
+			UUID resumptionToken = new UUID();
 			ChildStream socket = childSocketFactory.apply(this, connectionID, from);
-			synchronized (children) {
-				children.add(socket);
-			}
+			socket.setResumptionToken(resumptionToken);
+			addChild(socket);
 			try {
 				ByteArrayOutputStream baos = new ByteArrayOutputStream();
 				baos.write(DatagramStreamConfig.ACCEPT);
 				connectionID.write(baos);
-				udpWrapper.send(baos.toByteArray(), from);
+				resumptionToken.write(baos);
+				transmit(baos.toByteArray(), from);
 				//udpWrapper.send(intToBytes(connectionID | DatagramStreamConfig.ACCEPT), from);
 			} catch (IOException e) {
 				err.println("IOException while accepting connection");
@@ -236,7 +308,7 @@ public class BasicStreamFamily implements StreamFamily {
 				ByteArrayOutputStream baos = new ByteArrayOutputStream();
 				baos.write(DatagramStreamConfig.REJECT);
 				connectionID.write(baos);
-				udpWrapper.send(baos.toByteArray(), from);
+				transmit(baos.toByteArray(), from);
 				//udpWrapper.send(intToBytes(connectionID | DatagramStreamConfig.REJECT), from);
 			} catch (IOException e) {
 				err.println("IOException while rejecting connection");
@@ -245,9 +317,32 @@ public class BasicStreamFamily implements StreamFamily {
 		}
 	}
 	
+	@Override
+	public void receiveResume(UUID connectionID, UUID resumptionToken, InetSocketAddress from) {
+		Optional<ChildStream> child = getChild(connectionID);
+		if (child.isPresent()) {
+			if (!child.get().receiveResume(resumptionToken, from)) {
+				err.println("RESUME received for connectionID " + connectionID + " from " + from
+						+ " with invalid resumption token.");
+				metrics.recordDroppedDatagram();
+			}
+		} else {
+			// The connection has expired, so let the other side stop waiting
+			try {
+				ByteArrayOutputStream baos = new ByteArrayOutputStream();
+				baos.write(DatagramStreamConfig.DISCONNECT);
+				connectionID.write(baos);
+				transmit(baos.toByteArray(), from);
+			} catch (IOException e) {
+				err.println("IOException while refusing resumption");
+				e.printStackTrace();
+			}
+		}
+	}
+
 	@Override
 	public String toString() {
-		return "BasicStreamFamily children=" + children;
+		return "BasicStreamFamily children=" + children.values();
 	}
 
 }
@@ -1,5 +1,7 @@
 package com.phoenixkahlo.nodenet.stream;
 
+import java.net.InetSocketAddress;
+
 import com.phoenixkahlo.util.UUID;
 
 /**
@@ -23,7 +25,20 @@ public interface ChildStream extends DatagramStream {
 	/**
 	 * Receive confirmation that a particular payload has been received.
 	 */
-	void receivePayloadConfirmation(UUID payloadID);
+	void receivePayloadConfirmation(int payloadID);
+
+	/**
+	 * Receive the number of payload bytes that the other side is willing to
+	 * buffer, to which sending should be limited.
+	 */
+	void receiveWindowUpdate(int credit);
+
+	/**
+	 * Receive a CONFIRM transmission, which is both a confirmation of the
+	 * payload and a window update, handled together so that the heartbeat and
+	 * pacing rate are updated once.
+	 */
+	void receiveConfirmation(int payloadID, int credit);
 
 	/**
 	 * @return the time that a heartbeat was last received.
@@ -37,15 +52,65 @@ public interface ChildStream extends DatagramStream {
 	long getTimeOfCreation();
 
 	/**
-	 * Update the result of getLastheartbeat() to the current time.
+	 * Update the result of getLastheartbeat() to the current time, and resume
+	 * if suspended.
 	 */
 	void receiveHeartbeat();
 
 	/**
-	 * Transmit a heartbeat to the other side.
+	 * Receive a HEARTBEAT transmission, which is a heartbeat that also gives
+	 * the oldest payload ID the other side has unconfirmed. Payloads before
+	 * it that are missing were abandoned, and should no longer be reported.
+	 */
+	void receiveHeartbeat(int oldestUnconfirmed);
+
+	/**
+	 * Transmit a heartbeat to the other side, unless something else was
+	 * transmitted recently enough to serve as one, or a request for resumption
+	 * if suspended.
 	 */
 	void sendHeartbeat();
 
+	/**
+	 * @return whether nothing has been heard from the other side for long
+	 *         enough, as of the time, that it appears to be unreachable.
+	 */
+	boolean isUnresponsive(long time);
+
+	/**
+	 * Release the memory of buffers that are allocated on demand, if the
+	 * connection has been idle as of the time.
+	 */
+	void trimIdle(long time);
+
+	/**
+	 * Stop retransmitting and begin requesting resumption in place of
+	 * heartbeats, as the other side appears to be unreachable.
+	 */
+	void suspend();
+
+	boolean isSuspended();
+
+	/**
+	 * @return the time at which the stream was suspended, if it is.
+	 */
+	long getSuspendedSince();
+
+	/**
+	 * Set the token with which the connection can be resumed, as exchanged in
+	 * ACCEPT.
+	 */
+	void setResumptionToken(UUID token);
+
+	/**
+	 * Receive a request to resume the connection. If the token is correct,
+	 * resume, send to the given address from now on, and respond with a
+	 * heartbeat.
+	 * 
+	 * @return whether the token was correct.
+	 */
+	boolean receiveResume(UUID token, InetSocketAddress from);
+
 	/**
 	 * @return the connection ID within the family.
 	 */
@@ -57,4 +122,28 @@ public interface ChildStream extends DatagramStream {
 	 */
 	void retransmitUnconfirmed();
 
+	/**
+	 * Stop retransmitting payloads whose deadlines have passed, and discard
+	 * partially received messages whose lifetimes are over.
+	 */
+	void discardExpired();
+
+	/**
+	 * Report payloads that appear to have been lost to the other side, so
+	 * that it retransmits them without waiting.
+	 */
+	void sendNacks();
+
+	/**
+	 * Receive a report from the other side that payloads appear to have been
+	 * lost, and retransmit those that are unconfirmed immediately.
+	 */
+	void receiveNack(int[] payloadIDs);
+
+	/**
+	 * @return the metrics of this connection, which are registered as an MBean
+	 *         until disconnection if the family has child MBeans enabled.
+	 */
+	ChildStreamMetrics getMetrics();
+
 }
@@ -0,0 +1,233 @@
+package com.phoenixkahlo.nodenet.stream;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+import javax.management.ObjectName;
+
+/**
+ * Transport metrics for a single ChildStream, exposed through JMX. Every
+ * counter update is also applied to the metrics of the owning family. Gauges
+ * are read from the stream only when queried.
+ */
+public class ChildStreamMetrics implements ChildStreamMetricsMBean {
+
+	private final StreamFamilyMetrics familyMetrics;
+	private final String connectionName;
+	private final String remoteAddress;
+
+	private final LongAdder datagramsSent = new LongAdder();
+	private final LongAdder bytesSent = new LongAdder();
+	private final LongAdder datagramsReceived = new LongAdder();
+	private final LongAdder bytesReceived = new LongAdder();
+	private final LongAdder retransmissions = new LongAdder();
+	private final LongAdder fastRetransmissions = new LongAdder();
+	private final LongAdder duplicatePayloads = new LongAdder();
+	private final LongAdder droppedPayloads = new LongAdder();
+	private final LongAdder expiredPayloads = new LongAdder();
+	private final LongAdder expiredMessages = new LongAdder();
+	private final LongAdder supersededPayloads = new LongAdder();
+	private final LongAdder supersededMessages = new LongAdder();
+
+	// Only updated by the family receiving thread
+	private volatile long smoothedRoundTripNanos = -1;
+
+	private final IntSupplier unconfirmedDepth;
+	private final IntSupplier reassemblyBacklog;
+	private final IntSupplier receiveQueueDepth;
+	private final IntSupplier bufferedBytes;
+	private final LongSupplier heartbeatAge;
+
+	public ChildStreamMetrics(StreamFamilyMetrics familyMetrics, String connectionName, String remoteAddress,
+			IntSupplier unconfirmedDepth, IntSupplier reassemblyBacklog, IntSupplier receiveQueueDepth,
+			IntSupplier bufferedBytes, LongSupplier heartbeatAge) {
+		this.familyMetrics = familyMetrics;
+		this.connectionName = connectionName;
+		this.remoteAddress = remoteAddress;
+		this.unconfirmedDepth = unconfirmedDepth;
+		this.reassemblyBacklog = reassemblyBacklog;
+		this.receiveQueueDepth = receiveQueueDepth;
+		this.bufferedBytes = bufferedBytes;
+		this.heartbeatAge = heartbeatAge;
+	}
+
+	public ObjectName getObjectName() {
+		return MBeanRegistration.objectName(StreamFamilyMetrics.DOMAIN + ":type=ChildStream,family="
+				+ familyMetrics.getFamilyName() + ",connection=" + connectionName);
+	}
+
+	public void recordSent(int bytes) {
+		datagramsSent.increment();
+		bytesSent.add(bytes);
+		familyMetrics.recordSent(bytes);
+	}
+
+	public void recordReceived(int bytes) {
+		datagramsReceived.increment();
+		bytesReceived.add(bytes);
+		familyMetrics.recordReceived(bytes);
+	}
+
+	public void recordRetransmission() {
+		retransmissions.increment();
+		familyMetrics.recordRetransmission();
+	}
+
+	/**
+	 * Record a retransmission made in response to a NACK, in addition to
+	 * recordRetransmission().
+	 */
+	public void recordFastRetransmission() {
+		fastRetransmissions.increment();
+		familyMetrics.recordFastRetransmission();
+	}
+
+	public void recordDuplicatePayload() {
+		duplicatePayloads.increment();
+		familyMetrics.recordDuplicatePayload();
+	}
+
+	public void recordDroppedPayload() {
+		droppedPayloads.increment();
+		familyMetrics.recordDroppedDatagram();
+	}
+
+	public void recordExpiredPayloads(int count) {
+		expiredPayloads.add(count);
+		familyMetrics.recordExpiredPayloads(count);
+	}
+
+	public void recordExpiredMessage() {
+		expiredMessages.increment();
+		familyMetrics.recordExpiredMessage();
+	}
+
+	public void recordSupersededPayloads(int count) {
+		supersededPayloads.add(count);
+		familyMetrics.recordSupersededPayloads(count);
+	}
+
+	public void recordSupersededMessage() {
+		supersededMessages.increment();
+		familyMetrics.recordSupersededMessage();
+	}
+
+	/**
+	 * Incorporate a round trip sample, which should be taken only from
+	 * payloads that were never retransmitted, into the smoothed round trip
+	 * time.
+	 */
+	public void recordRoundTrip(long nanos) {
+		long smoothed = smoothedRoundTripNanos;
+		if (smoothed < 0)
+			smoothedRoundTripNanos = nanos;
+		else
+			smoothedRoundTripNanos = smoothed + (nanos - smoothed) / 8;
+	}
+
+	/**
+	 * @return the smoothed round trip time in nanoseconds, or -1 if there have
+	 *         been no samples.
+	 */
+	public long getSmoothedRoundTripNanos() {
+		return smoothedRoundTripNanos;
+	}
+
+	@Override
+	public String getRemoteAddress() {
+		return remoteAddress;
+	}
+
+	@Override
+	public long getDatagramsSent() {
+		return datagramsSent.sum();
+	}
+
+	@Override
+	public long getBytesSent() {
+		return bytesSent.sum();
+	}
+
+	@Override
+	public long getDatagramsReceived() {
+		return datagramsReceived.sum();
+	}
+
+	@Override
+	public long getBytesReceived() {
+		return bytesReceived.sum();
+	}
+
+	@Override
+	public long getRetransmissions() {
+		return retransmissions.sum();
+	}
+
+	@Override
+	public long getFastRetransmissions() {
+		return fastRetransmissions.sum();
+	}
+
+	@Override
+	public long getDuplicatePayloads() {
+		return duplicatePayloads.sum();
+	}
+
+	@Override
+	public long getDroppedPayloads() {
+		return droppedPayloads.sum();
+	}
+
+	@Override
+	public long getExpiredPayloads() {
+		return expiredPayloads.sum();
+	}
+
+	@Override
+	public long getExpiredMessages() {
+		return expiredMessages.sum();
+	}
+
+	@Override
+	public long getSupersededPayloads() {
+		return supersededPayloads.sum();
+	}
+
+	@Override
+	public long getSupersededMessages() {
+		return supersededMessages.sum();
+	}
+
+	@Override
+	public int getUnconfirmedDepth() {
+		return unconfirmedDepth.getAsInt();
+	}
+
+	@Override
+	public int getReassemblyBacklog() {
+		return reassemblyBacklog.getAsInt();
+	}
+
+	@Override
+	public int getReceiveQueueDepth() {
+		return receiveQueueDepth.getAsInt();
+	}
+
+	@Override
+	public int getBufferedBytes() {
+		return bufferedBytes.getAsInt();
+	}
+
+	@Override
+	public double getRoundTripTime() {
+		long smoothed = smoothedRoundTripNanos;
+		return smoothed < 0 ? -1 : smoothed / 1_000_000.0;
+	}
+
+	@Override
+	public long getHeartbeatAge() {
+		return heartbeatAge.getAsLong();
+	}
+
+}
@@ -0,0 +1,95 @@
+package com.phoenixkahlo.nodenet.stream;
+
+/**
+ * The management interface of a ChildStream's metrics.
+ */
+public interface ChildStreamMetricsMBean {
+
+	String getRemoteAddress();
+
+	long getDatagramsSent();
+
+	long getBytesSent();
+
+	long getDatagramsReceived();
+
+	long getBytesReceived();
+
+	long getRetransmissions();
+
+	/**
+	 * @return the number of retransmissions made because the other side
+	 *         reported the payload missing, which are also counted in
+	 *         getRetransmissions().
+	 */
+	long getFastRetransmissions();
+
+	/**
+	 * @return the number of received payloads that had already been received.
+	 */
+	long getDuplicatePayloads();
+
+	/**
+	 * @return the number of received payloads discarded for lack of receive
+	 *         buffer space.
+	 */
+	long getDroppedPayloads();
+
+	/**
+	 * @return the number of sent payloads that stopped being retransmitted
+	 *         because their deadlines passed, and of messages that expired
+	 *         before being sent.
+	 */
+	long getExpiredPayloads();
+
+	/**
+	 * @return the number of partially received messages discarded because
+	 *         their lifetimes were over.
+	 */
+	long getExpiredMessages();
+
+	/**
+	 * @return the number of keyed payloads that stopped being retransmitted,
+	 *         or were never sent, because a newer version of their key was
+	 *         sent.
+	 */
+	long getSupersededPayloads();
+
+	/**
+	 * @return the number of received keyed messages discarded because a newer
+	 *         version of their key had arrived.
+	 */
+	long getSupersededMessages();
+
+	/**
+	 * @return the number of sent payloads awaiting confirmation.
+	 */
+	int getUnconfirmedDepth();
+
+	/**
+	 * @return the number of partially received messages.
+	 */
+	int getReassemblyBacklog();
+
+	/**
+	 * @return the number of complete messages waiting to be received.
+	 */
+	int getReceiveQueueDepth();
+
+	/**
+	 * @return the number of payload bytes held in the receive buffer.
+	 */
+	int getBufferedBytes();
+
+	/**
+	 * @return the smoothed round trip time in milliseconds, or -1 if there
+	 *         have been no samples.
+	 */
+	double getRoundTripTime();
+
+	/**
+	 * @return the milliseconds since a heartbeat was last received.
+	 */
+	long getHeartbeatAge();
+
+}
@@ -1,7 +1,10 @@
 package com.phoenixkahlo.nodenet.stream;
 
 import java.net.InetSocketAddress;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 import com.phoenixkahlo.nodenet.DisconnectionException;
 
@@ -21,12 +24,58 @@ public interface DatagramStream {
 	 */
 	void sendOrdered(byte[] data) throws DisconnectionException;
 
+	/**
+	 * Send the prepared message, as with send(byte[]). The same prepared
+	 * message may be sent to any number of streams.
+	 */
+	void send(PreparedMessage message) throws DisconnectionException;
+
+	/**
+	 * Send the data, but only guarentee that it arrives if it can be receive()d
+	 * before the deadline, a System.currentTimeMillis(). Once the deadline
+	 * passes, it is no longer retransmitted, so that it does not take capacity
+	 * from data that is still useful.
+	 */
+	void send(byte[] data, long deadline) throws DisconnectionException;
+
+	/**
+	 * Send the data once, without confirmation or retransmission. It is lost
+	 * if any part of it is lost.
+	 */
+	void sendUnreliable(byte[] data) throws DisconnectionException;
+
+	/**
+	 * Send the data as the newest value of the key, superseding data sent
+	 * before with the same key. Superseded data is no longer retransmitted,
+	 * and is not receive()d if it would arrive after newer data for its key.
+	 * The newest data for each key is guarenteed to arrive.
+	 */
+	void sendKeyed(int key, byte[] data) throws DisconnectionException;
+
 	/**
 	 * Return data send from the other side, blocking until there is data
 	 * available.
 	 */
 	byte[] receive() throws DisconnectionException;
 
+	/**
+	 * Remove up to maxMessages messages send from the other side into the
+	 * collection, blocking until at least one is available, unless maxMessages
+	 * is not positive, in which case nothing is removed.
+	 * 
+	 * @return the number of messages added to the collection.
+	 */
+	int drainTo(Collection<? super byte[]> collection, int maxMessages) throws DisconnectionException;
+
+	/**
+	 * Deliver all messages send from the other side to the handler, invoked
+	 * with the executor, instead of making them available to receive().
+	 * Messages are given to the handler one at a time and in the order they
+	 * would have been receive()d, so the handler need not be thread safe, but
+	 * should not block for long, or it will delay all subsequent messages.
+	 */
+	void onMessage(Consumer<byte[]> handler, Executor executor);
+
 	/**
 	 * Sever the connection to the other side, releasing all resources, and
 	 * possibly preventing any subsequent transmissions.
@@ -9,9 +9,98 @@ public class DatagramStreamConfig {
 
 	public static final int MAX_PAYLOAD_SIZE = 300;
 	public static final int HEARTBEAT_INTERVAL = 1000;
+	/**
+	 * How long, in milliseconds, a connection goes without a payload sent or
+	 * received before it is idle, and its buffers are released.
+	 */
+	public static final int IDLE_TIMEOUT = 10_000;
+	/**
+	 * The heartbeat interval of an idle connection.
+	 */
+	public static final int IDLE_HEARTBEAT_INTERVAL = HEARTBEAT_INTERVAL * 5;
 	public static final int RETRANSMISSION_THRESHHOLD = 500;
 	
 	public static final int MAX_UNCONFIRMED_PAYLOADS = 5000;
+	/**
+	 * The number of payload bytes a stream will buffer before the application
+	 * receives them. Payloads beyond this are dropped unconfirmed, and the
+	 * remaining credit is advertised so that senders don't send them. Bounds the
+	 * size of a single message.
+	 */
+	public static final int RECEIVE_BUFFER_SIZE = 8 * 1024 * 1024;
+	/**
+	 * How long, in milliseconds, a partially received unreliable message is
+	 * kept before it is discarded as incomplete.
+	 */
+	public static final int UNRELIABLE_MESSAGE_LIFETIME = RETRANSMISSION_THRESHHOLD;
+	/**
+	 * The bytes of messages that may be queued for sending, beyond what the
+	 * window allows to be in flight, before senders block.
+	 */
+	public static final int SEND_QUEUE_SIZE = 1024 * 1024;
+	/**
+	 * How long, in milliseconds, a stream remembers completed messages to
+	 * recognize late retransmissions of their payloads.
+	 */
+	public static final int COMPLETED_MESSAGE_MEMORY = RETRANSMISSION_THRESHHOLD * 20;
+	/**
+	 * How long, in milliseconds, a connection that has lost its heartbeat stays
+	 * suspended, waiting to be resumed, before it is disconnected.
+	 */
+	public static final int RESUMPTION_GRACE_PERIOD = 15_000;
+	/**
+	 * The pacing rate, in bytes per second, of a stream with no round trip
+	 * time measured yet.
+	 */
+	public static final int INITIAL_PACING_RATE = 4 * 1024 * 1024;
+	/**
+	 * The lowest pacing rate, in bytes per second, that a stream will use.
+	 */
+	public static final int MIN_PACING_RATE = 64 * 1024;
+	/**
+	 * The multiple of window per round trip time at which streams pace, which
+	 * is above 1 so that pacing smooths bursts without limiting throughput.
+	 */
+	public static final double PACING_GAIN = 2;
+	/**
+	 * The milliseconds of transmission at the pacing rate that may be sent as
+	 * one burst.
+	 */
+	public static final int PACING_BURST_INTERVAL = 1;
+	/**
+	 * The bytes that may always be sent as one burst, regardless of rate.
+	 */
+	public static final int PACING_MIN_BURST = 4 * MAX_PAYLOAD_SIZE;
+	/**
+	 * How often, in milliseconds, streams are checked for payloads to
+	 * retransmit.
+	 */
+	public static final int RETRANSMISSION_CHECK_INTERVAL = RETRANSMISSION_THRESHHOLD / 10;
+	/**
+	 * How long, in milliseconds, a gap in the received payload IDs must
+	 * persist before it is reported with NACK, to tolerate reordering.
+	 */
+	public static final int NACK_DELAY = RETRANSMISSION_CHECK_INTERVAL / 2;
+	/**
+	 * How long, in milliseconds, a reported gap must persist before it is
+	 * reported again, when the stream has no round trip time to wait instead,
+	 * as when it has only received. This is until the next check.
+	 */
+	public static final int NACK_REPEAT_DELAY = RETRANSMISSION_CHECK_INTERVAL;
+	/**
+	 * The most payload IDs reported in one NACK, so that it is no larger than
+	 * a payload.
+	 */
+	public static final int MAX_NACKED_PAYLOADS = MAX_PAYLOAD_SIZE / 4;
+	/**
+	 * The length of the largest transmission, a keyed payload of
+	 * MAX_PAYLOAD_SIZE, which is the size of a TransmissionArena slot.
+	 */
+	public static final int MAX_TRANSMISSION_SIZE = 1 + 16 + 4 + 16 + 4 + 4 + 4 + 4 + 2 + MAX_PAYLOAD_SIZE;
+	/**
+	 * The number of slots a TransmissionArena allocates at a time.
+	 */
+	public static final int ARENA_CHUNK_SLOTS = 1024;
 	
 	//public static final int TRANSMISSION_TYPE_RANGE = 0xF0000000;
 	//public static final int CONNECTION_ID_RANGE = ~TRANSMISSION_TYPE_RANGE;
@@ -48,7 +137,9 @@ public class DatagramStreamConfig {
 	 */
 	public static final int DISCONNECT = 3;
 	/**
-	 * Header only transmission for accepting a connection in response to CONNECT.
+	 * Transmission for accepting a connection in response to CONNECT.
+	 * - int header
+	 * - UUID resumptionToken
 	 */
 	public static final int ACCEPT = 4;
 	/**
@@ -59,12 +150,70 @@ public class DatagramStreamConfig {
 	 * Confirmation that a payload has been received.
 	 * - int header
 	 * - int payloadID
+	 * - int credit
 	 */
 	public static final int CONFIRM = 6;
 	/**
 	 * Header only heartbeat transmission.
 	 */
 	public static final int HEARTBEAT = 7;
+	/**
+	 * Advertisement of receive buffer credit, independent of any payload.
+	 * - int header
+	 * - int credit
+	 */
+	public static final int WINDOW_UPDATE = 8;
+	/**
+	 * Request to resume a suspended connection, possibly from a new address.
+	 * - int header
+	 * - UUID resumptionToken
+	 */
+	public static final int RESUME = 9;
+	/**
+	 * A part of an unordered message that is useless after its lifetime.
+	 * - int header
+	 * - int payloadID
+	 * - UUID messageID
+	 * - int lifetime
+	 * - int partNumber
+	 * - int totalParts
+	 * - short payloadSize
+	 * - byte[] payload
+	 */
+	public static final int EXPIRING_PAYLOAD = 10;
+	/**
+	 * A part of an unordered message that is neither confirmed nor
+	 * retransmitted.
+	 * - int header
+	 * - UUID messageID
+	 * - int partNumber
+	 * - int totalParts
+	 * - short payloadSize
+	 * - byte[] payload
+	 */
+	public static final int UNRELIABLE_PAYLOAD = 11;
+	/**
+	 * A part of an unordered message that supersedes older messages with the
+	 * same key.
+	 * - int header
+	 * - int payloadID
+	 * - UUID messageID
+	 * - int key
+	 * - int version
+	 * - int partNumber
+	 * - int totalParts
+	 * - short payloadSize
+	 * - byte[] payload
+	 */
+	public static final int KEYED_PAYLOAD = 12;
+	/**
+	 * Report of payloads that appear to have been lost, which should be
+	 * retransmitted immediately.
+	 * - int header
+	 * - short count
+	 * - int[] payloadIDs
+	 */
+	public static final int NACK = 13;
 	
 	public static String nameOf(int transmissionType) {
 		switch (transmissionType) {
@@ -84,6 +233,18 @@ public class DatagramStreamConfig {
 			return "confirm";
 		case HEARTBEAT:
 			return "heartbeat";
+		case WINDOW_UPDATE:
+			return "window update";
+		case RESUME:
+			return "resume";
+		case EXPIRING_PAYLOAD:
+			return "expiring payload";
+		case UNRELIABLE_PAYLOAD:
+			return "unreliable payload";
+		case KEYED_PAYLOAD:
+			return "keyed payload";
+		case NACK:
+			return "nack";
 		default:
 			return "invalid (" + Integer.toBinaryString(transmissionType) + ")";
 		}
@@ -0,0 +1,290 @@
+package com.phoenixkahlo.nodenet.stream;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.phoenixkahlo.util.EndableThread;
+import com.phoenixkahlo.util.Tuple;
+
+/**
+ * An in-process network of EmulatedUDPSocketWrappers, for exercising
+ * StreamFamilies under controlled conditions without a real network. Each
+ * directed link between two addresses has its own LinkConditions, falling back
+ * to the network's default conditions.
+ * <p>
+ * All random decisions are drawn from a single Random seeded on construction,
+ * in the order in which datagrams are sent, so that a single sending thread
+ * sees the same losses, delays and duplications on every run. Datagrams are
+ * delivered by one thread in order of their scheduled arrival time.
+ * </p>
+ */
+public class EmulatedNetwork {
+
+	private final Random random;
+	private final InetAddress host = InetAddress.getLoopbackAddress();
+
+	// Synchronize usages of these with this
+	private final Map<InetSocketAddress, EmulatedUDPSocketWrapper> sockets = new HashMap<>();
+	private final Map<Tuple<InetSocketAddress, InetSocketAddress>, LinkConditions> linkConditions = new HashMap<>();
+	private final Map<Tuple<InetSocketAddress, InetSocketAddress>, LinkState> linkStates = new HashMap<>();
+	private LinkConditions defaultConditions = LinkConditions.PERFECT;
+	private int nextEphemeralPort = 49152;
+	private long nextSequence = 0;
+
+	// Synchronize usages of pending, and notify it upon additions
+	private final PriorityQueue<Datagram> pending = new PriorityQueue<>();
+
+	private final LongAdder sent = new LongAdder();
+	private final LongAdder delivered = new LongAdder();
+	private final LongAdder lost = new LongAdder();
+	private final LongAdder duplicated = new LongAdder();
+	private final LongAdder overflowed = new LongAdder();
+
+	private final DeliveryThread deliveryThread = new DeliveryThread();
+
+	public EmulatedNetwork(long seed) {
+		this.random = new Random(seed);
+		deliveryThread.start();
+	}
+
+	/**
+	 * Bind a socket to the port on the network's loopback address.
+	 */
+	public synchronized EmulatedUDPSocketWrapper bind(int port) throws SocketException {
+		InetSocketAddress address = new InetSocketAddress(host, port);
+		if (sockets.containsKey(address))
+			throw new SocketException("Address already in use: " + address);
+		EmulatedUDPSocketWrapper socket = new EmulatedUDPSocketWrapper(this, address);
+		sockets.put(address, socket);
+		return socket;
+	}
+
+	/**
+	 * Bind a socket to an unused port.
+	 */
+	public synchronized EmulatedUDPSocketWrapper bind() throws SocketException {
+		while (sockets.containsKey(new InetSocketAddress(host, nextEphemeralPort)))
+			nextEphemeralPort++;
+		return bind(nextEphemeralPort++);
+	}
+
+	synchronized void unbind(EmulatedUDPSocketWrapper socket) {
+		sockets.remove(socket.getAddress(), socket);
+	}
+
+	/**
+	 * Set the conditions of every link without conditions of its own.
+	 */
+	public synchronized void setConditions(LinkConditions conditions) {
+		this.defaultConditions = conditions;
+	}
+
+	/**
+	 * Set the conditions of the link from one address to another. The reverse
+	 * direction is unaffected.
+	 */
+	public synchronized void setConditions(InetSocketAddress from, InetSocketAddress to, LinkConditions conditions) {
+		linkConditions.put(new Tuple<>(from, to), conditions);
+	}
+
+	/**
+	 * Set the conditions of the links between two addresses in both
+	 * directions.
+	 */
+	public void setConditionsBetween(InetSocketAddress a, InetSocketAddress b, LinkConditions conditions) {
+		setConditions(a, b, conditions);
+		setConditions(b, a, conditions);
+	}
+
+	synchronized void send(byte[] data, InetSocketAddress from, InetSocketAddress to) {
+		sent.increment();
+		Tuple<InetSocketAddress, InetSocketAddress> link = new Tuple<>(from, to);
+		LinkConditions conditions = linkConditions.getOrDefault(link, defaultConditions);
+		LinkState state = linkStates.computeIfAbsent(link, l -> new LinkState());
+
+		// Draw every random number regardless of outcome, so that the stream
+		// of decisions does not depend on earlier outcomes
+		boolean lose = random.nextDouble() < conditions.getLossRate();
+		boolean duplicate = random.nextDouble() < conditions.getDuplicateRate();
+		boolean reorder = random.nextDouble() < conditions.getReorderRate();
+		long jitter = nextJitter(conditions);
+		long duplicateJitter = nextJitter(conditions);
+		long reorderDelay = (long) (random.nextDouble()
+				* (conditions.getLatencyNanos() + conditions.getJitterNanos()));
+
+		// Bandwidth is consumed even by datagrams lost in transit
+		long now = System.nanoTime();
+		long departure = Math.max(now, state.busyUntil);
+		if (conditions.getBytesPerSecond() > 0)
+			departure += data.length * 1_000_000_000L / conditions.getBytesPerSecond();
+		state.busyUntil = departure;
+
+		if (lose) {
+			lost.increment();
+			return;
+		}
+
+		long arrival = departure + conditions.getLatencyNanos() + jitter;
+		if (reorder) {
+			arrival += reorderDelay;
+		} else {
+			arrival = Math.max(arrival, state.lastArrival);
+			state.lastArrival = arrival;
+		}
+		schedule(new Datagram(data, from, to, arrival, nextSequence++));
+		if (duplicate) {
+			duplicated.increment();
+			schedule(new Datagram(data, from, to, arrival + duplicateJitter, nextSequence++));
+		}
+	}
+
+	private long nextJitter(LinkConditions conditions) {
+		return (long) (random.nextDouble() * conditions.getJitterNanos());
+	}
+
+	private void schedule(Datagram datagram) {
+		synchronized (pending) {
+			pending.add(datagram);
+			pending.notifyAll();
+		}
+	}
+
+	private synchronized void deliver(Datagram datagram) {
+		EmulatedUDPSocketWrapper socket = sockets.get(datagram.getTo());
+		if (socket != null && socket.deliver(datagram))
+			delivered.increment();
+		else
+			overflowed.increment();
+	}
+
+	/**
+	 * @return the number of datagrams sent, not counting duplicates.
+	 */
+	public long getSent() {
+		return sent.sum();
+	}
+
+	/**
+	 * @return the number of datagrams placed in a receive buffer, including
+	 *         duplicates.
+	 */
+	public long getDelivered() {
+		return delivered.sum();
+	}
+
+	/**
+	 * @return the number of datagrams dropped by link loss.
+	 */
+	public long getLost() {
+		return lost.sum();
+	}
+
+	public long getDuplicated() {
+		return duplicated.sum();
+	}
+
+	/**
+	 * @return the number of datagrams that arrived at an unbound port or a full
+	 *         receive buffer.
+	 */
+	public long getOverflowed() {
+		return overflowed.sum();
+	}
+
+	/**
+	 * Stop delivering datagrams. Sockets remain bound, but nothing more will
+	 * arrive at them.
+	 */
+	public void shutdown() {
+		deliveryThread.end();
+	}
+
+	private static class LinkState {
+		long busyUntil = 0;
+		long lastArrival = 0;
+	}
+
+	static class Datagram implements Comparable<Datagram> {
+
+		private final byte[] data;
+		private final InetSocketAddress from;
+		private final InetSocketAddress to;
+		private final long arrival;
+		private final long sequence;
+
+		Datagram(byte[] data, InetSocketAddress from, InetSocketAddress to, long arrival, long sequence) {
+			this.data = data;
+			this.from = from;
+			this.to = to;
+			this.arrival = arrival;
+			this.sequence = sequence;
+		}
+
+		byte[] getData() {
+			return data;
+		}
+
+		InetSocketAddress getFrom() {
+			return from;
+		}
+
+		InetSocketAddress getTo() {
+			return to;
+		}
+
+		@Override
+		public int compareTo(Datagram other) {
+			// Subtraction, as nanoTime values may wrap
+			long difference = arrival - other.arrival;
+			if (difference != 0)
+				return difference < 0 ? -1 : 1;
+			return Long.compare(sequence, other.sequence);
+		}
+
+	}
+
+	private class DeliveryThread extends Thread implements EndableThread {
+
+		private volatile boolean shouldContinue = true;
+
+		DeliveryThread() {
+			super("EmulatedNetwork delivery");
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (shouldContinue) {
+					Datagram next;
+					synchronized (pending) {
+						while (pending.isEmpty())
+							pending.wait();
+						long wait = pending.peek().arrival - System.nanoTime();
+						if (wait > 0) {
+							pending.wait(wait / 1_000_000, (int) (wait % 1_000_000));
+							continue;
+						}
+						next = pending.remove();
+					}
+					deliver(next);
+				}
+			} catch (InterruptedException e) {
+			}
+		}
+
+		@Override
+		public void end() {
+			shouldContinue = false;
+			interrupt();
+		}
+
+	}
+
+}
@@ -0,0 +1,81 @@
+package com.phoenixkahlo.nodenet.stream;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A UDPSocketWrapper bound to a port of an EmulatedNetwork. Like a real socket,
+ * it has a bounded receive buffer, and datagrams that arrive when it is full
+ * are dropped.
+ */
+public class EmulatedUDPSocketWrapper implements UDPSocketWrapper {
+
+	/**
+	 * The number of datagrams that can wait to be received.
+	 */
+	public static final int RECEIVE_BUFFER_DATAGRAMS = 4096;
+
+	private EmulatedNetwork network;
+	private InetSocketAddress address;
+	private BlockingQueue<EmulatedNetwork.Datagram> inbox = new LinkedBlockingQueue<>(RECEIVE_BUFFER_DATAGRAMS);
+	private volatile boolean closed = false;
+
+	EmulatedUDPSocketWrapper(EmulatedNetwork network, InetSocketAddress address) {
+		this.network = network;
+		this.address = address;
+	}
+
+	/**
+	 * @return the address at which other sockets in the network reach this one.
+	 */
+	public InetSocketAddress getAddress() {
+		return address;
+	}
+
+	@Override
+	public void send(byte[] data, InetSocketAddress to) throws IOException {
+		if (closed)
+			throw new SocketException("Socket is closed");
+		network.send(data.clone(), address, to);
+	}
+
+	@Override
+	public InetSocketAddress receive(byte[] buffer) throws IOException {
+		if (closed)
+			throw new SocketException("Socket is closed");
+		EmulatedNetwork.Datagram datagram;
+		try {
+			datagram = inbox.take();
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException();
+		}
+		// Truncate, as a real socket would
+		System.arraycopy(datagram.getData(), 0, buffer, 0, Math.min(buffer.length, datagram.getData().length));
+		return datagram.getFrom();
+	}
+
+	/**
+	 * Release the port. Datagrams subsequently sent to it are dropped.
+	 */
+	public void close() {
+		closed = true;
+		network.unbind(this);
+	}
+
+	/**
+	 * @return whether the datagram fit in the receive buffer.
+	 */
+	boolean deliver(EmulatedNetwork.Datagram datagram) {
+		return inbox.offer(datagram);
+	}
+
+	@Override
+	public String toString() {
+		return "EmulatedUDPSocketWrapper localAddress=" + address;
+	}
+
+}
@@ -4,8 +4,9 @@ import com.phoenixkahlo.util.EndableThread;
 
 /**
  * Helper thread for a StreamFamily. Transmits heartbeat to all children every
- * heartbeat interval, and disconnects children who haven't received a heartbeat
- * in 3 times the interval.
+ * heartbeat interval, suspends children who are unresponsive, disconnects
+ * children who have remained suspended for the resumption grace period, and
+ * trims the buffers of idle children.
  */
 public class FamilyHeartbeatThread extends Thread implements EndableThread {
 
@@ -20,16 +21,16 @@ public class FamilyHeartbeatThread extends Thread implements EndableThread {
 	public void run() {
 		try {
 			while (shouldContinue) {
-				synchronized (family.getChildren()) {
-					long currentTime = System.currentTimeMillis();
-					for (int i = 0; i < family.getChildren().size(); i++) {
-						ChildStream child = family.getChildren().get(i);
-						child.sendHeartbeat();
-						if (currentTime - child.getTimeOfCreation() > DatagramStreamConfig.HEARTBEAT_INTERVAL * 3
-								&& currentTime - child.getLastHeartbeat() > DatagramStreamConfig.HEARTBEAT_INTERVAL * 3) {
+				long currentTime = System.currentTimeMillis();
+				for (ChildStream child : family.getChildren()) {
+					child.sendHeartbeat();
+					if (child.isSuspended()) {
+						if (currentTime - child.getSuspendedSince() > DatagramStreamConfig.RESUMPTION_GRACE_PERIOD)
 							child.disconnect();
-						}
+					} else if (child.isUnresponsive(currentTime)) {
+						child.suspend();
 					}
+					child.trimIdle(currentTime);
 				}
 				Thread.sleep(DatagramStreamConfig.HEARTBEAT_INTERVAL);
 			}
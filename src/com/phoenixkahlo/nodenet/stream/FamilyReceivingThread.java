@@ -34,87 +34,155 @@ public class FamilyReceivingThread extends Thread implements EndableThread {
 				byte[] buffer = new byte[DatagramStreamConfig.MAX_PAYLOAD_SIZE * 2];
 				InetSocketAddress from = family.getUDPWrapper().receive(buffer);
 
-				InputStream in = new ByteArrayInputStream(buffer);
-				int transmissionType = in.read();
-				UUID connectionID = new UUID(in);
-				
-				Optional<ChildStream> child;
-				synchronized (family.getChildren()) {
-					child = family.getChildren().stream().filter(c -> c.getConnectionID().equals(connectionID)).findAny();
-				}
-				if (child.isPresent() && !child.get().getRemoteAddress().equals(from)) {
-					synchronized (err) {
-						err.println("Transmission from " + from + " claiming to have connectionID "
-								+ child.get().getConnectionID() + ", but that ID is associated with "
-								+ child.get().getRemoteAddress() + ". Transmissiong type: " + transmissionType + ".");
-					}
-					continue;
+				handleDatagram(buffer, from);
+			} catch (IOException e) {
+				// Wrappers that respond to interruption will throw when ended
+				if (!shouldContinue)
+					break;
+				synchronized (err) {
+					err.println("IOException in FamilyReceivingThread:");
+					e.printStackTrace();
 				}
+			}
+		}
+	}
 
-				if (transmissionType == DatagramStreamConfig.CONNECT) {
-					family.receiveConnect(connectionID, from);
-				} else if (transmissionType == DatagramStreamConfig.ACCEPT) {
-					family.receiveAccept(connectionID, from);
-				} else if (transmissionType == DatagramStreamConfig.REJECT) {
-					family.receiveReject(connectionID, from);
-				} else { // All of these conditions require a connection to
-							// already exist.
-					if (child.isPresent()) {
-						if (transmissionType == DatagramStreamConfig.PAYLOAD) {
-							UUID payloadID = new UUID(in);//readInt(in);
-							UUID messageID = new UUID(in);//readInt(in);
-							//byte partNumber = (byte) in.read();
-							//byte totalParts = (byte) in.read();
-							int partNumber = readInt(in);
-							int totalParts = readInt(in);
-							short payloadSize = readShort(in);
-							byte[] payload = new byte[payloadSize];
-							in.read(payload);
-
-							child.get().receivePayload(
-									new ReceivedPayload(payloadID, messageID, partNumber, totalParts, payload));
-						} else if (transmissionType == DatagramStreamConfig.ORDERED_PAYLOAD) {
-							UUID payloadID = new UUID(in);//readInt(in);
-							UUID messageID = new UUID(in);//readInt(in);
-							int ordinal = readInt(in);
-							//byte partNumber = (byte) in.read();
-							//byte totalParts = (byte) in.read();
-							int partNumber = readInt(in);
-							int totalParts = readInt(in);
-							short payloadSize = readShort(in);
-							byte[] payload = new byte[payloadSize];
-							in.read(payload);
-
-							child.get().receivePayload(new ReceivedPayload(payloadID, messageID, ordinal, partNumber,
-									totalParts, payload));
-						} else if (transmissionType == DatagramStreamConfig.DISCONNECT) {
-							child.get().receiveDisconnect();
-						} else if (transmissionType == DatagramStreamConfig.CONFIRM) {
-							UUID payloadID = new UUID(in);
-							child.get().receivePayloadConfirmation(payloadID);
-						} else if (transmissionType == DatagramStreamConfig.HEARTBEAT) {
-							child.get().receiveHeartbeat();
-						} else {
-							synchronized (err) {
-								err.println("Invalid transmission type "
-										+ DatagramStreamConfig.nameOf(transmissionType) + " received from " + from + ".");
-							}
-						}
-					} else {
-						synchronized (err) {
-							err.println("Transmission received from " + from + " of type "
-									+ DatagramStreamConfig.nameOf(transmissionType) + " and connectionID " + connectionID
-									+ ", but no associated ChildStream exists.");
-						}
+	/**
+	 * Decode a received datagram and delegate it to the family or the child to
+	 * which it belongs. Invoked by the thread for each datagram, and exposed so
+	 * that decoding can be measured apart from the socket.
+	 */
+	public void handleDatagram(byte[] buffer, InetSocketAddress from) throws IOException {
+		InputStream in = new ByteArrayInputStream(buffer);
+		int transmissionType = in.read();
+		UUID connectionID = new UUID(in);
+		
+		Optional<ChildStream> child = family.getChild(connectionID);
+		// A resumption may come from a new address, and is checked by token
+		if (child.isPresent() && !child.get().getRemoteAddress().equals(from)
+				&& transmissionType != DatagramStreamConfig.RESUME) {
+			synchronized (err) {
+				err.println("Transmission from " + from + " claiming to have connectionID "
+						+ child.get().getConnectionID() + ", but that ID is associated with "
+						+ child.get().getRemoteAddress() + ". Transmissiong type: " + transmissionType + ".");
+			}
+			family.getMetrics().recordReceived(buffer.length - in.available());
+			family.getMetrics().recordDroppedDatagram();
+			return;
+		}
+
+		if (transmissionType == DatagramStreamConfig.CONNECT) {
+			family.receiveConnect(connectionID, from);
+		} else if (transmissionType == DatagramStreamConfig.ACCEPT) {
+			UUID resumptionToken = new UUID(in);
+			family.receiveAccept(connectionID, resumptionToken, from);
+		} else if (transmissionType == DatagramStreamConfig.REJECT) {
+			family.receiveReject(connectionID, from);
+		} else if (transmissionType == DatagramStreamConfig.RESUME) {
+			UUID resumptionToken = new UUID(in);
+			family.receiveResume(connectionID, resumptionToken, from);
+		} else { // All of these conditions require a connection to
+					// already exist.
+			if (child.isPresent()) {
+				if (transmissionType == DatagramStreamConfig.PAYLOAD) {
+					int payloadID = readInt(in);
+					UUID messageID = new UUID(in);//readInt(in);
+					//byte partNumber = (byte) in.read();
+					//byte totalParts = (byte) in.read();
+					int partNumber = readInt(in);
+					int totalParts = readInt(in);
+					short payloadSize = readShort(in);
+					byte[] payload = new byte[payloadSize];
+					in.read(payload);
+
+					child.get().receivePayload(
+							new ReceivedPayload(payloadID, messageID, partNumber, totalParts, payload));
+				} else if (transmissionType == DatagramStreamConfig.ORDERED_PAYLOAD) {
+					int payloadID = readInt(in);
+					UUID messageID = new UUID(in);//readInt(in);
+					int ordinal = readInt(in);
+					//byte partNumber = (byte) in.read();
+					//byte totalParts = (byte) in.read();
+					int partNumber = readInt(in);
+					int totalParts = readInt(in);
+					short payloadSize = readShort(in);
+					byte[] payload = new byte[payloadSize];
+					in.read(payload);
+
+					child.get().receivePayload(new ReceivedPayload(payloadID, messageID, ordinal, partNumber,
+							totalParts, payload));
+				} else if (transmissionType == DatagramStreamConfig.EXPIRING_PAYLOAD) {
+					int payloadID = readInt(in);
+					UUID messageID = new UUID(in);
+					int lifetime = readInt(in);
+					int partNumber = readInt(in);
+					int totalParts = readInt(in);
+					short payloadSize = readShort(in);
+					byte[] payload = new byte[payloadSize];
+					in.read(payload);
+
+					child.get().receivePayload(
+							new ReceivedPayload(payloadID, messageID, partNumber, totalParts, payload, lifetime));
+				} else if (transmissionType == DatagramStreamConfig.UNRELIABLE_PAYLOAD) {
+					UUID messageID = new UUID(in);
+					int partNumber = readInt(in);
+					int totalParts = readInt(in);
+					short payloadSize = readShort(in);
+					byte[] payload = new byte[payloadSize];
+					in.read(payload);
+
+					child.get().receivePayload(new ReceivedPayload(messageID, partNumber, totalParts, payload,
+							DatagramStreamConfig.UNRELIABLE_MESSAGE_LIFETIME));
+				} else if (transmissionType == DatagramStreamConfig.KEYED_PAYLOAD) {
+					int payloadID = readInt(in);
+					UUID messageID = new UUID(in);
+					int key = readInt(in);
+					int version = readInt(in);
+					int partNumber = readInt(in);
+					int totalParts = readInt(in);
+					short payloadSize = readShort(in);
+					byte[] payload = new byte[payloadSize];
+					in.read(payload);
+
+					child.get().receivePayload(new ReceivedPayload(payloadID, messageID, key, version, partNumber,
+							totalParts, payload));
+				} else if (transmissionType == DatagramStreamConfig.DISCONNECT) {
+					child.get().receiveDisconnect();
+				} else if (transmissionType == DatagramStreamConfig.CONFIRM) {
+					int payloadID = readInt(in);
+					int credit = readInt(in);
+					child.get().receiveConfirmation(payloadID, credit);
+				} else if (transmissionType == DatagramStreamConfig.NACK) {
+					int[] payloadIDs = new int[Math.max(0, readShort(in))];
+					for (int i = 0; i < payloadIDs.length; i++)
+						payloadIDs[i] = readInt(in);
+					child.get().receiveNack(payloadIDs);
+				} else if (transmissionType == DatagramStreamConfig.WINDOW_UPDATE) {
+					child.get().receiveWindowUpdate(readInt(in));
+				} else if (transmissionType == DatagramStreamConfig.HEARTBEAT) {
+					child.get().receiveHeartbeat(readInt(in));
+				} else {
+					synchronized (err) {
+						err.println("Invalid transmission type "
+								+ DatagramStreamConfig.nameOf(transmissionType) + " received from " + from + ".");
 					}
+					family.getMetrics().recordDroppedDatagram();
 				}
-			} catch (IOException e) {
+			} else {
 				synchronized (err) {
-					err.println("IOException in FamilyReceivingThread:");
-					e.printStackTrace();
+					err.println("Transmission received from " + from + " of type "
+							+ DatagramStreamConfig.nameOf(transmissionType) + " and connectionID " + connectionID
+							+ ", but no associated ChildStream exists.");
 				}
+				family.getMetrics().recordDroppedDatagram();
 			}
 		}
+
+		int length = buffer.length - in.available();
+		if (child.isPresent())
+			child.get().getMetrics().recordReceived(length);
+		else
+			family.getMetrics().recordReceived(length);
 	}
 
 	@Override
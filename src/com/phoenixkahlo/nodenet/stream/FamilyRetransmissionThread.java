@@ -3,8 +3,8 @@ package com.phoenixkahlo.nodenet.stream;
 import com.phoenixkahlo.util.EndableThread;
 
 /**
- * Helper thread for a socket family. Occasionally invokes retransmitUnconfirmed
- * in all children.
+ * Helper thread for a socket family. Invokes discardExpired, sendNacks and
+ * retransmitUnconfirmed in all children every retransmission check interval.
  */
 public class FamilyRetransmissionThread extends Thread implements EndableThread {
 
@@ -17,12 +17,16 @@ public class FamilyRetransmissionThread extends Thread implements EndableThread
 
 	@Override
 	public void run() {
-		while (shouldContinue) {
-			synchronized (family.getChildren()) {
+		try {
+			while (shouldContinue) {
 				for (ChildStream socket : family.getChildren()) {
+					socket.discardExpired();
+					socket.sendNacks();
 					socket.retransmitUnconfirmed();
 				}
+				Thread.sleep(DatagramStreamConfig.RETRANSMISSION_CHECK_INTERVAL);
 			}
+		} catch (InterruptedException e) {
 		}
 	}
 
@@ -1,28 +1,37 @@
 package com.phoenixkahlo.nodenet.stream;
 
-import com.esotericsoftware.kryo.Kryo;
-import com.esotericsoftware.kryo.io.Input;
-import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.KryoException;
 import com.phoenixkahlo.nodenet.DisconnectionException;
 import com.phoenixkahlo.nodenet.ProtocolViolationException;
+import com.phoenixkahlo.nodenet.serialization.SymbolDecoder;
+import com.phoenixkahlo.nodenet.serialization.SymbolEncoder;
+import com.phoenixkahlo.nodenet.serialization.UnresolvedSymbolException;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 /**
  * Created by Phoenix on 5/17/2017.
+ * <p>
+ * Objects are written with their classes, with the calling thread's Kryo from
+ * the KryoProvider, so streams can be used from any number of threads. The
+ * names of unregistered classes are sent with a dictionary that lasts as long
+ * as the stream, so that each is only sent in full once.
  */
 public class KryoObjectStream implements ObjectStream {
 
     private DatagramStream stream;
-    private Kryo kryo;
+    private KryoProvider kryos;
+    private SymbolSession session;
 
-    public KryoObjectStream(DatagramStream stream, Kryo kryo) {
+    public KryoObjectStream(DatagramStream stream, KryoProvider kryos) {
         this.stream = stream;
-        this.kryo = kryo;
+        this.kryos = kryos;
+        this.session = new SymbolSession(stream, this::deserialize);
     }
 
     @Override
@@ -30,29 +39,68 @@ public class KryoObjectStream implements ObjectStream {
 
     @Override
     public void send(Object object) throws DisconnectionException {
-        byte[] data;
-        try (Output output = new Output(1000, -1)) {
-            kryo.writeObject(output, object);
-            data = output.toBytes();
-        }
-        stream.send(data);
+        List<Integer> pending = new ArrayList<>();
+        stream.send(serialize(object, SymbolEncoder.Mode.UNORDERED, pending));
+        session.getEncoder().commit(pending, SymbolEncoder.Mode.UNORDERED);
     }
 
     @Override
     public void sendOrdered(Object object) throws DisconnectionException {
-        byte[] data;
-        try (Output output = new Output(1000, -1)) {
-            kryo.writeObject(output, object);
-            data = output.toBytes();
-        }
-        stream.sendOrdered(data);
+        List<Integer> pending = new ArrayList<>();
+        stream.sendOrdered(serialize(object, SymbolEncoder.Mode.ORDERED, pending));
+        session.getEncoder().commit(pending, SymbolEncoder.Mode.ORDERED);
+    }
+
+    @Override
+    public void sendKeyed(int key, Object object) throws DisconnectionException {
+        stream.sendKeyed(key, serialize(object, SymbolEncoder.Mode.INLINE, null));
+    }
+
+    @Override
+    public PreparedMessage prepare(Object object) {
+        return new PreparedMessage(serialize(object, SymbolEncoder.Mode.INLINE, null));
+    }
+
+    @Override
+    public void send(PreparedMessage message) throws DisconnectionException {
+        stream.send(message);
     }
 
     @Override
     public Object receive() throws ProtocolViolationException, DisconnectionException {
-        byte[] data = stream.receive();
-        try (Input input = new Input(data)) {
-            return kryo.readClassAndObject(input);
+        return session.receive();
+    }
+
+    @Override
+    public int drainTo(Collection<Object> collection, int maxObjects)
+            throws ProtocolViolationException, DisconnectionException {
+        return session.drainTo(collection, maxObjects);
+    }
+
+    @Override
+    public void onMessage(Consumer<Object> handler, Consumer<ProtocolViolationException> violationHandler,
+                          Executor executor) {
+        session.onMessage(handler, violationHandler, executor);
+    }
+
+    /**
+     * Write with the session's symbols, adding definitions to pending, to be
+     * committed once the message has been sent.
+     */
+    private byte[] serialize(Object object, SymbolEncoder.Mode mode, List<Integer> pending) {
+        return kryos.write(object, session.getEncoder(), mode, pending);
+    }
+
+    private Object deserialize(byte[] data, SymbolDecoder symbols)
+            throws ProtocolViolationException, UnresolvedSymbolException {
+        try {
+            return kryos.read(data, symbols);
+        } catch (KryoException e) {
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof UnresolvedSymbolException)
+                    throw (UnresolvedSymbolException) cause;
+            }
+            throw new ProtocolViolationException(e);
         }
     }
 
@@ -73,13 +121,7 @@ public class KryoObjectStream implements ObjectStream {
 
     @Override
     public List<Object> getUnconfirmed() {
-        return stream.getUnconfirmed().stream()
-                .map(data -> {
-                    try (Input input = new Input(data)) {
-                        return kryo.readClassAndObject(input);
-                    }
-                })
-                .collect(Collectors.toList());
+        return session.getUnconfirmed();
     }
 
     @Override
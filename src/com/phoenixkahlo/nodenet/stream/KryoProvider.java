@@ -0,0 +1,182 @@
+package com.phoenixkahlo.nodenet.stream;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.MapReferenceResolver;
+import com.phoenixkahlo.nodenet.serialization.SymbolDecoder;
+import com.phoenixkahlo.nodenet.serialization.SymbolEncoder;
+
+/**
+ * Provides each thread with its own Kryo, as Kryo is not thread safe, along
+ * with an Output and Input that are reused between objects. Every Kryo is
+ * configured with the same configurations, in the same order, so that they
+ * all assign the same registration IDs. A configuration added after a
+ * thread's Kryo was created is applied to it, on that thread, the next time
+ * it is used. The names of unregistered classes can be written with a
+ * stream's symbol dictionary, as by SymbolClassResolver.
+ * <p>
+ * Thread safe.
+ */
+public class KryoProvider {
+
+	/**
+	 * The initial size of each thread's output buffer.
+	 */
+	public static final int INITIAL_BUFFER_SIZE = 1024;
+	/**
+	 * The largest output buffer a thread keeps between objects, so that one
+	 * large object does not leave every thread that wrote it holding a large
+	 * buffer.
+	 */
+	public static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+	private static final byte[] EMPTY = new byte[0];
+
+	private class ThreadKryo {
+
+		SymbolClassResolver resolver = new SymbolClassResolver();
+		Kryo kryo = new Kryo(resolver, new MapReferenceResolver());
+		int configured = 0;
+		Output output = new Output(INITIAL_BUFFER_SIZE, -1);
+		Input input = new Input();
+		// Whether the output or input is in use, in which case a nested use
+		// must not clobber it
+		boolean busy = false;
+
+		void update() {
+			while (configured < configurations.size())
+				configurations.get(configured++).accept(kryo);
+		}
+
+	}
+
+	private final List<Consumer<Kryo>> configurations = new CopyOnWriteArrayList<>();
+	private final ThreadLocal<ThreadKryo> kryos = ThreadLocal.withInitial(ThreadKryo::new);
+
+	/**
+	 * Apply the configuration, such as class registrations, to every Kryo.
+	 */
+	public void configure(Consumer<Kryo> configuration) {
+		configurations.add(configuration);
+	}
+
+	/**
+	 * @return the calling thread's Kryo, which must not be used by other
+	 *         threads.
+	 */
+	public Kryo get() {
+		ThreadKryo threadKryo = kryos.get();
+		threadKryo.update();
+		return threadKryo.kryo;
+	}
+
+	/**
+	 * Write the object with its class, symmetrical to read.
+	 */
+	public byte[] write(Object object) throws KryoException {
+		return write(object, null, null);
+	}
+
+	/**
+	 * Write the object with its class, writing the names of unregistered
+	 * classes with the symbol dictionary, as allowed by the mode, symmetrical
+	 * to read with the dictionary's decoder. The dictionary may be null.
+	 */
+	public byte[] write(Object object, SymbolEncoder symbols, SymbolEncoder.Mode mode) throws KryoException {
+		return write(object, symbols, mode, null);
+	}
+
+	/**
+	 * Write the object as with write(object, symbols, mode), adding the
+	 * definitions of names to pending rather than committing them, if it is
+	 * not null.
+	 */
+	public byte[] write(Object object, SymbolEncoder symbols, SymbolEncoder.Mode mode, List<Integer> pending)
+			throws KryoException {
+		ThreadKryo threadKryo = kryos.get();
+		threadKryo.update();
+		SymbolClassResolver resolver = threadKryo.resolver;
+		SymbolEncoder outerSymbols = resolver.getEncoder();
+		SymbolEncoder.Mode outerMode = resolver.getMode();
+		List<Integer> outerPending = resolver.getPending();
+		resolver.setEncoder(symbols, mode, pending);
+		try {
+			return write(threadKryo, object);
+		} finally {
+			resolver.setEncoder(outerSymbols, outerMode, outerPending);
+		}
+	}
+
+	private byte[] write(ThreadKryo threadKryo, Object object) throws KryoException {
+		if (threadKryo.busy) {
+			try (Output output = new Output(INITIAL_BUFFER_SIZE, -1)) {
+				threadKryo.kryo.writeClassAndObject(output, object);
+				return output.toBytes();
+			}
+		}
+		threadKryo.busy = true;
+		Output output = threadKryo.output;
+		try {
+			output.clear();
+			threadKryo.kryo.writeClassAndObject(output, object);
+			return output.toBytes();
+		} finally {
+			if (output.getBuffer().length > MAX_RETAINED_BUFFER_SIZE)
+				output.setBuffer(new byte[INITIAL_BUFFER_SIZE], -1);
+			threadKryo.busy = false;
+		}
+	}
+
+	/**
+	 * Read an object written with write.
+	 */
+	public Object read(byte[] data) throws KryoException {
+		return read(data, null);
+	}
+
+	/**
+	 * Read an object written with write, reading the names of unregistered
+	 * classes with the symbol dictionary, which may be null.
+	 * 
+	 * @throws KryoException
+	 *             caused by an UnresolvedSymbolException if the object
+	 *             references a name that has not been defined yet.
+	 */
+	public Object read(byte[] data, SymbolDecoder symbols) throws KryoException {
+		ThreadKryo threadKryo = kryos.get();
+		threadKryo.update();
+		SymbolClassResolver resolver = threadKryo.resolver;
+		SymbolDecoder outerSymbols = resolver.getDecoder();
+		resolver.setDecoder(symbols);
+		try {
+			return read(threadKryo, data);
+		} finally {
+			resolver.setDecoder(outerSymbols);
+		}
+	}
+
+	private Object read(ThreadKryo threadKryo, byte[] data) throws KryoException {
+		if (threadKryo.busy) {
+			try (Input input = new Input(data)) {
+				return threadKryo.kryo.readClassAndObject(input);
+			}
+		}
+		threadKryo.busy = true;
+		Input input = threadKryo.input;
+		try {
+			input.setBuffer(data);
+			return threadKryo.kryo.readClassAndObject(input);
+		} finally {
+			// Do not keep the data reachable
+			input.setBuffer(EMPTY);
+			threadKryo.busy = false;
+		}
+	}
+
+}
@@ -0,0 +1,106 @@
+package com.phoenixkahlo.nodenet.stream;
+
+/**
+ * An immutable description of the behavior of a one-directional link in an
+ * EmulatedNetwork. Rates are probabilities per datagram, between 0 and 1.
+ */
+public class LinkConditions {
+
+	/**
+	 * Instant, unlimited, and lossless delivery.
+	 */
+	public static final LinkConditions PERFECT = new LinkConditions(0, 0, 0, 0, 0, 0);
+
+	private final long latencyNanos;
+	private final long jitterNanos;
+	private final long bytesPerSecond;
+	private final double lossRate;
+	private final double reorderRate;
+	private final double duplicateRate;
+
+	/**
+	 * @param latencyNanos
+	 *            the fixed delay of every datagram.
+	 * @param jitterNanos
+	 *            the maximum random delay added to every datagram. Jitter never
+	 *            reorders datagrams on its own.
+	 * @param bytesPerSecond
+	 *            the bandwidth of the link, or 0 for unlimited.
+	 * @param lossRate
+	 *            the probability of a datagram being dropped.
+	 * @param reorderRate
+	 *            the probability of a datagram being delayed past those sent
+	 *            after it, by up to the latency plus jitter.
+	 * @param duplicateRate
+	 *            the probability of a datagram being delivered twice.
+	 */
+	public LinkConditions(long latencyNanos, long jitterNanos, long bytesPerSecond, double lossRate,
+			double reorderRate, double duplicateRate) {
+		if (latencyNanos < 0 || jitterNanos < 0 || bytesPerSecond < 0)
+			throw new IllegalArgumentException("negative link parameter");
+		if (!isRate(lossRate) || !isRate(reorderRate) || !isRate(duplicateRate))
+			throw new IllegalArgumentException("rate outside of [0, 1]");
+		this.latencyNanos = latencyNanos;
+		this.jitterNanos = jitterNanos;
+		this.bytesPerSecond = bytesPerSecond;
+		this.lossRate = lossRate;
+		this.reorderRate = reorderRate;
+		this.duplicateRate = duplicateRate;
+	}
+
+	private static boolean isRate(double rate) {
+		return rate >= 0 && rate <= 1;
+	}
+
+	public long getLatencyNanos() {
+		return latencyNanos;
+	}
+
+	public long getJitterNanos() {
+		return jitterNanos;
+	}
+
+	public long getBytesPerSecond() {
+		return bytesPerSecond;
+	}
+
+	public double getLossRate() {
+		return lossRate;
+	}
+
+	public double getReorderRate() {
+		return reorderRate;
+	}
+
+	public double getDuplicateRate() {
+		return duplicateRate;
+	}
+
+	public LinkConditions withLatency(long latencyMillis, long jitterMillis) {
+		return new LinkConditions(latencyMillis * 1_000_000, jitterMillis * 1_000_000, bytesPerSecond, lossRate,
+				reorderRate, duplicateRate);
+	}
+
+	public LinkConditions withBandwidth(long bytesPerSecond) {
+		return new LinkConditions(latencyNanos, jitterNanos, bytesPerSecond, lossRate, reorderRate, duplicateRate);
+	}
+
+	public LinkConditions withLossRate(double lossRate) {
+		return new LinkConditions(latencyNanos, jitterNanos, bytesPerSecond, lossRate, reorderRate, duplicateRate);
+	}
+
+	public LinkConditions withReorderRate(double reorderRate) {
+		return new LinkConditions(latencyNanos, jitterNanos, bytesPerSecond, lossRate, reorderRate, duplicateRate);
+	}
+
+	public LinkConditions withDuplicateRate(double duplicateRate) {
+		return new LinkConditions(latencyNanos, jitterNanos, bytesPerSecond, lossRate, reorderRate, duplicateRate);
+	}
+
+	@Override
+	public String toString() {
+		return "LinkConditions latency=" + latencyNanos + "ns jitter=" + jitterNanos + "ns bandwidth=" + bytesPerSecond
+				+ "B/s loss=" + lossRate + " reorder=" + reorderRate + " duplicate=" + duplicateRate;
+	}
+
+}
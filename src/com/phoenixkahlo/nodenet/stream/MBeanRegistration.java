@@ -0,0 +1,50 @@
+package com.phoenixkahlo.nodenet.stream;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+/**
+ * Static helpers for registering metrics with the platform MBeanServer. Metrics
+ * are a diagnostic aid, so failure to register is reported, not thrown.
+ */
+public class MBeanRegistration {
+
+	private MBeanRegistration() {
+	}
+
+	public static ObjectName objectName(String name) {
+		try {
+			return new ObjectName(name);
+		} catch (MalformedObjectNameException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	public static void register(Object mbean, ObjectName name, PrintStream err) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, name);
+		} catch (JMException e) {
+			synchronized (err) {
+				err.println("Failed to register MBean " + name);
+				e.printStackTrace(err);
+			}
+		}
+	}
+
+	public static void unregister(ObjectName name, PrintStream err) {
+		try {
+			if (ManagementFactory.getPlatformMBeanServer().isRegistered(name))
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+		} catch (JMException e) {
+			synchronized (err) {
+				err.println("Failed to unregister MBean " + name);
+				e.printStackTrace(err);
+			}
+		}
+	}
+
+}
@@ -15,10 +15,17 @@ public interface MessageBuilder {
 
 	/**
 	 * Must ignore duplicate payloads.
+	 * 
+	 * @return whether the payload was not a duplicate.
 	 */
-	void add(ReceivedPayload payload);
+	boolean add(ReceivedPayload payload);
 	
 	boolean isComplete();
+
+	/**
+	 * @return the total size of the distinct payloads added.
+	 */
+	int getSize();
 	
 	
 	ReceivedMessage toReceived();
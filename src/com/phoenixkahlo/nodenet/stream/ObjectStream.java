@@ -1,7 +1,10 @@
 package com.phoenixkahlo.nodenet.stream;
 
 import java.net.InetSocketAddress;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 import com.phoenixkahlo.nodenet.DisconnectionException;
 import com.phoenixkahlo.nodenet.ProtocolViolationException;
@@ -14,6 +17,24 @@ public interface ObjectStream {
 
 	void sendOrdered(Object object) throws DisconnectionException;
 
+	/**
+	 * Send the object as the newest value of the key, as with
+	 * DatagramStream.sendKeyed().
+	 */
+	void sendKeyed(int key, Object object) throws DisconnectionException;
+
+	/**
+	 * Serialize the object once, so that it can be sent to many streams with
+	 * send(PreparedMessage). It can be sent with any stream that serializes
+	 * objects the same way as this one.
+	 */
+	PreparedMessage prepare(Object object);
+
+	/**
+	 * Send a message prepared with prepare(), as with send(Object).
+	 */
+	void send(PreparedMessage message) throws DisconnectionException;
+
 	Object receive() throws ProtocolViolationException, DisconnectionException;
 
 	default <E> E receive(Class<E> type) throws ProtocolViolationException, DisconnectionException {
@@ -24,6 +45,26 @@ public interface ObjectStream {
 			throw new ProtocolViolationException("Object is of wrong class: " + received);
 	}
 
+	/**
+	 * Remove up to maxObjects received objects into the collection, blocking
+	 * until at least one is available, unless maxObjects is not positive, in
+	 * which case nothing is removed. If an object fails to deserialize, the
+	 * objects before it will have been added to the collection, and the rest
+	 * are lost.
+	 * 
+	 * @return the number of objects added to the collection.
+	 */
+	int drainTo(Collection<Object> collection, int maxObjects)
+			throws ProtocolViolationException, DisconnectionException;
+
+	/**
+	 * Deliver all received objects to the handler, invoked with the executor,
+	 * instead of making them available to receive(). Received messages that
+	 * fail to deserialize are given to the violationHandler instead.
+	 */
+	void onMessage(Consumer<Object> handler, Consumer<ProtocolViolationException> violationHandler,
+			Executor executor);
+
 	void disconnect();
 
 	void setDisconnectHandler(Runnable handler, boolean launchNewThread);
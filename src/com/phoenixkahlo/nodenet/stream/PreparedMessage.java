@@ -0,0 +1,35 @@
+package com.phoenixkahlo.nodenet.stream;
+
+import static com.phoenixkahlo.nodenet.serialization.SerializationUtils.*;
+
+/**
+ * A message that has been split into payloads ahead of time, so that it can be
+ * sent to many streams without splitting, or serializing, it for each one. The
+ * payloads are shared by every stream it is sent to, so they are never
+ * modified; only the header of each transmission differs between streams.
+ */
+public class PreparedMessage {
+
+	private final byte[][] payloads;
+	private final int length;
+
+	public PreparedMessage(byte[] data) {
+		this.payloads = split(data, DatagramStreamConfig.MAX_PAYLOAD_SIZE);
+		this.length = data.length;
+	}
+
+	/**
+	 * @return the payloads, which must not be modified.
+	 */
+	byte[][] getPayloads() {
+		return payloads;
+	}
+
+	/**
+	 * @return the length of the message in bytes.
+	 */
+	public int getLength() {
+		return length;
+	}
+
+}
@@ -35,6 +35,13 @@ public class RealUDPSocketWrapper implements UDPSocketWrapper {
 		return new InetSocketAddress(packet.getAddress(), packet.getPort());
 	}
 	
+	/**
+	 * @return the local port, which is useful when bound to an ephemeral one.
+	 */
+	public int getLocalPort() {
+		return socket.getLocalPort();
+	}
+
 	@Override
 	public String toString() {
 		return "RealUDPSocketWrapper localAddress=" + socket.getLocalSocketAddress();
@@ -11,14 +11,19 @@ import com.phoenixkahlo.util.UUID;
  */
 public class ReceivedPayload {
 
-	private UUID payloadID;
+	private int payloadID;
 	private UUID messageID;
 	private OptionalInt ordinal;
 	private int partNumber;
 	private int totalParts;
 	private byte[] payload;
+	private boolean reliable = true;
+	private int lifetime = -1;
+	private boolean keyed = false;
+	private int key;
+	private int version;
 
-	public ReceivedPayload(UUID payloadID, UUID messageID, int ordinal, int partNumber, int totalParts,
+	public ReceivedPayload(int payloadID, UUID messageID, int ordinal, int partNumber, int totalParts,
 			byte[] payload) {
 		this.payloadID = payloadID;
 		this.messageID = messageID;
@@ -28,7 +33,7 @@ public class ReceivedPayload {
 		this.payload = payload;
 	}
 
-	public ReceivedPayload(UUID payloadID, UUID messageID, int partNumber, int totalParts, byte[] payload) {
+	public ReceivedPayload(int payloadID, UUID messageID, int partNumber, int totalParts, byte[] payload) {
 		this.payloadID = payloadID;
 		this.messageID = messageID;
 		this.ordinal = OptionalInt.empty();
@@ -37,7 +42,37 @@ public class ReceivedPayload {
 		this.payload = payload;
 	}
 
-	public UUID getPayloadID() {
+	/**
+	 * An expiring payload, which the receiver keeps for the lifetime in
+	 * milliseconds.
+	 */
+	public ReceivedPayload(int payloadID, UUID messageID, int partNumber, int totalParts, byte[] payload,
+			int lifetime) {
+		this(payloadID, messageID, partNumber, totalParts, payload);
+		this.lifetime = lifetime;
+	}
+
+	/**
+	 * An unreliable payload, which has no payload ID and is not confirmed.
+	 */
+	public ReceivedPayload(UUID messageID, int partNumber, int totalParts, byte[] payload, int lifetime) {
+		this(-1, messageID, partNumber, totalParts, payload, lifetime);
+		this.reliable = false;
+	}
+
+	/**
+	 * A keyed payload, which is superseded by payloads of newer versions of its
+	 * key.
+	 */
+	public ReceivedPayload(int payloadID, UUID messageID, int key, int version, int partNumber, int totalParts,
+			byte[] payload) {
+		this(payloadID, messageID, partNumber, totalParts, payload);
+		this.keyed = true;
+		this.key = key;
+		this.version = version;
+	}
+
+	public int getPayloadID() {
 		return payloadID;
 	}
 
@@ -61,4 +96,31 @@ public class ReceivedPayload {
 		return payload;
 	}
 
+	/**
+	 * @return whether the payload should be confirmed.
+	 */
+	public boolean isReliable() {
+		return reliable;
+	}
+
+	/**
+	 * @return the milliseconds the message is useful for from when the payload
+	 *         was received, or -1 if forever.
+	 */
+	public int getLifetime() {
+		return lifetime;
+	}
+
+	public boolean isKeyed() {
+		return keyed;
+	}
+
+	public int getKey() {
+		return key;
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
 }
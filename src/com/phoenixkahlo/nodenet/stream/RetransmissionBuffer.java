@@ -0,0 +1,350 @@
+package com.phoenixkahlo.nodenet.stream;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * The payloads of a stream that have been sent but not confirmed, indexed by
+ * payload ID. Payload IDs are assigned sequentially, so a ring of slots indexed
+ * by the low bits of the ID allows adding and confirming a payload in constant
+ * time, and the bookkeeping of each payload is kept in parallel primitive
+ * arrays rather than an object per payload. The transmissions themselves are
+ * kept in a TransmissionArena. The arrays are only allocated once a payload is
+ * added, starting small and growing while more IDs are unconfirmed than they
+ * span, and can be released with trim() while nothing is unconfirmed, so that
+ * an idle stream holds only a few fields.
+ * <p>
+ * Not thread safe; BasicChildStream synchronizes usage.
+ */
+public class RetransmissionBuffer {
+
+	private static final byte OCCUPIED = 1;
+	private static final byte SENT = 2;
+	private static final byte RETRANSMITTED = 4;
+	private static final byte QUEUED = 8;
+
+	private static final int INITIAL_RING_SIZE = 64;
+
+	private final TransmissionArena arena;
+	// The mask of the largest ring, and of the current one
+	private final int maxMask;
+	private int mask;
+
+	// Null while trimmed
+	private byte[] states;
+	private int[] slots;
+	private short[] lengths;
+	private short[] payloadSizes;
+	private long[] lastSentTimes;
+	private long[] firstSentNanos;
+	private long[] deadlines;
+
+	// Every occupied ID is in [oldest, next)
+	private int oldest = 0;
+	private int next = 0;
+	private int size = 0;
+	private int bytes = 0;
+	// The number of payloads with deadlines
+	private int expiring = 0;
+
+	/**
+	 * @param capacity
+	 *            the span of IDs that may be unconfirmed at once, which is
+	 *            rounded up to a power of 2.
+	 */
+	public RetransmissionBuffer(TransmissionArena arena, int capacity) {
+		this.arena = arena;
+		int ringSize = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+		maxMask = ringSize - 1;
+	}
+
+	private void allocate() {
+		mask = Math.min(INITIAL_RING_SIZE - 1, maxMask);
+		int ringSize = mask + 1;
+		states = new byte[ringSize];
+		slots = new int[ringSize];
+		lengths = new short[ringSize];
+		payloadSizes = new short[ringSize];
+		lastSentTimes = new long[ringSize];
+		firstSentNanos = new long[ringSize];
+		deadlines = new long[ringSize];
+	}
+
+	/**
+	 * Reallocate the arrays at twice the size, keeping every unconfirmed
+	 * payload at its index in the larger ring.
+	 */
+	private void grow() {
+		int newMask = (mask << 1) | 1;
+		byte[] newStates = new byte[newMask + 1];
+		int[] newSlots = new int[newMask + 1];
+		short[] newLengths = new short[newMask + 1];
+		short[] newPayloadSizes = new short[newMask + 1];
+		long[] newLastSentTimes = new long[newMask + 1];
+		long[] newFirstSentNanos = new long[newMask + 1];
+		long[] newDeadlines = new long[newMask + 1];
+		for (int payloadID = oldest; payloadID != next; payloadID++) {
+			int from = payloadID & mask;
+			int to = payloadID & newMask;
+			newStates[to] = states[from];
+			newSlots[to] = slots[from];
+			newLengths[to] = lengths[from];
+			newPayloadSizes[to] = payloadSizes[from];
+			newLastSentTimes[to] = lastSentTimes[from];
+			newFirstSentNanos[to] = firstSentNanos[from];
+			newDeadlines[to] = deadlines[from];
+		}
+		states = newStates;
+		slots = newSlots;
+		lengths = newLengths;
+		payloadSizes = newPayloadSizes;
+		lastSentTimes = newLastSentTimes;
+		firstSentNanos = newFirstSentNanos;
+		deadlines = newDeadlines;
+		mask = newMask;
+	}
+
+	/**
+	 * Release the arrays if nothing is unconfirmed. They are allocated again
+	 * when a payload is next added.
+	 */
+	public void trim() {
+		if (size > 0)
+			return;
+		states = null;
+		slots = null;
+		lengths = null;
+		payloadSizes = null;
+		lastSentTimes = null;
+		firstSentNanos = null;
+		deadlines = null;
+	}
+
+	/**
+	 * @return whether the arrays are allocated.
+	 */
+	public boolean isAllocated() {
+		return states != null;
+	}
+
+	/**
+	 * @return the ID that the next added payload will have.
+	 */
+	public int nextPayloadID() {
+		return next;
+	}
+
+	/**
+	 * @return the ID of the oldest unconfirmed payload, or nextPayloadID() if
+	 *         nothing is unconfirmed. Every ID before it was confirmed, or
+	 *         abandoned as expired or superseded.
+	 */
+	public int oldestPayloadID() {
+		return oldest;
+	}
+
+	/**
+	 * @return whether another payload can be added without its ID colliding
+	 *         with one that is still unconfirmed.
+	 */
+	public boolean hasRoom() {
+		return next - oldest <= maxMask;
+	}
+
+	/**
+	 * Add a transmission, which must already contain nextPayloadID(), as queued
+	 * but not yet sent.
+	 *
+	 * @return the payload ID.
+	 */
+	public int add(byte[] transmission, int payloadSize) {
+		return add(transmission, payloadSize, 0);
+	}
+
+	/**
+	 * Add a transmission, as add(byte[], int), that should not be retransmitted
+	 * after the deadline, a System.currentTimeMillis().
+	 *
+	 * @return the payload ID.
+	 */
+	public int add(byte[] transmission, int payloadSize, long deadline) {
+		if (!hasRoom())
+			throw new IllegalStateException("retransmission buffer is full");
+		if (states == null)
+			allocate();
+		else if (next - oldest > mask)
+			grow();
+		int payloadID = next++;
+		int index = payloadID & mask;
+		int slot = arena.allocate();
+		arena.write(slot, transmission);
+		slots[index] = slot;
+		lengths[index] = (short) transmission.length;
+		payloadSizes[index] = (short) payloadSize;
+		lastSentTimes[index] = System.currentTimeMillis();
+		deadlines[index] = deadline;
+		if (deadline != 0)
+			expiring++;
+		states[index] = OCCUPIED | QUEUED;
+		size++;
+		bytes += payloadSize;
+		return payloadID;
+	}
+
+	/**
+	 * @return whether the payload is unconfirmed.
+	 */
+	public boolean contains(int payloadID) {
+		return payloadID - oldest >= 0 && next - payloadID > 0 && (states[payloadID & mask] & OCCUPIED) != 0;
+	}
+
+	/**
+	 * Remove a confirmed payload, returning its slot to the arena.
+	 */
+	public void remove(int payloadID) {
+		if (!contains(payloadID))
+			return;
+		int index = payloadID & mask;
+		arena.release(slots[index]);
+		states[index] = 0;
+		size--;
+		bytes -= payloadSizes[index];
+		if (deadlines[index] != 0)
+			expiring--;
+		while (oldest != next && (states[oldest & mask] & OCCUPIED) == 0)
+			oldest++;
+	}
+
+	/**
+	 * Remove every payload whose deadline is before the time, returning their
+	 * slots to the arena.
+	 *
+	 * @return the number removed.
+	 */
+	public int removeExpired(long time) {
+		if (expiring == 0)
+			return 0;
+		int removed = 0;
+		for (int payloadID = oldest; payloadID != next; payloadID++) {
+			int index = payloadID & mask;
+			if ((states[index] & OCCUPIED) != 0 && deadlines[index] != 0 && time > deadlines[index]) {
+				remove(payloadID);
+				removed++;
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Mark that the payload is waiting to be sent by the pacer, in which case
+	 * it should not be retransmitted.
+	 */
+	public void markQueued(int payloadID) {
+		if (contains(payloadID))
+			states[payloadID & mask] |= QUEUED;
+	}
+
+	/**
+	 * Record that the payload was sent, or retransmitted, at the given time.
+	 */
+	public void markSent(int payloadID, long time) {
+		if (!contains(payloadID))
+			return;
+		int index = payloadID & mask;
+		if ((states[index] & SENT) != 0) {
+			states[index] |= RETRANSMITTED;
+		} else {
+			states[index] |= SENT;
+			firstSentNanos[index] = System.nanoTime();
+		}
+		states[index] &= ~QUEUED;
+		lastSentTimes[index] = time;
+	}
+
+	public boolean isQueued(int payloadID) {
+		return (states[payloadID & mask] & QUEUED) != 0;
+	}
+
+	public boolean isSent(int payloadID) {
+		return (states[payloadID & mask] & SENT) != 0;
+	}
+
+	public boolean isRetransmitted(int payloadID) {
+		return (states[payloadID & mask] & RETRANSMITTED) != 0;
+	}
+
+	public long getLastSentTime(int payloadID) {
+		return lastSentTimes[payloadID & mask];
+	}
+
+	/**
+	 * @return the System.nanoTime() at which the payload was first sent, for
+	 *         measuring round trip time.
+	 */
+	public long getFirstSentNanos(int payloadID) {
+		return firstSentNanos[payloadID & mask];
+	}
+
+	/**
+	 * @return the deadline of the payload, or 0 if it has none.
+	 */
+	public long getDeadline(int payloadID) {
+		return deadlines[payloadID & mask];
+	}
+
+	/**
+	 * @return a copy of the payload's transmission on the heap.
+	 */
+	public byte[] getTransmission(int payloadID) {
+		int index = payloadID & mask;
+		return arena.read(slots[index], lengths[index]);
+	}
+
+	/**
+	 * Invoke the consumer with every unconfirmed payload ID, oldest first.
+	 */
+	public void forEach(IntConsumer consumer) {
+		for (int payloadID = oldest; payloadID != next; payloadID++)
+			if ((states[payloadID & mask] & OCCUPIED) != 0)
+				consumer.accept(payloadID);
+	}
+
+	/**
+	 * @return the number of unconfirmed payloads.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the total payload bytes of the unconfirmed payloads.
+	 */
+	public int getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * @return copies of all the unconfirmed transmissions, oldest first.
+	 */
+	public List<byte[]> getTransmissions() {
+		List<byte[]> transmissions = new ArrayList<>(size);
+		forEach(payloadID -> transmissions.add(getTransmission(payloadID)));
+		return transmissions;
+	}
+
+	/**
+	 * Remove every payload, returning all slots to the arena.
+	 */
+	public void clear() {
+		forEach(payloadID -> arena.release(slots[payloadID & mask]));
+		if (states != null)
+			Arrays.fill(states, (byte) 0);
+		oldest = next;
+		size = 0;
+		bytes = 0;
+		expiring = 0;
+	}
+
+}
@@ -0,0 +1,218 @@
+package com.phoenixkahlo.nodenet.stream;
+
+import java.util.Arrays;
+
+/**
+ * The payload IDs that a stream has received, for detecting gaps in the
+ * sequence. Payload IDs are assigned sequentially, so an ID that has not
+ * arrived while later ones have was probably lost, unless it was merely
+ * reordered. Gaps are reported once they have been missing for a tolerance,
+ * and reported again each time an interval passes while they are still
+ * missing, as the report or the retransmission it prompts may be lost too.
+ * <p>
+ * Only a window of IDs behind the newest received is tracked, as the sender
+ * can have no more than that unconfirmed; older gaps are forgotten, as are
+ * gaps the sender has abandoned, such as expired or superseded payloads. The window
+ * is only allocated once an ID is received, starting small and growing while
+ * the span of tracked IDs outgrows it, and can be released with trim().
+ * <p>
+ * Not thread safe; BasicChildStream synchronizes usage.
+ */
+public class SequenceTracker {
+
+	private static final byte RECEIVED = 1;
+	private static final byte REPORTED = 2;
+
+	private static final int INITIAL_WINDOW_SIZE = 64;
+
+	// The mask of the largest window, and of the current one
+	private final int maxMask;
+	private int mask;
+	// Null while trimmed
+	private byte[] states;
+	// The times at which missing IDs were first known to be missing, or were
+	// last reported
+	private long[] detectedTimes;
+
+	// Every ID before base has been received or forgotten, and no ID from next
+	// on has been received
+	private int base = 0;
+	private int next = 0;
+	// The number of missing IDs that have not been reported yet, and the
+	// number that have
+	private int unreported = 0;
+	private int reported = 0;
+
+	/**
+	 * @param capacity
+	 *            the span of IDs to track, which is rounded up to a power of 2.
+	 */
+	public SequenceTracker(int capacity) {
+		int windowSize = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+		maxMask = windowSize - 1;
+	}
+
+	/**
+	 * Release the window, forgetting any gaps in it. It is allocated again
+	 * when an ID is next received.
+	 */
+	public void trim() {
+		states = null;
+		detectedTimes = null;
+		base = next;
+		unreported = 0;
+		reported = 0;
+	}
+
+	/**
+	 * @return whether the window is allocated.
+	 */
+	public boolean isAllocated() {
+		return states != null;
+	}
+
+	/**
+	 * Record that the payload ID was received at the given time, making any
+	 * skipped IDs missing as of that time.
+	 *
+	 * @return false if the ID was already received, or is too old to track.
+	 */
+	public boolean receive(int payloadID, long time) {
+		if (payloadID - base < 0)
+			return false;
+		if (states == null) {
+			mask = Math.min(INITIAL_WINDOW_SIZE - 1, maxMask);
+			states = new byte[mask + 1];
+			detectedTimes = new long[mask + 1];
+		}
+		if (payloadID - next >= 0) {
+			if (payloadID - base > mask && mask < maxMask)
+				grow(payloadID - base);
+			if (payloadID - base > mask) {
+				// Forget the gaps that no longer fit in the window
+				int newBase = payloadID - mask;
+				for (int id = base; id != next && id - newBase < 0; id++)
+					forget(states[id & mask]);
+				base = newBase;
+				if (next - base < 0)
+					next = base;
+			}
+			for (int id = next; id != payloadID; id++) {
+				states[id & mask] = 0;
+				detectedTimes[id & mask] = time;
+				unreported++;
+			}
+			states[payloadID & mask] = RECEIVED;
+			next = payloadID + 1;
+		} else {
+			int index = payloadID & mask;
+			if ((states[index] & RECEIVED) != 0)
+				return false;
+			forget(states[index]);
+			states[index] |= RECEIVED;
+		}
+		while (base != next && (states[base & mask] & RECEIVED) != 0)
+			base++;
+		return true;
+	}
+
+	/**
+	 * Forget the gaps before the payload ID, which the sender has confirmed or
+	 * abandoned, so that they are not reported. IDs before it are then too old
+	 * to track.
+	 */
+	public void forgetBefore(int payloadID) {
+		if (payloadID - base <= 0)
+			return;
+		if (payloadID - next >= 0) {
+			for (int id = base; id != next; id++)
+				forget(states[id & mask]);
+			base = next = payloadID;
+		} else {
+			for (int id = base; id != payloadID; id++)
+				forget(states[id & mask]);
+			base = payloadID;
+			while (base != next && (states[base & mask] & RECEIVED) != 0)
+				base++;
+		}
+	}
+
+	/**
+	 * Stop counting an ID in the given state as missing, if it was.
+	 */
+	private void forget(byte state) {
+		if ((state & RECEIVED) != 0)
+			return;
+		if ((state & REPORTED) != 0)
+			reported--;
+		else
+			unreported--;
+	}
+
+	/**
+	 * Reallocate the window at the smallest size, up to the largest, that
+	 * spans the given distance from base.
+	 */
+	private void grow(int span) {
+		int newMask = mask;
+		while (newMask < span && newMask < maxMask)
+			newMask = (newMask << 1) | 1;
+		byte[] newStates = new byte[newMask + 1];
+		long[] newDetectedTimes = new long[newMask + 1];
+		for (int id = base; id != next; id++) {
+			newStates[id & newMask] = states[id & mask];
+			newDetectedTimes[id & newMask] = detectedTimes[id & mask];
+		}
+		states = newStates;
+		detectedTimes = newDetectedTimes;
+		mask = newMask;
+	}
+
+	/**
+	 * Report the IDs that have been missing for at least the tolerance, up to
+	 * a maximum, so that they are not reported again.
+	 *
+	 * @return the reported IDs, oldest first.
+	 */
+	public int[] reportMissing(long time, long tolerance, int max) {
+		return reportMissing(time, tolerance, Long.MAX_VALUE, max);
+	}
+
+	/**
+	 * Report the IDs that have been missing for at least the tolerance, or
+	 * that are still missing at least the interval after they were last
+	 * reported, up to a maximum.
+	 *
+	 * @return the reported IDs, oldest first.
+	 */
+	public int[] reportMissing(long time, long tolerance, long interval, int max) {
+		if (unreported == 0 && reported == 0)
+			return new int[0];
+		int[] missing = new int[Math.min(max, unreported + reported)];
+		int count = 0;
+		for (int id = base; id != next && count < missing.length; id++) {
+			int index = id & mask;
+			if ((states[index] & RECEIVED) != 0)
+				continue;
+			boolean wasReported = (states[index] & REPORTED) != 0;
+			if (time - detectedTimes[index] < (wasReported ? interval : tolerance))
+				continue;
+			if (!wasReported) {
+				states[index] = REPORTED;
+				unreported--;
+				reported++;
+			}
+			detectedTimes[index] = time;
+			missing[count++] = id;
+		}
+		return count == missing.length ? missing : Arrays.copyOf(missing, count);
+	}
+
+	/**
+	 * @return the number of missing IDs that have not been reported.
+	 */
+	public int getUnreported() {
+		return unreported;
+	}
+
+}
@@ -1,31 +1,41 @@
 package com.phoenixkahlo.nodenet.stream;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 import com.phoenixkahlo.nodenet.DisconnectionException;
 import com.phoenixkahlo.nodenet.ProtocolViolationException;
+import com.phoenixkahlo.nodenet.serialization.ByteSink;
+import com.phoenixkahlo.nodenet.serialization.ByteSource;
 import com.phoenixkahlo.nodenet.serialization.Deserializer;
 import com.phoenixkahlo.nodenet.serialization.Serializer;
+import com.phoenixkahlo.nodenet.serialization.SymbolDecoder;
+import com.phoenixkahlo.nodenet.serialization.SymbolEncoder;
+import com.phoenixkahlo.nodenet.serialization.UnresolvedSymbolException;
 
 /**
  * A wrapper around a DatagramStream that uses a serialization/deserialization
  * service to send and receive objects instead of byte arrays.
+ * <p>
+ * Symbols, such as class names, are sent with a dictionary that lasts as long
+ * as the stream, so that each is only sent in full once.
  */
 public class SerializerObjectStream implements ObjectStream {
 
 	private Serializer serializer;
 	private Deserializer deserializer;
 	private DatagramStream socket;
+	private SymbolSession session;
 
 	public SerializerObjectStream(DatagramStream socket, Serializer serializer) {
 		this.socket = socket;
 		this.serializer = serializer;
+		this.session = new SymbolSession(socket, this::deserialize);
 		rebuildDeserializer();
 	}
 
@@ -37,40 +47,80 @@ public class SerializerObjectStream implements ObjectStream {
 	@Override
 	public void send(Object object) throws DisconnectionException {
 		// System.out.println("sending " + object + " to " + socket);
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		try {
-			serializer.serialize(object, baos);
-		} catch (IOException e) {
-			System.err.println("IOException while writing to BAOS");
-			e.printStackTrace();
-			throw new RuntimeException();
-		}
-		socket.send(baos.toByteArray());
+		List<Integer> pending = new ArrayList<>();
+		socket.send(serialize(object, SymbolEncoder.Mode.UNORDERED, pending));
+		session.getEncoder().commit(pending, SymbolEncoder.Mode.UNORDERED);
 	}
 
 	@Override
 	public void sendOrdered(Object object) throws DisconnectionException {
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		List<Integer> pending = new ArrayList<>();
+		socket.sendOrdered(serialize(object, SymbolEncoder.Mode.ORDERED, pending));
+		session.getEncoder().commit(pending, SymbolEncoder.Mode.ORDERED);
+	}
+
+	@Override
+	public void sendKeyed(int key, Object object) throws DisconnectionException {
+		socket.sendKeyed(key, serialize(object, SymbolEncoder.Mode.INLINE, null));
+	}
+
+	@Override
+	public PreparedMessage prepare(Object object) {
+		return new PreparedMessage(serialize(object, SymbolEncoder.Mode.INLINE, null));
+	}
+
+	@Override
+	public void send(PreparedMessage message) throws DisconnectionException {
+		socket.send(message);
+	}
+
+	@Override
+	public Object receive() throws ProtocolViolationException, DisconnectionException {
+		return session.receive();
+	}
+
+	@Override
+	public int drainTo(Collection<Object> collection, int maxObjects)
+			throws ProtocolViolationException, DisconnectionException {
+		return session.drainTo(collection, maxObjects);
+	}
+
+	@Override
+	public void onMessage(Consumer<Object> handler, Consumer<ProtocolViolationException> violationHandler,
+			Executor executor) {
+		session.onMessage(handler, violationHandler, executor);
+	}
+
+	/**
+	 * Serialize with the session's symbols, adding definitions to pending, to
+	 * be committed once the message has been sent.
+	 */
+	private byte[] serialize(Object object, SymbolEncoder.Mode mode, List<Integer> pending) {
+		ByteSink sink = new ByteSink();
+		sink.setSymbols(session.getEncoder(), mode, pending);
 		try {
-			serializer.serialize(object, baos);
+			serializer.serialize(object, sink);
 		} catch (IOException e) {
-			System.err.println("IOException while writing to BAOS");
+			System.err.println("IOException while writing to ByteSink");
 			e.printStackTrace();
 			throw new RuntimeException();
 		}
-		socket.sendOrdered(baos.toByteArray());
+		return sink.toByteArray();
 	}
 
-	@Override
-	public Object receive() throws ProtocolViolationException, DisconnectionException {
-		byte[] bin = socket.receive();
-		InputStream in = new ByteArrayInputStream(bin);
+	private Object deserialize(byte[] bin, SymbolDecoder symbols)
+			throws ProtocolViolationException, UnresolvedSymbolException {
+		ByteSource in = new ByteSource(bin);
+		in.setSymbols(symbols);
 		try {
 			Object received = deserializer.deserialize(in);
 			// System.out.println("received " + received + " from " + socket);
 			return received;
+		} catch (UnresolvedSymbolException e) {
+			throw e;
 		} catch (IOException e) {
-			throw new RuntimeException(e);
+			// Such as an EOFException, when the message is truncated
+			throw new ProtocolViolationException(e);
 		}
 	}
 
@@ -101,13 +151,7 @@ public class SerializerObjectStream implements ObjectStream {
 
 	@Override
 	public List<Object> getUnconfirmed() {
-		return socket.getUnconfirmed().stream().map(bin -> {
-			try {
-				return deserializer.deserialize(new ByteArrayInputStream(bin));
-			} catch (IOException | ProtocolViolationException e) {
-				return "[this object failed to deserialize because of " + e + "]";
-			}
-		}).collect(Collectors.toList());
+		return session.getUnconfirmed();
 	}
 
 	@Override
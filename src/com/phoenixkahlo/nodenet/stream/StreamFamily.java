@@ -1,8 +1,9 @@
 package com.phoenixkahlo.nodenet.stream;
 
 import java.net.InetSocketAddress;
-import java.util.List;
+import java.util.Collection;
 import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
@@ -62,12 +63,56 @@ public interface StreamFamily {
 	}
 	
 	/**
-	 * Useage of children list should be synchronized.
+	 * @return a live view of the children, which can be iterated without
+	 *         synchronization and reflects concurrent changes weakly.
 	 */
-	List<ChildStream> getChildren();
+	Collection<ChildStream> getChildren();
+
+	/**
+	 * @return the child with the connection ID, if there is one, without
+	 *         searching the children.
+	 */
+	Optional<ChildStream> getChild(UUID connectionID);
+
+	/**
+	 * Add a child, keyed by its connection ID.
+	 */
+	void addChild(ChildStream child);
+
+	/**
+	 * Remove the child, if it is still the child with its connection ID.
+	 */
+	void removeChild(ChildStream child);
 
 	UDPSocketWrapper getUDPWrapper();
 
+	/**
+	 * @return the metrics of the family as a whole, which are registered as an
+	 *         MBean until closing.
+	 */
+	StreamFamilyMetrics getMetrics();
+
+	/**
+	 * Set whether children connected from now on register their metrics as
+	 * MBeans, which is off by default, as an MBean for every connection costs
+	 * memory that a family of many connections may not want to spend.
+	 */
+	void setChildMBeansEnabled(boolean enabled);
+
+	boolean isChildMBeansEnabled();
+
+	/**
+	 * @return a scheduler shared by the children for short, non blocking
+	 *         tasks, such as paced transmission. Shut down on close.
+	 */
+	ScheduledExecutorService getScheduler();
+
+	/**
+	 * @return the direct memory shared by the children for keeping unconfirmed
+	 *         transmissions.
+	 */
+	TransmissionArena getArena();
+
 	/**
 	 * Close all children and release all resources.
 	 */
@@ -80,14 +125,20 @@ public interface StreamFamily {
 	void receiveConnect(UUID connectionID, InetSocketAddress from);
 
 	/**
-	 * Realize the potential connection, add to the list of children, and return
-	 * any threads waiting on connect.
+	 * Realize the potential connection with the given resumption token, add to
+	 * the list of children, and return any threads waiting on connect.
 	 */
-	void receiveAccept(UUID connectionID, InetSocketAddress from);
+	void receiveAccept(UUID connectionID, UUID resumptionToken, InetSocketAddress from);
 
 	/**
 	 * Return empty any threads waiting on connect.
 	 */
 	void receiveReject(UUID connectionID, InetSocketAddress from);
 
+	/**
+	 * Delegate a request to resume to the child with the connection ID, or
+	 * respond with DISCONNECT if there is no such child.
+	 */
+	void receiveResume(UUID connectionID, UUID resumptionToken, InetSocketAddress from);
+
 }
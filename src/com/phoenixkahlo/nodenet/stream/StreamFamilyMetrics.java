@@ -0,0 +1,160 @@
+package com.phoenixkahlo.nodenet.stream;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+import javax.management.ObjectName;
+
+/**
+ * Transport metrics for a StreamFamily, exposed through JMX. Counters are
+ * LongAdders, so that the receiving thread and many sending threads can update
+ * them without contending.
+ */
+public class StreamFamilyMetrics implements StreamFamilyMetricsMBean {
+
+	public static final String DOMAIN = "com.phoenixkahlo.nodenet.stream";
+
+	private static final AtomicInteger nextFamilyNumber = new AtomicInteger(0);
+
+	private final String familyName = "family-" + nextFamilyNumber.getAndIncrement();
+
+	private final LongAdder datagramsSent = new LongAdder();
+	private final LongAdder bytesSent = new LongAdder();
+	private final LongAdder datagramsReceived = new LongAdder();
+	private final LongAdder bytesReceived = new LongAdder();
+	private final LongAdder retransmissions = new LongAdder();
+	private final LongAdder fastRetransmissions = new LongAdder();
+	private final LongAdder duplicatePayloads = new LongAdder();
+	private final LongAdder expiredPayloads = new LongAdder();
+	private final LongAdder expiredMessages = new LongAdder();
+	private final LongAdder supersededPayloads = new LongAdder();
+	private final LongAdder supersededMessages = new LongAdder();
+	private final LongAdder droppedDatagrams = new LongAdder();
+
+	private final IntSupplier connections;
+
+	public StreamFamilyMetrics(IntSupplier connections) {
+		this.connections = connections;
+	}
+
+	/**
+	 * @return the name of the family, unique within this JVM, by which its
+	 *         children's MBeans are grouped.
+	 */
+	public String getFamilyName() {
+		return familyName;
+	}
+
+	public ObjectName getObjectName() {
+		return MBeanRegistration.objectName(DOMAIN + ":type=StreamFamily,name=" + familyName);
+	}
+
+	public void recordSent(int bytes) {
+		datagramsSent.increment();
+		bytesSent.add(bytes);
+	}
+
+	public void recordReceived(int bytes) {
+		datagramsReceived.increment();
+		bytesReceived.add(bytes);
+	}
+
+	public void recordRetransmission() {
+		retransmissions.increment();
+	}
+
+	public void recordFastRetransmission() {
+		fastRetransmissions.increment();
+	}
+
+	public void recordDuplicatePayload() {
+		duplicatePayloads.increment();
+	}
+
+	public void recordExpiredPayloads(int count) {
+		expiredPayloads.add(count);
+	}
+
+	public void recordExpiredMessage() {
+		expiredMessages.increment();
+	}
+
+	public void recordSupersededPayloads(int count) {
+		supersededPayloads.add(count);
+	}
+
+	public void recordSupersededMessage() {
+		supersededMessages.increment();
+	}
+
+	public void recordDroppedDatagram() {
+		droppedDatagrams.increment();
+	}
+
+	@Override
+	public long getDatagramsSent() {
+		return datagramsSent.sum();
+	}
+
+	@Override
+	public long getBytesSent() {
+		return bytesSent.sum();
+	}
+
+	@Override
+	public long getDatagramsReceived() {
+		return datagramsReceived.sum();
+	}
+
+	@Override
+	public long getBytesReceived() {
+		return bytesReceived.sum();
+	}
+
+	@Override
+	public long getRetransmissions() {
+		return retransmissions.sum();
+	}
+
+	@Override
+	public long getFastRetransmissions() {
+		return fastRetransmissions.sum();
+	}
+
+	@Override
+	public long getDuplicatePayloads() {
+		return duplicatePayloads.sum();
+	}
+
+	@Override
+	public long getExpiredPayloads() {
+		return expiredPayloads.sum();
+	}
+
+	@Override
+	public long getExpiredMessages() {
+		return expiredMessages.sum();
+	}
+
+	@Override
+	public long getSupersededPayloads() {
+		return supersededPayloads.sum();
+	}
+
+	@Override
+	public long getSupersededMessages() {
+		return supersededMessages.sum();
+	}
+
+	@Override
+	public long getDroppedDatagrams() {
+		return droppedDatagrams.sum();
+	}
+
+	@Override
+	public int getConnections() {
+		return connections.getAsInt();
+	}
+
+}
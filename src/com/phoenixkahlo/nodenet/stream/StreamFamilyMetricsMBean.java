@@ -0,0 +1,44 @@
+package com.phoenixkahlo.nodenet.stream;
+
+/**
+ * The management interface of a StreamFamily's metrics. Counters are totals
+ * over the lifetime of the family, including all children that have since
+ * disconnected.
+ */
+public interface StreamFamilyMetricsMBean {
+
+	long getDatagramsSent();
+
+	long getBytesSent();
+
+	long getDatagramsReceived();
+
+	long getBytesReceived();
+
+	long getRetransmissions();
+
+	long getFastRetransmissions();
+
+	long getDuplicatePayloads();
+
+	long getExpiredPayloads();
+
+	long getExpiredMessages();
+
+	long getSupersededPayloads();
+
+	long getSupersededMessages();
+
+	/**
+	 * @return the number of received datagrams that were discarded because
+	 *         they were malformed, came from the wrong address, belonged to no
+	 *         connection, or did not fit in a receive buffer.
+	 */
+	long getDroppedDatagrams();
+
+	/**
+	 * @return the number of currently connected children.
+	 */
+	int getConnections();
+
+}
@@ -0,0 +1,106 @@
+package com.phoenixkahlo.nodenet.stream;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.Registration;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.DefaultClassResolver;
+import com.esotericsoftware.kryo.util.ObjectMap;
+import com.phoenixkahlo.nodenet.ProtocolViolationException;
+import com.phoenixkahlo.nodenet.serialization.SymbolDecoder;
+import com.phoenixkahlo.nodenet.serialization.SymbolEncoder;
+
+/**
+ * A ClassResolver that writes the names of unregistered classes with a
+ * stream's symbol dictionary, when one is set, so that each name is only sent
+ * in full once per stream rather than once per object graph. The dictionary
+ * is set for the duration of a single write or read, as the Kryo is shared by
+ * all the streams its thread uses. A reference to an undefined name is a
+ * KryoException caused by an UnresolvedSymbolException.
+ */
+class SymbolClassResolver extends DefaultClassResolver {
+
+	private SymbolEncoder encoder;
+	private SymbolEncoder.Mode mode;
+	private List<Integer> pending;
+	private SymbolDecoder decoder;
+
+	SymbolEncoder getEncoder() {
+		return encoder;
+	}
+
+	SymbolEncoder.Mode getMode() {
+		return mode;
+	}
+
+	List<Integer> getPending() {
+		return pending;
+	}
+
+	SymbolDecoder getDecoder() {
+		return decoder;
+	}
+
+	/**
+	 * Write names with the encoder in the mode, adding their definitions to
+	 * pending if it is not null, or with Kryo's per object graph names if the
+	 * encoder is null.
+	 */
+	void setEncoder(SymbolEncoder encoder, SymbolEncoder.Mode mode, List<Integer> pending) {
+		this.encoder = encoder;
+		this.mode = mode;
+		this.pending = pending;
+	}
+
+	/**
+	 * Read names with the decoder, or with Kryo's per object graph names if
+	 * the decoder is null.
+	 */
+	void setDecoder(SymbolDecoder decoder) {
+		this.decoder = decoder;
+	}
+
+	// The raw Class is in the signature inherited from DefaultClassResolver
+	@SuppressWarnings("rawtypes")
+	@Override
+	protected void writeName(Output output, Class type, Registration registration) {
+		if (encoder == null) {
+			super.writeName(output, type, registration);
+			return;
+		}
+		output.writeVarInt(NAME + 2, true);
+		try {
+			encoder.write(type.getName(), mode, output, pending);
+		} catch (IOException e) {
+			throw new KryoException(e);
+		}
+	}
+
+	@Override
+	protected Registration readName(Input input) {
+		if (decoder == null)
+			return super.readName(input);
+		String name;
+		try {
+			name = decoder.read(input);
+		} catch (IOException | ProtocolViolationException e) {
+			throw new KryoException(e);
+		}
+		Class<?> type = getTypeByName(name);
+		if (type == null) {
+			try {
+				type = Class.forName(name, false, kryo.getClassLoader());
+			} catch (ClassNotFoundException e) {
+				throw new KryoException("Unable to find class: " + name, e);
+			}
+			if (nameToClass == null)
+				nameToClass = new ObjectMap<>();
+			nameToClass.put(name, type);
+		}
+		return kryo.getRegistration(type);
+	}
+
+}
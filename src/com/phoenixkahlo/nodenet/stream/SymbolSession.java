@@ -0,0 +1,208 @@
+package com.phoenixkahlo.nodenet.stream;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import com.phoenixkahlo.nodenet.DisconnectionException;
+import com.phoenixkahlo.nodenet.ProtocolViolationException;
+import com.phoenixkahlo.nodenet.serialization.SymbolDecoder;
+import com.phoenixkahlo.nodenet.serialization.SymbolEncoder;
+import com.phoenixkahlo.nodenet.serialization.UnresolvedSymbolException;
+
+/**
+ * The receiving side of an ObjectStream whose messages share a symbol
+ * dictionary that lasts as long as the stream, along with the encoder for its
+ * sent messages. A message sent without ordering may reference a symbol whose
+ * definition is still in flight, in which case it is held until the
+ * definition has been received.
+ */
+class SymbolSession {
+
+	/**
+	 * Decodes a received message with the session's dictionary.
+	 */
+	@FunctionalInterface
+	interface Decoding {
+
+		/**
+		 * @throws UnresolvedSymbolException
+		 *             if the message references a symbol that has not been
+		 *             defined yet.
+		 * @throws ProtocolViolationException
+		 *             if the message is malformed.
+		 */
+		Object decode(byte[] bin, SymbolDecoder symbols) throws ProtocolViolationException, UnresolvedSymbolException;
+
+	}
+
+	/**
+	 * The most bytes of received messages that can be held waiting for symbol
+	 * definitions, beyond which the remote is assumed to be violating the
+	 * protocol. Held messages have left the DatagramStream's receive buffer,
+	 * so they are allowed as much memory again; a remote would only exceed it
+	 * legitimately by sending a receive buffer's worth of messages while a
+	 * definition is lost.
+	 */
+	static final int MAX_UNRESOLVED_BYTES = DatagramStreamConfig.RECEIVE_BUFFER_SIZE;
+
+	private final DatagramStream socket;
+	private final Decoding decoding;
+
+	private final SymbolEncoder outgoingSymbols = new SymbolEncoder();
+	private final SymbolDecoder incomingSymbols = new SymbolDecoder();
+	// Messages waiting for symbol definitions, and their total length, guarded
+	// by incomingSymbols
+	private final List<byte[]> unresolved = new ArrayList<>();
+	private int unresolvedBytes = 0;
+	// Objects decoded but not yet received, which may be null, guarded by
+	// itself
+	private final LinkedList<Object> ready = new LinkedList<>();
+
+	SymbolSession(DatagramStream socket, Decoding decoding) {
+		this.socket = socket;
+		this.decoding = decoding;
+	}
+
+	/**
+	 * @return the dictionary for sent messages.
+	 */
+	SymbolEncoder getEncoder() {
+		return outgoingSymbols;
+	}
+
+	Object receive() throws ProtocolViolationException, DisconnectionException {
+		while (true) {
+			synchronized (ready) {
+				if (!ready.isEmpty())
+					return ready.removeFirst();
+			}
+			List<Object> objects = accept(socket.receive());
+			if (!objects.isEmpty()) {
+				synchronized (ready) {
+					ready.addAll(objects.subList(1, objects.size()));
+				}
+				return objects.get(0);
+			}
+		}
+	}
+
+	int drainTo(Collection<Object> collection, int maxObjects)
+			throws ProtocolViolationException, DisconnectionException {
+		if (maxObjects <= 0)
+			return 0;
+		int drained = 0;
+		while (drained == 0) {
+			synchronized (ready) {
+				while (drained < maxObjects && !ready.isEmpty()) {
+					collection.add(ready.removeFirst());
+					drained++;
+				}
+			}
+			if (drained > 0)
+				break;
+			List<byte[]> bins = new ArrayList<>();
+			socket.drainTo(bins, maxObjects);
+			for (byte[] bin : bins) {
+				List<Object> objects = accept(bin);
+				synchronized (ready) {
+					ready.addAll(objects);
+				}
+			}
+		}
+		return drained;
+	}
+
+	void onMessage(Consumer<Object> handler, Consumer<ProtocolViolationException> violationHandler,
+			Executor executor) {
+		socket.onMessage(bin -> {
+			List<Object> received;
+			try {
+				received = accept(bin);
+			} catch (ProtocolViolationException e) {
+				violationHandler.accept(e);
+				return;
+			}
+			received.forEach(handler);
+		}, executor);
+	}
+
+	/**
+	 * Decode a received message, or hold it if it references undefined
+	 * symbols. If it defines symbols, decode any held messages that can now
+	 * be.
+	 *
+	 * @return the objects that can now be received, in the order that they
+	 *         became available.
+	 */
+	private List<Object> accept(byte[] bin) throws ProtocolViolationException {
+		synchronized (incomingSymbols) {
+			int defined = incomingSymbols.size();
+			try {
+				Object received = decoding.decode(bin, incomingSymbols);
+				if (unresolved.isEmpty() || incomingSymbols.size() == defined)
+					return Collections.singletonList(received);
+				List<Object> objects = new ArrayList<>();
+				objects.add(received);
+				retryUnresolved(objects);
+				return objects;
+			} catch (UnresolvedSymbolException e) {
+				if (unresolvedBytes + bin.length > MAX_UNRESOLVED_BYTES)
+					throw new ProtocolViolationException("too many messages with undefined symbols");
+				unresolved.add(bin);
+				unresolvedBytes += bin.length;
+				if (incomingSymbols.size() == defined)
+					return Collections.emptyList();
+				// It defined symbols before the unresolved one
+				List<Object> objects = new ArrayList<>();
+				retryUnresolved(objects);
+				return objects;
+			}
+		}
+	}
+
+	/**
+	 * Decode held messages into objects until no more can be, as each one may
+	 * define symbols for others.
+	 */
+	private void retryUnresolved(List<Object> objects) throws ProtocolViolationException {
+		boolean progressed = true;
+		while (progressed) {
+			progressed = false;
+			for (Iterator<byte[]> iterator = unresolved.iterator(); iterator.hasNext();) {
+				byte[] bin = iterator.next();
+				int defined = incomingSymbols.size();
+				try {
+					objects.add(decoding.decode(bin, incomingSymbols));
+					iterator.remove();
+					unresolvedBytes -= bin.length;
+				} catch (UnresolvedSymbolException e) {
+				}
+				if (incomingSymbols.size() != defined)
+					progressed = true;
+			}
+		}
+	}
+
+	/**
+	 * @return the unconfirmed messages, decoded.
+	 */
+	List<Object> getUnconfirmed() {
+		// The sent symbols are all known to a snapshot of the outgoing dictionary
+		SymbolDecoder symbols = outgoingSymbols.snapshot();
+		return socket.getUnconfirmed().stream().map(bin -> {
+			try {
+				return decoding.decode(bin, symbols);
+			} catch (ProtocolViolationException | UnresolvedSymbolException e) {
+				return "[this object failed to deserialize because of " + e + "]";
+			}
+		}).collect(Collectors.toList());
+	}
+
+}
@@ -0,0 +1,196 @@
+package com.phoenixkahlo.nodenet.stream;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Spreads the transmissions of one stream over time at a settable rate, so that
+ * a large message or a round of retransmissions does not reach the network as
+ * one burst. Tokens accumulate at the rate, up to a small burst allowance, and
+ * each transmission spends its length in tokens. A transmission for which
+ * there are tokens is sent immediately on the calling thread; otherwise it is
+ * queued, and the queue is drained by a task on a scheduler shared with other
+ * streams, so pacing never occupies a thread while waiting.
+ */
+public class TokenBucketPacer {
+
+	/**
+	 * Sends a transmission to the network.
+	 */
+	@FunctionalInterface
+	public static interface Transmitter {
+		void transmit(byte[] transmission) throws IOException;
+	}
+
+	private static class Paced {
+
+		final byte[] transmission;
+		final Runnable onSent;
+
+		Paced(byte[] transmission, Runnable onSent) {
+			this.transmission = transmission;
+			this.onSent = onSent;
+		}
+
+	}
+
+	private final ScheduledExecutorService scheduler;
+	private final Transmitter transmitter;
+	private final PrintStream err;
+	private final LongSupplier clock;
+
+	// Synchronize usages of these with this
+	private double bytesPerSecond;
+	private double tokens;
+	private long lastRefill;
+	// Null while empty, as most of a family's pacers are idle at any time
+	private Queue<Paced> queue = null;
+	private boolean drainScheduled = false;
+
+	public TokenBucketPacer(ScheduledExecutorService scheduler, Transmitter transmitter, double bytesPerSecond,
+			PrintStream err) {
+		this(scheduler, transmitter, bytesPerSecond, err, System::nanoTime);
+	}
+
+	/**
+	 * Read the time, in nanoseconds, from the clock rather than from
+	 * System.nanoTime(), as when testing.
+	 */
+	public TokenBucketPacer(ScheduledExecutorService scheduler, Transmitter transmitter, double bytesPerSecond,
+			PrintStream err, LongSupplier clock) {
+		this.scheduler = scheduler;
+		this.transmitter = transmitter;
+		this.bytesPerSecond = bytesPerSecond;
+		this.tokens = burst();
+		this.err = err;
+		this.clock = clock;
+		this.lastRefill = clock.getAsLong();
+	}
+
+	/**
+	 * Change the rate, taking effect for tokens accumulated from now on.
+	 */
+	public synchronized void setRate(double bytesPerSecond) {
+		refill();
+		this.bytesPerSecond = bytesPerSecond;
+	}
+
+	public synchronized double getRate() {
+		return bytesPerSecond;
+	}
+
+	/**
+	 * @return the number of transmissions waiting for tokens.
+	 */
+	public synchronized int getQueueDepth() {
+		return queue == null ? 0 : queue.size();
+	}
+
+	/**
+	 * Send the transmission, immediately if the rate allows and nothing is
+	 * queued ahead of it, or later on the scheduler. Transmissions are sent in
+	 * the order given.
+	 * 
+	 * @param onSent
+	 *            invoked once the transmission has been sent, or null. It is
+	 *            not invoked while the pacer is locked, so it may synchronize
+	 *            on whatever the caller of send does.
+	 */
+	public void send(byte[] transmission, Runnable onSent) {
+		Paced paced = new Paced(transmission, onSent);
+		synchronized (this) {
+			refill();
+			if (queue != null || tokens < 0) {
+				if (queue == null)
+					queue = new ArrayDeque<>();
+				queue.add(paced);
+				scheduleDrain();
+				return;
+			}
+			transmit(paced);
+		}
+		notifySent(paced);
+	}
+
+	/**
+	 * Discard everything queued, as when the stream is closed.
+	 */
+	public synchronized void clear() {
+		queue = null;
+	}
+
+	/**
+	 * The number of tokens that may accumulate, which allows a short burst
+	 * after idleness without letting the pacer fall silent between scheduler
+	 * ticks.
+	 */
+	private double burst() {
+		return Math.max(DatagramStreamConfig.PACING_MIN_BURST,
+				bytesPerSecond * DatagramStreamConfig.PACING_BURST_INTERVAL / 1000.0);
+	}
+
+	private void refill() {
+		long now = clock.getAsLong();
+		tokens = Math.min(burst(), tokens + (now - lastRefill) * bytesPerSecond / 1e9);
+		lastRefill = now;
+	}
+
+	/**
+	 * Spend the tokens for and send a transmission. Tokens may go negative, so
+	 * that a transmission larger than the burst can still be sent, and the
+	 * debt delays the next one.
+	 */
+	private void transmit(Paced paced) {
+		tokens -= paced.transmission.length;
+		try {
+			transmitter.transmit(paced.transmission);
+		} catch (IOException e) {
+			err.println("IOException in paced transmission");
+			e.printStackTrace(err);
+		}
+	}
+
+	private void notifySent(Paced paced) {
+		if (paced.onSent != null)
+			paced.onSent.run();
+	}
+
+	private void scheduleDrain() {
+		if (drainScheduled || queue == null)
+			return;
+		long delayNanos = (long) (Math.max(0, -tokens) * 1e9 / bytesPerSecond);
+		try {
+			scheduler.schedule(this::drain, delayNanos, TimeUnit.NANOSECONDS);
+			drainScheduled = true;
+		} catch (RejectedExecutionException e) {
+			// The family has closed
+			queue = null;
+		}
+	}
+
+	private void drain() {
+		List<Paced> sent = new ArrayList<>();
+		synchronized (this) {
+			drainScheduled = false;
+			refill();
+			while (queue != null && tokens >= 0) {
+				Paced paced = queue.remove();
+				if (queue.isEmpty())
+					queue = null;
+				transmit(paced);
+				sent.add(paced);
+			}
+			scheduleDrain();
+		}
+		sent.forEach(this::notifySent);
+	}
+
+}
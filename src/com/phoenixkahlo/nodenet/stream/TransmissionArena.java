@@ -0,0 +1,174 @@
+package com.phoenixkahlo.nodenet.stream;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A pool of fixed size slots of direct memory, in which streams keep the
+ * transmissions of unconfirmed payloads off of the heap. Memory is allocated a
+ * chunk of slots at a time as slots are first needed, and released slots are
+ * reused, from the lowest chunk with any free, so that the others tend to
+ * empty. A chunk that empties is released for the garbage collector to free,
+ * except for one that is kept spare, so that a stream hovering at a chunk
+ * boundary does not allocate and release direct memory repeatedly. Shared by
+ * the children of a family.
+ * <p>
+ * Allocation and release are thread safe, but a slot's contents are not; they
+ * must only be accessed by the holder of the slot. Reading and writing a slot
+ * takes no lock, as each chunk's views of its slots are made with the chunk.
+ */
+public class TransmissionArena {
+
+	private static class Chunk {
+
+		final ByteBuffer[] views;
+		// The indices of the free slots within the chunk
+		final int[] free;
+		int freeCount;
+
+		Chunk(int slotSize, int slotsPerChunk) {
+			ByteBuffer memory = ByteBuffer.allocateDirect(slotSize * slotsPerChunk);
+			views = new ByteBuffer[slotsPerChunk];
+			free = new int[slotsPerChunk];
+			for (int i = 0; i < slotsPerChunk; i++) {
+				memory.limit((i + 1) * slotSize);
+				memory.position(i * slotSize);
+				views[i] = memory.slice();
+			}
+			// Hand out lower slots first
+			for (int i = slotsPerChunk - 1; i >= 0; i--)
+				free[freeCount++] = i;
+		}
+
+	}
+
+	private final int slotSize;
+	private final int slotsPerChunk;
+
+	// Indexed by slot / slotsPerChunk, with null where a chunk was released.
+	// Only changed while synchronized on this, but read without, by holders
+	// of slots, which were allocated after their chunks were added.
+	private volatile Chunk[] chunks = new Chunk[0];
+	// Synchronize usages of these with this
+	private final BitSet available = new BitSet();
+	private int spare = -1;
+	private int chunkCount = 0;
+	private int allocated = 0;
+
+	public TransmissionArena(int slotSize, int slotsPerChunk) {
+		this.slotSize = slotSize;
+		this.slotsPerChunk = slotsPerChunk;
+	}
+
+	public TransmissionArena() {
+		this(DatagramStreamConfig.MAX_TRANSMISSION_SIZE, DatagramStreamConfig.ARENA_CHUNK_SLOTS);
+	}
+
+	/**
+	 * @return the handle of a slot that is now held by the caller.
+	 */
+	public synchronized int allocate() {
+		int index = available.nextSetBit(0);
+		if (index == spare) {
+			// Leave the spare until the rest are full
+			int other = available.nextSetBit(spare + 1);
+			if (other >= 0)
+				index = other;
+		}
+		if (index < 0)
+			index = grow();
+		if (index == spare)
+			spare = -1;
+		Chunk chunk = chunks[index];
+		int slot = chunk.free[--chunk.freeCount];
+		if (chunk.freeCount == 0)
+			available.clear(index);
+		allocated++;
+		return index * slotsPerChunk + slot;
+	}
+
+	/**
+	 * Return a slot to the pool. The handle must not be used afterwards.
+	 */
+	public synchronized void release(int slot) {
+		int index = slot / slotsPerChunk;
+		Chunk chunk = chunks[index];
+		chunk.free[chunk.freeCount++] = slot % slotsPerChunk;
+		available.set(index);
+		allocated--;
+		if (chunk.freeCount < slotsPerChunk)
+			return;
+		if (spare < 0) {
+			spare = index;
+		} else {
+			Chunk[] released = chunks.clone();
+			released[index] = null;
+			chunks = released;
+			available.clear(index);
+			chunkCount--;
+		}
+	}
+
+	/**
+	 * Copy the data into the slot.
+	 */
+	public void write(int slot, byte[] data) {
+		if (data.length > slotSize)
+			throw new IllegalArgumentException("transmission of " + data.length + " bytes exceeds slot size");
+		ByteBuffer buffer = buffer(slot);
+		buffer.clear();
+		buffer.put(data);
+	}
+
+	/**
+	 * Copy the first length bytes of the slot onto the heap.
+	 */
+	public byte[] read(int slot, int length) {
+		ByteBuffer buffer = buffer(slot);
+		buffer.clear();
+		byte[] data = new byte[length];
+		buffer.get(data);
+		return data;
+	}
+
+	/**
+	 * @return the bytes of direct memory currently allocated.
+	 */
+	public synchronized long getCapacity() {
+		return (long) chunkCount * slotsPerChunk * slotSize;
+	}
+
+	/**
+	 * @return the number of slots currently held.
+	 */
+	public synchronized int getAllocated() {
+		return allocated;
+	}
+
+	private ByteBuffer buffer(int slot) {
+		return chunks[slot / slotsPerChunk].views[slot % slotsPerChunk];
+	}
+
+	/**
+	 * Add a chunk, in the lowest index free of one.
+	 *
+	 * @return the index of the chunk.
+	 */
+	private int grow() {
+		Chunk[] grown = chunks;
+		int index = 0;
+		while (index < grown.length && grown[index] != null)
+			index++;
+		if (index == grown.length)
+			grown = Arrays.copyOf(grown, grown.length + 1);
+		else
+			grown = grown.clone();
+		grown[index] = new Chunk(slotSize, slotsPerChunk);
+		chunks = grown;
+		available.set(index);
+		chunkCount++;
+		return index;
+	}
+
+}
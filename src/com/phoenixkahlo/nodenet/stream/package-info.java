@@ -61,16 +61,18 @@
  * <p>
  * The first transmission type is PAYLOAD, with an ID of 0x0. It represents a
  * part of an unordered message. Messages can be split into several parts due to
- * the size limit of UDP transmissions. Each <b>payload</b> has a randomly
- * generated payload ID which is used to identify it for the confirmation and
- * retransmission system. Each <b>message</b> also has a randomly generated
+ * the size limit of UDP transmissions. Each <b>payload</b> has a payload ID
+ * which is used to identify it for the confirmation and retransmission system.
+ * Payload IDs are assigned sequentially by the sender, starting at zero for
+ * each connection and wrapping around, so that the sender can index its
+ * unconfirmed payloads by ID. Each <b>message</b> also has a randomly generated
  * message ID which is used to combine multiple payloads of the same message.
  * When a payload is received, it should respond with a CONFIRM message. A
  * payload may be sent/received multiple times, as a part of the
  * confirmation/retransmission system. The parts of a payload transmission are:
  * <br>
  * <ol>
- * <li>UUID payloadID</li>
+ * <li>int payloadID</li>
  * <li>UUID messageID</li>
  * <li>int partNumber</li>
  * <li>int totalParts</li>
@@ -86,7 +88,7 @@
  * and be incremented by 1 for every message. The parts of an ordered payload
  * transmission are: <br>
  * <ol>
- * <li>UUID payloadID</li>
+ * <li>int payloadID</li>
  * <li>UUID messageID</li>
  * <li>int ordinal</li>
  * <li>int partNumber</li>
@@ -109,8 +111,10 @@
  * disconnections more quickly and cleanly.
  * </p>
  * <p>
- * The next transmission type is ACCEPT, with an ID of 0x4. It is a header only
- * transmission for accepting a connection in response to CONNECT.
+ * The next transmission type is ACCEPT, with an ID of 0x4. It is sent for
+ * accepting a connection in response to CONNECT. Its only contents is a
+ * randomly generated UUID resumption token, which both sides remember for
+ * RESUME.
  * </p>
  * <p>
  * The next transmission type is REJECT, with an ID of 0x5. It is a header only
@@ -118,17 +122,124 @@
  * </p>
  * <p>
  * The next transmission type is CONFIRM, with an ID of 0x6. It is sent in
- * response to any payload to confirm that it has been received. The only
- * contents is the integer payload ID of the payload that was successfully
- * received.
- * </p>
- * <p>
- * The final transmission type if HEARTBEAT, with an ID of 0x7. It is a header
- * only message, sent in each direction every 1000 ms. If a connection goes that
+ * response to any payload to confirm that it has been received. Its contents
+ * are the payload ID of the payload that was successfully received, followed
+ * by an integer credit: the number of payload bytes the receiver is currently
+ * willing to buffer. A sender must not have more payload bytes unconfirmed than
+ * the most recently received credit, except that it may always send a payload
+ * when nothing is unconfirmed. A receiver drops payloads, without confirming
+ * them, that would exceed its buffer.
+ * </p>
+ * <p>
+ * The next transmission type is HEARTBEAT, with an ID of 0x7. It is sent in
+ * each direction every 1000 ms. Its only contents is the oldest payload ID the
+ * sender has unconfirmed, or the next it will assign if none are; every
+ * earlier payload was confirmed or abandoned, so the receiver stops reporting
+ * any of them that are missing. If a connection goes that
  * interval without receiving a heartbeat, it can consider the connection
  * disconnected. For caution reasons, DatagramStreams are encouraged to send
  * heartbeats at twice the recommended interval, and allow for receiving
- * heartbeats at half the recommended interval.
+ * heartbeats at half the recommended interval. Any transmission on a connection
+ * besides DISCONNECT counts as a heartbeat, so a heartbeat is not sent if
+ * something else was within the interval. A connection on which no
+ * payload has been sent or received for 10000 ms is idle, and its heartbeats
+ * are sent every 5000 ms instead, with the other side allowing for three of
+ * those intervals in turn. The first payload after an idle period restarts the
+ * shorter interval from the time it is sent or received.
+ * </p>
+ * <p>
+ * The next transmission type is WINDOW_UPDATE, with an ID of 0x8. Its only
+ * contents is an integer credit, with the same meaning as in CONFIRM. It is
+ * sent when the receiver's buffer reopens after being advertised as mostly
+ * full, and alongside heartbeats while the advertised credit is reduced.
+ * </p>
+ * <p>
+ * The next transmission type is RESUME, with an ID of 0x9. Its only contents
+ * is the resumption token of the connection. A connection that goes three
+ * heartbeat intervals without a heartbeat is suspended rather than ended: it
+ * stops retransmitting, and sends RESUME instead of HEARTBEAT each interval. A
+ * side that receives a RESUME with the correct token, even from a new address,
+ * resumes the connection, sends to that address from then on, and responds
+ * with a HEARTBEAT, which resumes the other side in turn. On resuming, all
+ * unconfirmed payloads are retransmitted, and ordinals continue where they
+ * left off, so that the connection is unaffected besides the delay. A side
+ * that receives a RESUME for an unknown connection responds with DISCONNECT.
+ * A connection that remains suspended for the grace period of 15000 ms is
+ * disconnected.
+ * </p>
+ * <p>
+ * The next transmission type is EXPIRING_PAYLOAD, with an ID of 0xA. It is
+ * like an unordered payload, except that it has a lifetime: the number of
+ * milliseconds, as of the transmission, after which the message is useless.
+ * The sender stops retransmitting payloads of the message once its lifetime
+ * is over, and the receiver discards the message if it is not complete by
+ * then. Retransmissions carry the remaining lifetime. The parts of an expiring
+ * payload transmission are: <br>
+ * <ol>
+ * <li>int payloadID</li>
+ * <li>UUID messageID</li>
+ * <li>int lifetime</li>
+ * <li>int partNumber</li>
+ * <li>int totalParts</li>
+ * <li>short payloadSize</li>
+ * <li>byte[] payload</li>
+ * </ol>
+ * </p>
+ * <p>
+ * The next transmission type is UNRELIABLE_PAYLOAD, with an ID of 0xB. It is
+ * a part of an unordered message that is sent once, and neither confirmed nor
+ * retransmitted, so it has no payload ID. The receiver discards the message if
+ * it is not complete within 500 ms. It does not count against the sender's
+ * window, but the receiver drops it if it would exceed its buffer. The parts
+ * of an unreliable payload transmission are: <br>
+ * <ol>
+ * <li>UUID messageID</li>
+ * <li>int partNumber</li>
+ * <li>int totalParts</li>
+ * <li>short payloadSize</li>
+ * <li>byte[] payload</li>
+ * </ol>
+ * </p>
+ * <p>
+ * The next transmission type is KEYED_PAYLOAD, with an ID of 0xC. It is like
+ * an unordered payload, except that its message carries a key and a version,
+ * which the sender increments for each message with that key, and only the
+ * newest version of each key matters. Once the sender begins sending a
+ * version, it stops retransmitting any unconfirmed payloads of older versions
+ * of the key, and skips older versions that it has not begun sending. The
+ * receiver discards the partially received message of an older version when a
+ * newer version arrives, and confirms but discards payloads of versions older
+ * than the newest it has seen. Versions are compared with wrapping
+ * arithmetic. The parts of a keyed payload transmission are: <br>
+ * <ol>
+ * <li>int payloadID</li>
+ * <li>UUID messageID</li>
+ * <li>int key</li>
+ * <li>int version</li>
+ * <li>int partNumber</li>
+ * <li>int totalParts</li>
+ * <li>short payloadSize</li>
+ * <li>byte[] payload</li>
+ * </ol>
+ * </p>
+ * <p>
+ * The final transmission type is NACK, with an ID of 0xD. As payload IDs are
+ * sequential, a receiver that has received a payload ID but not some ID
+ * before it can tell that the earlier payload was probably lost. Once such a
+ * gap has persisted for 25 ms, long enough that it is unlikely to be mere
+ * reordering, the receiver reports it with a NACK, and the sender retransmits
+ * the reported payloads immediately if they are still unconfirmed, rather than
+ * waiting for the retransmission threshold. A gap that persists for a round
+ * trip after being reported is reported again, as the NACK or the
+ * retransmission may be lost too. A sender that is reported a payload it has
+ * abandoned, as expired or superseded, responds with a HEARTBEAT, so that the
+ * receiver stops reporting it. At most 75 payload IDs are reported per
+ * NACK. The parts of a NACK transmission
+ * are: <br>
+ * <ol>
+ * <li>short count</li>
+ * <li>int[count] payloadIDs</li>
+ * </ol>
  * </p>
  */
 package com.phoenixkahlo.nodenet.stream;
@@ -0,0 +1,288 @@
+package com.phoenixkahlo.nodenet.stream.trace;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.phoenixkahlo.nodenet.stream.DatagramStreamConfig;
+import com.phoenixkahlo.nodenet.stream.trace.TracedDatagram.Direction;
+import com.phoenixkahlo.util.UUID;
+
+/**
+ * Decodes a packet trace and reports statistics for each connection in it.
+ * Round trip times follow Karn's rule, being sampled only from payloads that
+ * were sent once. Loss is estimated from retransmissions, and is an upper bound,
+ * as a payload is also retransmitted when its confirmation is merely late.
+ */
+public class PacketTraceAnalyzer {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("usage: PacketTraceAnalyzer <trace file>");
+			System.exit(1);
+		}
+		List<TracedDatagram> trace = PacketTraceReader.read(Paths.get(args[0]));
+		new PacketTraceAnalyzer(trace).report(System.out);
+	}
+
+	/**
+	 * Statistics of one connection, from the point of view of the traced side.
+	 */
+	public static class ConnectionStats {
+
+		private final UUID connectionID;
+		private InetSocketAddress peer;
+
+		private int datagramsSent = 0;
+		private int datagramsReceived = 0;
+		private int payloadsSent = 0;
+		private int retransmissions = 0;
+		private int payloadsReceived = 0;
+		private int unreliableSent = 0;
+		private int unreliableReceived = 0;
+		private int nackedSent = 0;
+		private int nackedReceived = 0;
+		private int duplicatesReceived = 0;
+		private int reorderedReceived = 0;
+		private int confirmationsReceived = 0;
+		private int zeroCreditAdvertisements = 0;
+		private List<Long> roundTripNanos = new ArrayList<>();
+
+		// Per payload ID, the time of the first send, and whether it was resent
+		private Map<Integer, Long> firstSent = new HashMap<>();
+		private Set<Integer> resent = new HashSet<>();
+		private Set<Integer> confirmed = new HashSet<>();
+		private Set<Integer> received = new HashSet<>();
+		private Map<UUID, Integer> highestPartReceived = new HashMap<>();
+		private int highestOrdinalReceived = -1;
+
+		ConnectionStats(UUID connectionID) {
+			this.connectionID = connectionID;
+		}
+
+		void sent(TraceFrame frame, long time) {
+			datagramsSent++;
+			if (frame.getType() == DatagramStreamConfig.UNRELIABLE_PAYLOAD)
+				unreliableSent++;
+			if (frame.getType() == DatagramStreamConfig.NACK)
+				nackedSent += frame.getNackedPayloadIDs().length;
+			if (!frame.isPayload())
+				return;
+			if (firstSent.containsKey(frame.getPayloadID())) {
+				retransmissions++;
+				resent.add(frame.getPayloadID());
+			} else {
+				payloadsSent++;
+				firstSent.put(frame.getPayloadID(), time);
+			}
+		}
+
+		void received(TraceFrame frame, long time) {
+			datagramsReceived++;
+			if (frame.getType() == DatagramStreamConfig.CONFIRM) {
+				confirmationsReceived++;
+				Long sentTime = firstSent.get(frame.getPayloadID());
+				boolean first = confirmed.add(frame.getPayloadID());
+				if (first && sentTime != null && !resent.contains(frame.getPayloadID()))
+					roundTripNanos.add(time - sentTime);
+			}
+			if (frame.getCredit() == 0)
+				zeroCreditAdvertisements++;
+			if (frame.getType() == DatagramStreamConfig.UNRELIABLE_PAYLOAD)
+				unreliableReceived++;
+			if (frame.getType() == DatagramStreamConfig.NACK)
+				nackedReceived += frame.getNackedPayloadIDs().length;
+			if (!frame.isPayload())
+				return;
+			if (!received.add(frame.getPayloadID())) {
+				duplicatesReceived++;
+				return;
+			}
+			payloadsReceived++;
+			boolean reordered = false;
+			Integer highestPart = highestPartReceived.get(frame.getMessageID());
+			if (highestPart != null && frame.getPartNumber() < highestPart)
+				reordered = true;
+			else
+				highestPartReceived.put(frame.getMessageID(), frame.getPartNumber());
+			if (frame.getOrdinal() >= 0) {
+				if (frame.getOrdinal() < highestOrdinalReceived)
+					reordered = true;
+				else
+					highestOrdinalReceived = frame.getOrdinal();
+			}
+			if (reordered)
+				reorderedReceived++;
+		}
+
+		public UUID getConnectionID() {
+			return connectionID;
+		}
+
+		public InetSocketAddress getPeer() {
+			return peer;
+		}
+
+		public int getDatagramsSent() {
+			return datagramsSent;
+		}
+
+		public int getDatagramsReceived() {
+			return datagramsReceived;
+		}
+
+		public int getPayloadsSent() {
+			return payloadsSent;
+		}
+
+		public int getRetransmissions() {
+			return retransmissions;
+		}
+
+		public int getPayloadsReceived() {
+			return payloadsReceived;
+		}
+
+		public int getDuplicatesReceived() {
+			return duplicatesReceived;
+		}
+
+		public int getReorderedReceived() {
+			return reorderedReceived;
+		}
+
+		public int getUnreliableSent() {
+			return unreliableSent;
+		}
+
+		public int getUnreliableReceived() {
+			return unreliableReceived;
+		}
+
+		/**
+		 * @return the number of payload IDs the traced side reported missing.
+		 */
+		public int getNackedSent() {
+			return nackedSent;
+		}
+
+		/**
+		 * @return the number of payload IDs the peer reported missing.
+		 */
+		public int getNackedReceived() {
+			return nackedReceived;
+		}
+
+		public int getConfirmationsReceived() {
+			return confirmationsReceived;
+		}
+
+		/**
+		 * @return the number of distinct payloads sent that were never
+		 *         confirmed within the trace.
+		 */
+		public int getUnconfirmed() {
+			return (int) firstSent.keySet().stream().filter(id -> !confirmed.contains(id)).count();
+		}
+
+		/**
+		 * @return the fraction of payload transmissions that were
+		 *         retransmissions, an upper bound of the loss rate.
+		 */
+		public double getLossEstimate() {
+			return payloadsSent == 0 ? 0 : (double) retransmissions / (payloadsSent + retransmissions);
+		}
+
+		/**
+		 * @return the round trip samples, sorted, in nanoseconds.
+		 */
+		public List<Long> getRoundTripNanos() {
+			List<Long> sorted = new ArrayList<>(roundTripNanos);
+			Collections.sort(sorted);
+			return sorted;
+		}
+
+		public void report(PrintStream out) {
+			out.println("connection " + connectionID + " with " + peer);
+			out.println("  datagrams: " + datagramsSent + " sent, " + datagramsReceived + " received");
+			out.println("  payloads sent: " + payloadsSent + ", retransmissions: " + retransmissions
+					+ ", unconfirmed: " + getUnconfirmed() + String.format(", loss <= %.2f%%", getLossEstimate() * 100));
+			out.println("  payloads received: " + payloadsReceived + ", duplicates: " + duplicatesReceived
+					+ ", reordered: " + reorderedReceived);
+			if (unreliableSent > 0 || unreliableReceived > 0)
+				out.println("  unreliable payloads: " + unreliableSent + " sent, " + unreliableReceived + " received");
+			if (nackedSent > 0 || nackedReceived > 0)
+				out.println("  payloads nacked: " + nackedSent + " by this side, " + nackedReceived + " by peer");
+			out.println("  confirmations received: " + confirmationsReceived + ", zero credit advertisements: "
+					+ zeroCreditAdvertisements);
+			List<Long> rtt = getRoundTripNanos();
+			if (rtt.isEmpty()) {
+				out.println("  rtt: no samples");
+			} else {
+				out.println(String.format("  rtt (%d samples): min %.3fms, p50 %.3fms, p90 %.3fms, p99 %.3fms, max %.3fms",
+						rtt.size(), millis(rtt.get(0)), millis(percentile(rtt, 0.5)), millis(percentile(rtt, 0.9)),
+						millis(percentile(rtt, 0.99)), millis(rtt.get(rtt.size() - 1))));
+			}
+		}
+
+	}
+
+	private final Map<UUID, ConnectionStats> connections = new LinkedHashMap<>();
+	private int malformed = 0;
+	private int datagrams = 0;
+	private long durationNanos = 0;
+
+	public PacketTraceAnalyzer(List<TracedDatagram> trace) {
+		for (TracedDatagram datagram : trace) {
+			datagrams++;
+			TraceFrame frame;
+			try {
+				frame = TraceFrame.decode(datagram.getData());
+			} catch (IOException e) {
+				malformed++;
+				continue;
+			}
+			ConnectionStats stats = connections.computeIfAbsent(frame.getConnectionID(), ConnectionStats::new);
+			stats.peer = datagram.getPeer();
+			if (datagram.getDirection() == Direction.SENT)
+				stats.sent(frame, datagram.getTimeNanos());
+			else
+				stats.received(frame, datagram.getTimeNanos());
+		}
+		if (!trace.isEmpty())
+			durationNanos = trace.get(trace.size() - 1).getTimeNanos() - trace.get(0).getTimeNanos();
+	}
+
+	public Map<UUID, ConnectionStats> getConnections() {
+		return connections;
+	}
+
+	public int getMalformed() {
+		return malformed;
+	}
+
+	public void report(PrintStream out) {
+		out.println(String.format("%d datagrams over %.3fs, %d malformed, %d connections", datagrams,
+				durationNanos / 1e9, malformed, connections.size()));
+		for (ConnectionStats stats : connections.values())
+			stats.report(out);
+	}
+
+	private static long percentile(List<Long> sorted, double fraction) {
+		return sorted.get((int) Math.min(sorted.size() - 1, Math.floor(fraction * sorted.size())));
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1e6;
+	}
+
+}
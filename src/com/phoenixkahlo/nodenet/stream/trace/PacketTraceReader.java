@@ -0,0 +1,66 @@
+package com.phoenixkahlo.nodenet.stream.trace;
+
+import static com.phoenixkahlo.nodenet.stream.trace.PacketTraceWriter.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import com.phoenixkahlo.nodenet.stream.trace.TracedDatagram.Direction;
+
+/**
+ * Static utility for reading the files written by PacketTraceWriter.
+ */
+public class PacketTraceReader {
+
+	private PacketTraceReader() {
+	}
+
+	/**
+	 * @return the datagrams remaining in the trace, in the order they were
+	 *         recorded.
+	 */
+	public static List<TracedDatagram> read(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt(0) != MAGIC)
+				throw new IOException(path + " is not a packet trace");
+			if (buffer.getInt(4) != VERSION)
+				throw new IOException(path + " has unsupported trace version " + buffer.getInt(4));
+			int slotSize = buffer.getInt(8);
+			int slotCount = buffer.getInt(12);
+
+			List<TracedDatagram> datagrams = new ArrayList<>();
+			for (int i = 0; i < slotCount; i++) {
+				int slot = HEADER_SIZE + i * slotSize;
+				long sequence = buffer.getLong(slot + SEQUENCE_OFFSET);
+				if (sequence == 0)
+					continue;
+				long time = buffer.getLong(slot + TIME_OFFSET);
+				Direction direction = Direction.values()[buffer.get(slot + DIRECTION_OFFSET)];
+				byte[] address = new byte[buffer.get(slot + ADDRESS_LENGTH_OFFSET)];
+				int port = buffer.getChar(slot + PORT_OFFSET);
+				int length = buffer.getInt(slot + LENGTH_OFFSET);
+				byte[] data = new byte[buffer.getInt(slot + CAPTURED_OFFSET)];
+				ByteBuffer view = buffer.duplicate();
+				view.position(slot + ADDRESS_OFFSET);
+				view.get(address);
+				view.position(slot + SLOT_HEADER_SIZE);
+				view.get(data);
+				InetSocketAddress peer = new InetSocketAddress(InetAddress.getByAddress(address), port);
+				datagrams.add(new TracedDatagram(sequence, time, direction, peer, length, data));
+			}
+			datagrams.sort(Comparator.comparingLong(TracedDatagram::getSequence));
+			return datagrams;
+		}
+	}
+
+}
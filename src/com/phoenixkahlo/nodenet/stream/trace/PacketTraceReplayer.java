@@ -0,0 +1,231 @@
+package com.phoenixkahlo.nodenet.stream.trace;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.phoenixkahlo.nodenet.stream.BasicStreamFamily;
+import com.phoenixkahlo.nodenet.stream.DatagramStreamConfig;
+import com.phoenixkahlo.nodenet.stream.StreamFamily;
+import com.phoenixkahlo.nodenet.stream.StreamFamilyMetrics;
+import com.phoenixkahlo.nodenet.stream.UDPSocketWrapper;
+import com.phoenixkahlo.nodenet.stream.trace.TracedDatagram.Direction;
+import com.phoenixkahlo.util.UUID;
+
+/**
+ * Feeds the received datagrams of a trace into a fresh BasicStreamFamily,
+ * which accepts every connection and consumes every message, and reports how
+ * it fared. Everything the family sends is discarded.
+ * <p>
+ * The family must own every connection it receives frames for, but connections
+ * that the traced side initiated, or that began before the trace, have no
+ * received CONNECT. So at the first frame of each connection that does not
+ * begin with one, a CONNECT from the peer is synthesized, and received ACCEPTs
+ * and REJECTs are skipped. So are RESUMEs, as the family's resumption tokens
+ * are its own; a suspended child resumes on the next replayed heartbeat
+ * instead.
+ * </p>
+ */
+public class PacketTraceReplayer {
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length < 1 || args.length > 2) {
+			System.err.println("usage: PacketTraceReplayer <trace file> [speed, 0 for unpaced]");
+			System.exit(1);
+		}
+		double speed = args.length > 1 ? Double.parseDouble(args[1]) : 1;
+		List<TracedDatagram> trace = PacketTraceReader.read(Paths.get(args[0]));
+		new PacketTraceReplayer(trace, speed, System.err).replay().report(System.out);
+	}
+
+	/**
+	 * The outcome of a replay.
+	 */
+	public static class Result {
+
+		private final int datagramsReplayed;
+		private final long messagesDelivered;
+		private final long bytesDelivered;
+		private final long elapsedNanos;
+		private final StreamFamilyMetrics metrics;
+
+		Result(int datagramsReplayed, long messagesDelivered, long bytesDelivered, long elapsedNanos,
+				StreamFamilyMetrics metrics) {
+			this.datagramsReplayed = datagramsReplayed;
+			this.messagesDelivered = messagesDelivered;
+			this.bytesDelivered = bytesDelivered;
+			this.elapsedNanos = elapsedNanos;
+			this.metrics = metrics;
+		}
+
+		public int getDatagramsReplayed() {
+			return datagramsReplayed;
+		}
+
+		public long getMessagesDelivered() {
+			return messagesDelivered;
+		}
+
+		public long getBytesDelivered() {
+			return bytesDelivered;
+		}
+
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+
+		public StreamFamilyMetrics getMetrics() {
+			return metrics;
+		}
+
+		public void report(PrintStream out) {
+			out.println(String.format("replayed %d datagrams in %.3fs", datagramsReplayed, elapsedNanos / 1e9));
+			out.println("delivered " + messagesDelivered + " messages, " + bytesDelivered + " bytes");
+			out.println("duplicate payloads: " + metrics.getDuplicatePayloads() + ", dropped datagrams: "
+					+ metrics.getDroppedDatagrams() + ", datagrams sent in response: " + metrics.getDatagramsSent());
+		}
+
+	}
+
+	private final List<TracedDatagram> datagrams;
+	private final double speed;
+	private final PrintStream err;
+
+	/**
+	 * @param speed
+	 *            the factor by which to accelerate the trace's timing, or 0 to
+	 *            replay as fast as the family receives.
+	 */
+	public PacketTraceReplayer(List<TracedDatagram> trace, double speed, PrintStream err) {
+		this.datagrams = toReplay(trace);
+		this.speed = speed;
+		this.err = err;
+	}
+
+	private static List<TracedDatagram> toReplay(List<TracedDatagram> trace) {
+		List<TracedDatagram> replay = new ArrayList<>();
+		Set<UUID> seen = new HashSet<>();
+		for (TracedDatagram datagram : trace) {
+			TraceFrame frame;
+			try {
+				frame = TraceFrame.decode(datagram.getData());
+			} catch (IOException e) {
+				continue;
+			}
+			boolean first = seen.add(frame.getConnectionID());
+			boolean receivedConnect = datagram.getDirection() == Direction.RECEIVED
+					&& frame.getType() == DatagramStreamConfig.CONNECT;
+			if (first && !receivedConnect) {
+				byte[] connect = new byte[17];
+				connect[0] = DatagramStreamConfig.CONNECT;
+				System.arraycopy(datagram.getData(), 1, connect, 1, 16);
+				replay.add(new TracedDatagram(datagram.getSequence(), datagram.getTimeNanos(), Direction.RECEIVED,
+						datagram.getPeer(), connect.length, connect));
+			}
+			if (datagram.getDirection() == Direction.RECEIVED && frame.getType() != DatagramStreamConfig.ACCEPT
+					&& frame.getType() != DatagramStreamConfig.REJECT && frame.getType() != DatagramStreamConfig.RESUME
+					&& (first || !receivedConnect))
+				replay.add(datagram);
+		}
+		return replay;
+	}
+
+	/**
+	 * Replay the trace, blocking until it has been fed to the family and the
+	 * family has settled.
+	 */
+	public Result replay() throws InterruptedException {
+		ReplaySocket socket = new ReplaySocket();
+		StreamFamily family = new BasicStreamFamily(socket, err);
+		LongAdder messages = new LongAdder();
+		LongAdder bytes = new LongAdder();
+		ExecutorService executor = Executors.newCachedThreadPool();
+		family.setReceiveTest(connection -> true);
+		family.setReceiveHandler(stream -> stream.onMessage(message -> {
+			messages.increment();
+			bytes.add(message.length);
+		}, executor), false);
+
+		long start = System.nanoTime();
+		socket.begin();
+		socket.awaitExhausted();
+		// Let the last messages be dispatched
+		long delivered;
+		do {
+			delivered = messages.sum();
+			Thread.sleep(100);
+		} while (messages.sum() != delivered);
+		long elapsed = System.nanoTime() - start;
+
+		Result result = new Result(datagrams.size(), messages.sum(), bytes.sum(), elapsed, family.getMetrics());
+		family.close();
+		executor.shutdown();
+		return result;
+	}
+
+	/**
+	 * Once begun, receives the datagrams to replay at their scheduled times,
+	 * then blocks.
+	 */
+	private class ReplaySocket implements UDPSocketWrapper {
+
+		private boolean begun = false;
+		private int next = 0;
+		private long startNanos = -1;
+
+		@Override
+		public void send(byte[] data, InetSocketAddress to) {
+		}
+
+		@Override
+		public synchronized InetSocketAddress receive(byte[] buffer) throws IOException {
+			try {
+				while (!begun)
+					wait();
+				if (startNanos < 0)
+					startNanos = System.nanoTime();
+				if (next == datagrams.size()) {
+					notifyAll();
+					while (true)
+						wait();
+				}
+				TracedDatagram datagram = datagrams.get(next++);
+				if (speed > 0) {
+					long offset = (long) ((datagram.getTimeNanos() - datagrams.get(0).getTimeNanos()) / speed);
+					long wait = startNanos + offset - System.nanoTime();
+					if (wait > 0)
+						Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+				}
+				System.arraycopy(datagram.getData(), 0, buffer, 0, Math.min(buffer.length, datagram.getData().length));
+				return datagram.getPeer();
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException();
+			}
+		}
+
+		/**
+		 * Begin receiving, which must wait until the family is ready to accept
+		 * connections.
+		 */
+		synchronized void begin() {
+			begun = true;
+			notifyAll();
+		}
+
+		synchronized void awaitExhausted() throws InterruptedException {
+			while (next < datagrams.size())
+				wait();
+		}
+
+	}
+
+}
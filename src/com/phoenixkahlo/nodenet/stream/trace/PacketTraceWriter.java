@@ -0,0 +1,137 @@
+package com.phoenixkahlo.nodenet.stream.trace;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.phoenixkahlo.nodenet.stream.DatagramStreamConfig;
+import com.phoenixkahlo.nodenet.stream.trace.TracedDatagram.Direction;
+
+/**
+ * Appends datagrams to a ring of fixed size slots in a memory mapped file. Safe
+ * for concurrent recording: each record claims a slot with an atomic increment
+ * and writes only within it, writing its sequence number last. Nothing orders
+ * the rest of a slot before its sequence number for another reader, though, so
+ * the trace should be read once the writer is closed, or its process has died;
+ * a slot read while being written may be torn.
+ * <p>
+ * The file begins with a header of:
+ * <ul>
+ * <li>int magic</li>
+ * <li>int version</li>
+ * <li>int slot size</li>
+ * <li>int slot count</li>
+ * <li>long wall clock millis at creation</li>
+ * <li>long System.nanoTime() at creation</li>
+ * </ul>
+ * Followed by the slots, each of:
+ * <ul>
+ * <li>long sequence, starting at 1, or 0 if empty</li>
+ * <li>long System.nanoTime()</li>
+ * <li>byte direction</li>
+ * <li>byte address length</li>
+ * <li>unsigned short port</li>
+ * <li>int datagram length</li>
+ * <li>int captured length</li>
+ * <li>16 bytes address</li>
+ * <li>captured data</li>
+ * </ul>
+ * </p>
+ */
+public class PacketTraceWriter implements Closeable {
+
+	public static final int MAGIC = 0x504E5452; // "PNTR"
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 32;
+	public static final int SLOT_HEADER_SIZE = 48;
+	/**
+	 * The default number of data bytes captured per datagram, which is enough
+	 * for any datagram of the stream protocol.
+	 */
+	public static final int DEFAULT_CAPTURE_SIZE = DatagramStreamConfig.MAX_PAYLOAD_SIZE * 2;
+
+	static final int SEQUENCE_OFFSET = 0;
+	static final int TIME_OFFSET = 8;
+	static final int DIRECTION_OFFSET = 16;
+	static final int ADDRESS_LENGTH_OFFSET = 17;
+	static final int PORT_OFFSET = 18;
+	static final int LENGTH_OFFSET = 20;
+	static final int CAPTURED_OFFSET = 24;
+	static final int ADDRESS_OFFSET = 28;
+
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	private final int slotSize;
+	private final int slotCount;
+	private final AtomicLong nextSequence = new AtomicLong(1);
+
+	/**
+	 * Create or overwrite a trace file holding the most recent slotCount
+	 * datagrams, each captured up to captureSize bytes.
+	 */
+	public PacketTraceWriter(Path path, int slotCount, int captureSize) throws IOException {
+		if (slotCount <= 0 || captureSize < 0)
+			throw new IllegalArgumentException("invalid trace dimensions");
+		this.slotSize = SLOT_HEADER_SIZE + captureSize;
+		this.slotCount = slotCount;
+		long fileSize = HEADER_SIZE + (long) slotSize * slotCount;
+		if (fileSize > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("trace file would exceed 2 GiB");
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		buffer = channel.map(MapMode.READ_WRITE, 0, fileSize);
+		buffer.putInt(0, MAGIC);
+		buffer.putInt(4, VERSION);
+		buffer.putInt(8, slotSize);
+		buffer.putInt(12, slotCount);
+		buffer.putLong(16, System.currentTimeMillis());
+		buffer.putLong(24, System.nanoTime());
+	}
+
+	public PacketTraceWriter(Path path, int slotCount) throws IOException {
+		this(path, slotCount, DEFAULT_CAPTURE_SIZE);
+	}
+
+	/**
+	 * Record the first length bytes of data as a datagram in the given
+	 * direction.
+	 */
+	public void record(Direction direction, InetSocketAddress peer, byte[] data, int length) {
+		long sequence = nextSequence.getAndIncrement();
+		int slot = HEADER_SIZE + (int) ((sequence - 1) % slotCount) * slotSize;
+		int captured = Math.min(length, slotSize - SLOT_HEADER_SIZE);
+		// Mark the slot as empty until it is complete, so that a trace left by
+		// a process that died mid-write skips it
+		buffer.putLong(slot + SEQUENCE_OFFSET, 0);
+		buffer.putLong(slot + TIME_OFFSET, System.nanoTime());
+		buffer.put(slot + DIRECTION_OFFSET, (byte) direction.ordinal());
+		byte[] address = peer.getAddress().getAddress();
+		buffer.put(slot + ADDRESS_LENGTH_OFFSET, (byte) address.length);
+		buffer.putChar(slot + PORT_OFFSET, (char) peer.getPort());
+		buffer.putInt(slot + LENGTH_OFFSET, length);
+		buffer.putInt(slot + CAPTURED_OFFSET, captured);
+		ByteBuffer view = buffer.duplicate();
+		view.position(slot + ADDRESS_OFFSET);
+		view.put(address);
+		view.position(slot + SLOT_HEADER_SIZE);
+		view.put(data, 0, captured);
+		buffer.putLong(slot + SEQUENCE_OFFSET, sequence);
+	}
+
+	/**
+	 * Flush the trace to the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		buffer.force();
+		channel.close();
+	}
+
+}
@@ -0,0 +1,50 @@
+package com.phoenixkahlo.nodenet.stream.trace;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+import com.phoenixkahlo.nodenet.stream.UDPSocketWrapper;
+import com.phoenixkahlo.nodenet.stream.trace.TracedDatagram.Direction;
+
+/**
+ * A UDPSocketWrapper that records every datagram passing through another.
+ * The length of a received datagram is not reported by UDPSocketWrapper, so
+ * received datagrams are recorded with the length of the frame decoded from
+ * the start of the receive buffer, or the whole buffer if it holds no valid
+ * frame.
+ */
+public class RecordingUDPSocketWrapper implements UDPSocketWrapper {
+
+	private UDPSocketWrapper wrapped;
+	private PacketTraceWriter writer;
+
+	public RecordingUDPSocketWrapper(UDPSocketWrapper wrapped, PacketTraceWriter writer) {
+		this.wrapped = wrapped;
+		this.writer = writer;
+	}
+
+	@Override
+	public void send(byte[] data, InetSocketAddress to) throws IOException {
+		wrapped.send(data, to);
+		writer.record(Direction.SENT, to, data, data.length);
+	}
+
+	@Override
+	public InetSocketAddress receive(byte[] buffer) throws IOException {
+		InetSocketAddress from = wrapped.receive(buffer);
+		int length;
+		try {
+			length = TraceFrame.decode(buffer).getLength();
+		} catch (IOException e) {
+			length = buffer.length;
+		}
+		writer.record(Direction.RECEIVED, from, buffer, length);
+		return from;
+	}
+
+	@Override
+	public String toString() {
+		return "RecordingUDPSocketWrapper wrapped=" + wrapped;
+	}
+
+}
@@ -0,0 +1,200 @@
+package com.phoenixkahlo.nodenet.stream.trace;
+
+import static com.phoenixkahlo.nodenet.serialization.SerializationUtils.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.phoenixkahlo.nodenet.stream.DatagramStreamConfig;
+import com.phoenixkahlo.util.UUID;
+
+/**
+ * The header fields of a stream protocol frame, decoded from a traced datagram.
+ * Fields that the frame's type does not have are null or -1.
+ */
+public class TraceFrame {
+
+	private int type;
+	private UUID connectionID;
+	private int payloadID = -1;
+	private UUID messageID;
+	private int ordinal = -1;
+	private int partNumber = -1;
+	private int totalParts = -1;
+	private int credit = -1;
+	private int lifetime = -1;
+	private int key = -1;
+	private int version = -1;
+	private UUID resumptionToken;
+	private int[] nackedPayloadIDs;
+	private int oldestUnconfirmed = -1;
+	private int length;
+
+	private TraceFrame() {
+	}
+
+	/**
+	 * @throws IOException
+	 *             if the data is not a valid frame.
+	 */
+	public static TraceFrame decode(byte[] data) throws IOException {
+		InputStream in = new ByteArrayInputStream(data);
+		TraceFrame frame = new TraceFrame();
+		frame.type = in.read();
+		frame.connectionID = new UUID(in);
+		switch (frame.type) {
+		case DatagramStreamConfig.PAYLOAD:
+		case DatagramStreamConfig.ORDERED_PAYLOAD:
+			frame.payloadID = readInt(in);
+			frame.messageID = new UUID(in);
+			if (frame.type == DatagramStreamConfig.ORDERED_PAYLOAD)
+				frame.ordinal = readInt(in);
+			frame.partNumber = readInt(in);
+			frame.totalParts = readInt(in);
+			break;
+		case DatagramStreamConfig.EXPIRING_PAYLOAD:
+			frame.payloadID = readInt(in);
+			frame.messageID = new UUID(in);
+			frame.lifetime = readInt(in);
+			frame.partNumber = readInt(in);
+			frame.totalParts = readInt(in);
+			break;
+		case DatagramStreamConfig.KEYED_PAYLOAD:
+			frame.payloadID = readInt(in);
+			frame.messageID = new UUID(in);
+			frame.key = readInt(in);
+			frame.version = readInt(in);
+			frame.partNumber = readInt(in);
+			frame.totalParts = readInt(in);
+			break;
+		case DatagramStreamConfig.UNRELIABLE_PAYLOAD:
+			frame.messageID = new UUID(in);
+			frame.partNumber = readInt(in);
+			frame.totalParts = readInt(in);
+			break;
+		case DatagramStreamConfig.CONFIRM:
+			frame.payloadID = readInt(in);
+			frame.credit = readInt(in);
+			break;
+		case DatagramStreamConfig.NACK:
+			frame.nackedPayloadIDs = new int[Math.max(0, readShort(in))];
+			for (int i = 0; i < frame.nackedPayloadIDs.length; i++)
+				frame.nackedPayloadIDs[i] = readInt(in);
+			break;
+		case DatagramStreamConfig.WINDOW_UPDATE:
+			frame.credit = readInt(in);
+			break;
+		case DatagramStreamConfig.ACCEPT:
+		case DatagramStreamConfig.RESUME:
+			frame.resumptionToken = new UUID(in);
+			break;
+		case DatagramStreamConfig.HEARTBEAT:
+			frame.oldestUnconfirmed = readInt(in);
+			break;
+		case DatagramStreamConfig.CONNECT:
+		case DatagramStreamConfig.DISCONNECT:
+		case DatagramStreamConfig.REJECT:
+			break;
+		default:
+			throw new IOException("invalid frame type " + frame.type);
+		}
+		if (frame.isPayload() || frame.type == DatagramStreamConfig.UNRELIABLE_PAYLOAD)
+			in.skip(readShort(in));
+		frame.length = data.length - in.available();
+		return frame;
+	}
+
+	public int getType() {
+		return type;
+	}
+
+	public UUID getConnectionID() {
+		return connectionID;
+	}
+
+	public int getPayloadID() {
+		return payloadID;
+	}
+
+	public UUID getMessageID() {
+		return messageID;
+	}
+
+	public int getOrdinal() {
+		return ordinal;
+	}
+
+	public int getPartNumber() {
+		return partNumber;
+	}
+
+	public int getTotalParts() {
+		return totalParts;
+	}
+
+	public int getCredit() {
+		return credit;
+	}
+
+	/**
+	 * @return the remaining lifetime of an expiring payload, in milliseconds.
+	 */
+	public int getLifetime() {
+		return lifetime;
+	}
+
+	public int getKey() {
+		return key;
+	}
+
+	/**
+	 * @return the version of a keyed payload's key.
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	public UUID getResumptionToken() {
+		return resumptionToken;
+	}
+
+	/**
+	 * @return the payload IDs reported missing by a NACK.
+	 */
+	public int[] getNackedPayloadIDs() {
+		return nackedPayloadIDs;
+	}
+
+	/**
+	 * @return the oldest payload ID that the sender of a heartbeat has
+	 *         unconfirmed.
+	 */
+	public int getOldestUnconfirmed() {
+		return oldestUnconfirmed;
+	}
+
+	/**
+	 * @return whether the frame is a payload that is confirmed and
+	 *         retransmitted.
+	 */
+	public boolean isPayload() {
+		return type == DatagramStreamConfig.PAYLOAD || type == DatagramStreamConfig.ORDERED_PAYLOAD
+				|| type == DatagramStreamConfig.EXPIRING_PAYLOAD || type == DatagramStreamConfig.KEYED_PAYLOAD;
+	}
+
+	/**
+	 * @return the number of bytes of the frame, which the data it was decoded
+	 *         from may exceed, as received datagrams fill only the start of
+	 *         the receive buffer.
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	@Override
+	public String toString() {
+		return DatagramStreamConfig.nameOf(type) + " connection=" + connectionID;
+	}
+
+}
@@ -0,0 +1,77 @@
+package com.phoenixkahlo.nodenet.stream.trace;
+
+import java.net.InetSocketAddress;
+
+/**
+ * A bean for a datagram read back from a trace.
+ */
+public class TracedDatagram {
+
+	public static enum Direction {
+		SENT, RECEIVED
+	}
+
+	private long sequence;
+	private long timeNanos;
+	private Direction direction;
+	private InetSocketAddress peer;
+	private int length;
+	private byte[] data;
+
+	public TracedDatagram(long sequence, long timeNanos, Direction direction, InetSocketAddress peer, int length,
+			byte[] data) {
+		this.sequence = sequence;
+		this.timeNanos = timeNanos;
+		this.direction = direction;
+		this.peer = peer;
+		this.length = length;
+		this.data = data;
+	}
+
+	/**
+	 * @return the position of the datagram in the order of recording.
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return the System.nanoTime() at which the datagram was recorded.
+	 */
+	public long getTimeNanos() {
+		return timeNanos;
+	}
+
+	public Direction getDirection() {
+		return direction;
+	}
+
+	/**
+	 * @return the destination of a sent datagram, or the source of a received
+	 *         one.
+	 */
+	public InetSocketAddress getPeer() {
+		return peer;
+	}
+
+	/**
+	 * @return the length of the datagram, which may exceed that of the
+	 *         captured data.
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * @return the captured data, truncated to the slot size.
+	 */
+	public byte[] getData() {
+		return data;
+	}
+
+	@Override
+	public String toString() {
+		return "#" + sequence + " " + direction + " " + peer + " " + length + "B";
+	}
+
+}
@@ -0,0 +1,21 @@
+/**
+ * <p>
+ * Recording and offline analysis of the datagrams exchanged by a StreamFamily.
+ * </p>
+ * <p>
+ * Recording is enabled by constructing the family around a
+ * RecordingUDPSocketWrapper, which delegates to the real wrapper and appends
+ * every datagram sent or received to a PacketTraceWriter. The writer is a ring
+ * of fixed size slots in a memory mapped file, so recording never blocks, never
+ * allocates file space, and keeps only the most recent datagrams. The file
+ * remains readable if the process dies.
+ * </p>
+ * <p>
+ * PacketTraceAnalyzer decodes a trace according to the frame types of
+ * DatagramStreamConfig and reports round trip times, loss, retransmission,
+ * duplication and reordering for each connection. PacketTraceReplayer feeds
+ * the received half of a trace back through a fresh BasicStreamFamily, at
+ * original or accelerated speed, to reproduce receive side behavior.
+ * </p>
+ */
+package com.phoenixkahlo.nodenet.stream.trace;
@@ -9,14 +9,14 @@ import java.math.BigInteger;
 import java.util.Objects;
 import java.util.concurrent.ThreadLocalRandom;
 
-import com.phoenixkahlo.nodenet.serialization.FieldSerializer;
+import com.phoenixkahlo.nodenet.serialization.CompiledFieldSerializer;
 import com.phoenixkahlo.nodenet.serialization.SerializationUtils;
 import com.phoenixkahlo.nodenet.serialization.Serializer;
 
 public class UUID {
 
 	public static Serializer serializer() {
-		return new FieldSerializer(UUID.class, UUID::new);
+		return new CompiledFieldSerializer(UUID.class, UUID::new);
 	}
 
 	private long data1;
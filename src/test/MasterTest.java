@@ -9,13 +9,32 @@ import test.nodenet.NetworkModelTest;
 import test.nodenet.ViralMessageHandlerTest;
 import test.serialization.ArraySerializationTest;
 import test.serialization.ArraySplitTest;
+import test.serialization.ByteSinkTest;
 import test.serialization.CollectionSerializationTest;
+import test.serialization.CompactSerializationTest;
+import test.serialization.CompiledFieldSerializerTest;
 import test.serialization.FieldSerializerTest;
 import test.serialization.HashMapSerializationTest;
 import test.serialization.NullableSerializationTest;
 import test.serialization.StringSerializationTest;
+import test.serialization.SymbolDictionaryTest;
 import test.serialization.UnionSerializerTest;
+import test.socket.EmulatedNetworkTest;
+import test.socket.FastRetransmitTest;
+import test.socket.FlowControlTest;
+import test.socket.KeyedChannelTest;
+import test.socket.KryoProviderTest;
+import test.socket.MetricsTest;
+import test.socket.ObjectStreamTest;
+import test.socket.PacketTraceTest;
+import test.socket.PartialReliabilityTest;
+import test.socket.PreparedMessageTest;
 import test.socket.RealUDPSocketWrapperTest;
+import test.socket.RetransmissionBufferTest;
+import test.socket.SequenceTrackerTest;
+import test.socket.SessionResumptionTest;
+import test.socket.TokenBucketPacerTest;
+import test.socket.TransmissionArenaTest;
 import test.util.BlockingHashMapTest;
 import test.util.UUIDJSONTest;
 
@@ -27,11 +46,30 @@ public class MasterTest {
 		Testing.test(HashMapSerializationTest.class);
 		Testing.test(NullableSerializationTest.class);
 		Testing.test(FieldSerializerTest.class);
+		Testing.test(CompiledFieldSerializerTest.class);
+		Testing.test(CompactSerializationTest.class);
+		Testing.test(ByteSinkTest.class);
+		Testing.test(SymbolDictionaryTest.class);
 		Testing.test(UnionSerializerTest.class);
 		Testing.test(ArraySplitTest.class);
 		Testing.test(CollectionSerializationTest.class);
 		
 		Testing.test(RealUDPSocketWrapperTest.class);
+		Testing.test(EmulatedNetworkTest.class);
+		Testing.test(MetricsTest.class);
+		Testing.test(PacketTraceTest.class);
+		Testing.test(SessionResumptionTest.class);
+		Testing.test(TransmissionArenaTest.class);
+		Testing.test(RetransmissionBufferTest.class);
+		Testing.test(FlowControlTest.class);
+		Testing.test(PartialReliabilityTest.class);
+		Testing.test(KeyedChannelTest.class);
+		Testing.test(PreparedMessageTest.class);
+		Testing.test(ObjectStreamTest.class);
+		Testing.test(KryoProviderTest.class);
+		Testing.test(TokenBucketPacerTest.class);
+		Testing.test(SequenceTrackerTest.class);
+		Testing.test(FastRetransmitTest.class);
 
 		Testing.test(NetworkModelTest.class);
 		Testing.test(AddressedAttemptSequenceTest.class);
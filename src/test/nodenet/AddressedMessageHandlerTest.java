@@ -2,6 +2,9 @@ package test.nodenet;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import com.phoenixkahlo.nodenet.AddressedMessage;
 import com.phoenixkahlo.nodenet.AddressedMessageHandler;
@@ -10,8 +13,12 @@ import com.phoenixkahlo.nodenet.AddressedPayload;
 import com.phoenixkahlo.nodenet.ChildNode;
 import com.phoenixkahlo.nodenet.ClientTransmission;
 import com.phoenixkahlo.nodenet.DisconnectionException;
+import com.phoenixkahlo.nodenet.KryoPayloadCodec;
 import com.phoenixkahlo.nodenet.NetworkModel;
 import com.phoenixkahlo.nodenet.NodeAddress;
+import com.phoenixkahlo.nodenet.PayloadCodec;
+import com.phoenixkahlo.nodenet.ProtocolViolationException;
+import com.phoenixkahlo.nodenet.stream.KryoProvider;
 import com.phoenixkahlo.nodenet.stream.ObjectStream;
 import com.phoenixkahlo.ptest.MethodMocker;
 import com.phoenixkahlo.ptest.Mockery;
@@ -256,7 +263,8 @@ public class AddressedMessageHandlerTest {
 		
 		Object object = "hello world";
 		AddressedPayload payload = new ClientTransmission(object);
-		AddressedMessage message = new AddressedMessage(payload, new NodeAddress(3), new NodeAddress(1));
+		AddressedMessage message = new AddressedMessage(new KryoPayloadCodec(new KryoProvider()).encode(payload),
+				new NodeAddress(3), new NodeAddress(1));
 		
 		handler.handle(message, new NodeAddress(2));
 		
@@ -267,4 +275,50 @@ public class AddressedMessageHandlerTest {
 		}
 	}
 
+	/**
+	 * A node relaying a message forwards its payload without decoding it.
+	 */
+	@Test
+	public static void relayTest() throws InterruptedException {
+		NetworkModel model = new NetworkModel();
+		model.connect(new NodeAddress(1), new NodeAddress(2));
+		model.connect(new NodeAddress(1), new NodeAddress(3));
+
+		Map<NodeAddress, ObjectStream> connections = new HashMap<>();
+		ObjectStream str2 = Testing.mock(ObjectStream.class);
+		ObjectStream str3 = Testing.mock(ObjectStream.class);
+		BlockingQueue<AddressedMessage> forwarded = new LinkedBlockingQueue<>();
+		((Mockery) str2).method("send", Object.class).setResponse(args -> {
+			forwarded.add((AddressedMessage) args[0]);
+			return null;
+		});
+		((Mockery) str3).method("send", Object.class).setResponse(MethodMocker.VOID);
+		connections.put(new NodeAddress(2), str2);
+		connections.put(new NodeAddress(3), str3);
+
+		PayloadCodec codec = new PayloadCodec() {
+			@Override
+			public byte[] encode(AddressedPayload payload) {
+				throw new AssertionError("relay encoded a payload");
+			}
+
+			@Override
+			public AddressedPayload decode(byte[] encoded) throws ProtocolViolationException {
+				throw new AssertionError("relay decoded a payload");
+			}
+		};
+		AddressedMessageHandler handler = new AddressedMessageHandler(new NodeAddress(1), model, connections,
+				new HashMap<>(), codec, System.err);
+
+		byte[] payload = new byte[100];
+		Testing.RANDOM.nextBytes(payload);
+		AddressedMessage message = new AddressedMessage(payload, new NodeAddress(3), new NodeAddress(2));
+		handler.handle(message, new NodeAddress(3));
+
+		AddressedMessage sent = forwarded.poll(5, TimeUnit.SECONDS);
+		assert sent != null;
+		assert sent.getPayload() == payload;
+		handler.handle(new AddressedMessageResult(sent.getTransmissionID(), true));
+	}
+
 }
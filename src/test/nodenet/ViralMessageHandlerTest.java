@@ -15,6 +15,7 @@ import com.phoenixkahlo.nodenet.ViralMessage;
 import com.phoenixkahlo.nodenet.ViralMessageHandler;
 import com.phoenixkahlo.nodenet.ViralPayload;
 import com.phoenixkahlo.nodenet.stream.ObjectStream;
+import com.phoenixkahlo.nodenet.stream.PreparedMessage;
 import com.phoenixkahlo.ptest.Mockery;
 import com.phoenixkahlo.ptest.Test;
 import com.phoenixkahlo.ptest.Testing;
@@ -46,16 +47,20 @@ public class ViralMessageHandlerTest {
 		ViralMessage message = new ViralMessage(new NeighborSetUpdate(new NodeAddress(987234), new HashSet<>()));
 		message.addInfected(new NodeAddress(2));
 
-		// situation 1: 2 sends message, no others touched
-		((Mockery) str3).method("send", Object.class).queueAssert(args -> args[0] == message);
-		((Mockery) str4).method("send", Object.class).queueAssert(args -> args[0] == message);
+		// situation 1: 2 sends message, no others touched, and the message is
+		// serialized once for both
+		PreparedMessage prepared = new PreparedMessage(new byte[0]);
+		((Mockery) str3).method("prepare", Object.class).setResponse(args -> args[0] == message, prepared);
+		((Mockery) str4).method("prepare", Object.class).setResponse(args -> args[0] == message, prepared);
+		((Mockery) str3).method("send", PreparedMessage.class).queueAssert(args -> args[0] == prepared);
+		((Mockery) str4).method("send", PreparedMessage.class).queueAssert(args -> args[0] == prepared);
 
 		handler.handle(message);
 
 		assert message.getInfected().contains(new NodeAddress(1));
 
-		((Mockery) str3).method("send", Object.class).assertQueueEmpty();
-		((Mockery) str4).method("send", Object.class).assertQueueEmpty();
+		((Mockery) str3).method("send", PreparedMessage.class).assertQueueEmpty();
+		((Mockery) str4).method("send", PreparedMessage.class).assertQueueEmpty();
 	}
 
 	@Test
@@ -84,7 +89,11 @@ public class ViralMessageHandlerTest {
 		// situation 2: 2 sends message, all others touched
 
 		for (ObjectStream stream : connections.values()) {
-			((Mockery) stream).method("send", Object.class).setResponse(args -> {
+			((Mockery) stream).method("prepare", Object.class).setResponse(args -> {
+				System.out.println("ObjectStream.prepare(" + args[0] + ")");
+				throw new AssertionError();
+			});
+			((Mockery) stream).method("send", PreparedMessage.class).setResponse(args -> {
 				System.out.println("ObjectStream.send(" + args[0] + ")");
 				throw new AssertionError();
 			});
@@ -145,17 +154,22 @@ public class ViralMessageHandlerTest {
 
 		ViralMessageHandler handler = new ViralMessageHandler(new NodeAddress(1), connections, leaveJoinHandler, System.err);
 
+		PreparedMessage prepared = new PreparedMessage(new byte[0]);
 		for (ObjectStream stream : connections.values()) {
-			((Mockery) stream).method("send", Object.class)
-					.queueAssert(args -> args[0] instanceof ViralMessage
+			((Mockery) stream).method("send", PreparedMessage.class).queueAssert(args -> args[0] == prepared);
+			((Mockery) stream).method("prepare", Object.class)
+					.setResponse(args -> args[0] instanceof ViralMessage
 							&& ((ViralMessage) args[0]).getPayload() instanceof NeighborSetUpdate
 							&& ((NeighborSetUpdate) ((ViralMessage) args[0]).getPayload()).getNode()
 									.equals(new NodeAddress(1))
 							&& ((NeighborSetUpdate) ((ViralMessage) args[0]).getPayload()).getNeighbors()
-									.equals(connections.keySet()));
+									.equals(connections.keySet()), prepared);
 		}
 
 		handler.handle(message);
+
+		for (ObjectStream stream : connections.values())
+			((Mockery) stream).method("send", PreparedMessage.class).assertQueueEmpty();
 	}
 
 }
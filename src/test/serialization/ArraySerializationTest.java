@@ -1,8 +1,14 @@
 package test.serialization;
 
+import java.io.ByteArrayOutputStream;
 import java.util.Arrays;
 
 import com.phoenixkahlo.nodenet.serialization.ArraySerializer;
+import com.phoenixkahlo.nodenet.serialization.ByteSink;
+import com.phoenixkahlo.nodenet.serialization.ByteSource;
+import com.phoenixkahlo.nodenet.serialization.CompactSerializer;
+import com.phoenixkahlo.nodenet.serialization.SerializationUtils;
+import com.phoenixkahlo.nodenet.serialization.Serializer;
 import com.phoenixkahlo.nodenet.serialization.StringSerializer;
 import com.phoenixkahlo.ptest.Test;
 import com.phoenixkahlo.ptest.Testing;
@@ -107,5 +113,35 @@ public class ArraySerializationTest {
 			return arr;
 		}, (a, b) -> Arrays.equals((String[]) a, (String[]) b));
 	}
-	
+
+	/**
+	 * Bulk encoded arrays spanning several chunks round trip through sinks and
+	 * sources and in compact mode, with the same bytes as element by element.
+	 */
+	@Test
+	public static void serializeBulk() throws Exception {
+		double[] doubles = new double[Testing.RANDOM.nextInt(5000) + 2000];
+		int[] ints = new int[doubles.length];
+		for (int i = 0; i < doubles.length; i++) {
+			doubles[i] = Testing.RANDOM.nextDouble();
+			ints[i] = Testing.RANDOM.nextInt(100) - 50;
+		}
+		Serializer doubleSerializer = new ArraySerializer(double.class);
+		ByteSink sink = new ByteSink();
+		doubleSerializer.serialize(doubles, sink);
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		SerializationUtils.writeLength(doubles.length, expected);
+		for (double d : doubles)
+			SerializationUtils.writeDouble(d, expected);
+		assert Arrays.equals(sink.toByteArray(), expected.toByteArray());
+		assert Arrays.equals((double[]) doubleSerializer.toDeserializer().deserialize(new ByteSource(sink.toByteArray())),
+				doubles);
+
+		Serializer compact = new CompactSerializer(new ArraySerializer(int.class));
+		sink.reset();
+		compact.serialize(ints, sink);
+		assert sink.size() < ints.length * 2;
+		assert Arrays.equals((int[]) compact.toDeserializer().deserialize(new ByteSource(sink.toByteArray())), ints);
+	}
+
 }
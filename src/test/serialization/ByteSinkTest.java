@@ -0,0 +1,96 @@
+package test.serialization;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import com.phoenixkahlo.nodenet.serialization.ByteSink;
+import com.phoenixkahlo.nodenet.serialization.ByteSource;
+import com.phoenixkahlo.nodenet.serialization.SerializationUtils;
+import com.phoenixkahlo.ptest.Test;
+import com.phoenixkahlo.ptest.Testing;
+
+public class ByteSinkTest {
+
+	private static void writeAll(long seed, OutputStream out) throws IOException {
+		Random random = new Random(seed);
+		for (int i = 0; i < 100; i++) {
+			SerializationUtils.writeInt(random.nextInt(), out);
+			SerializationUtils.writeLong(random.nextLong(), out);
+			SerializationUtils.writeDouble(random.nextDouble(), out);
+			SerializationUtils.writeFloat(random.nextFloat(), out);
+			SerializationUtils.writeShort((short) random.nextInt(), out);
+			SerializationUtils.writeChar((char) random.nextInt(), out);
+			SerializationUtils.writeBoolean(random.nextBoolean(), out);
+			SerializationUtils.serializeByteArray(new byte[random.nextInt(10)], out);
+		}
+	}
+
+	private static void readAll(long seed, InputStream in) throws IOException {
+		Random random = new Random(seed);
+		for (int i = 0; i < 100; i++) {
+			assert SerializationUtils.readInt(in) == random.nextInt();
+			assert SerializationUtils.readLong(in) == random.nextLong();
+			assert SerializationUtils.readDouble(in) == random.nextDouble();
+			assert SerializationUtils.readFloat(in) == random.nextFloat();
+			assert SerializationUtils.readShort(in) == (short) random.nextInt();
+			assert SerializationUtils.readChar(in) == (char) random.nextInt();
+			assert SerializationUtils.readBoolean(in) == random.nextBoolean();
+			assert SerializationUtils.deserializeByteArray(in).length == random.nextInt(10);
+		}
+	}
+
+	/**
+	 * Heap and direct sinks, grown from a small capacity, hold the same bytes
+	 * as a plain stream, and read back through sources and plain streams.
+	 */
+	@Test
+	public static void test1() throws IOException {
+		long seed = Testing.RANDOM.nextLong();
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		writeAll(seed, baos);
+		for (boolean direct : new boolean[] { false, true }) {
+			ByteSink sink = new ByteSink(1, direct);
+			writeAll(seed, sink);
+			assert sink.size() == baos.size();
+			assert Arrays.equals(sink.toByteArray(), baos.toByteArray());
+			readAll(seed, new ByteSource(sink.toByteBuffer()));
+			readAll(seed, new ByteArrayInputStream(sink.toByteArray()));
+			sink.reset();
+			assert sink.size() == 0;
+		}
+	}
+
+	/**
+	 * Reads past the end of a source or stream throw EOFException, and short
+	 * reads from a stream are completed.
+	 */
+	@Test
+	public static void test2() throws IOException {
+		ByteSink sink = new ByteSink();
+		SerializationUtils.writeLong(Long.MIN_VALUE + 1, sink);
+		byte[] bytes = sink.toByteArray();
+		byte[] truncated = Arrays.copyOf(bytes, 7);
+		for (InputStream in : new InputStream[] { new ByteSource(truncated), new ByteArrayInputStream(truncated) }) {
+			try {
+				SerializationUtils.readLong(in);
+				assert false;
+			} catch (EOFException e) {
+			}
+		}
+
+		InputStream trickle = new ByteArrayInputStream(bytes) {
+			@Override
+			public synchronized int read(byte[] b, int off, int len) {
+				return super.read(b, off, Math.min(len, 1));
+			}
+		};
+		assert SerializationUtils.readLong(trickle) == Long.MIN_VALUE + 1;
+	}
+
+}
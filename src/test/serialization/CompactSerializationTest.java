@@ -0,0 +1,89 @@
+package test.serialization;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.phoenixkahlo.nodenet.serialization.CollectionSerializer;
+import com.phoenixkahlo.nodenet.serialization.CompactInputStream;
+import com.phoenixkahlo.nodenet.serialization.CompactOutputStream;
+import com.phoenixkahlo.nodenet.serialization.CompactSerializer;
+import com.phoenixkahlo.nodenet.serialization.CompiledFieldSerializer;
+import com.phoenixkahlo.nodenet.serialization.FieldSerializer;
+import com.phoenixkahlo.nodenet.serialization.SerializationUtils;
+import com.phoenixkahlo.nodenet.serialization.Serializer;
+import com.phoenixkahlo.nodenet.serialization.StringSerializer;
+import com.phoenixkahlo.nodenet.serialization.UnionSerializer;
+import com.phoenixkahlo.ptest.Test;
+import com.phoenixkahlo.ptest.Testing;
+
+import test.serialization.FieldSerializerTest.TestClass3;
+
+public class CompactSerializationTest {
+
+	/**
+	 * Ints of every magnitude and sign, and lengths, survive the varint
+	 * encodings, and small ones take one byte.
+	 */
+	@Test
+	public static void test1() throws Exception {
+		int[] ints = { 0, 1, -1, 63, -64, 64, 127, 128, Integer.MAX_VALUE, Integer.MIN_VALUE,
+				Testing.RANDOM.nextInt() };
+		for (int n : ints) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			SerializationUtils.writeInt(n, new CompactOutputStream(out));
+			assert SerializationUtils.readInt(new CompactInputStream(new ByteArrayInputStream(out.toByteArray()))) == n;
+			assert (out.size() == 1) == (n >= -64 && n < 64);
+			if (n >= 0) {
+				out.reset();
+				SerializationUtils.writeLength(n, new CompactOutputStream(out));
+				assert SerializationUtils
+						.readLength(new CompactInputStream(new ByteArrayInputStream(out.toByteArray()))) == n;
+				assert (out.size() == 1) == (n < 128);
+			}
+		}
+	}
+
+	/**
+	 * A whole tree round trips in compact mode, with both reflective and
+	 * compiled field serializers, and is smaller than in the default mode.
+	 */
+	@Test
+	public static void test2() throws Exception {
+		UnionSerializer union = new UnionSerializer();
+		union.add(0, new StringSerializer());
+		union.add(1, new CollectionSerializer<>(ArrayList.class, ArrayList::new, union));
+		union.add(2, new FieldSerializer(TestClass3.class, TestClass3::new));
+		union.add(3, new CompiledFieldSerializer(FieldSerializerTest.TestClass1.class,
+				FieldSerializerTest.TestClass1::new));
+		Serializer compact = new CompactSerializer(union);
+		TestUtils.testSerializer(compact, () -> {
+			List<Object> list = new ArrayList<>();
+			for (int i = Testing.RANDOM.nextInt(20); i > 0; i--) {
+				switch (Testing.RANDOM.nextInt(3)) {
+				case 0:
+					list.add(TestUtils.randomString());
+					break;
+				case 1:
+					list.add(new TestClass3());
+					break;
+				default:
+					list.add(new FieldSerializerTest.TestClass1());
+				}
+			}
+			return list;
+		});
+
+		List<String> strings = new ArrayList<>();
+		for (int i = 0; i < 10; i++)
+			strings.add(TestUtils.randomString());
+		ByteArrayOutputStream out1 = new ByteArrayOutputStream();
+		ByteArrayOutputStream out2 = new ByteArrayOutputStream();
+		union.serialize(strings, out1);
+		compact.serialize(strings, out2);
+		assert out2.size() < out1.size();
+		assert strings.equals(compact.toDeserializer().deserialize(new ByteArrayInputStream(out2.toByteArray())));
+	}
+
+}
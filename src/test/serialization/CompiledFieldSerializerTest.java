@@ -0,0 +1,79 @@
+package test.serialization;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.util.Arrays;
+
+import com.phoenixkahlo.nodenet.ProtocolViolationException;
+import com.phoenixkahlo.nodenet.serialization.CompiledFieldSerializer;
+import com.phoenixkahlo.nodenet.serialization.FieldSerializer;
+import com.phoenixkahlo.nodenet.serialization.SerializationUtils;
+import com.phoenixkahlo.nodenet.serialization.Serializer;
+import com.phoenixkahlo.ptest.Test;
+
+import test.serialization.FieldSerializerTest.EnumClass;
+import test.serialization.FieldSerializerTest.TestClass1;
+import test.serialization.FieldSerializerTest.TestClass2;
+import test.serialization.FieldSerializerTest.TestClass3;
+import test.serialization.FieldSerializerTest.TestEnum;
+
+public class CompiledFieldSerializerTest {
+
+	@Test
+	public static void test1() throws Exception {
+		TestUtils.testSerializer(new CompiledFieldSerializer(TestClass3.class, TestClass3::new), TestClass3::new);
+		TestUtils.testSerializer(new CompiledFieldSerializer(TestClass2.class,
+				new CompiledFieldSerializer(TestClass1.class, TestClass1::new), TestClass2::new), TestClass2::new);
+	}
+
+	/**
+	 * The compiled serializer writes the same bytes as FieldSerializer.
+	 */
+	@Test
+	public static void test2() throws Exception {
+		Serializer compiled = new CompiledFieldSerializer(TestClass3.class, TestClass3::new);
+		Serializer reflective = new FieldSerializer(TestClass3.class, TestClass3::new);
+		for (int i = 0; i < 20; i++) {
+			TestClass3 object = new TestClass3();
+			ByteArrayOutputStream out1 = new ByteArrayOutputStream();
+			ByteArrayOutputStream out2 = new ByteArrayOutputStream();
+			compiled.serialize(object, out1);
+			reflective.serialize(object, out2);
+			assert Arrays.equals(out1.toByteArray(), out2.toByteArray());
+			assert object.equals(reflective.toDeserializer().deserialize(new ByteArrayInputStream(out1.toByteArray())));
+		}
+	}
+
+	/**
+	 * Truncated input is an EOFException rather than a corrupt object.
+	 */
+	@Test
+	public static void test3() throws Exception {
+		Serializer serializer = new CompiledFieldSerializer(TestClass3.class, TestClass3::new);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		serializer.serialize(new TestClass3(), out);
+		byte[] truncated = Arrays.copyOf(out.toByteArray(), out.size() - 1);
+		try {
+			serializer.toDeserializer().deserialize(new ByteArrayInputStream(truncated));
+			assert false;
+		} catch (EOFException e) {
+		}
+	}
+
+	/**
+	 * An ordinal with no constant is a ProtocolViolationException.
+	 */
+	@Test
+	public static void test4() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		SerializationUtils.writeLength(TestEnum.values().length, out);
+		try {
+			new CompiledFieldSerializer(EnumClass.class, EnumClass::new).toDeserializer()
+					.deserialize(new ByteArrayInputStream(out.toByteArray()));
+			assert false;
+		} catch (ProtocolViolationException e) {
+		}
+	}
+
+}
@@ -1,9 +1,14 @@
 package test.serialization;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Objects;
 
 import com.phoenixkahlo.nodenet.ProtocolViolationException;
 import com.phoenixkahlo.nodenet.serialization.FieldSerializer;
+import com.phoenixkahlo.nodenet.serialization.SerializationUtils;
+import com.phoenixkahlo.nodenet.serialization.Serializer;
 import com.phoenixkahlo.ptest.Test;
 import com.phoenixkahlo.ptest.Testing;
 
@@ -61,4 +66,73 @@ public class FieldSerializerTest {
 		}, (a, b) -> ((TransientClass) b).a == 0 && ((TransientClass) b).b == 0);
 	}
 
+	public static enum TestEnum {
+		A, B, C
+	}
+
+	public static class TestSuperclass {
+		protected long inherited = Testing.RANDOM.nextLong();
+	}
+
+	public static class TestClass3 extends TestSuperclass {
+		private final int a = Testing.RANDOM.nextInt();
+		private float b = Testing.RANDOM.nextFloat();
+		private short c = (short) Testing.RANDOM.nextInt();
+		private char d = (char) Testing.RANDOM.nextInt();
+		private byte e = (byte) Testing.RANDOM.nextInt();
+		private boolean f = Testing.RANDOM.nextBoolean();
+		private TestEnum g = TestEnum.values()[Testing.RANDOM.nextInt(3)];
+		private static int unserialized = 0;
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof TestClass3))
+				return false;
+			TestClass3 o = (TestClass3) other;
+			return o.inherited == inherited && o.a == a && o.b == b && o.c == c && o.d == d && o.e == e && o.f == f
+					&& o.g == g;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(inherited, a, b, c, d, e, f, g);
+		}
+	}
+
+	/**
+	 * Every kind of primitive field, enum fields, final fields and inherited
+	 * fields are serialized, and static fields are not.
+	 */
+	@Test
+	public static void test3() throws Exception {
+		Serializer serializer = new FieldSerializer(TestClass3.class, TestClass3::new);
+		TestUtils.testSerializer(serializer, TestClass3::new);
+
+		TestClass3.unserialized = 1;
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		serializer.serialize(new TestClass3(), out);
+		TestClass3.unserialized = 2;
+		serializer.toDeserializer().deserialize(new ByteArrayInputStream(out.toByteArray()));
+		assert TestClass3.unserialized == 2;
+	}
+
+	public static class EnumClass {
+		private TestEnum value = TestEnum.A;
+	}
+
+	/**
+	 * An ordinal with no constant is a ProtocolViolationException.
+	 */
+	@Test
+	public static void test4() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		SerializationUtils.writeLength(TestEnum.values().length, out);
+		try {
+			new FieldSerializer(EnumClass.class, EnumClass::new).toDeserializer()
+					.deserialize(new ByteArrayInputStream(out.toByteArray()));
+			assert false;
+		} catch (ProtocolViolationException e) {
+		}
+	}
+
 }
@@ -0,0 +1,242 @@
+package test.serialization;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import com.phoenixkahlo.nodenet.DisconnectionException;
+import com.phoenixkahlo.nodenet.ProtocolViolationException;
+import com.phoenixkahlo.nodenet.serialization.ByteSink;
+import com.phoenixkahlo.nodenet.serialization.ByteSource;
+import com.phoenixkahlo.nodenet.serialization.ClassSerializer;
+import com.phoenixkahlo.nodenet.serialization.Deserializer;
+import com.phoenixkahlo.nodenet.serialization.MethodSerializer;
+import com.phoenixkahlo.nodenet.serialization.Serializer;
+import com.phoenixkahlo.nodenet.serialization.SymbolDecoder;
+import com.phoenixkahlo.nodenet.serialization.SymbolEncoder;
+import com.phoenixkahlo.nodenet.serialization.UnresolvedSymbolException;
+import com.phoenixkahlo.nodenet.stream.BasicStreamFamily;
+import com.phoenixkahlo.nodenet.stream.DatagramStream;
+import com.phoenixkahlo.nodenet.stream.EmulatedNetwork;
+import com.phoenixkahlo.nodenet.stream.EmulatedUDPSocketWrapper;
+import com.phoenixkahlo.nodenet.stream.LinkConditions;
+import com.phoenixkahlo.nodenet.stream.ObjectStream;
+import com.phoenixkahlo.nodenet.stream.SerializerObjectStream;
+import com.phoenixkahlo.nodenet.stream.StreamFamily;
+import com.phoenixkahlo.ptest.Test;
+import com.phoenixkahlo.ptest.Testing;
+
+public class SymbolDictionaryTest {
+
+	private static byte[] serialize(Serializer serializer, Object object, SymbolEncoder symbols,
+			SymbolEncoder.Mode mode) throws IOException {
+		ByteSink sink = new ByteSink();
+		sink.setSymbols(symbols, mode);
+		serializer.serialize(object, sink);
+		return sink.toByteArray();
+	}
+
+	private static Object deserialize(Deserializer deserializer, byte[] bin, SymbolDecoder symbols)
+			throws IOException, ProtocolViolationException {
+		ByteSource source = new ByteSource(bin);
+		source.setSymbols(symbols);
+		Object deserialized = deserializer.deserialize(source);
+		assert source.available() == 0;
+		return deserialized;
+	}
+
+	/**
+	 * A symbol is sent in full once, and then referenced, and a reference
+	 * received before the definition is unresolved until the definition is
+	 * received.
+	 */
+	@Test
+	public static void test1() throws IOException, ProtocolViolationException {
+		Serializer serializer = new ClassSerializer();
+		Deserializer deserializer = serializer.toDeserializer();
+		SymbolEncoder encoder = new SymbolEncoder();
+		SymbolDecoder decoder = new SymbolDecoder();
+
+		byte[] defining = serialize(serializer, ArrayList.class, encoder, SymbolEncoder.Mode.UNORDERED);
+		byte[] referencing = serialize(serializer, ArrayList.class, encoder, SymbolEncoder.Mode.UNORDERED);
+		assert referencing.length < defining.length;
+		// The tag and a one byte ID
+		assert referencing.length == 2;
+		assert encoder.size() == 1;
+
+		try {
+			deserialize(deserializer, referencing, decoder);
+			assert false;
+		} catch (UnresolvedSymbolException e) {
+			assert e.getID() == 0;
+		}
+		assert deserialize(deserializer, defining, decoder) == ArrayList.class;
+		assert deserialize(deserializer, referencing, decoder) == ArrayList.class;
+		assert decoder.size() == 1;
+
+		// Inlined symbols are not defined
+		byte[] inlined = serialize(serializer, HashMap.class, encoder, SymbolEncoder.Mode.INLINE);
+		assert encoder.size() == 1;
+		assert deserialize(deserializer, inlined, new SymbolDecoder()) == HashMap.class;
+	}
+
+	/**
+	 * An ordered message only references symbols that were defined by ordered
+	 * messages, and defines the others again.
+	 */
+	@Test
+	public static void test2() throws IOException, ProtocolViolationException, NoSuchMethodException {
+		Serializer serializer = new MethodSerializer();
+		Deserializer deserializer = serializer.toDeserializer();
+		SymbolEncoder encoder = new SymbolEncoder();
+		Method method = TreeMap.class.getMethod("clear");
+
+		serialize(serializer, method, encoder, SymbolEncoder.Mode.UNORDERED);
+		byte[] ordered = serialize(serializer, method, encoder, SymbolEncoder.Mode.ORDERED);
+		assert deserialize(deserializer, ordered, new SymbolDecoder()).equals(method);
+		byte[] reordered = serialize(serializer, method, encoder, SymbolEncoder.Mode.ORDERED);
+		assert reordered.length < ordered.length;
+		assert encoder.size() == 2;
+
+		// Everything sent can be decoded with a snapshot of the encoder
+		assert deserialize(deserializer, reordered, encoder.snapshot()).equals(method);
+	}
+
+	/**
+	 * Defining an ID as two different symbols violates the protocol.
+	 */
+	@Test
+	public static void test3() throws IOException {
+		Serializer serializer = new ClassSerializer();
+		Deserializer deserializer = serializer.toDeserializer();
+		byte[] first = serialize(serializer, ArrayList.class, new SymbolEncoder(), SymbolEncoder.Mode.UNORDERED);
+		byte[] second = serialize(serializer, LinkedList.class, new SymbolEncoder(), SymbolEncoder.Mode.UNORDERED);
+		SymbolDecoder decoder = new SymbolDecoder();
+		try {
+			deserialize(deserializer, first, decoder);
+			deserialize(deserializer, second, decoder);
+			assert false;
+		} catch (ProtocolViolationException e) {
+		}
+	}
+
+	/**
+	 * Objects sent without ordering over a reordering, lossy link are all
+	 * received, including those that arrive before the definitions of their
+	 * symbols.
+	 */
+	@Test
+	public static void test4() throws IOException, DisconnectionException, InterruptedException,
+			ProtocolViolationException {
+		EmulatedNetwork network = new EmulatedNetwork(Testing.RANDOM.nextLong());
+		EmulatedUDPSocketWrapper local = network.bind();
+		EmulatedUDPSocketWrapper remote = network.bind();
+		StreamFamily localFamily = new BasicStreamFamily(local);
+		StreamFamily remoteFamily = new BasicStreamFamily(remote);
+		BlockingQueue<DatagramStream> accepted = new LinkedBlockingQueue<>();
+		remoteFamily.setReceiver(connection -> true, accepted::add);
+		Serializer serializer = new ClassSerializer();
+		ObjectStream sender = new SerializerObjectStream(localFamily.connect(remote.getAddress()).get(), serializer);
+		ObjectStream receiver = new SerializerObjectStream(accepted.take(), serializer);
+
+		network.setConditions(LinkConditions.PERFECT.withLossRate(0.1).withReorderRate(0.3));
+		Class<?>[] classes = { ArrayList.class, HashMap.class, HashSet.class, LinkedList.class, TreeMap.class };
+		List<Class<?>> sent = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			Class<?> type = classes[Testing.RANDOM.nextInt(classes.length)];
+			sent.add(type);
+			if (i % 3 == 0)
+				sender.sendOrdered(type);
+			else
+				sender.send(type);
+		}
+		List<Object> received = new ArrayList<>();
+		while (received.size() < sent.size())
+			received.add(receiver.receive());
+		for (Class<?> type : classes)
+			assert received.stream().filter(type::equals).count() == sent.stream().filter(type::equals).count();
+
+		localFamily.close();
+		remoteFamily.close();
+		network.shutdown();
+	}
+
+	/**
+	 * Many more small messages than a count bound would allow can be held
+	 * waiting for a definition, and are received once it arrives.
+	 */
+	@Test
+	public static void test5() throws IOException, DisconnectionException, InterruptedException,
+			ProtocolViolationException {
+		EmulatedNetwork network = new EmulatedNetwork(Testing.RANDOM.nextLong());
+		EmulatedUDPSocketWrapper local = network.bind();
+		EmulatedUDPSocketWrapper remote = network.bind();
+		StreamFamily localFamily = new BasicStreamFamily(local);
+		StreamFamily remoteFamily = new BasicStreamFamily(remote);
+		BlockingQueue<DatagramStream> accepted = new LinkedBlockingQueue<>();
+		remoteFamily.setReceiver(connection -> true, accepted::add);
+		Serializer serializer = new ClassSerializer();
+		DatagramStream sender = localFamily.connect(remote.getAddress()).get();
+		ObjectStream receiver = new SerializerObjectStream(accepted.take(), serializer);
+
+		SymbolEncoder encoder = new SymbolEncoder();
+		byte[] defining = serialize(serializer, ArrayList.class, encoder, SymbolEncoder.Mode.UNORDERED);
+		byte[] referencing = serialize(serializer, ArrayList.class, encoder, SymbolEncoder.Mode.UNORDERED);
+		int count = 5000;
+		for (int i = 0; i < count; i++)
+			sender.sendOrdered(referencing);
+		sender.sendOrdered(defining);
+		for (int i = 0; i <= count; i++)
+			assert receiver.receive() == ArrayList.class;
+
+		localFamily.close();
+		remoteFamily.close();
+		network.shutdown();
+	}
+
+	/**
+	 * Pending definitions are not referenced by other messages, which define
+	 * the symbols again with the same IDs, until they are committed, while a
+	 * message references its own.
+	 */
+	@Test
+	public static void test6() throws IOException, ProtocolViolationException, NoSuchMethodException {
+		Serializer serializer = new MethodSerializer();
+		Deserializer deserializer = serializer.toDeserializer();
+		SymbolEncoder encoder = new SymbolEncoder();
+		Method method = TreeMap.class.getMethod("clear");
+
+		List<Integer> pending = new ArrayList<>();
+		ByteSink sink = new ByteSink();
+		sink.setSymbols(encoder, SymbolEncoder.Mode.ORDERED, pending);
+		serializer.serialize(method, sink);
+		serializer.serialize(method, sink);
+		byte[] twice = sink.toByteArray();
+		assert encoder.size() == 2;
+		assert pending.size() == 2;
+		byte[] defining = serialize(serializer, method, new SymbolEncoder(), SymbolEncoder.Mode.UNORDERED);
+		assert twice.length < 2 * defining.length;
+		byte[] uncommitted = serialize(serializer, method, encoder, SymbolEncoder.Mode.UNORDERED);
+		assert uncommitted.length == defining.length;
+		// The same IDs are defined, so either definition serves
+		SymbolDecoder decoder = new SymbolDecoder();
+		assert deserialize(deserializer, uncommitted, decoder).equals(method);
+		ByteSource source = new ByteSource(twice);
+		source.setSymbols(decoder);
+		assert deserializer.deserialize(source).equals(method);
+		assert deserializer.deserialize(source).equals(method);
+
+		encoder.commit(pending, SymbolEncoder.Mode.ORDERED);
+		byte[] referencing = serialize(serializer, method, encoder, SymbolEncoder.Mode.ORDERED);
+		assert referencing.length < defining.length;
+		assert deserialize(deserializer, referencing, decoder).equals(method);
+	}
+
+}
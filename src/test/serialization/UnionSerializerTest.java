@@ -1,17 +1,25 @@
 package test.serialization;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 
 import com.phoenixkahlo.nodenet.ProtocolViolationException;
 import com.phoenixkahlo.nodenet.serialization.ArraySerializer;
 import com.phoenixkahlo.nodenet.serialization.CollectionSerializer;
+import com.phoenixkahlo.nodenet.serialization.EmptyOptionalSerializer;
 import com.phoenixkahlo.nodenet.serialization.FieldSerializer;
+import com.phoenixkahlo.nodenet.serialization.FullOptionalSerializer;
 import com.phoenixkahlo.nodenet.serialization.HashMapSerializer;
+import com.phoenixkahlo.nodenet.serialization.NullSerializer;
+import com.phoenixkahlo.nodenet.serialization.SerializationUtils;
 import com.phoenixkahlo.nodenet.serialization.StringSerializer;
 import com.phoenixkahlo.nodenet.serialization.UnionSerializer;
 import com.phoenixkahlo.ptest.Test;
@@ -60,4 +68,39 @@ public class UnionSerializerTest {
 		});
 	}
 
+	/**
+	 * Subserializers that depend on more than the class of an object are
+	 * still found alongside those keyed by class, and unknown headers are
+	 * protocol violations.
+	 */
+	@Test
+	public static void test2() throws IOException, ProtocolViolationException {
+		UnionSerializer union = new UnionSerializer();
+		union.add(0, new StringSerializer());
+		union.add(1, new NullSerializer());
+		union.add(2, new EmptyOptionalSerializer());
+		union.add(3, new FullOptionalSerializer(union));
+		TestUtils.testSerializer(union, () -> {
+			switch (Testing.RANDOM.nextInt(4)) {
+			case 0:
+				return TestUtils.randomString();
+			case 1:
+				return null;
+			case 2:
+				return Optional.empty();
+			default:
+				return Optional.of(TestUtils.randomString());
+			}
+		}, Objects::equals);
+		assert !union.canSerialize(5);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		SerializationUtils.writeInt(4, out);
+		try {
+			union.toDeserializer().deserialize(new ByteArrayInputStream(out.toByteArray()));
+			assert false;
+		} catch (ProtocolViolationException e) {
+		}
+	}
+
 }
@@ -0,0 +1,111 @@
+package test.socket;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import com.phoenixkahlo.nodenet.DisconnectionException;
+import com.phoenixkahlo.nodenet.stream.BasicStreamFamily;
+import com.phoenixkahlo.nodenet.stream.DatagramStream;
+import com.phoenixkahlo.nodenet.stream.EmulatedNetwork;
+import com.phoenixkahlo.nodenet.stream.EmulatedUDPSocketWrapper;
+import com.phoenixkahlo.nodenet.stream.LinkConditions;
+import com.phoenixkahlo.nodenet.stream.StreamFamily;
+import com.phoenixkahlo.ptest.Test;
+import com.phoenixkahlo.ptest.Testing;
+
+public class EmulatedNetworkTest {
+
+	/**
+	 * Datagrams arrive intact, from the sender's address, in order over a
+	 * perfect link.
+	 */
+	@Test
+	public static void test1() throws IOException {
+		EmulatedNetwork network = new EmulatedNetwork(Testing.RANDOM.nextLong());
+		EmulatedUDPSocketWrapper a = network.bind();
+		EmulatedUDPSocketWrapper b = network.bind();
+		for (byte i = 0; i < 10; i++)
+			a.send(new byte[] { i, 1, 2 }, b.getAddress());
+		for (byte i = 0; i < 10; i++) {
+			byte[] buffer = new byte[3];
+			InetSocketAddress from = b.receive(buffer);
+			assert from.equals(a.getAddress());
+			assert Arrays.equals(buffer, new byte[] { i, 1, 2 });
+		}
+		network.shutdown();
+	}
+
+	/**
+	 * The same seed and sequence of sends produce the same losses.
+	 */
+	@Test
+	public static void test2() throws IOException, InterruptedException {
+		long seed = Testing.RANDOM.nextLong();
+		assert receivedUnderLoss(seed).equals(receivedUnderLoss(seed));
+	}
+
+	private static List<Byte> receivedUnderLoss(long seed) throws IOException, InterruptedException {
+		EmulatedNetwork network = new EmulatedNetwork(seed);
+		network.setConditions(LinkConditions.PERFECT.withLossRate(0.5));
+		EmulatedUDPSocketWrapper a = network.bind();
+		EmulatedUDPSocketWrapper b = network.bind();
+		for (byte i = 0; i < 100; i++)
+			a.send(new byte[] { i }, b.getAddress());
+		while (network.getDelivered() + network.getLost() < 100)
+			Thread.sleep(1);
+		List<Byte> received = new ArrayList<>();
+		for (int i = 0; i < network.getDelivered(); i++) {
+			byte[] buffer = new byte[1];
+			b.receive(buffer);
+			received.add(buffer[0]);
+		}
+		assert network.getLost() > 0;
+		network.shutdown();
+		return received;
+	}
+
+	/**
+	 * Streams deliver every message exactly once over a lossy, reordering,
+	 * duplicating link.
+	 */
+	@Test
+	public static void test3() throws IOException, DisconnectionException, InterruptedException {
+		EmulatedNetwork network = new EmulatedNetwork(Testing.RANDOM.nextLong());
+		EmulatedUDPSocketWrapper socket1 = network.bind();
+		EmulatedUDPSocketWrapper socket2 = network.bind();
+		StreamFamily family1 = new BasicStreamFamily(socket1);
+		StreamFamily family2 = new BasicStreamFamily(socket2);
+		BlockingQueue<DatagramStream> accepted = new LinkedBlockingQueue<>();
+		family2.setReceiver(connection -> true, accepted::add);
+
+		DatagramStream stream1 = family1.connect(socket2.getAddress()).get();
+		DatagramStream stream2 = accepted.take();
+		// CONNECT is not retransmitted, so only degrade the link once connected
+		network.setConditions(LinkConditions.PERFECT.withLatency(5, 5).withLossRate(0.1).withReorderRate(0.1)
+				.withDuplicateRate(0.1));
+
+		Set<String> sent = new HashSet<>();
+		for (int i = 0; i < 50; i++) {
+			byte[] message = new byte[Testing.RANDOM.nextInt(1000) + 1];
+			Testing.RANDOM.nextBytes(message);
+			message[0] = (byte) i;
+			sent.add(Arrays.toString(message));
+			stream1.send(message);
+		}
+		for (int i = 0; i < 50; i++)
+			assert sent.remove(Arrays.toString(stream2.receive()));
+		assert sent.isEmpty();
+
+		family1.close();
+		family2.close();
+		network.shutdown();
+	}
+
+}
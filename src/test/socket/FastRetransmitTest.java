@@ -0,0 +1,66 @@
+package test.socket;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import com.phoenixkahlo.nodenet.DisconnectionException;
+import com.phoenixkahlo.nodenet.stream.BasicStreamFamily;
+import com.phoenixkahlo.nodenet.stream.ChildStream;
+import com.phoenixkahlo.nodenet.stream.DatagramStream;
+import com.phoenixkahlo.nodenet.stream.DatagramStreamConfig;
+import com.phoenixkahlo.nodenet.stream.EmulatedNetwork;
+import com.phoenixkahlo.nodenet.stream.EmulatedUDPSocketWrapper;
+import com.phoenixkahlo.nodenet.stream.LinkConditions;
+import com.phoenixkahlo.nodenet.stream.StreamFamily;
+import com.phoenixkahlo.ptest.Test;
+import com.phoenixkahlo.ptest.Testing;
+
+public class FastRetransmitTest {
+
+	/**
+	 * Payloads lost from the middle of a stream of messages are reported and
+	 * retransmitted without waiting for the retransmission threshold, even
+	 * when a retransmission is lost too, so every message arrives well within
+	 * the threshold.
+	 */
+	@Test
+	public static void test1() throws IOException, DisconnectionException, InterruptedException {
+		EmulatedNetwork network = new EmulatedNetwork(Testing.RANDOM.nextLong());
+		EmulatedUDPSocketWrapper socket1 = network.bind();
+		EmulatedUDPSocketWrapper socket2 = network.bind();
+		StreamFamily family1 = new BasicStreamFamily(socket1);
+		StreamFamily family2 = new BasicStreamFamily(socket2);
+		BlockingQueue<DatagramStream> accepted = new LinkedBlockingQueue<>();
+		family2.setReceiver(connection -> true, accepted::add);
+
+		ChildStream stream1 = (ChildStream) family1.connect(socket2.getAddress()).get();
+		DatagramStream stream2 = accepted.take();
+
+		// Only payloads are lost, so that confirmations and reports arrive
+		network.setConditions(socket1.getAddress(), socket2.getAddress(),
+				LinkConditions.PERFECT.withLatency(5, 0).withLossRate(0.1));
+		network.setConditions(socket2.getAddress(), socket1.getAddress(), LinkConditions.PERFECT.withLatency(5, 0));
+		long start = System.nanoTime();
+		for (int i = 0; i < 200; i++)
+			stream1.send(new byte[] { (byte) i });
+		// A lost payload with none after it leaves no gap, so only the
+		// threshold recovers it; messages afterwards make sure that those
+		// measured have some
+		for (int i = 200; i < 220; i++)
+			stream1.send(new byte[] { (byte) i });
+		Set<Byte> received = new HashSet<>();
+		while (received.stream().filter(b -> (b & 0xFF) < 200).count() < 200)
+			received.add(stream2.receive()[0]);
+		long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+		assert stream1.getMetrics().getFastRetransmissions() > 0;
+		assert elapsedMillis < DatagramStreamConfig.RETRANSMISSION_THRESHHOLD / 2 : elapsedMillis + " ms";
+
+		family1.close();
+		family2.close();
+		network.shutdown();
+	}
+
+}
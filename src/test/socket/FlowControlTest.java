@@ -0,0 +1,109 @@
+package test.socket;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import com.phoenixkahlo.nodenet.DisconnectionException;
+import com.phoenixkahlo.nodenet.stream.BasicStreamFamily;
+import com.phoenixkahlo.nodenet.stream.ChildStream;
+import com.phoenixkahlo.nodenet.stream.DatagramStream;
+import com.phoenixkahlo.nodenet.stream.DatagramStreamConfig;
+import com.phoenixkahlo.nodenet.stream.EmulatedNetwork;
+import com.phoenixkahlo.nodenet.stream.EmulatedUDPSocketWrapper;
+import com.phoenixkahlo.nodenet.stream.ReceivedPayload;
+import com.phoenixkahlo.nodenet.stream.StreamFamily;
+import com.phoenixkahlo.ptest.Test;
+import com.phoenixkahlo.ptest.Testing;
+import com.phoenixkahlo.util.UUID;
+
+public class FlowControlTest {
+
+	/**
+	 * Two messages whose interleaved parts together exceed the receive buffer
+	 * are both reassembled, rather than each holding the buffer the other
+	 * needs to complete.
+	 */
+	@Test
+	public static void test1() throws IOException, DisconnectionException, InterruptedException {
+		EmulatedNetwork network = new EmulatedNetwork(Testing.RANDOM.nextLong());
+		EmulatedUDPSocketWrapper socket1 = network.bind();
+		EmulatedUDPSocketWrapper socket2 = network.bind();
+		StreamFamily family1 = new BasicStreamFamily(socket1);
+		StreamFamily family2 = new BasicStreamFamily(socket2);
+		BlockingQueue<DatagramStream> accepted = new LinkedBlockingQueue<>();
+		family2.setReceiver(connection -> true, accepted::add);
+
+		family1.connect(socket2.getAddress()).get();
+		ChildStream stream2 = (ChildStream) accepted.take();
+
+		int partSize = 50_000;
+		int parts = 100;
+		assert 2 * partSize * parts > DatagramStreamConfig.RECEIVE_BUFFER_SIZE;
+		byte[][] messages = new byte[2][partSize * parts];
+		UUID[] messageIDs = new UUID[2];
+		for (int i = 0; i < 2; i++) {
+			Testing.RANDOM.nextBytes(messages[i]);
+			messageIDs[i] = new UUID();
+		}
+		for (int part = 0; part < parts; part++) {
+			for (int i = 0; i < 2; i++) {
+				byte[] payload = Arrays.copyOfRange(messages[i], part * partSize, (part + 1) * partSize);
+				stream2.receivePayload(new ReceivedPayload(messageIDs[i], part, parts, payload, 60_000));
+			}
+		}
+
+		assert stream2.getMetrics().getReassemblyBacklog() == 0;
+		assert stream2.getMetrics().getDroppedPayloads() == 0;
+		byte[] first = stream2.receive();
+		byte[] second = stream2.receive();
+		assert Arrays.equals(first, messages[0]) && Arrays.equals(second, messages[1])
+				|| Arrays.equals(first, messages[1]) && Arrays.equals(second, messages[0]);
+
+		family1.close();
+		family2.close();
+		network.shutdown();
+	}
+
+	/**
+	 * A send interrupted while waiting for space in the send queue is still
+	 * sent, and leaves the thread interrupted.
+	 */
+	@Test
+	public static void test2() throws IOException, DisconnectionException, InterruptedException {
+		EmulatedNetwork network = new EmulatedNetwork(Testing.RANDOM.nextLong());
+		EmulatedUDPSocketWrapper socket1 = network.bind();
+		EmulatedUDPSocketWrapper socket2 = network.bind();
+		StreamFamily family1 = new BasicStreamFamily(socket1);
+		StreamFamily family2 = new BasicStreamFamily(socket2);
+		BlockingQueue<DatagramStream> accepted = new LinkedBlockingQueue<>();
+		family2.setReceiver(connection -> true, accepted::add);
+
+		DatagramStream stream1 = family1.connect(socket2.getAddress()).get();
+		DatagramStream stream2 = accepted.take();
+
+		// Enough to fill the window and the send queue while nothing is
+		// received, so that the last sends must wait
+		int size = DatagramStreamConfig.SEND_QUEUE_SIZE / 2;
+		int count = (DatagramStreamConfig.RECEIVE_BUFFER_SIZE + DatagramStreamConfig.SEND_QUEUE_SIZE) / size + 2;
+		for (int i = 0; i < count; i++) {
+			byte[] message = new byte[size];
+			message[0] = (byte) i;
+			Thread.currentThread().interrupt();
+			stream1.send(message);
+			assert Thread.interrupted();
+		}
+
+		boolean[] received = new boolean[count];
+		for (int i = 0; i < count; i++)
+			received[stream2.receive()[0]] = true;
+		for (boolean each : received)
+			assert each;
+
+		family1.close();
+		family2.close();
+		network.shutdown();
+	}
+
+}
@@ -0,0 +1,140 @@
+package test.socket;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import com.phoenixkahlo.nodenet.DisconnectionException;
+import com.phoenixkahlo.nodenet.stream.BasicStreamFamily;
+import com.phoenixkahlo.nodenet.stream.ChildStream;
+import com.phoenixkahlo.nodenet.stream.DatagramStream;
+import com.phoenixkahlo.nodenet.stream.EmulatedNetwork;
+import com.phoenixkahlo.nodenet.stream.EmulatedUDPSocketWrapper;
+import com.phoenixkahlo.nodenet.stream.LinkConditions;
+import com.phoenixkahlo.nodenet.stream.StreamFamily;
+import com.phoenixkahlo.ptest.Test;
+import com.phoenixkahlo.ptest.Testing;
+
+public class KeyedChannelTest {
+
+	private static byte[] value(int key, int version) {
+		return ByteBuffer.allocate(8).putInt(key).putInt(version).array();
+	}
+
+	/**
+	 * Over a perfect link, the values of each key arrive in the order they
+	 * were sent, ending with the newest.
+	 */
+	@Test
+	public static void test1() throws IOException, DisconnectionException, InterruptedException {
+		EmulatedNetwork network = new EmulatedNetwork(Testing.RANDOM.nextLong());
+		EmulatedUDPSocketWrapper socket1 = network.bind();
+		EmulatedUDPSocketWrapper socket2 = network.bind();
+		StreamFamily family1 = new BasicStreamFamily(socket1);
+		StreamFamily family2 = new BasicStreamFamily(socket2);
+		BlockingQueue<DatagramStream> accepted = new LinkedBlockingQueue<>();
+		family2.setReceiver(connection -> true, accepted::add);
+
+		DatagramStream stream1 = family1.connect(socket2.getAddress()).get();
+		DatagramStream stream2 = accepted.take();
+
+		int[] newest = new int[5];
+		for (int version = 1; version <= 100; version++)
+			for (int key = 0; key < newest.length; key++)
+				stream1.sendKeyed(key, value(key, version));
+		int[] received = new int[newest.length];
+		while (Arrays.stream(received).anyMatch(version -> version < 100)) {
+			ByteBuffer value = ByteBuffer.wrap(stream2.receive());
+			int key = value.getInt();
+			int version = value.getInt();
+			assert version > received[key];
+			received[key] = version;
+		}
+
+		family1.close();
+		family2.close();
+		network.shutdown();
+	}
+
+	/**
+	 * While the link is down, only the newest version of a key stays
+	 * unconfirmed, and only it is received once the link returns.
+	 */
+	@Test
+	public static void test2() throws IOException, DisconnectionException, InterruptedException {
+		EmulatedNetwork network = new EmulatedNetwork(Testing.RANDOM.nextLong());
+		EmulatedUDPSocketWrapper socket1 = network.bind();
+		EmulatedUDPSocketWrapper socket2 = network.bind();
+		StreamFamily family1 = new BasicStreamFamily(socket1);
+		StreamFamily family2 = new BasicStreamFamily(socket2);
+		BlockingQueue<DatagramStream> accepted = new LinkedBlockingQueue<>();
+		family2.setReceiver(connection -> true, accepted::add);
+
+		ChildStream stream1 = (ChildStream) family1.connect(socket2.getAddress()).get();
+		ChildStream stream2 = (ChildStream) accepted.take();
+
+		network.setConditions(LinkConditions.PERFECT.withLossRate(1));
+		byte[] message = null;
+		for (int i = 0; i < 10; i++) {
+			message = new byte[1000];
+			Testing.RANDOM.nextBytes(message);
+			stream1.sendKeyed(7, message);
+			Thread.sleep(20);
+		}
+		Thread.sleep(100);
+		assert stream1.getMetrics().getUnconfirmedDepth() == 4;
+		assert stream1.getMetrics().getSupersededPayloads() == 36;
+
+		network.setConditions(LinkConditions.PERFECT);
+		assert Arrays.equals(stream2.receive(), message);
+		Thread.sleep(1000);
+		assert stream1.getMetrics().getUnconfirmedDepth() == 0;
+		assert stream2.getMetrics().getReceiveQueueDepth() == 0;
+
+		family1.close();
+		family2.close();
+		network.shutdown();
+	}
+
+	/**
+	 * Over a link that reorders and loses datagrams, the receiver never
+	 * receives an older version of a key after a newer one, and receives the
+	 * newest.
+	 */
+	@Test
+	public static void test3() throws IOException, DisconnectionException, InterruptedException {
+		EmulatedNetwork network = new EmulatedNetwork(Testing.RANDOM.nextLong());
+		EmulatedUDPSocketWrapper socket1 = network.bind();
+		EmulatedUDPSocketWrapper socket2 = network.bind();
+		StreamFamily family1 = new BasicStreamFamily(socket1);
+		StreamFamily family2 = new BasicStreamFamily(socket2);
+		BlockingQueue<DatagramStream> accepted = new LinkedBlockingQueue<>();
+		family2.setReceiver(connection -> true, accepted::add);
+
+		DatagramStream stream1 = family1.connect(socket2.getAddress()).get();
+		DatagramStream stream2 = accepted.take();
+
+		network.setConditions(
+				LinkConditions.PERFECT.withLatency(20, 20).withReorderRate(0.3).withLossRate(0.1));
+		for (int version = 1; version <= 200; version++) {
+			stream1.sendKeyed(0, value(0, version));
+			if (version % 10 == 0)
+				Thread.sleep(5);
+		}
+		int received = 0;
+		while (received < 200) {
+			ByteBuffer value = ByteBuffer.wrap(stream2.receive());
+			value.getInt();
+			int version = value.getInt();
+			assert version > received;
+			received = version;
+		}
+
+		family1.close();
+		family2.close();
+		network.shutdown();
+	}
+
+}
@@ -0,0 +1,258 @@
+package test.socket;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.esotericsoftware.kryo.KryoException;
+import com.phoenixkahlo.nodenet.DisconnectionException;
+import com.phoenixkahlo.nodenet.ProtocolViolationException;
+import com.phoenixkahlo.nodenet.serialization.SymbolDecoder;
+import com.phoenixkahlo.nodenet.serialization.SymbolEncoder;
+import com.phoenixkahlo.nodenet.serialization.UnresolvedSymbolException;
+import com.phoenixkahlo.nodenet.stream.BasicStreamFamily;
+import com.phoenixkahlo.nodenet.stream.DatagramStreamConfig;
+import com.phoenixkahlo.nodenet.stream.EmulatedNetwork;
+import com.phoenixkahlo.nodenet.stream.EmulatedUDPSocketWrapper;
+import com.phoenixkahlo.nodenet.stream.KryoObjectStream;
+import com.phoenixkahlo.nodenet.stream.KryoProvider;
+import com.phoenixkahlo.nodenet.stream.LinkConditions;
+import com.phoenixkahlo.nodenet.stream.ObjectStream;
+import com.phoenixkahlo.nodenet.stream.StreamFamily;
+import com.phoenixkahlo.ptest.Test;
+import com.phoenixkahlo.ptest.Testing;
+
+public class KryoProviderTest {
+
+	public static class Point {
+
+		private int x;
+		private int y;
+		private String label;
+
+		private Point() {
+		}
+
+		public Point(int x, int y, String label) {
+			this.x = x;
+			this.y = y;
+			this.label = label;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof Point && ((Point) other).x == x && ((Point) other).y == y
+					&& ((Point) other).label.equals(label);
+		}
+
+		@Override
+		public int hashCode() {
+			return x * 31 + y;
+		}
+
+	}
+
+	/**
+	 * Many threads writing and reading at once each get their objects back,
+	 * and objects written by one thread can be read by another, including
+	 * with registrations configured after the threads' Kryos were created.
+	 */
+	@Test
+	public static void test1() throws InterruptedException {
+		KryoProvider kryos = new KryoProvider();
+		AtomicInteger failures = new AtomicInteger();
+		BlockingQueue<byte[]> written = new LinkedBlockingQueue<>();
+		Runnable roundTrips = () -> {
+			for (int i = 0; i < 1000; i++) {
+				Point point = new Point(i, -i, "point " + i);
+				if (!point.equals(kryos.read(kryos.write(point))))
+					failures.incrementAndGet();
+				if (i == 500)
+					written.add(kryos.write(new int[] { i }));
+			}
+		};
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 4; i++)
+			threads.add(new Thread(roundTrips));
+		threads.forEach(Thread::start);
+		kryos.configure(kryo -> kryo.register(Point.class));
+		for (Thread thread : threads)
+			thread.join();
+		assert failures.get() == 0;
+
+		byte[] registered = kryos.write(new Point(1, 2, "a"));
+		assert kryos.get().getRegistration(Point.class).getId() >= 0;
+		for (int i = 0; i < threads.size(); i++)
+			assert Arrays.equals((int[]) kryos.read(written.take()), new int[] { 500 });
+		Thread reader = new Thread(() -> {
+			if (!kryos.read(registered).equals(new Point(1, 2, "a")))
+				failures.incrementAndGet();
+		});
+		reader.start();
+		reader.join();
+		assert failures.get() == 0;
+	}
+
+	/**
+	 * A large object does not leave its thread holding a large buffer, and
+	 * smaller objects are still written correctly afterwards.
+	 */
+	@Test
+	public static void test2() {
+		KryoProvider kryos = new KryoProvider();
+		byte[] large = new byte[KryoProvider.MAX_RETAINED_BUFFER_SIZE * 2];
+		Testing.RANDOM.nextBytes(large);
+		assert Arrays.equals((byte[]) kryos.read(kryos.write(large)), large);
+		assert kryos.read(kryos.write("small")).equals("small");
+	}
+
+	/**
+	 * Objects sent with a KryoObjectStream are received with their classes.
+	 */
+	@Test
+	public static void test3() throws IOException, DisconnectionException, InterruptedException,
+			ProtocolViolationException {
+		EmulatedNetwork network = new EmulatedNetwork(Testing.RANDOM.nextLong());
+		EmulatedUDPSocketWrapper socket1 = network.bind();
+		EmulatedUDPSocketWrapper socket2 = network.bind();
+		StreamFamily family1 = new BasicStreamFamily(socket1);
+		StreamFamily family2 = new BasicStreamFamily(socket2);
+		BlockingQueue<ObjectStream> accepted = new LinkedBlockingQueue<>();
+		KryoProvider kryos = new KryoProvider();
+		family2.setReceiver(connection -> true, connection -> accepted.add(new KryoObjectStream(connection, kryos)));
+		ObjectStream stream1 = new KryoObjectStream(family1.connect(socket2.getAddress()).get(), kryos);
+		ObjectStream stream2 = accepted.take();
+
+		// Unordered and ordered messages may be received in either order
+		stream1.send(new Point(3, 4, "sent"));
+		stream1.sendOrdered("ordered");
+		Set<Object> received = new HashSet<>();
+		received.add(stream2.receive());
+		received.add(stream2.receive());
+		assert received.equals(new HashSet<>(Arrays.asList(new Point(3, 4, "sent"), "ordered")));
+
+		family1.close();
+		family2.close();
+		network.shutdown();
+	}
+
+	/**
+	 * The name of an unregistered class is written in full once per
+	 * dictionary, and a reference to it read before its definition is
+	 * unresolved.
+	 */
+	@Test
+	public static void test4() {
+		KryoProvider kryos = new KryoProvider();
+		SymbolEncoder encoder = new SymbolEncoder();
+		byte[] defining = kryos.write(new Point(1, 2, "a"), encoder, SymbolEncoder.Mode.UNORDERED);
+		byte[] referencing = kryos.write(new Point(1, 2, "a"), encoder, SymbolEncoder.Mode.UNORDERED);
+		assert referencing.length + Point.class.getName().length() <= defining.length;
+		assert kryos.write(new Point(1, 2, "a")).length > referencing.length;
+
+		SymbolDecoder decoder = new SymbolDecoder();
+		try {
+			kryos.read(referencing, decoder);
+			assert false;
+		} catch (KryoException e) {
+			Throwable cause = e;
+			while (!(cause instanceof UnresolvedSymbolException))
+				cause = cause.getCause();
+		}
+		assert kryos.read(defining, decoder).equals(new Point(1, 2, "a"));
+		assert kryos.read(referencing, decoder).equals(new Point(1, 2, "a"));
+	}
+
+	/**
+	 * Objects of unregistered classes sent with a KryoObjectStream over a
+	 * reordering, lossy link are all received, including those that arrive
+	 * before the definitions of their class names.
+	 */
+	@Test
+	public static void test5() throws IOException, DisconnectionException, InterruptedException,
+			ProtocolViolationException {
+		EmulatedNetwork network = new EmulatedNetwork(Testing.RANDOM.nextLong());
+		EmulatedUDPSocketWrapper socket1 = network.bind();
+		EmulatedUDPSocketWrapper socket2 = network.bind();
+		StreamFamily family1 = new BasicStreamFamily(socket1);
+		StreamFamily family2 = new BasicStreamFamily(socket2);
+		BlockingQueue<ObjectStream> accepted = new LinkedBlockingQueue<>();
+		KryoProvider kryos = new KryoProvider();
+		family2.setReceiver(connection -> true, connection -> accepted.add(new KryoObjectStream(connection, kryos)));
+		ObjectStream stream1 = new KryoObjectStream(family1.connect(socket2.getAddress()).get(), kryos);
+		ObjectStream stream2 = accepted.take();
+
+		network.setConditions(LinkConditions.PERFECT.withLossRate(0.1).withReorderRate(0.3));
+		Object[] objects = { new Point(1, 2, "a"), new ArrayList<>(), new HashMap<>(), new TreeMap<>() };
+		List<Object> sent = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			Object object = objects[Testing.RANDOM.nextInt(objects.length)];
+			sent.add(object);
+			if (i % 3 == 0)
+				stream1.sendOrdered(object);
+			else
+				stream1.send(object);
+		}
+		List<Object> received = new ArrayList<>();
+		while (received.size() < sent.size())
+			received.add(stream2.receive());
+		for (Object object : objects)
+			assert received.stream().filter(object::equals).count() == sent.stream().filter(object::equals).count();
+
+		family1.close();
+		family2.close();
+		network.shutdown();
+	}
+
+	/**
+	 * A message that defines a class name but fails to be sent, as it exceeds
+	 * the receive buffer, leaves the name to be defined by the next message,
+	 * rather than referenced by messages that would never be resolved.
+	 */
+	@Test
+	public static void test6() throws IOException, DisconnectionException, InterruptedException {
+		EmulatedNetwork network = new EmulatedNetwork(Testing.RANDOM.nextLong());
+		EmulatedUDPSocketWrapper socket1 = network.bind();
+		EmulatedUDPSocketWrapper socket2 = network.bind();
+		StreamFamily family1 = new BasicStreamFamily(socket1);
+		StreamFamily family2 = new BasicStreamFamily(socket2);
+		BlockingQueue<ObjectStream> accepted = new LinkedBlockingQueue<>();
+		KryoProvider kryos = new KryoProvider();
+		family2.setReceiver(connection -> true, connection -> accepted.add(new KryoObjectStream(connection, kryos)));
+		ObjectStream stream1 = new KryoObjectStream(family1.connect(socket2.getAddress()).get(), kryos);
+		ObjectStream stream2 = accepted.take();
+		BlockingQueue<Object> received = new LinkedBlockingQueue<>();
+		stream2.onMessage(received::add, e -> {
+			throw new AssertionError(e);
+		}, Runnable::run);
+
+		char[] label = new char[DatagramStreamConfig.RECEIVE_BUFFER_SIZE + 1];
+		Arrays.fill(label, 'a');
+		try {
+			stream1.send(new Point(1, 2, new String(label)));
+			assert false;
+		} catch (IllegalArgumentException e) {
+		}
+		stream1.send(new Point(3, 4, "b"));
+		stream1.send(new Point(5, 6, "c"));
+		Set<Object> expected = new HashSet<>(Arrays.asList(new Point(3, 4, "b"), new Point(5, 6, "c")));
+		Set<Object> actual = new HashSet<>();
+		for (int i = 0; i < expected.size(); i++)
+			actual.add(received.poll(10, TimeUnit.SECONDS));
+		assert actual.equals(expected);
+
+		family1.close();
+		family2.close();
+		network.shutdown();
+	}
+
+}
@@ -0,0 +1,151 @@
+package test.socket;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.phoenixkahlo.nodenet.DisconnectionException;
+import com.phoenixkahlo.nodenet.stream.BasicStreamFamily;
+import com.phoenixkahlo.nodenet.stream.ChildStream;
+import com.phoenixkahlo.nodenet.stream.DatagramStream;
+import com.phoenixkahlo.nodenet.stream.EmulatedNetwork;
+import com.phoenixkahlo.nodenet.stream.EmulatedUDPSocketWrapper;
+import com.phoenixkahlo.nodenet.stream.StreamFamily;
+import com.phoenixkahlo.ptest.Test;
+import com.phoenixkahlo.ptest.Testing;
+
+public class MetricsTest {
+
+	private static final MBeanServer SERVER = ManagementFactory.getPlatformMBeanServer();
+
+	private static ObjectName familyName(StreamFamily family) throws JMException {
+		return new ObjectName("com.phoenixkahlo.nodenet.stream:type=StreamFamily,name="
+				+ family.getMetrics().getFamilyName());
+	}
+
+	private static ObjectName childName(StreamFamily family, ChildStream child) throws JMException {
+		return new ObjectName("com.phoenixkahlo.nodenet.stream:type=ChildStream,family="
+				+ family.getMetrics().getFamilyName() + ",connection=" + child.getConnectionID());
+	}
+
+	private static long attribute(ObjectName name, String attribute) throws JMException {
+		return ((Number) SERVER.getAttribute(name, attribute)).longValue();
+	}
+
+	/**
+	 * Counters are updated just after a datagram is sent or handled, so they
+	 * may lag a message being received.
+	 *
+	 * @return the attribute, once it is at least the minimum or ten seconds
+	 *         have passed.
+	 */
+	private static long awaitAttribute(ObjectName name, String attribute, long minimum)
+			throws JMException, InterruptedException {
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (attribute(name, attribute) < minimum && System.currentTimeMillis() < deadline)
+			Thread.sleep(1);
+		return attribute(name, attribute);
+	}
+
+	private static void awaitUnregistered(ObjectName name) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (SERVER.isRegistered(name) && System.currentTimeMillis() < deadline)
+			Thread.sleep(1);
+	}
+
+	/**
+	 * With child MBeans enabled, the family and child metrics are registered
+	 * under their names, count traffic, and are unregistered on disconnection
+	 * and close.
+	 */
+	@Test
+	public static void test1() throws IOException, DisconnectionException, InterruptedException, JMException {
+		EmulatedNetwork network = new EmulatedNetwork(Testing.RANDOM.nextLong());
+		EmulatedUDPSocketWrapper socket1 = network.bind();
+		EmulatedUDPSocketWrapper socket2 = network.bind();
+		StreamFamily family1 = new BasicStreamFamily(socket1);
+		StreamFamily family2 = new BasicStreamFamily(socket2);
+		family1.setChildMBeansEnabled(true);
+		family2.setChildMBeansEnabled(true);
+		BlockingQueue<DatagramStream> accepted = new LinkedBlockingQueue<>();
+		family2.setReceiver(connection -> true, accepted::add);
+
+		ObjectName familyName1 = familyName(family1);
+		ObjectName familyName2 = familyName(family2);
+		assert SERVER.isRegistered(familyName1);
+		assert SERVER.isRegistered(familyName2);
+
+		ChildStream stream1 = (ChildStream) family1.connect(socket2.getAddress()).get();
+		ChildStream stream2 = (ChildStream) accepted.take();
+		ObjectName childName1 = childName(family1, stream1);
+		ObjectName childName2 = childName(family2, stream2);
+		assert SERVER.isRegistered(childName1);
+		assert SERVER.isRegistered(childName2);
+		assert attribute(familyName1, "Connections") == 1;
+
+		long familySent = attribute(familyName1, "BytesSent");
+		long childSent = attribute(childName1, "BytesSent");
+		long childReceived = attribute(childName2, "DatagramsReceived");
+		for (int i = 0; i < 10; i++)
+			stream1.send(new byte[100]);
+		for (int i = 0; i < 10; i++)
+			stream2.receive();
+		assert awaitAttribute(familyName1, "BytesSent", familySent + 1000) >= familySent + 1000;
+		assert awaitAttribute(childName1, "BytesSent", childSent + 1000) >= childSent + 1000;
+		assert awaitAttribute(childName2, "DatagramsReceived", childReceived + 10) >= childReceived + 10;
+		assert attribute(familyName2, "DatagramsReceived") >= attribute(childName2, "DatagramsReceived");
+
+		stream1.disconnect();
+		assert !SERVER.isRegistered(childName1);
+		// The other side is told of the disconnection
+		awaitUnregistered(childName2);
+		assert !SERVER.isRegistered(childName2);
+
+		family1.close();
+		family2.close();
+		assert !SERVER.isRegistered(familyName1);
+		assert !SERVER.isRegistered(familyName2);
+		network.shutdown();
+	}
+
+	/**
+	 * Child MBeans are not registered unless enabled, though the family's is,
+	 * and the children's metrics count regardless.
+	 */
+	@Test
+	public static void test2() throws IOException, DisconnectionException, InterruptedException, JMException {
+		EmulatedNetwork network = new EmulatedNetwork(Testing.RANDOM.nextLong());
+		EmulatedUDPSocketWrapper socket1 = network.bind();
+		EmulatedUDPSocketWrapper socket2 = network.bind();
+		StreamFamily family1 = new BasicStreamFamily(socket1);
+		StreamFamily family2 = new BasicStreamFamily(socket2);
+		BlockingQueue<DatagramStream> accepted = new LinkedBlockingQueue<>();
+		family2.setReceiver(connection -> true, accepted::add);
+
+		ChildStream stream1 = (ChildStream) family1.connect(socket2.getAddress()).get();
+		ChildStream stream2 = (ChildStream) accepted.take();
+		assert SERVER.isRegistered(familyName(family1));
+		assert !SERVER.isRegistered(childName(family1, stream1));
+		assert !SERVER.isRegistered(childName(family2, stream2));
+
+		stream1.send(new byte[100]);
+		stream2.receive();
+		long deadline = System.currentTimeMillis() + 10_000;
+		while ((stream1.getMetrics().getBytesSent() < 100 || stream2.getMetrics().getDatagramsReceived() < 1)
+				&& System.currentTimeMillis() < deadline)
+			Thread.sleep(1);
+		assert stream1.getMetrics().getBytesSent() >= 100;
+		assert stream2.getMetrics().getDatagramsReceived() >= 1;
+
+		stream1.disconnect();
+		family1.close();
+		family2.close();
+		network.shutdown();
+	}
+
+}
@@ -0,0 +1,208 @@
+package test.socket;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.phoenixkahlo.nodenet.DisconnectionException;
+import com.phoenixkahlo.nodenet.ProtocolViolationException;
+import com.phoenixkahlo.nodenet.serialization.ByteSink;
+import com.phoenixkahlo.nodenet.stream.BasicStreamFamily;
+import com.phoenixkahlo.nodenet.stream.ChildStream;
+import com.phoenixkahlo.nodenet.stream.DatagramStream;
+import com.phoenixkahlo.nodenet.stream.EmulatedNetwork;
+import com.phoenixkahlo.nodenet.stream.EmulatedUDPSocketWrapper;
+import com.phoenixkahlo.nodenet.stream.KryoObjectStream;
+import com.phoenixkahlo.nodenet.stream.KryoProvider;
+import com.phoenixkahlo.nodenet.stream.ObjectStream;
+import com.phoenixkahlo.nodenet.stream.SerializerObjectStream;
+import com.phoenixkahlo.nodenet.stream.StreamFamily;
+import com.phoenixkahlo.ptest.Test;
+import com.phoenixkahlo.ptest.Testing;
+import com.phoenixkahlo.util.UUID;
+
+public class ObjectStreamTest {
+
+	/**
+	 * A truncated message is a protocol violation, after which the stream
+	 * still receives well formed messages.
+	 */
+	@Test
+	public static void test1() throws IOException, DisconnectionException, InterruptedException,
+			ProtocolViolationException {
+		EmulatedNetwork network = new EmulatedNetwork(Testing.RANDOM.nextLong());
+		EmulatedUDPSocketWrapper socket1 = network.bind();
+		EmulatedUDPSocketWrapper socket2 = network.bind();
+		StreamFamily family1 = new BasicStreamFamily(socket1);
+		StreamFamily family2 = new BasicStreamFamily(socket2);
+		BlockingQueue<DatagramStream> accepted = new LinkedBlockingQueue<>();
+		family2.setReceiver(connection -> true, accepted::add);
+
+		DatagramStream stream1 = family1.connect(socket2.getAddress()).get();
+		ObjectStream stream2 = new SerializerObjectStream(accepted.take(), UUID.serializer());
+
+		UUID uuid = new UUID();
+		ByteSink sink = new ByteSink();
+		UUID.serializer().serialize(uuid, sink);
+		byte[] bin = sink.toByteArray();
+		stream1.send(Arrays.copyOf(bin, 7));
+		try {
+			stream2.receive();
+			assert false;
+		} catch (ProtocolViolationException e) {
+		}
+		stream1.send(bin);
+		assert stream2.receive().equals(uuid);
+
+		family1.close();
+		family2.close();
+		network.shutdown();
+	}
+
+	private static final String HANDLER_THREAD = "ObjectStreamTest handler";
+
+	private static void awaitQueued(ChildStream stream, int messages) throws InterruptedException {
+		while (stream.getMetrics().getReceiveQueueDepth() < messages)
+			Thread.sleep(1);
+	}
+
+	/**
+	 * A DatagramStream drains no more than asked, even when more are queued,
+	 * and nothing when asked for none, and then delivers to a handler on the
+	 * given executor.
+	 */
+	@Test
+	public static void test2() throws IOException, DisconnectionException, InterruptedException {
+		EmulatedNetwork network = new EmulatedNetwork(Testing.RANDOM.nextLong());
+		EmulatedUDPSocketWrapper socket1 = network.bind();
+		EmulatedUDPSocketWrapper socket2 = network.bind();
+		StreamFamily family1 = new BasicStreamFamily(socket1);
+		StreamFamily family2 = new BasicStreamFamily(socket2);
+		BlockingQueue<DatagramStream> accepted = new LinkedBlockingQueue<>();
+		family2.setReceiver(connection -> true, accepted::add);
+
+		DatagramStream stream1 = family1.connect(socket2.getAddress()).get();
+		ChildStream stream2 = (ChildStream) accepted.take();
+
+		// It would block forever if it waited for a message
+		assert stream2.drainTo(new ArrayList<>(), 0) == 0;
+		for (int i = 0; i < 5; i++)
+			stream1.send(new byte[] { (byte) i });
+		awaitQueued(stream2, 5);
+		List<byte[]> drained = new ArrayList<>();
+		assert stream2.drainTo(drained, 2) == 2;
+		assert stream2.drainTo(drained, 0) == 0;
+		assert stream2.drainTo(drained, 10) == 3;
+		Set<Byte> received = new HashSet<>();
+		for (byte[] message : drained)
+			received.add(message[0]);
+		assert received.size() == 5;
+
+		ExecutorService pool = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, HANDLER_THREAD));
+		BlockingQueue<Byte> handled = new LinkedBlockingQueue<>();
+		stream2.onMessage(message -> {
+			if (Thread.currentThread().getName().equals(HANDLER_THREAD))
+				handled.add(message[0]);
+		}, pool);
+		for (int i = 5; i < 8; i++)
+			stream1.send(new byte[] { (byte) i });
+		for (int i = 0; i < 3; i++)
+			assert received.add(handled.poll(10, TimeUnit.SECONDS));
+		assert received.size() == 8;
+
+		pool.shutdown();
+		family1.close();
+		family2.close();
+		network.shutdown();
+	}
+
+	/**
+	 * An ObjectStream drains no more than asked, and nothing when asked for
+	 * none, and then delivers to a handler with the given executor.
+	 */
+	private static void testReceiving(Function<DatagramStream, ObjectStream> wrapper)
+			throws IOException, DisconnectionException, InterruptedException, ProtocolViolationException {
+		EmulatedNetwork network = new EmulatedNetwork(Testing.RANDOM.nextLong());
+		EmulatedUDPSocketWrapper socket1 = network.bind();
+		EmulatedUDPSocketWrapper socket2 = network.bind();
+		StreamFamily family1 = new BasicStreamFamily(socket1);
+		StreamFamily family2 = new BasicStreamFamily(socket2);
+		BlockingQueue<DatagramStream> accepted = new LinkedBlockingQueue<>();
+		family2.setReceiver(connection -> true, accepted::add);
+
+		ObjectStream stream1 = wrapper.apply(family1.connect(socket2.getAddress()).get());
+		ChildStream child2 = (ChildStream) accepted.take();
+		ObjectStream stream2 = wrapper.apply(child2);
+
+		assert stream2.drainTo(new ArrayList<>(), 0) == 0;
+		Set<Object> sent = new HashSet<>();
+		for (int i = 0; i < 5; i++) {
+			UUID uuid = new UUID();
+			sent.add(uuid);
+			stream1.send(uuid);
+		}
+		awaitQueued(child2, 5);
+		List<Object> drained = new ArrayList<>();
+		assert stream2.drainTo(drained, 2) == 2;
+		assert stream2.drainTo(drained, 0) == 0;
+		assert stream2.drainTo(drained, 10) == 3;
+		assert new HashSet<>(drained).equals(sent);
+
+		ExecutorService pool = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, HANDLER_THREAD));
+		List<Runnable> executed = new ArrayList<>();
+		Executor executor = command -> {
+			synchronized (executed) {
+				executed.add(command);
+			}
+			pool.execute(command);
+		};
+		BlockingQueue<Object> handled = new LinkedBlockingQueue<>();
+		stream2.onMessage(object -> {
+			if (Thread.currentThread().getName().equals(HANDLER_THREAD))
+				handled.add(object);
+		}, e -> {
+		}, executor);
+		sent.clear();
+		for (int i = 0; i < 3; i++) {
+			UUID uuid = new UUID();
+			sent.add(uuid);
+			stream1.send(uuid);
+		}
+		Set<Object> received = new HashSet<>();
+		for (int i = 0; i < 3; i++)
+			received.add(handled.poll(10, TimeUnit.SECONDS));
+		assert received.equals(sent);
+		synchronized (executed) {
+			assert !executed.isEmpty();
+		}
+
+		pool.shutdown();
+		family1.close();
+		family2.close();
+		network.shutdown();
+	}
+
+	@Test
+	public static void test3() throws IOException, DisconnectionException, InterruptedException,
+			ProtocolViolationException {
+		testReceiving(stream -> new SerializerObjectStream(stream, UUID.serializer()));
+	}
+
+	@Test
+	public static void test4() throws IOException, DisconnectionException, InterruptedException,
+			ProtocolViolationException {
+		KryoProvider kryos = new KryoProvider();
+		testReceiving(stream -> new KryoObjectStream(stream, kryos));
+	}
+
+}
@@ -0,0 +1,216 @@
+package test.socket;
+
+import static com.phoenixkahlo.nodenet.serialization.SerializationUtils.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.phoenixkahlo.nodenet.stream.DatagramStreamConfig;
+import com.phoenixkahlo.nodenet.stream.UDPSocketWrapper;
+import com.phoenixkahlo.nodenet.stream.trace.PacketTraceAnalyzer;
+import com.phoenixkahlo.nodenet.stream.trace.PacketTraceAnalyzer.ConnectionStats;
+import com.phoenixkahlo.nodenet.stream.trace.PacketTraceReader;
+import com.phoenixkahlo.nodenet.stream.trace.PacketTraceReplayer;
+import com.phoenixkahlo.nodenet.stream.trace.PacketTraceWriter;
+import com.phoenixkahlo.nodenet.stream.trace.RecordingUDPSocketWrapper;
+import com.phoenixkahlo.nodenet.stream.trace.TracedDatagram;
+import com.phoenixkahlo.nodenet.stream.trace.TracedDatagram.Direction;
+import com.phoenixkahlo.ptest.Test;
+import com.phoenixkahlo.ptest.Testing;
+import com.phoenixkahlo.util.UUID;
+
+public class PacketTraceTest {
+
+	/**
+	 * A full ring keeps the most recent datagrams, in order, truncated to the
+	 * capture size.
+	 */
+	@Test
+	public static void test1() throws IOException {
+		Path path = Files.createTempFile("trace", ".bin");
+		InetSocketAddress peer = new InetSocketAddress(InetAddress.getLoopbackAddress(), 34567);
+		byte[][] data = new byte[5][];
+		try (PacketTraceWriter writer = new PacketTraceWriter(path, 3, 8)) {
+			for (int i = 0; i < data.length; i++) {
+				data[i] = new byte[i * 3];
+				Testing.RANDOM.nextBytes(data[i]);
+				writer.record(i % 2 == 0 ? Direction.SENT : Direction.RECEIVED, peer, data[i], data[i].length);
+			}
+		}
+
+		List<TracedDatagram> trace = PacketTraceReader.read(path);
+		assert trace.size() == 3;
+		for (int i = 0; i < 3; i++) {
+			TracedDatagram datagram = trace.get(i);
+			int original = i + 2;
+			assert datagram.getSequence() == original + 1;
+			assert datagram.getDirection() == (original % 2 == 0 ? Direction.SENT : Direction.RECEIVED);
+			assert datagram.getPeer().equals(peer);
+			assert datagram.getLength() == data[original].length;
+			assert Arrays.equals(datagram.getData(), Arrays.copyOf(data[original], Math.min(8, data[original].length)));
+		}
+		assert trace.get(0).getTimeNanos() <= trace.get(2).getTimeNanos();
+		Files.delete(path);
+	}
+
+	private static final InetSocketAddress PEER = new InetSocketAddress(InetAddress.getLoopbackAddress(), 34567);
+	private static final long MILLI = 1_000_000;
+
+	private static byte[] payload(UUID connectionID, int payloadID, UUID messageID, int partNumber, int totalParts,
+			byte[] payload) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		baos.write(DatagramStreamConfig.PAYLOAD);
+		connectionID.write(baos);
+		writeInt(payloadID, baos);
+		messageID.write(baos);
+		writeInt(partNumber, baos);
+		writeInt(totalParts, baos);
+		writeShort((short) payload.length, baos);
+		baos.write(payload);
+		return baos.toByteArray();
+	}
+
+	private static byte[] orderedPayload(UUID connectionID, int payloadID, int ordinal) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		baos.write(DatagramStreamConfig.ORDERED_PAYLOAD);
+		connectionID.write(baos);
+		writeInt(payloadID, baos);
+		new UUID().write(baos);
+		writeInt(ordinal, baos);
+		writeInt(0, baos);
+		writeInt(1, baos);
+		writeShort((short) 0, baos);
+		return baos.toByteArray();
+	}
+
+	private static byte[] confirm(UUID connectionID, int payloadID) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		baos.write(DatagramStreamConfig.CONFIRM);
+		connectionID.write(baos);
+		writeInt(payloadID, baos);
+		writeInt(DatagramStreamConfig.RECEIVE_BUFFER_SIZE, baos);
+		return baos.toByteArray();
+	}
+
+	private static TracedDatagram traced(List<TracedDatagram> trace, Direction direction, long timeNanos,
+			byte[] data) {
+		TracedDatagram datagram = new TracedDatagram(trace.size() + 1, timeNanos, direction, PEER, data.length,
+				data);
+		trace.add(datagram);
+		return datagram;
+	}
+
+	/**
+	 * The analyzer counts a known pattern of loss and retransmission, sampling
+	 * round trip times only from payloads that were sent once and counting
+	 * each payload's confirmation only once.
+	 */
+	@Test
+	public static void test2() throws IOException {
+		UUID connectionID = new UUID();
+		List<TracedDatagram> trace = new ArrayList<>();
+		// Payloads 0 to 3 are sent, and 1 and 3 are lost and retransmitted
+		for (int i = 0; i < 4; i++)
+			traced(trace, Direction.SENT, i * MILLI, payload(connectionID, i, new UUID(), 0, 1, new byte[8]));
+		traced(trace, Direction.RECEIVED, 5 * MILLI, confirm(connectionID, 0));
+		traced(trace, Direction.RECEIVED, 6 * MILLI, confirm(connectionID, 2));
+		traced(trace, Direction.SENT, 10 * MILLI, payload(connectionID, 1, new UUID(), 0, 1, new byte[8]));
+		traced(trace, Direction.SENT, 10 * MILLI, payload(connectionID, 3, new UUID(), 0, 1, new byte[8]));
+		traced(trace, Direction.RECEIVED, 15 * MILLI, confirm(connectionID, 1));
+		traced(trace, Direction.RECEIVED, 16 * MILLI, confirm(connectionID, 3));
+		// A duplicated confirmation
+		traced(trace, Direction.RECEIVED, 20 * MILLI, confirm(connectionID, 0));
+		// The peer's ordered payloads arrive out of order, and one twice
+		traced(trace, Direction.RECEIVED, 21 * MILLI, orderedPayload(connectionID, 1, 1));
+		traced(trace, Direction.RECEIVED, 22 * MILLI, orderedPayload(connectionID, 0, 0));
+		traced(trace, Direction.RECEIVED, 23 * MILLI, orderedPayload(connectionID, 0, 0));
+		traced(trace, Direction.RECEIVED, 24 * MILLI, new byte[] { (byte) 0xFF });
+
+		PacketTraceAnalyzer analyzer = new PacketTraceAnalyzer(trace);
+		assert analyzer.getMalformed() == 1;
+		assert analyzer.getConnections().size() == 1;
+		ConnectionStats stats = analyzer.getConnections().get(connectionID);
+		assert stats.getPeer().equals(PEER);
+		assert stats.getDatagramsSent() == 6;
+		assert stats.getDatagramsReceived() == 8;
+		assert stats.getPayloadsSent() == 4;
+		assert stats.getRetransmissions() == 2;
+		assert stats.getLossEstimate() == 2.0 / 6;
+		assert stats.getConfirmationsReceived() == 5;
+		assert stats.getUnconfirmed() == 0;
+		assert stats.getRoundTripNanos().equals(Arrays.asList(4 * MILLI, 5 * MILLI));
+		assert stats.getPayloadsReceived() == 2;
+		assert stats.getDuplicatesReceived() == 1;
+		assert stats.getReorderedReceived() == 1;
+	}
+
+	/**
+	 * Replaying a trace into a ChildStream reassembles a message whose lost
+	 * part was retransmitted, and discards the duplicated payload.
+	 */
+	@Test
+	public static void test3() throws IOException, InterruptedException {
+		UUID connectionID = new UUID();
+		UUID first = new UUID();
+		UUID second = new UUID();
+		List<TracedDatagram> trace = new ArrayList<>();
+		traced(trace, Direction.RECEIVED, 0, payload(connectionID, 0, first, 0, 2, new byte[] { 1, 2 }));
+		traced(trace, Direction.RECEIVED, MILLI, payload(connectionID, 2, second, 0, 1, new byte[] { 3, 4, 5 }));
+		traced(trace, Direction.RECEIVED, 2 * MILLI, payload(connectionID, 0, first, 0, 2, new byte[] { 1, 2 }));
+		traced(trace, Direction.RECEIVED, 3 * MILLI, payload(connectionID, 1, first, 1, 2, new byte[] { 6, 7 }));
+
+		PacketTraceReplayer.Result result = new PacketTraceReplayer(trace, 0, System.err).replay();
+		// Along with the synthesized CONNECT
+		assert result.getDatagramsReplayed() == 5;
+		assert result.getMessagesDelivered() == 2;
+		assert result.getBytesDelivered() == 7;
+		assert result.getMetrics().getDuplicatePayloads() == 1;
+	}
+
+	/**
+	 * A received datagram is recorded with the length of its frame, not of
+	 * the receive buffer, which still holds the end of a longer datagram.
+	 */
+	@Test
+	public static void test4() throws IOException {
+		Path path = Files.createTempFile("trace", ".bin");
+		UUID connectionID = new UUID();
+		byte[][] datagrams = { payload(connectionID, 0, new UUID(), 0, 1, new byte[100]), confirm(connectionID, 0) };
+		UDPSocketWrapper wrapped = new UDPSocketWrapper() {
+			int received = 0;
+
+			@Override
+			public void send(byte[] data, InetSocketAddress to) {
+			}
+
+			@Override
+			public InetSocketAddress receive(byte[] buffer) {
+				byte[] datagram = datagrams[received++];
+				System.arraycopy(datagram, 0, buffer, 0, datagram.length);
+				return PEER;
+			}
+		};
+		try (PacketTraceWriter writer = new PacketTraceWriter(path, 4)) {
+			UDPSocketWrapper recording = new RecordingUDPSocketWrapper(wrapped, writer);
+			byte[] buffer = new byte[DatagramStreamConfig.MAX_TRANSMISSION_SIZE];
+			recording.receive(buffer);
+			recording.receive(buffer);
+		}
+
+		List<TracedDatagram> trace = PacketTraceReader.read(path);
+		assert trace.size() == 2;
+		for (int i = 0; i < 2; i++) {
+			assert trace.get(i).getLength() == datagrams[i].length;
+			assert Arrays.equals(trace.get(i).getData(), datagrams[i]);
+		}
+		Files.delete(path);
+	}
+
+}
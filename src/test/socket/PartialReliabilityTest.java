@@ -0,0 +1,181 @@
+package test.socket;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.phoenixkahlo.nodenet.DisconnectionException;
+import com.phoenixkahlo.nodenet.stream.BasicStreamFamily;
+import com.phoenixkahlo.nodenet.stream.ChildStream;
+import com.phoenixkahlo.nodenet.stream.DatagramStream;
+import com.phoenixkahlo.nodenet.stream.DatagramStreamConfig;
+import com.phoenixkahlo.nodenet.stream.EmulatedNetwork;
+import com.phoenixkahlo.nodenet.stream.EmulatedUDPSocketWrapper;
+import com.phoenixkahlo.nodenet.stream.LinkConditions;
+import com.phoenixkahlo.nodenet.stream.StreamFamily;
+import com.phoenixkahlo.nodenet.stream.UDPSocketWrapper;
+import com.phoenixkahlo.ptest.Test;
+import com.phoenixkahlo.ptest.Testing;
+
+public class PartialReliabilityTest {
+
+	/**
+	 * Unreliable messages arrive over a perfect link, and are never
+	 * retransmitted after being lost.
+	 */
+	@Test
+	public static void test1() throws IOException, DisconnectionException, InterruptedException {
+		EmulatedNetwork network = new EmulatedNetwork(Testing.RANDOM.nextLong());
+		EmulatedUDPSocketWrapper socket1 = network.bind();
+		EmulatedUDPSocketWrapper socket2 = network.bind();
+		StreamFamily family1 = new BasicStreamFamily(socket1);
+		StreamFamily family2 = new BasicStreamFamily(socket2);
+		BlockingQueue<DatagramStream> accepted = new LinkedBlockingQueue<>();
+		family2.setReceiver(connection -> true, accepted::add);
+
+		ChildStream stream1 = (ChildStream) family1.connect(socket2.getAddress()).get();
+		DatagramStream stream2 = accepted.take();
+
+		byte[] message = new byte[1000];
+		Testing.RANDOM.nextBytes(message);
+		stream1.sendUnreliable(message);
+		assert Arrays.equals(stream2.receive(), message);
+
+		network.setConditions(LinkConditions.PERFECT.withLossRate(1));
+		for (int i = 0; i < 10; i++)
+			stream1.sendUnreliable(new byte[] { (byte) i });
+		Thread.sleep(100);
+		assert stream1.getMetrics().getUnconfirmedDepth() == 0;
+		network.setConditions(LinkConditions.PERFECT);
+		stream1.send(new byte[] { 100 });
+		assert stream2.receive()[0] == 100;
+		assert stream1.getMetrics().getRetransmissions() == 0;
+
+		family1.close();
+		family2.close();
+		network.shutdown();
+	}
+
+	/**
+	 * Messages whose deadlines pass while the link is down stop being
+	 * retransmitted and are never received, and free the window.
+	 */
+	@Test
+	public static void test2() throws IOException, DisconnectionException, InterruptedException {
+		EmulatedNetwork network = new EmulatedNetwork(Testing.RANDOM.nextLong());
+		EmulatedUDPSocketWrapper socket1 = network.bind();
+		EmulatedUDPSocketWrapper socket2 = network.bind();
+		StreamFamily family1 = new BasicStreamFamily(socket1);
+		StreamFamily family2 = new BasicStreamFamily(socket2);
+		BlockingQueue<DatagramStream> accepted = new LinkedBlockingQueue<>();
+		family2.setReceiver(connection -> true, accepted::add);
+
+		ChildStream stream1 = (ChildStream) family1.connect(socket2.getAddress()).get();
+		ChildStream stream2 = (ChildStream) accepted.take();
+
+		network.setConditions(LinkConditions.PERFECT.withLossRate(1));
+		for (int i = 0; i < 10; i++)
+			stream1.send(new byte[1000], System.currentTimeMillis() + 200);
+		Thread.sleep(100);
+		assert stream1.getMetrics().getUnconfirmedDepth() > 0;
+		Thread.sleep(500);
+		assert stream1.getMetrics().getUnconfirmedDepth() == 0;
+		assert stream1.getMetrics().getExpiredPayloads() > 0;
+
+		network.setConditions(LinkConditions.PERFECT);
+		stream1.send(new byte[] { 100 });
+		byte[] received = stream2.receive();
+		assert received.length == 1 && received[0] == 100;
+		Thread.sleep(200);
+		assert stream2.getMetrics().getReceiveQueueDepth() == 0;
+
+		family1.close();
+		family2.close();
+		network.shutdown();
+	}
+
+	/**
+	 * Unreliable messages that lose some of their parts are discarded by the
+	 * receiver, freeing its buffer.
+	 */
+	@Test
+	public static void test3() throws IOException, DisconnectionException, InterruptedException {
+		EmulatedNetwork network = new EmulatedNetwork(Testing.RANDOM.nextLong());
+		EmulatedUDPSocketWrapper socket1 = network.bind();
+		EmulatedUDPSocketWrapper socket2 = network.bind();
+		StreamFamily family1 = new BasicStreamFamily(socket1);
+		StreamFamily family2 = new BasicStreamFamily(socket2);
+		BlockingQueue<DatagramStream> accepted = new LinkedBlockingQueue<>();
+		family2.setReceiver(connection -> true, accepted::add);
+
+		ChildStream stream1 = (ChildStream) family1.connect(socket2.getAddress()).get();
+		ChildStream stream2 = (ChildStream) accepted.take();
+
+		network.setConditionsBetween(socket1.getAddress(), socket2.getAddress(),
+				LinkConditions.PERFECT.withLossRate(0.5));
+		for (int i = 0; i < 20; i++)
+			stream1.sendUnreliable(new byte[3000]);
+		Thread.sleep(1000);
+		assert stream2.getMetrics().getExpiredMessages() > 0;
+		assert stream2.getMetrics().getReassemblyBacklog() == 0;
+		assert stream2.getMetrics().getBufferedBytes() == 3000 * stream2.getMetrics().getReceiveQueueDepth();
+
+		family1.close();
+		family2.close();
+		network.shutdown();
+	}
+
+	/**
+	 * Payloads lost and then abandoned as expired stop being reported missing
+	 * once later payloads arrive, rather than being reported every round trip.
+	 */
+	@Test
+	public static void test4() throws IOException, DisconnectionException, InterruptedException {
+		EmulatedNetwork network = new EmulatedNetwork(Testing.RANDOM.nextLong());
+		EmulatedUDPSocketWrapper socket1 = network.bind();
+		EmulatedUDPSocketWrapper socket2 = network.bind();
+		AtomicInteger nacks = new AtomicInteger();
+		UDPSocketWrapper counting = new UDPSocketWrapper() {
+			@Override
+			public void send(byte[] data, InetSocketAddress to) throws IOException {
+				if (data[0] == DatagramStreamConfig.NACK)
+					nacks.incrementAndGet();
+				socket2.send(data, to);
+			}
+
+			@Override
+			public InetSocketAddress receive(byte[] buffer) throws IOException {
+				return socket2.receive(buffer);
+			}
+		};
+		StreamFamily family1 = new BasicStreamFamily(socket1);
+		StreamFamily family2 = new BasicStreamFamily(counting);
+		BlockingQueue<DatagramStream> accepted = new LinkedBlockingQueue<>();
+		family2.setReceiver(connection -> true, accepted::add);
+
+		ChildStream stream1 = (ChildStream) family1.connect(socket2.getAddress()).get();
+		ChildStream stream2 = (ChildStream) accepted.take();
+
+		network.setConditions(LinkConditions.PERFECT.withLossRate(1));
+		for (int i = 0; i < 10; i++)
+			stream1.send(new byte[1000], System.currentTimeMillis() + 100);
+		Thread.sleep(300);
+		assert stream1.getMetrics().getUnconfirmedDepth() == 0;
+
+		network.setConditions(LinkConditions.PERFECT);
+		stream1.send(new byte[] { 100 });
+		assert stream2.receive()[0] == 100;
+		Thread.sleep(500);
+		int reported = nacks.get();
+		Thread.sleep(1000);
+		assert nacks.get() == reported;
+
+		family1.close();
+		family2.close();
+		network.shutdown();
+	}
+
+}
@@ -0,0 +1,57 @@
+package test.socket;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import com.phoenixkahlo.nodenet.DisconnectionException;
+import com.phoenixkahlo.nodenet.stream.BasicStreamFamily;
+import com.phoenixkahlo.nodenet.stream.DatagramStream;
+import com.phoenixkahlo.nodenet.stream.EmulatedNetwork;
+import com.phoenixkahlo.nodenet.stream.EmulatedUDPSocketWrapper;
+import com.phoenixkahlo.nodenet.stream.LinkConditions;
+import com.phoenixkahlo.nodenet.stream.PreparedMessage;
+import com.phoenixkahlo.nodenet.stream.StreamFamily;
+import com.phoenixkahlo.ptest.Test;
+import com.phoenixkahlo.ptest.Testing;
+
+public class PreparedMessageTest {
+
+	/**
+	 * One prepared message, sent to several streams over lossy links, arrives
+	 * intact at each of them.
+	 */
+	@Test
+	public static void test1() throws IOException, DisconnectionException, InterruptedException {
+		EmulatedNetwork network = new EmulatedNetwork(Testing.RANDOM.nextLong());
+		EmulatedUDPSocketWrapper socket = network.bind();
+		StreamFamily family = new BasicStreamFamily(socket);
+		StreamFamily[] families = new StreamFamily[3];
+		DatagramStream[] senders = new DatagramStream[families.length];
+		DatagramStream[] receivers = new DatagramStream[families.length];
+		for (int i = 0; i < families.length; i++) {
+			EmulatedUDPSocketWrapper remote = network.bind();
+			families[i] = new BasicStreamFamily(remote);
+			BlockingQueue<DatagramStream> accepted = new LinkedBlockingQueue<>();
+			families[i].setReceiver(connection -> true, accepted::add);
+			senders[i] = family.connect(remote.getAddress()).get();
+			receivers[i] = accepted.take();
+		}
+
+		network.setConditions(LinkConditions.PERFECT.withLossRate(0.1));
+		byte[] data = new byte[5000];
+		Testing.RANDOM.nextBytes(data);
+		PreparedMessage message = new PreparedMessage(data);
+		for (DatagramStream sender : senders)
+			sender.send(message);
+		for (DatagramStream receiver : receivers)
+			assert Arrays.equals(receiver.receive(), data);
+
+		family.close();
+		for (StreamFamily remote : families)
+			remote.close();
+		network.shutdown();
+	}
+
+}
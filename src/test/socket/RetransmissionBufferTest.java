@@ -0,0 +1,151 @@
+package test.socket;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.phoenixkahlo.nodenet.stream.RetransmissionBuffer;
+import com.phoenixkahlo.nodenet.stream.TransmissionArena;
+import com.phoenixkahlo.ptest.Test;
+import com.phoenixkahlo.ptest.Testing;
+
+public class RetransmissionBufferTest {
+
+	private static byte[] randomTransmission() {
+		byte[] transmission = new byte[1 + Testing.RANDOM.nextInt(64)];
+		Testing.RANDOM.nextBytes(transmission);
+		return transmission;
+	}
+
+	/**
+	 * Payloads confirmed out of order are removed, and the rest keep their
+	 * transmissions.
+	 */
+	@Test
+	public static void test1() {
+		TransmissionArena arena = new TransmissionArena(64, 4);
+		RetransmissionBuffer buffer = new RetransmissionBuffer(arena, 16);
+		List<byte[]> transmissions = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			byte[] transmission = randomTransmission();
+			transmissions.add(transmission);
+			assert buffer.add(transmission, i) == i;
+		}
+		assert buffer.size() == 10;
+		assert buffer.getBytes() == 45;
+		for (int i = 9; i >= 0; i -= 2)
+			buffer.remove(i);
+		assert buffer.size() == 5;
+		assert buffer.getBytes() == 20;
+		for (int i = 0; i < 10; i++) {
+			assert buffer.contains(i) == (i % 2 == 0);
+			if (i % 2 == 0)
+				assert Arrays.equals(buffer.getTransmission(i), transmissions.get(i));
+		}
+		assert arena.getAllocated() == 5;
+	}
+
+	/**
+	 * The ring refuses to lap an unconfirmed payload, and wraps around once it
+	 * is confirmed, reusing arena slots.
+	 */
+	@Test
+	public static void test2() {
+		TransmissionArena arena = new TransmissionArena(64, 4);
+		RetransmissionBuffer buffer = new RetransmissionBuffer(arena, 8);
+		for (int i = 0; i < 8; i++)
+			buffer.add(randomTransmission(), 1);
+		assert !buffer.hasRoom();
+		for (int i = 1; i < 8; i++)
+			buffer.remove(i);
+		// The oldest payload still holds its place in the ring
+		assert !buffer.hasRoom();
+		buffer.remove(0);
+		for (int i = 0; i < 1000; i++) {
+			assert buffer.hasRoom();
+			int payloadID = buffer.add(randomTransmission(), 1);
+			assert payloadID == 8 + i;
+			buffer.remove(payloadID);
+			assert !buffer.contains(payloadID);
+		}
+		assert buffer.size() == 0;
+		assert arena.getAllocated() == 0;
+		// Of the two chunks, one was released once both were empty, and the
+		// other kept spare
+		assert arena.getCapacity() == 4 * 64;
+	}
+
+	/**
+	 * Only the first send of a payload that was never retransmitted is marked
+	 * as such, and stale IDs are ignored.
+	 */
+	@Test
+	public static void test3() {
+		RetransmissionBuffer buffer = new RetransmissionBuffer(new TransmissionArena(64, 4), 4);
+		int payloadID = buffer.add(randomTransmission(), 1);
+		assert buffer.isQueued(payloadID);
+		assert !buffer.isSent(payloadID);
+		buffer.markSent(payloadID, 100);
+		assert buffer.isSent(payloadID) && !buffer.isRetransmitted(payloadID) && !buffer.isQueued(payloadID);
+		assert buffer.getLastSentTime(payloadID) == 100;
+		buffer.markQueued(payloadID);
+		buffer.markSent(payloadID, 200);
+		assert buffer.isRetransmitted(payloadID);
+		assert buffer.getLastSentTime(payloadID) == 200;
+		buffer.remove(payloadID);
+		buffer.markSent(payloadID, 300);
+		buffer.remove(payloadID);
+		assert buffer.size() == 0;
+	}
+
+	/**
+	 * The arrays are allocated by the first add, are only released by trim
+	 * once nothing is unconfirmed, and payload IDs continue after a trim.
+	 */
+	@Test
+	public static void test4() {
+		RetransmissionBuffer buffer = new RetransmissionBuffer(new TransmissionArena(64, 4), 8);
+		assert !buffer.isAllocated();
+		buffer.trim();
+		assert buffer.size() == 0 && !buffer.contains(0);
+		int payloadID = buffer.add(randomTransmission(), 1);
+		assert buffer.isAllocated();
+		buffer.trim();
+		assert buffer.isAllocated();
+		buffer.remove(payloadID);
+		buffer.trim();
+		assert !buffer.isAllocated();
+		assert !buffer.contains(payloadID);
+		byte[] transmission = randomTransmission();
+		assert buffer.add(transmission, 1) == payloadID + 1;
+		assert Arrays.equals(buffer.getTransmission(payloadID + 1), transmission);
+	}
+
+	/**
+	 * The ring grows past its initial size while payloads stay unconfirmed,
+	 * keeping each one, up to the capacity.
+	 */
+	@Test
+	public static void test5() {
+		TransmissionArena arena = new TransmissionArena(64, 16);
+		RetransmissionBuffer buffer = new RetransmissionBuffer(arena, 1024);
+		List<byte[]> transmissions = new ArrayList<>();
+		// Start partway through the initial ring, so that the payloads wrap
+		for (int i = 0; i < 50; i++)
+			buffer.remove(buffer.add(randomTransmission(), 1));
+		while (buffer.hasRoom()) {
+			byte[] transmission = randomTransmission();
+			transmissions.add(transmission);
+			buffer.add(transmission, 1);
+		}
+		assert transmissions.size() == 1024;
+		for (int i = 0; i < transmissions.size(); i++) {
+			assert buffer.contains(50 + i);
+			assert Arrays.equals(buffer.getTransmission(50 + i), transmissions.get(i));
+		}
+		List<byte[]> held = buffer.getTransmissions();
+		for (int i = 0; i < transmissions.size(); i++)
+			assert Arrays.equals(held.get(i), transmissions.get(i));
+	}
+
+}
@@ -0,0 +1,155 @@
+package test.socket;
+
+import java.util.Arrays;
+
+import com.phoenixkahlo.nodenet.stream.SequenceTracker;
+import com.phoenixkahlo.ptest.Test;
+
+public class SequenceTrackerTest {
+
+	/**
+	 * Skipped IDs are reported once the tolerance has passed, and only once,
+	 * unless they arrive first.
+	 */
+	@Test
+	public static void test1() {
+		SequenceTracker tracker = new SequenceTracker(16);
+		assert tracker.receive(0, 0);
+		assert tracker.receive(3, 0);
+		assert tracker.receive(5, 10);
+		assert !tracker.receive(3, 10);
+		assert tracker.getUnreported() == 3;
+		assert tracker.reportMissing(5, 10, 10).length == 0;
+		assert Arrays.equals(tracker.reportMissing(10, 10, 10), new int[] { 1, 2 });
+		assert tracker.receive(4, 15);
+		assert tracker.reportMissing(100, 10, 10).length == 0;
+		assert tracker.getUnreported() == 0;
+		// A late arrival of a reported ID is still new
+		assert tracker.receive(1, 100);
+		assert !tracker.receive(1, 100);
+	}
+
+	/**
+	 * Reports are limited to the maximum, and the rest are reported later.
+	 */
+	@Test
+	public static void test2() {
+		SequenceTracker tracker = new SequenceTracker(64);
+		tracker.receive(40, 0);
+		int[] first = tracker.reportMissing(0, 0, 25);
+		int[] second = tracker.reportMissing(0, 0, 25);
+		assert first.length == 25 && second.length == 15;
+		assert first[0] == 0 && first[24] == 24 && second[0] == 25 && second[14] == 39;
+		assert tracker.getUnreported() == 0;
+	}
+
+	/**
+	 * Gaps that fall out of the window are forgotten, and IDs keep being
+	 * tracked as they wrap around.
+	 */
+	@Test
+	public static void test3() {
+		SequenceTracker tracker = new SequenceTracker(8);
+		tracker.receive(2, 0);
+		assert tracker.getUnreported() == 2;
+		tracker.receive(20, 0);
+		assert tracker.getUnreported() == 7;
+		assert !tracker.receive(1, 0);
+		assert Arrays.equals(tracker.reportMissing(0, 0, 100), new int[] { 13, 14, 15, 16, 17, 18, 19 });
+
+		tracker = new SequenceTracker(8);
+		for (int i = Integer.MAX_VALUE - 100; i != Integer.MIN_VALUE + 100; i++)
+			assert tracker.receive(i, 0);
+		assert tracker.getUnreported() == 0;
+		tracker.receive(Integer.MIN_VALUE + 101, 0);
+		assert Arrays.equals(tracker.reportMissing(0, 0, 100), new int[] { Integer.MIN_VALUE + 100 });
+	}
+
+	/**
+	 * Trimming forgets the gaps in the window, which is allocated again by
+	 * the next receive, and IDs before the trim are no longer tracked.
+	 */
+	@Test
+	public static void test4() {
+		SequenceTracker tracker = new SequenceTracker(8);
+		assert !tracker.isAllocated();
+		tracker.receive(3, 0);
+		assert tracker.isAllocated();
+		assert tracker.getUnreported() == 3;
+		tracker.trim();
+		assert !tracker.isAllocated();
+		assert tracker.getUnreported() == 0;
+		assert !tracker.receive(1, 0);
+		assert tracker.receive(6, 0);
+		assert !tracker.receive(6, 0);
+		assert Arrays.equals(tracker.reportMissing(0, 0, 100), new int[] { 4, 5 });
+	}
+
+	/**
+	 * The window grows past its initial size as the span of tracked IDs does,
+	 * keeping the gaps in it.
+	 */
+	@Test
+	public static void test5() {
+		SequenceTracker tracker = new SequenceTracker(1024);
+		tracker.receive(0, 0);
+		tracker.receive(2, 0);
+		tracker.receive(500, 10);
+		assert tracker.getUnreported() == 498;
+		int[] missing = tracker.reportMissing(10, 0, 1000);
+		assert missing.length == 498;
+		assert missing[0] == 1;
+		assert missing[1] == 3;
+		assert missing[497] == 499;
+		assert tracker.receive(1, 10);
+		assert !tracker.receive(2, 10);
+		assert tracker.receive(3, 10);
+	}
+
+	/**
+	 * Gaps still missing the interval after they were reported are reported
+	 * again, until they arrive.
+	 */
+	@Test
+	public static void test6() {
+		SequenceTracker tracker = new SequenceTracker(16);
+		tracker.receive(0, 0);
+		tracker.receive(3, 0);
+		assert Arrays.equals(tracker.reportMissing(10, 10, 20, 10), new int[] { 1, 2 });
+		assert tracker.reportMissing(29, 10, 20, 10).length == 0;
+		assert tracker.receive(1, 25);
+		assert Arrays.equals(tracker.reportMissing(30, 10, 20, 10), new int[] { 2 });
+		assert tracker.reportMissing(49, 10, 20, 10).length == 0;
+		assert Arrays.equals(tracker.reportMissing(50, 10, 20, 10), new int[] { 2 });
+		assert tracker.receive(2, 55);
+		assert tracker.reportMissing(1000, 10, 20, 10).length == 0;
+		assert tracker.getUnreported() == 0;
+	}
+
+	/**
+	 * Gaps before an ID the sender has abandoned are forgotten, whether the ID
+	 * is within the tracked IDs or beyond them.
+	 */
+	@Test
+	public static void test7() {
+		SequenceTracker tracker = new SequenceTracker(64);
+		tracker.receive(0, 0);
+		tracker.receive(5, 0);
+		tracker.receive(10, 0);
+		assert tracker.getUnreported() == 8;
+		tracker.forgetBefore(8);
+		assert Arrays.equals(tracker.reportMissing(100, 10, 10, 64), new int[] { 8, 9 });
+		assert !tracker.receive(3, 100);
+		// An older ID than already forgotten changes nothing
+		tracker.forgetBefore(2);
+		assert Arrays.equals(tracker.reportMissing(200, 10, 10, 64), new int[] { 8, 9 });
+
+		tracker.forgetBefore(20);
+		assert tracker.reportMissing(300, 10, 10, 64).length == 0;
+		assert tracker.getUnreported() == 0;
+		assert !tracker.receive(15, 300);
+		assert tracker.receive(22, 300);
+		assert Arrays.equals(tracker.reportMissing(400, 10, 10, 64), new int[] { 20, 21 });
+	}
+
+}
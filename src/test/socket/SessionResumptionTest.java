@@ -0,0 +1,67 @@
+package test.socket;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import com.phoenixkahlo.nodenet.DisconnectionException;
+import com.phoenixkahlo.nodenet.stream.BasicStreamFamily;
+import com.phoenixkahlo.nodenet.stream.ChildStream;
+import com.phoenixkahlo.nodenet.stream.DatagramStream;
+import com.phoenixkahlo.nodenet.stream.DatagramStreamConfig;
+import com.phoenixkahlo.nodenet.stream.EmulatedNetwork;
+import com.phoenixkahlo.nodenet.stream.EmulatedUDPSocketWrapper;
+import com.phoenixkahlo.nodenet.stream.LinkConditions;
+import com.phoenixkahlo.nodenet.stream.StreamFamily;
+import com.phoenixkahlo.ptest.Test;
+import com.phoenixkahlo.ptest.Testing;
+
+public class SessionResumptionTest {
+
+	/**
+	 * A connection survives an outage longer than the heartbeat timeout, and
+	 * messages sent during the outage arrive once it ends.
+	 */
+	@Test
+	public static void test1() throws IOException, DisconnectionException, InterruptedException {
+		EmulatedNetwork network = new EmulatedNetwork(Testing.RANDOM.nextLong());
+		EmulatedUDPSocketWrapper socket1 = network.bind();
+		EmulatedUDPSocketWrapper socket2 = network.bind();
+		StreamFamily family1 = new BasicStreamFamily(socket1);
+		StreamFamily family2 = new BasicStreamFamily(socket2);
+		BlockingQueue<DatagramStream> accepted = new LinkedBlockingQueue<>();
+		family2.setReceiver(connection -> true, accepted::add);
+
+		DatagramStream stream1 = family1.connect(socket2.getAddress()).get();
+		DatagramStream stream2 = accepted.take();
+
+		network.setConditions(LinkConditions.PERFECT.withLossRate(1));
+		Thread.sleep(DatagramStreamConfig.HEARTBEAT_INTERVAL * 5);
+		assert ((ChildStream) stream1).isSuspended();
+		assert !stream1.isDisconnected();
+		for (int i = 0; i < 10; i++)
+			stream1.send(new byte[] { (byte) i });
+
+		network.setConditions(LinkConditions.PERFECT);
+		Set<Byte> received = new HashSet<>();
+		for (int i = 0; i < 10; i++)
+			received.add(stream2.receive()[0]);
+		assert received.size() == 10;
+		// Sends are written asynchronously, so messages sent during the outage
+		// can arrive before the sender has resumed, which it does by the next
+		// heartbeat
+		long deadline = System.currentTimeMillis() + DatagramStreamConfig.HEARTBEAT_INTERVAL * 2;
+		while ((((ChildStream) stream1).isSuspended() || ((ChildStream) stream2).isSuspended())
+				&& System.currentTimeMillis() < deadline)
+			Thread.sleep(10);
+		assert !((ChildStream) stream1).isSuspended();
+		assert !((ChildStream) stream2).isSuspended();
+
+		family1.close();
+		family2.close();
+		network.shutdown();
+	}
+
+}
@@ -0,0 +1,173 @@
+package test.socket;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.phoenixkahlo.nodenet.stream.DatagramStreamConfig;
+import com.phoenixkahlo.nodenet.stream.TokenBucketPacer;
+import com.phoenixkahlo.ptest.Mockery;
+import com.phoenixkahlo.ptest.Testing;
+import com.phoenixkahlo.ptest.Test;
+
+public class TokenBucketPacerTest {
+
+	// A rate at which one payload's worth of tokens accumulates each
+	// millisecond, and below which the burst is the minimum burst
+	private static final int PAYLOAD = DatagramStreamConfig.MAX_PAYLOAD_SIZE;
+	private static final double RATE = PAYLOAD * 1000;
+	private static final long MILLI = 1_000_000;
+
+	/**
+	 * A scheduler whose tasks are run by the test, and a clock that only
+	 * advances when the test advances it.
+	 */
+	private static class Harness {
+
+		AtomicLong now = new AtomicLong(0);
+		List<Runnable> tasks = new ArrayList<>();
+		List<Long> delays = new ArrayList<>();
+		List<byte[]> transmitted = new ArrayList<>();
+		AtomicInteger sent = new AtomicInteger();
+		ScheduledExecutorService scheduler = Testing.mock(ScheduledExecutorService.class);
+		TokenBucketPacer pacer;
+
+		Harness() {
+			((Mockery) scheduler).method("schedule", Runnable.class, long.class, TimeUnit.class).setResponse(args -> {
+				tasks.add((Runnable) args[0]);
+				delays.add(((TimeUnit) args[2]).toNanos((Long) args[1]));
+				return null;
+			});
+			pacer = new TokenBucketPacer(scheduler, transmitted::add, RATE, System.err, now::get);
+		}
+
+		void send() {
+			pacer.send(new byte[PAYLOAD], sent::incrementAndGet);
+		}
+
+		/**
+		 * Advance the clock by the delay of the only scheduled task, and run
+		 * it.
+		 */
+		void runScheduled() {
+			assert tasks.size() == 1;
+			now.addAndGet(delays.remove(0));
+			tasks.remove(0).run();
+		}
+
+	}
+
+	/**
+	 * A fresh pacer sends its burst allowance at once, plus the transmission
+	 * that takes it into debt, and queues the rest.
+	 */
+	@Test
+	public static void test1() {
+		Harness harness = new Harness();
+		int burst = DatagramStreamConfig.PACING_MIN_BURST / PAYLOAD;
+		for (int i = 0; i <= burst; i++)
+			harness.send();
+		assert harness.transmitted.size() == burst + 1;
+		assert harness.sent.get() == burst + 1;
+		assert harness.tasks.isEmpty();
+
+		harness.send();
+		assert harness.transmitted.size() == burst + 1;
+		assert harness.sent.get() == burst + 1;
+		assert harness.pacer.getQueueDepth() == 1;
+		assert harness.tasks.size() == 1;
+	}
+
+	/**
+	 * Queued transmissions are sent at the rate, one payload per millisecond,
+	 * in the order given.
+	 */
+	@Test
+	public static void test2() {
+		Harness harness = new Harness();
+		int burst = DatagramStreamConfig.PACING_MIN_BURST / PAYLOAD;
+		for (int i = 0; i <= burst; i++)
+			harness.send();
+		List<byte[]> queued = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			byte[] transmission = new byte[PAYLOAD];
+			queued.add(transmission);
+			harness.pacer.send(transmission, harness.sent::incrementAndGet);
+		}
+		for (int i = 0; i < 10; i++) {
+			assert harness.delays.get(0) == MILLI;
+			harness.runScheduled();
+			assert harness.transmitted.size() == burst + 2 + i;
+			assert harness.transmitted.get(burst + 1 + i) == queued.get(i);
+		}
+		assert harness.sent.get() == burst + 11;
+		assert harness.pacer.getQueueDepth() == 0;
+		assert harness.tasks.isEmpty();
+
+		// Idleness refills only up to the burst allowance
+		harness.now.addAndGet(1000 * MILLI);
+		for (int i = 0; i <= burst + 1; i++)
+			harness.send();
+		assert harness.pacer.getQueueDepth() == 1;
+	}
+
+	/**
+	 * A rate change while transmissions are queued paces the rest of the
+	 * queue at the new rate.
+	 */
+	@Test
+	public static void test3() {
+		Harness harness = new Harness();
+		int burst = DatagramStreamConfig.PACING_MIN_BURST / PAYLOAD;
+		for (int i = 0; i <= burst + 3; i++)
+			harness.send();
+		assert harness.pacer.getQueueDepth() == 3;
+		assert harness.delays.get(0) == MILLI;
+
+		// By the drain already scheduled, twice the tokens have accumulated
+		harness.pacer.setRate(RATE * 2);
+		harness.runScheduled();
+		assert harness.pacer.getQueueDepth() == 1;
+		assert harness.sent.get() == burst + 3;
+		assert harness.delays.get(0) == MILLI / 2;
+		harness.runScheduled();
+		assert harness.pacer.getQueueDepth() == 0;
+		assert harness.sent.get() == burst + 4;
+		assert harness.tasks.isEmpty();
+	}
+
+	/**
+	 * Clearing the pacer, as the stream does when it closes, discards what was
+	 * queued without sending it, and a pacer whose scheduler has shut down
+	 * discards what it cannot schedule.
+	 */
+	@Test
+	public static void test4() {
+		Harness harness = new Harness();
+		int burst = DatagramStreamConfig.PACING_MIN_BURST / PAYLOAD;
+		for (int i = 0; i <= burst + 3; i++)
+			harness.send();
+		harness.pacer.clear();
+		assert harness.pacer.getQueueDepth() == 0;
+		harness.runScheduled();
+		assert harness.transmitted.size() == burst + 1;
+		assert harness.sent.get() == burst + 1;
+		assert harness.tasks.isEmpty();
+
+		ScheduledExecutorService closed = Testing.mock(ScheduledExecutorService.class);
+		((Mockery) closed).method("schedule", Runnable.class, long.class, TimeUnit.class).setResponse(args -> {
+			throw new RejectedExecutionException();
+		});
+		List<byte[]> transmitted = new ArrayList<>();
+		TokenBucketPacer pacer = new TokenBucketPacer(closed, transmitted::add, RATE, System.err, () -> 0);
+		for (int i = 0; i <= burst + 3; i++)
+			pacer.send(new byte[PAYLOAD], null);
+		assert transmitted.size() == burst + 1;
+		assert pacer.getQueueDepth() == 0;
+	}
+
+}
@@ -0,0 +1,109 @@
+package test.socket;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.phoenixkahlo.nodenet.stream.TransmissionArena;
+import com.phoenixkahlo.ptest.Test;
+import com.phoenixkahlo.ptest.Testing;
+
+public class TransmissionArenaTest {
+
+	/**
+	 * Chunks are added as slots are needed, and an emptied chunk is released
+	 * unless it is the only empty one, which is kept spare and only used once
+	 * the others are full.
+	 */
+	@Test
+	public static void test1() {
+		TransmissionArena arena = new TransmissionArena(64, 4);
+		assert arena.getCapacity() == 0;
+		List<Integer> slots = new ArrayList<>();
+		for (int i = 0; i < 12; i++)
+			slots.add(arena.allocate());
+		assert arena.getCapacity() == 12 * 64;
+		assert arena.getAllocated() == 12;
+
+		// Emptying the middle chunk keeps it spare
+		for (int i = 4; i < 8; i++)
+			arena.release(slots.get(i));
+		assert arena.getCapacity() == 12 * 64;
+		// Slots freed in the first chunk are used before the spare
+		arena.release(slots.get(0));
+		assert arena.allocate() == slots.get(0);
+		// Emptying the last chunk releases it
+		for (int i = 8; i < 12; i++)
+			arena.release(slots.get(i));
+		assert arena.getCapacity() == 8 * 64;
+		assert arena.getAllocated() == 4;
+
+		// The spare is used once the first chunk is full, then a released
+		// chunk's place is reused
+		for (int i = 0; i < 8; i++)
+			arena.allocate();
+		assert arena.getCapacity() == 12 * 64;
+		assert arena.getAllocated() == 12;
+	}
+
+	/**
+	 * Slot contents survive the addition and release of other chunks.
+	 */
+	@Test
+	public static void test2() {
+		TransmissionArena arena = new TransmissionArena(64, 4);
+		List<Integer> slots = new ArrayList<>();
+		List<byte[]> contents = new ArrayList<>();
+		for (int i = 0; i < 40; i++) {
+			byte[] data = new byte[1 + Testing.RANDOM.nextInt(64)];
+			Testing.RANDOM.nextBytes(data);
+			int slot = arena.allocate();
+			arena.write(slot, data);
+			slots.add(slot);
+			contents.add(data);
+		}
+		for (int i = 39; i >= 0; i--) {
+			if (i % 4 != 0) {
+				arena.release(slots.remove(i));
+				contents.remove(i);
+			}
+		}
+		for (int i = 0; i < 20; i++)
+			arena.write(arena.allocate(), new byte[64]);
+		for (int i = 0; i < slots.size(); i++)
+			assert Arrays.equals(arena.read(slots.get(i), contents.get(i).length), contents.get(i));
+	}
+
+	/**
+	 * Holders of slots read and write them concurrently, while others
+	 * allocate and release.
+	 */
+	@Test
+	public static void test3() throws Exception {
+		TransmissionArena arena = new TransmissionArena(64, 16);
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			byte fill = (byte) t;
+			futures.add(pool.submit(() -> {
+				byte[] data = new byte[64];
+				Arrays.fill(data, fill);
+				for (int i = 0; i < 10_000; i++) {
+					int slot = arena.allocate();
+					arena.write(slot, data);
+					assert Arrays.equals(arena.read(slot, 64), data);
+					arena.release(slot);
+				}
+				return null;
+			}));
+		}
+		for (Future<?> future : futures)
+			future.get();
+		pool.shutdown();
+		assert arena.getAllocated() == 0;
+	}
+
+}